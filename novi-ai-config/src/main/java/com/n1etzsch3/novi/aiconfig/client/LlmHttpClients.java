@@ -0,0 +1,74 @@
+package com.n1etzsch3.novi.aiconfig.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n1etzsch3.novi.aiconfig.config.LlmHttpClientProperties;
+import io.netty.channel.ChannelOption;
+import jakarta.annotation.PreDestroy;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.ReactorClientHttpRequestFactory;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+/**
+ * 大模型共享 HTTP 客户端
+ * <p>
+ * 所有 ChatModel 实例共用一个 Reactor Netty 连接池和一个 ObjectMapper，
+ * 切换或并存多个模型时复用已建立的 TLS 连接，不再为每个模型实例单独建池。
+ * WebClient（流式）与 RestClient（阻塞调用）底层使用同一个 HttpClient。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class LlmHttpClients {
+
+    private final ConnectionProvider connectionProvider;
+    private final HttpClient httpClient;
+    private final ReactorClientHttpConnector connector;
+    private final ReactorClientHttpRequestFactory requestFactory;
+
+    /**
+     * 模型响应解析共用的 ObjectMapper（线程安全）
+     */
+    @Getter
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public LlmHttpClients(LlmHttpClientProperties properties) {
+        this.connectionProvider = ConnectionProvider.builder("novi-llm")
+                .maxConnections(properties.getMaxConnections())
+                .pendingAcquireTimeout(properties.getPendingAcquireTimeout())
+                .maxIdleTime(properties.getMaxIdleTime())
+                .build();
+        this.httpClient = HttpClient.create(connectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis());
+        this.connector = new ReactorClientHttpConnector(httpClient);
+        this.requestFactory = new ReactorClientHttpRequestFactory(httpClient);
+        log.info("Initialized shared LLM HTTP connection pool: maxConnections={}", properties.getMaxConnections());
+    }
+
+    /**
+     * 创建使用共享连接池的 WebClient.Builder（每次返回新的 Builder，可独立设置 baseUrl 与请求头）
+     */
+    public WebClient.Builder webClientBuilder() {
+        return WebClient.builder().clientConnector(connector);
+    }
+
+    /**
+     * 创建使用共享连接池的 RestClient.Builder
+     */
+    public RestClient.Builder restClientBuilder() {
+        return RestClient.builder().requestFactory(requestFactory);
+    }
+
+    @PreDestroy
+    public void close() {
+        connectionProvider.dispose();
+    }
+}
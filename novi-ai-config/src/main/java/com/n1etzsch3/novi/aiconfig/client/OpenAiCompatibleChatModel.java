@@ -9,6 +9,7 @@ import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.ChatOptions;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.core.io.buffer.DataBuffer;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Flux;
@@ -31,16 +32,33 @@ public class OpenAiCompatibleChatModel implements ChatModel {
     private final String apiKey;
     private final String completionsPath;
     private final boolean enableThinking;
+    private final OpenAiSseDecoder sseDecoder;
 
     public OpenAiCompatibleChatModel(String baseUrl, String apiKey, String model, String completionsPath,
             boolean enableThinking) {
+        this(baseUrl, apiKey, model, completionsPath, enableThinking, WebClient.builder(),
+                new com.fasterxml.jackson.databind.ObjectMapper());
+    }
+
+    /**
+     * Create a model on top of a shared HTTP client.
+     * <p>
+     * The builder is cloned, so callers can pass a builder that is backed by a
+     * shared connection pool (see {@link LlmHttpClients}) without leaking this
+     * model's base URL or headers into other models.
+     * </p>
+     */
+    public OpenAiCompatibleChatModel(String baseUrl, String apiKey, String model, String completionsPath,
+            boolean enableThinking, WebClient.Builder webClientBuilder,
+            com.fasterxml.jackson.databind.ObjectMapper objectMapper) {
         this.apiKey = apiKey;
+        this.sseDecoder = new OpenAiSseDecoder(objectMapper.getFactory());
         this.model = model;
         // Use database-configured path, fall back to OpenAI standard if not provided
         this.completionsPath = (completionsPath != null && !completionsPath.isBlank()) ? completionsPath
                 : "/v1/chat/completions";
         this.enableThinking = enableThinking;
-        this.webClient = WebClient.builder()
+        this.webClient = webClientBuilder.clone()
                 .baseUrl(baseUrl)
                 .defaultHeader("Authorization", "Bearer " + apiKey)
                 .defaultHeader("Content-Type", "application/json")
@@ -87,27 +105,10 @@ public class OpenAiCompatibleChatModel implements ChatModel {
                     }
                     log.info("Stream Connected. Status: {}, Headers: {}", response.statusCode(),
                             response.headers().asHttpHeaders());
-                    return response.bodyToFlux(String.class);
+                    return sseDecoder.decode(response.bodyToFlux(DataBuffer.class));
                 })
                 .doOnSubscribe(s -> log.info("Stream subscription started"))
-                .filter(chunk -> {
-                    String trimmed = chunk.trim();
-                    return !trimmed.isEmpty() && !"[DONE]".equals(trimmed);
-                })
-                .map(chunk -> {
-                    String trimmed = chunk.trim();
-                    // In case some implementations still send "data:" prefix
-                    if (trimmed.startsWith("data:")) {
-                        return trimmed.substring(5).trim();
-                    }
-                    return trimmed;
-                })
-                .<ChatResponse>handle((chunk, sink) -> {
-                    ChatResponse response = parseStreamChunk(chunk);
-                    if (response != null) {
-                        sink.next(response);
-                    }
-                })
+                .map(this::toChatResponse)
                 .onErrorResume(e -> {
                     log.error("Error in stream", e);
                     return Flux.error(new RuntimeException("Stream error: " + e.getMessage(), e));
@@ -181,62 +182,13 @@ public class OpenAiCompatibleChatModel implements ChatModel {
         return new ChatResponse(Collections.singletonList(generation));
     }
 
-    private final com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-
-    private ChatResponse parseStreamChunk(String json) {
-        try {
-            // Log raw chunk for debugging
-            // log.debug("Raw stream chunk: {}", json);
-
-            // Check for [DONE] message
-            if ("[DONE]".equals(json.trim())) {
-                return null;
-            }
-
-            // Parse JSON using ObjectMapper
-            com.fasterxml.jackson.databind.JsonNode rootNode = objectMapper.readTree(json);
-
-            // Navigate to choices[0].delta.content
-            if (rootNode.has("choices") && rootNode.get("choices").isArray() && rootNode.get("choices").size() > 0) {
-                com.fasterxml.jackson.databind.JsonNode choice = rootNode.get("choices").get(0);
-                if (choice.has("delta")) {
-                    com.fasterxml.jackson.databind.JsonNode delta = choice.get("delta");
-                    String content = "";
-
-                    // 1. Handle Reasoning Content
-                    if (delta.has("reasoning_content") && !delta.get("reasoning_content").isNull()) {
-                        String reasoning = delta.get("reasoning_content").asText();
-                        if (!reasoning.isEmpty()) {
-                            // Special handling: We need to pass this up.
-                            // Spring AI ChatResponse doesn't have a dedicated field for this.
-                            // We will use metadata or a special prefix/wrapper?
-                            // Better approach: Since we are controlling the ChatService consumer,
-                            // Better approach: Use AssistantMessage metadata
-                            Map<String, Object> metadata = new HashMap<>();
-                            metadata.put("reasoning_content", reasoning);
-                            AssistantMessage msg = new AssistantMessage("", metadata);
-                            Generation gen = new Generation(msg);
-                            return new ChatResponse(Collections.singletonList(gen));
-                        }
-                    }
-
-                    // 2. Handle Standard Content
-                    if (delta.has("content") && !delta.get("content").isNull()) {
-                        content = delta.get("content").asText();
-                    }
-
-                    if (content != null && !content.isEmpty()) {
-                        AssistantMessage assistantMessage = new AssistantMessage(content);
-                        Generation generation = new Generation(assistantMessage);
-                        return new ChatResponse(Collections.singletonList(generation));
-                    }
-                }
-            }
-            return null;
-        } catch (Exception e) {
-            log.debug("Error parsing stream chunk: {}", json, e);
-            return null;
-        }
+    private ChatResponse toChatResponse(OpenAiSseDecoder.Delta delta) {
+        // Reasoning content travels in AssistantMessage metadata, since ChatResponse has no dedicated field
+        String reasoning = delta.reasoningContent();
+        AssistantMessage message = (reasoning != null && !reasoning.isEmpty())
+                ? new AssistantMessage("", Map.of("reasoning_content", reasoning))
+                : new AssistantMessage(delta.content());
+        return new ChatResponse(Collections.singletonList(new Generation(message)));
     }
 
     @Override
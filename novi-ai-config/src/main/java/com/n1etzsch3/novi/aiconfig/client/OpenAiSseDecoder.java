@@ -0,0 +1,281 @@
+package com.n1etzsch3.novi.aiconfig.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Streaming decoder for OpenAI-compatible chat completion SSE bodies.
+ * <p>
+ * Works directly on the response {@link DataBuffer}s: events are split at the
+ * byte level into reusable per-stream buffers, and each {@code data:} payload is
+ * read with Jackson's streaming {@link JsonParser}, pulling only
+ * {@code choices[0].delta.content} and {@code reasoning_content}. No
+ * intermediate line strings or JSON trees are built, and events split across
+ * network buffers are reassembled.
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+public class OpenAiSseDecoder {
+
+    private static final byte[] DATA = "data:".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] DONE = "[DONE]".getBytes(StandardCharsets.US_ASCII);
+
+    private final JsonFactory jsonFactory;
+
+    public OpenAiSseDecoder(JsonFactory jsonFactory) {
+        this.jsonFactory = jsonFactory;
+    }
+
+    /**
+     * One streamed delta. Either field may be null.
+     *
+     * @param content          choices[0].delta.content
+     * @param reasoningContent choices[0].delta.reasoning_content
+     */
+    public record Delta(String content, String reasoningContent) {
+    }
+
+    /**
+     * Decode an SSE response body into deltas. Buffers are released once read.
+     */
+    public Flux<Delta> decode(Flux<DataBuffer> body) {
+        return Flux.defer(() -> {
+            Session session = newSession();
+            return body.concatMapIterable(buffer -> {
+                try {
+                    return session.feed(buffer);
+                } finally {
+                    DataBufferUtils.release(buffer);
+                }
+            }).concatWith(Mono.fromCallable(session::finish));
+        }).doOnDiscard(DataBuffer.class, DataBufferUtils::release);
+    }
+
+    /**
+     * Create decoding state for one stream.
+     */
+    public Session newSession() {
+        return new Session();
+    }
+
+    /**
+     * Per-stream decoding state. Not thread-safe; buffers are fed in order.
+     */
+    public final class Session {
+
+        private byte[] line = new byte[256];
+        private int lineLength;
+        private byte[] data = new byte[1024];
+        private int dataLength;
+        private boolean hasData;
+
+        private Session() {
+        }
+
+        /**
+         * Feed one network buffer and collect the deltas of every event it completes.
+         */
+        public List<Delta> feed(DataBuffer buffer) {
+            List<Delta> out = null;
+            try (DataBuffer.ByteBufferIterator iterator = buffer.readableByteBuffers()) {
+                while (iterator.hasNext()) {
+                    out = feed(iterator.next(), out);
+                }
+            }
+            return out == null ? Collections.emptyList() : out;
+        }
+
+        /**
+         * Feed raw bytes and pass the deltas of every completed event to the consumer.
+         */
+        public void feed(byte[] bytes, int offset, int length, Consumer<Delta> consumer) {
+            List<Delta> out = feed(ByteBuffer.wrap(bytes, offset, length), null);
+            if (out != null) {
+                out.forEach(consumer);
+            }
+        }
+
+        /**
+         * Flush an event left open when the stream ended without a trailing blank line.
+         *
+         * @return the final delta, or null
+         */
+        public Delta finish() {
+            if (lineLength > 0) {
+                Delta delta = processLine();
+                if (delta != null) {
+                    return delta;
+                }
+            }
+            return dispatch();
+        }
+
+        private List<Delta> feed(ByteBuffer bytes, List<Delta> out) {
+            int limit = bytes.limit();
+            for (int i = bytes.position(); i < limit; i++) {
+                byte b = bytes.get(i);
+                if (b != '\n') {
+                    if (lineLength == line.length) {
+                        line = Arrays.copyOf(line, line.length * 2);
+                    }
+                    line[lineLength++] = b;
+                    continue;
+                }
+                Delta delta = processLine();
+                if (delta != null) {
+                    if (out == null) {
+                        out = new ArrayList<>(4);
+                    }
+                    out.add(delta);
+                }
+            }
+            return out;
+        }
+
+        /**
+         * Handle the buffered line; a blank line dispatches the pending event.
+         */
+        private Delta processLine() {
+            int length = lineLength;
+            lineLength = 0;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            if (length == 0) {
+                return dispatch();
+            }
+            if (line[0] == ':') {
+                // comment / keep-alive
+                return null;
+            }
+            if (startsWith(line, length, DATA)) {
+                int start = DATA.length;
+                if (start < length && line[start] == ' ') {
+                    start++;
+                }
+                appendData(start, length);
+                return null;
+            }
+            if (line[0] == '{') {
+                // Some providers send bare JSON lines without the "data:" prefix
+                Delta pending = dispatch();
+                appendData(0, length);
+                Delta delta = dispatch();
+                return delta != null ? delta : pending;
+            }
+            // event:, id:, retry: and unknown fields are ignored
+            return null;
+        }
+
+        private void appendData(int start, int end) {
+            int length = end - start;
+            int required = dataLength + length + (hasData ? 1 : 0);
+            if (required > data.length) {
+                data = Arrays.copyOf(data, Math.max(required, data.length * 2));
+            }
+            if (hasData) {
+                data[dataLength++] = '\n';
+            }
+            System.arraycopy(line, start, data, dataLength, length);
+            dataLength += length;
+            hasData = true;
+        }
+
+        private Delta dispatch() {
+            if (!hasData) {
+                return null;
+            }
+            int length = dataLength;
+            hasData = false;
+            dataLength = 0;
+            if (length == DONE.length && startsWith(data, length, DONE)) {
+                return null;
+            }
+            return parse(data, length);
+        }
+    }
+
+    /**
+     * Pull choices[0].delta.{content, reasoning_content} from one JSON payload.
+     */
+    private Delta parse(byte[] json, int length) {
+        try (JsonParser parser = jsonFactory.createParser(json, 0, length)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                if ("choices".equals(name) && value == JsonToken.START_ARRAY) {
+                    return parser.nextToken() == JsonToken.START_OBJECT ? readChoice(parser) : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        } catch (IOException e) {
+            log.debug("Error parsing stream chunk: {}", new String(json, 0, length, StandardCharsets.UTF_8), e);
+            return null;
+        }
+    }
+
+    private Delta readChoice(JsonParser parser) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if ("delta".equals(name) && value == JsonToken.START_OBJECT) {
+                return readDelta(parser);
+            }
+            parser.skipChildren();
+        }
+        return null;
+    }
+
+    private Delta readDelta(JsonParser parser) throws IOException {
+        String content = null;
+        String reasoning = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.currentName();
+            JsonToken value = parser.nextToken();
+            if (value == JsonToken.VALUE_STRING && "content".equals(name)) {
+                content = parser.getText();
+            } else if (value == JsonToken.VALUE_STRING && "reasoning_content".equals(name)) {
+                reasoning = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        boolean hasContent = content != null && !content.isEmpty();
+        boolean hasReasoning = reasoning != null && !reasoning.isEmpty();
+        return hasContent || hasReasoning ? new Delta(content, reasoning) : null;
+    }
+
+    private static boolean startsWith(byte[] bytes, int length, byte[] prefix) {
+        if (length < prefix.length) {
+            return false;
+        }
+        for (int i = 0; i < prefix.length; i++) {
+            if (bytes[i] != prefix[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
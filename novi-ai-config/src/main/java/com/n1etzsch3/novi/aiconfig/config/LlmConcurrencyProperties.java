@@ -0,0 +1,80 @@
+package com.n1etzsch3.novi.aiconfig.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 大模型调用限流配置
+ * <p>
+ * 对应配置前缀 {@code novi.ai.concurrency}。按模型提供方（base_url 的主机名）限制同时在途的调用数和 Token 速率，
+ * 与调用方运行在平台线程还是虚拟线程无关：虚拟线程模式下线程不再是瓶颈，由这里的限制决定实际并发。
+ * </p>
+ * <p>
+ * 在途上限是一个自适应窗口：提供方返回 429/5xx 时按 decreaseFactor 乘性缩小，
+ * 调用成功时每满一个窗口加性恢复 1，最多回到 maxConcurrency（AIMD）。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.ai.concurrency")
+public class LlmConcurrencyProperties {
+
+    /**
+     * 未单独配置的提供方使用的限制
+     */
+    private ProviderLimit defaultLimit = new ProviderLimit();
+
+    /**
+     * 按提供方覆盖的限制，key 为 base_url 的主机名（如 dashscope.aliyuncs.com）
+     */
+    private Map<String, ProviderLimit> limits = new HashMap<>();
+
+    /**
+     * 排队等待的最长时间，超时后本次调用失败
+     */
+    private Duration acquireTimeout = Duration.ofSeconds(60);
+
+    /**
+     * 遇到 429/5xx 时窗口的缩小倍数
+     */
+    private double decreaseFactor = 0.5;
+
+    /**
+     * 两次缩小窗口之间的最短间隔，避免同一波失败把窗口连续压到最小
+     */
+    private Duration decreaseCooldown = Duration.ofSeconds(2);
+
+    /**
+     * 获取指定提供方的限制
+     */
+    public ProviderLimit limitFor(String provider) {
+        return limits.getOrDefault(provider, defaultLimit);
+    }
+
+    @Data
+    public static class ProviderLimit {
+
+        /**
+         * 在途调用数上限（窗口的最大值和初始值）
+         */
+        private int maxConcurrency = 32;
+
+        /**
+         * 自适应缩小后窗口的下限
+         */
+        private int minConcurrency = 1;
+
+        /**
+         * 每分钟允许发送的输入 Token 数（按估算值计），0 表示不限制
+         */
+        private int tokensPerMinute = 0;
+    }
+}
@@ -0,0 +1,42 @@
+package com.n1etzsch3.novi.aiconfig.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 大模型 HTTP 客户端配置
+ * <p>
+ * 对应配置前缀 {@code novi.ai.http}，所有模型实例共享同一个连接池。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.ai.http")
+public class LlmHttpClientProperties {
+
+    /**
+     * 连接池最大连接数（所有模型共享）
+     */
+    private int maxConnections = 200;
+
+    /**
+     * 连接池耗尽时等待可用连接的最长时间
+     */
+    private Duration pendingAcquireTimeout = Duration.ofSeconds(30);
+
+    /**
+     * 空闲连接的最长保留时间，超过后关闭
+     */
+    private Duration maxIdleTime = Duration.ofSeconds(60);
+
+    /**
+     * 建立 TCP 连接的超时时间
+     */
+    private Duration connectTimeout = Duration.ofSeconds(10);
+}
@@ -0,0 +1,81 @@
+package com.n1etzsch3.novi.aiconfig.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多模型路由配置
+ * <p>
+ * 对应配置前缀 {@code novi.ai.routing}。启用后，激活模型（或请求指定的模型）作为主模型，
+ * {@link #models} 中的其余模型按顺序作为备选：主模型在产出首个 Token 前失败时立即切换到下一个；
+ * 开启对冲后，主模型在首 Token 延迟的历史分位数内仍未产出时，同时向下一个模型发出相同请求，
+ * 先产出的一方胜出，另一方被取消。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.ai.routing")
+public class LlmRoutingProperties {
+
+    /**
+     * 是否启用多模型路由
+     */
+    private boolean enabled = false;
+
+    /**
+     * 参与路由的模型名称（ai_model_config.model_name），按优先级排列
+     */
+    private List<String> models = new ArrayList<>();
+
+    /**
+     * 对冲请求配置
+     */
+    private Hedge hedge = new Hedge();
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * 是否对流式调用发出对冲请求
+         */
+        private boolean enabled = false;
+
+        /**
+         * 触发对冲的首 Token 延迟分位数
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 样本不足时使用的对冲延迟
+         */
+        private Duration initialDelay = Duration.ofSeconds(3);
+
+        /**
+         * 对冲延迟下限，避免主模型稍有波动就加倍请求量
+         */
+        private Duration minDelay = Duration.ofMillis(500);
+
+        /**
+         * 对冲延迟上限
+         */
+        private Duration maxDelay = Duration.ofSeconds(10);
+
+        /**
+         * 计算分位数所需的最少样本数
+         */
+        private int minSamples = 20;
+
+        /**
+         * 每个模型保留的最近样本数
+         */
+        private int sampleSize = 200;
+    }
+}
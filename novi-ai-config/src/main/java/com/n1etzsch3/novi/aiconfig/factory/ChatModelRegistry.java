@@ -0,0 +1,84 @@
+package com.n1etzsch3.novi.aiconfig.factory;
+
+import com.n1etzsch3.novi.common.pojo.entity.AiModelConfig;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * ChatModel 注册表
+ * <p>
+ * 按 ai_model_config 的主键缓存已创建的 ChatModel 实例，同一行配置在多次请求间复用同一个实例。
+ * 每个实例都记录创建时所用配置的指纹（模型名、地址、密钥、路径、深度思考开关），
+ * 配置行的这些字段发生变化后，下一次获取时自动重建，旧实例直接丢弃；
+ * 仅切换激活状态不会触发重建。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class ChatModelRegistry {
+
+    private final Map<Long, Entry> models = new ConcurrentHashMap<>();
+
+    /**
+     * 创建 ChatModel 时依赖的配置字段
+     */
+    private record Fingerprint(String modelName, String baseUrl, String apiKey, String completionsPath,
+            Boolean enableThinking) {
+
+        static Fingerprint of(AiModelConfig config) {
+            return new Fingerprint(config.getModelName(), config.getBaseUrl(), config.getApiKey(),
+                    config.getCompletionsPath(), config.getEnableThinking());
+        }
+    }
+
+    private record Entry(Fingerprint fingerprint, ChatModel chatModel) {
+    }
+
+    /**
+     * 获取配置对应的 ChatModel，不存在或配置已变化时通过 creator 创建
+     *
+     * @param config  模型配置
+     * @param creator ChatModel 创建函数
+     * @return 可复用的 ChatModel 实例
+     */
+    public ChatModel getOrCreate(AiModelConfig config, Function<AiModelConfig, ChatModel> creator) {
+        Fingerprint fingerprint = Fingerprint.of(config);
+        Entry current = models.get(config.getId());
+        if (current != null && current.fingerprint().equals(fingerprint)) {
+            return current.chatModel();
+        }
+        return models.compute(config.getId(), (id, existing) -> {
+            if (existing != null && existing.fingerprint().equals(fingerprint)) {
+                return existing;
+            }
+            if (existing != null) {
+                log.info("Model config {} ({}) changed, rebuilding ChatModel", id, config.getModelName());
+            }
+            return new Entry(fingerprint, creator.apply(config));
+        }).chatModel();
+    }
+
+    /**
+     * 移除指定配置行的 ChatModel
+     *
+     * @param modelId 配置主键
+     */
+    public void invalidate(Long modelId) {
+        models.remove(modelId);
+    }
+
+    /**
+     * 清空所有已缓存的 ChatModel
+     */
+    public void invalidateAll() {
+        models.clear();
+    }
+}
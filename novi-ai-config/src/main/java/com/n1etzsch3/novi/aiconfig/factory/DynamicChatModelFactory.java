@@ -3,6 +3,12 @@ package com.n1etzsch3.novi.aiconfig.factory;
 import com.alibaba.cloud.ai.dashscope.api.DashScopeApi;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel;
 import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.n1etzsch3.novi.aiconfig.client.LlmHttpClients;
+import com.n1etzsch3.novi.aiconfig.config.LlmRoutingProperties;
+import com.n1etzsch3.novi.aiconfig.limit.LlmConcurrencyLimiter;
+import com.n1etzsch3.novi.aiconfig.model.ConcurrencyLimitedChatModel;
+import com.n1etzsch3.novi.aiconfig.model.ModelRoutingStats;
+import com.n1etzsch3.novi.aiconfig.model.RoutingChatModel;
 import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
 import com.n1etzsch3.novi.common.pojo.entity.AiModelConfig;
 import lombok.RequiredArgsConstructor;
@@ -10,11 +16,23 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.stereotype.Component;
 
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
 /**
  * Dynamic ChatModel Factory
  * <p>
  * Creates DashScopeChatModel instances based on active database configuration.
- * Supports hot-reloading.
+ * Supports hot-reloading. Instances are cached per ai_model_config row in
+ * {@link ChatModelRegistry} and share one HTTP connection pool. Every model is
+ * wrapped in a {@link ConcurrencyLimitedChatModel} so in-flight calls are
+ * bounded per provider. When routing is enabled (novi.ai.routing), the
+ * selected model becomes the primary of a {@link RoutingChatModel} that fails
+ * over to, or hedges against, the other configured models.
  * </p>
  *
  * @author N1etzsch3
@@ -26,23 +44,28 @@ import org.springframework.stereotype.Component;
 public class DynamicChatModelFactory {
 
     private final AiModelConfigService aiModelConfigService;
-
-    private volatile ChatModel cachedChatModel;
-    private volatile Long cachedModelId;
+    private final ChatModelRegistry chatModelRegistry;
+    private final LlmHttpClients llmHttpClients;
+    private final LlmConcurrencyLimiter llmConcurrencyLimiter;
+    private final LlmRoutingProperties routingProperties;
+    private final ModelRoutingStats modelRoutingStats;
 
     /**
-     * Create or get ChatModel instance using active configuration
-     *
-     * @return ChatModel instance
-     * @throws IllegalStateException if no active model found
+     * Routing models keyed by primary model name, rebuilt when any candidate instance changes
      */
+    private final Map<String, RoutingChatModel> routers = new ConcurrentHashMap<>();
+
     /**
      * Create or get ChatModel instance using active configuration
+     * <p>
+     * Lock-free: the active model comes from the in-memory snapshot held by
+     * {@link AiModelConfigService}, and the instance from {@link ChatModelRegistry}.
+     * </p>
      *
      * @return ChatModel instance
      * @throws IllegalStateException if no active model found
      */
-    public synchronized ChatModel createChatModel() {
+    public ChatModel createChatModel() {
         AiModelConfig activeModel = aiModelConfigService.getActiveModel();
 
         if (activeModel == null) {
@@ -50,36 +73,15 @@ public class DynamicChatModelFactory {
             throw new IllegalStateException("No active AI model found. Please configure one in ai_model_config table.");
         }
 
-        // Return cached instance if model hasn't changed
-        if (cachedChatModel != null && cachedModelId != null && cachedModelId.equals(activeModel.getId())) {
-            log.debug("Returning cached ChatModel for: {}", activeModel.getModelName());
-            return cachedChatModel;
-        }
-
-        log.info("Creating new ChatModel with configuration: {}", activeModel.getModelName());
-
-        ChatModel chatModel;
-        // Determine whether to use DashScope or OpenAI based on model configuration
-        if (isDashScopeModel(activeModel)) {
-            chatModel = createDashScopeChatModel(activeModel);
-        } else {
-            chatModel = createOpenAiChatModel(activeModel);
-        }
-
-        // Update cache
-        cachedChatModel = chatModel;
-        cachedModelId = activeModel.getId();
-
-        log.info("Successfully created and cached ChatModel for: {}", activeModel.getModelName());
-        return chatModel;
+        return route(activeModel);
     }
 
     /**
      * Create ChatModel by model name (for per-request model selection).
      * <p>
-     * Unlike the no-arg version, this does NOT cache the model instance
-     * since it's meant for per-request usage where different requests may
-     * use different models.
+     * Instances are kept in {@link ChatModelRegistry}, keyed by the
+     * ai_model_config row, so repeated per-request overrides reuse the same
+     * model and its pooled connections instead of building a new client.
      * </p>
      *
      * @param modelName the model name to use, if null/blank falls back to active
@@ -97,12 +99,69 @@ public class DynamicChatModelFactory {
             return createChatModel();
         }
 
-        log.debug("Creating ChatModel for requested model: {}", modelName);
-        if (isDashScopeModel(config)) {
-            return createDashScopeChatModel(config);
-        } else {
-            return createOpenAiChatModel(config);
+        return route(config);
+    }
+
+    /**
+     * Returns the model for the given primary config, wrapped in a
+     * {@link RoutingChatModel} together with the other routing models when
+     * routing is enabled. Unknown names in the routing list are skipped.
+     */
+    private ChatModel route(AiModelConfig primary) {
+        ChatModel primaryModel = chatModelRegistry.getOrCreate(primary, this::buildChatModel);
+        if (!routingProperties.isEnabled()) {
+            return primaryModel;
+        }
+
+        List<RoutingChatModel.Candidate> candidates = new ArrayList<>();
+        candidates.add(new RoutingChatModel.Candidate(primary.getModelName(), primaryModel));
+        for (String name : routingProperties.getModels()) {
+            if (name == null || name.equals(primary.getModelName())) {
+                continue;
+            }
+            AiModelConfig config = aiModelConfigService.getModelByName(name);
+            if (config == null) {
+                log.debug("Routing model '{}' not found in ai_model_config, skipping", name);
+                continue;
+            }
+            candidates.add(new RoutingChatModel.Candidate(name,
+                    chatModelRegistry.getOrCreate(config, this::buildChatModel)));
+        }
+        if (candidates.size() == 1) {
+            return primaryModel;
+        }
+
+        return routers.compute(primary.getModelName(), (key, existing) -> existing != null
+                && existing.hasCandidates(candidates)
+                        ? existing
+                        : new RoutingChatModel(candidates, routingProperties.getHedge(), modelRoutingStats));
+    }
+
+    private ChatModel buildChatModel(AiModelConfig config) {
+        log.info("Creating new ChatModel with configuration: {}", config.getModelName());
+        // Determine whether to use DashScope or OpenAI based on model configuration
+        ChatModel chatModel = isDashScopeModel(config)
+                ? createDashScopeChatModel(config)
+                : createOpenAiChatModel(config);
+        return new ConcurrencyLimitedChatModel(chatModel, resolveProvider(config), llmConcurrencyLimiter);
+    }
+
+    /**
+     * Provider key used for concurrency limits: the host of base_url, or
+     * "dashscope" for native DashScope models without a base_url.
+     */
+    private String resolveProvider(AiModelConfig config) {
+        if (config.getBaseUrl() != null && !config.getBaseUrl().isBlank()) {
+            try {
+                String host = URI.create(config.getBaseUrl().trim()).getHost();
+                if (host != null) {
+                    return host.toLowerCase(Locale.ROOT);
+                }
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid base URL for model {}: {}", config.getModelName(), config.getBaseUrl());
+            }
         }
+        return isDashScopeModel(config) ? "dashscope" : "default";
     }
 
     private boolean isDashScopeModel(AiModelConfig config) {
@@ -138,6 +197,8 @@ public class DynamicChatModelFactory {
     private ChatModel createDashScopeChatModel(AiModelConfig activeModel) {
         DashScopeApi dashScopeApi = DashScopeApi.builder()
                 .apiKey(activeModel.getApiKey())
+                .restClientBuilder(llmHttpClients.restClientBuilder())
+                .webClientBuilder(llmHttpClients.webClientBuilder())
                 .build();
 
         DashScopeChatOptions options = DashScopeChatOptions.builder()
@@ -161,15 +222,17 @@ public class DynamicChatModelFactory {
                 activeModel.getApiKey(),
                 activeModel.getModelName(),
                 activeModel.getCompletionsPath(),
-                activeModel.getEnableThinking() != null && activeModel.getEnableThinking());
+                activeModel.getEnableThinking() != null && activeModel.getEnableThinking(),
+                llmHttpClients.webClientBuilder(),
+                llmHttpClients.getObjectMapper());
     }
 
     /**
      * Refresh model cache
      */
-    public synchronized void refresh() {
+    public void refresh() {
         log.info("Refreshing ChatModel cache");
-        cachedChatModel = null;
-        cachedModelId = null;
+        chatModelRegistry.invalidateAll();
+        routers.clear();
     }
 }
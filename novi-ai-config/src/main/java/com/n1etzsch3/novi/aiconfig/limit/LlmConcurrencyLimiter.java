@@ -0,0 +1,421 @@
+package com.n1etzsch3.novi.aiconfig.limit;
+
+import com.n1etzsch3.novi.aiconfig.config.LlmConcurrencyProperties;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClientResponseException;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 按模型提供方限流的调用限制器
+ * <p>
+ * 每个提供方维护一个自适应的在途调用窗口和一个可选的 Token 桶：
+ * <ul>
+ * <li>窗口按 AIMD 调整：提供方返回 429/5xx 时乘性缩小，调用成功时加性恢复；</li>
+ * <li>Token 桶按每分钟 Token 数连续补充，调用前扣除估算的输入 Token；</li>
+ * <li>调用方按到达顺序排队，超过等待上限后失败，排队耗时记录到 {@code novi.llm.limiter.wait}。</li>
+ * </ul>
+ * 排队本身不占用线程：{@link #acquireAsync(String, int)} 返回的 Mono 在许可可用时才发出，
+ * 流式调用据此在不阻塞任何线程的情况下等待；阻塞调用通过 {@link #acquire(String, int)} 在调用线程上等待，
+ * 在虚拟线程上几乎没有开销。两种调用共用同一个先到先得的等待队列。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class LlmConcurrencyLimiter {
+
+    private final LlmConcurrencyProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, ProviderState> providers = new ConcurrentHashMap<>();
+
+    public LlmConcurrencyLimiter(LlmConcurrencyProperties properties,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    /**
+     * 一次调用占用的许可
+     * <p>
+     * 调用结束后先通过 {@link #onSuccess()} 或 {@link #onFailure(Throwable)} 报告结果，再关闭归还；
+     * 未报告结果就关闭（如流被取消）时不调整窗口。重复关闭无副作用。
+     * </p>
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final ProviderState state;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile Outcome outcome = Outcome.NONE;
+
+        private Permit(ProviderState state) {
+            this.state = state;
+        }
+
+        public void onSuccess() {
+            outcome = Outcome.SUCCESS;
+        }
+
+        public void onFailure(Throwable error) {
+            outcome = isOverload(error) ? Outcome.OVERLOAD : Outcome.NONE;
+        }
+
+        @Override
+        public void close() {
+            if (released.compareAndSet(false, true)) {
+                release(state, outcome);
+            }
+        }
+    }
+
+    private enum Outcome {
+        NONE, SUCCESS, OVERLOAD
+    }
+
+    /**
+     * 获取指定提供方的调用许可，窗口已满或 Token 不足时阻塞调用线程排队等待
+     *
+     * @param provider        提供方标识
+     * @param estimatedTokens 本次调用估算的输入 Token 数
+     * @return 调用许可，调用结束后必须关闭
+     * @throws IllegalStateException 等待超时或被中断
+     */
+    public Permit acquire(String provider, int estimatedTokens) {
+        CompletableFuture<Permit> future = acquireAsync(provider, estimatedTokens).toFuture();
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            // 取消订阅会把本次等待移出队列
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("等待模型调用许可时被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步获取指定提供方的调用许可
+     * <p>
+     * 订阅时加入等待队列，许可可用时发出；超过等待上限时以 {@link IllegalStateException} 结束。
+     * 在发出许可之前取消订阅会退出队列，若许可恰好已经分配则立即归还。
+     * </p>
+     *
+     * @param provider        提供方标识
+     * @param estimatedTokens 本次调用估算的输入 Token 数
+     * @return 发出调用许可的 Mono，许可在调用结束后必须关闭
+     */
+    public Mono<Permit> acquireAsync(String provider, int estimatedTokens) {
+        return Mono.defer(() -> {
+            ProviderState state = providers.computeIfAbsent(provider, this::createState);
+            double tokens = state.bucketCapacity > 0
+                    ? Math.min(Math.max(estimatedTokens, 0), state.bucketCapacity)
+                    : 0;
+            Waiter waiter = new Waiter(state, tokens);
+            List<Waiter> granted;
+            state.lock.lock();
+            try {
+                state.waiters.addLast(waiter);
+                granted = dispatch(state);
+            } finally {
+                state.lock.unlock();
+            }
+            complete(granted);
+            return waiter.sink.asMono()
+                    .timeout(properties.getAcquireTimeout(), Mono.defer(() -> timeout(waiter)))
+                    .doOnCancel(() -> abandon(waiter));
+        });
+    }
+
+    /**
+     * 当前在途调用数
+     */
+    public int inFlight(String provider) {
+        ProviderState state = providers.get(provider);
+        return state == null ? 0 : state.inFlight;
+    }
+
+    /**
+     * 当前自适应窗口大小
+     */
+    public double window(String provider) {
+        ProviderState state = providers.get(provider);
+        return state == null ? properties.limitFor(provider).getMaxConcurrency() : state.limit;
+    }
+
+    private void release(ProviderState state, Outcome outcome) {
+        List<Waiter> granted;
+        state.lock.lock();
+        try {
+            state.inFlight--;
+            if (outcome == Outcome.SUCCESS) {
+                // 加性增：每满一个窗口的成功调用，窗口加 1
+                state.limit = Math.min(state.maxLimit, state.limit + 1.0 / state.limit);
+            } else if (outcome == Outcome.OVERLOAD) {
+                long now = System.nanoTime();
+                if (now - state.lastDecreaseNanos >= properties.getDecreaseCooldown().toNanos()) {
+                    double before = state.limit;
+                    state.limit = Math.max(state.minLimit, state.limit * properties.getDecreaseFactor());
+                    state.lastDecreaseNanos = now;
+                    log.warn("LLM provider {} overloaded, concurrency window {} -> {}", state.provider,
+                            String.format("%.1f", before), String.format("%.1f", state.limit));
+                }
+            }
+            granted = dispatch(state);
+        } finally {
+            state.lock.unlock();
+        }
+        complete(granted);
+    }
+
+    /**
+     * 按到达顺序为队首的等待者分配许可，调用方需持有 state.lock
+     * <p>
+     * 队首 Token 不足时安排一次延迟分配，后面的等待者不会越过它。
+     * 许可在释放锁之后通过 {@link #complete(List)} 发出，避免在锁内执行订阅者的代码。
+     * </p>
+     *
+     * @return 本次获得许可的等待者
+     */
+    private List<Waiter> dispatch(ProviderState state) {
+        List<Waiter> granted = List.of();
+        state.refill(System.nanoTime());
+        while (!state.waiters.isEmpty() && state.inFlight < state.window()) {
+            Waiter head = state.waiters.peekFirst();
+            long tokenWait = state.nanosUntilTokens(head.tokens);
+            if (tokenWait > 0) {
+                scheduleDispatch(state, tokenWait);
+                break;
+            }
+            state.waiters.pollFirst();
+            state.inFlight++;
+            state.tokens -= head.tokens;
+            head.granted = true;
+            if (granted.isEmpty()) {
+                granted = new ArrayList<>();
+            }
+            granted.add(head);
+        }
+        return granted;
+    }
+
+    private void complete(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            waiter.state.acquired.record(System.nanoTime() - waiter.start, TimeUnit.NANOSECONDS);
+            Permit permit = new Permit(waiter.state);
+            if (waiter.sink.tryEmitValue(permit).isFailure()) {
+                permit.close();
+            }
+        }
+    }
+
+    private void scheduleDispatch(ProviderState state, long delayNanos) {
+        if (state.dispatchScheduled) {
+            return;
+        }
+        state.dispatchScheduled = true;
+        Schedulers.parallel().schedule(() -> {
+            List<Waiter> granted;
+            state.lock.lock();
+            try {
+                state.dispatchScheduled = false;
+                granted = dispatch(state);
+            } finally {
+                state.lock.unlock();
+            }
+            complete(granted);
+        }, delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 等待超时：仍在队列中则移出并失败；超时的同时刚好分配到许可则照常使用
+     */
+    private Mono<Permit> timeout(Waiter waiter) {
+        ProviderState state = waiter.state;
+        List<Waiter> granted;
+        state.lock.lock();
+        try {
+            if (waiter.granted) {
+                return waiter.sink.asMono();
+            }
+            state.waiters.remove(waiter);
+            // 队首超时后，后面的等待者可能已经可以获得许可
+            granted = dispatch(state);
+        } finally {
+            state.lock.unlock();
+        }
+        complete(granted);
+        state.timedOut.record(System.nanoTime() - waiter.start, TimeUnit.NANOSECONDS);
+        log.warn("LLM limiter queue timeout for provider {}: inFlight={}, window={}", state.provider,
+                state.inFlight, state.window());
+        return Mono.error(new IllegalStateException("模型服务繁忙，请稍后再试"));
+    }
+
+    /**
+     * 订阅在拿到许可前被取消：退出队列，许可恰好已经分配时直接归还
+     */
+    private void abandon(Waiter waiter) {
+        ProviderState state = waiter.state;
+        List<Waiter> granted;
+        boolean wasGranted;
+        state.lock.lock();
+        try {
+            wasGranted = waiter.granted;
+            granted = wasGranted || !state.waiters.remove(waiter) ? List.of() : dispatch(state);
+        } finally {
+            state.lock.unlock();
+        }
+        complete(granted);
+        if (wasGranted) {
+            waiter.sink.asMono().subscribe(Permit::close);
+        }
+    }
+
+    private ProviderState createState(String provider) {
+        LlmConcurrencyProperties.ProviderLimit limit = properties.limitFor(provider);
+        log.info("LLM limiter for provider {}: maxConcurrency={}, minConcurrency={}, tokensPerMinute={}", provider,
+                limit.getMaxConcurrency(), limit.getMinConcurrency(), limit.getTokensPerMinute());
+        ProviderState state = new ProviderState(provider, limit, meterRegistry);
+        Gauge.builder("novi.llm.inflight", state, s -> s.inFlight)
+                .description("In-flight LLM calls per provider")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        Gauge.builder("novi.llm.limiter.window", state, s -> s.limit)
+                .description("Adaptive LLM concurrency window per provider")
+                .tag("provider", provider)
+                .register(meterRegistry);
+        return state;
+    }
+
+    /**
+     * 判断异常是否表示提供方过载（HTTP 429 或 5xx）
+     * <p>
+     * 只看异常链上 HTTP 响应异常携带的状态码（包括被 AI 异常包装的情况），不匹配异常消息：
+     * 消息里出现 "429" 的可能只是请求 ID 或模型输出，误判会无故缩小并发窗口。
+     * </p>
+     */
+    static boolean isOverload(Throwable error) {
+        for (Throwable t = error; t != null; t = t.getCause()) {
+            HttpStatusCode status = null;
+            if (t instanceof WebClientResponseException e) {
+                status = e.getStatusCode();
+            } else if (t instanceof RestClientResponseException e) {
+                status = e.getStatusCode();
+            }
+            if (status != null) {
+                return status.value() == 429 || status.is5xxServerError();
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 排队中的一次许可申请
+     */
+    private static final class Waiter {
+
+        final ProviderState state;
+        final double tokens;
+        final long start = System.nanoTime();
+        final Sinks.One<Permit> sink = Sinks.one();
+
+        /**
+         * 是否已分配许可，在 state.lock 内读写
+         */
+        boolean granted;
+
+        Waiter(ProviderState state, double tokens) {
+            this.state = state;
+            this.tokens = tokens;
+        }
+    }
+
+    /**
+     * 单个提供方的限流状态，除计量器外的字段都在 lock 内读写
+     */
+    private static final class ProviderState {
+
+        final String provider;
+        final ReentrantLock lock = new ReentrantLock();
+        final Deque<Waiter> waiters = new ArrayDeque<>();
+        final double maxLimit;
+        final double minLimit;
+        final double bucketCapacity;
+        final double tokensPerNano;
+        final Timer acquired;
+        final Timer timedOut;
+
+        volatile double limit;
+        volatile int inFlight;
+        boolean dispatchScheduled;
+        long lastDecreaseNanos;
+        double tokens;
+        long lastRefillNanos = System.nanoTime();
+
+        ProviderState(String provider, LlmConcurrencyProperties.ProviderLimit config, MeterRegistry registry) {
+            this.provider = provider;
+            this.maxLimit = Math.max(1, config.getMaxConcurrency());
+            this.minLimit = Math.max(1, Math.min(config.getMinConcurrency(), config.getMaxConcurrency()));
+            this.limit = maxLimit;
+            this.lastDecreaseNanos = System.nanoTime() - TimeUnit.DAYS.toNanos(1);
+            this.bucketCapacity = Math.max(0, config.getTokensPerMinute());
+            this.tokensPerNano = bucketCapacity / TimeUnit.MINUTES.toNanos(1);
+            this.tokens = bucketCapacity;
+            this.acquired = waitTimer(registry, provider, "acquired");
+            this.timedOut = waitTimer(registry, provider, "timeout");
+        }
+
+        int window() {
+            return (int) limit;
+        }
+
+        void refill(long now) {
+            if (bucketCapacity > 0) {
+                tokens = Math.min(bucketCapacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+            }
+            lastRefillNanos = now;
+        }
+
+        long nanosUntilTokens(double needed) {
+            if (bucketCapacity <= 0 || tokens >= needed) {
+                return 0;
+            }
+            return (long) Math.ceil((needed - tokens) / tokensPerNano);
+        }
+
+        private static Timer waitTimer(MeterRegistry registry, String provider, String outcome) {
+            return Timer.builder("novi.llm.limiter.wait")
+                    .description("Time spent queueing for an LLM call permit")
+                    .tag("provider", provider)
+                    .tag("outcome", outcome)
+                    .publishPercentileHistogram()
+                    .register(registry);
+        }
+    }
+}
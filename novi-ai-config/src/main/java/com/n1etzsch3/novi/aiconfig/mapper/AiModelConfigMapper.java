@@ -20,4 +20,18 @@ public interface AiModelConfigMapper extends BaseMapper<AiModelConfig> {
      */
     @org.apache.ibatis.annotations.Update("UPDATE ai_model_config SET is_active = CASE WHEN model_name = #{modelName} THEN 1 ELSE 0 END")
     int activateModelByName(@org.apache.ibatis.annotations.Param("modelName") String modelName);
+
+    /**
+     * 查询模型配置表的版本签名
+     * <p>
+     * 由行数、最大更新时间和关键字段的校验和组成，任意一行被增删改后签名都会变化，
+     * 用于低成本地判断内存中的模型配置快照是否过期。
+     * </p>
+     *
+     * @return 版本签名
+     */
+    @org.apache.ibatis.annotations.Select("SELECT CONCAT_WS(':', COUNT(*), IFNULL(MAX(update_time), '-'), "
+            + "IFNULL(SUM(CRC32(CONCAT_WS('|', id, model_name, base_url, api_key, completions_path, "
+            + "is_active, enable_thinking, description))), 0)) FROM ai_model_config")
+    String selectVersion();
 }
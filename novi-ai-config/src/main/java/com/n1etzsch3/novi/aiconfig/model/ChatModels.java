@@ -0,0 +1,34 @@
+package com.n1etzsch3.novi.aiconfig.model;
+
+import org.springframework.ai.chat.model.ChatModel;
+
+/**
+ * ChatModel 工具类
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public final class ChatModels {
+
+    private ChatModels() {
+    }
+
+    /**
+     * 逐层取出被限流、路由等包装的实际 ChatModel（路由取主模型），用于按具体实现类型做判断
+     *
+     * @param chatModel 可能被包装的 ChatModel
+     * @return 实际的 ChatModel
+     */
+    public static ChatModel unwrap(ChatModel chatModel) {
+        ChatModel current = chatModel;
+        while (true) {
+            if (current instanceof RoutingChatModel routing) {
+                current = routing.getPrimary();
+            } else if (current instanceof ConcurrencyLimitedChatModel limited) {
+                current = limited.getDelegate();
+            } else {
+                return current;
+            }
+        }
+    }
+}
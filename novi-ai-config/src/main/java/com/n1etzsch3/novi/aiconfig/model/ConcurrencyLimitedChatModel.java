@@ -0,0 +1,81 @@
+package com.n1etzsch3.novi.aiconfig.model;
+
+import com.n1etzsch3.novi.aiconfig.limit.LlmConcurrencyLimiter;
+import com.n1etzsch3.novi.common.utils.TokenEstimator;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+/**
+ * 受限流控制的 ChatModel
+ * <p>
+ * 包装实际的 ChatModel，每次调用前向 {@link LlmConcurrencyLimiter} 申请所属提供方的许可
+ * （按提示词估算的输入 Token 扣减 Token 桶），调用结束后报告成功或失败，供限制器自适应调整窗口。
+ * 阻塞调用在调用线程上排队；流式调用通过 {@link LlmConcurrencyLimiter#acquireAsync(String, int)}
+ * 非阻塞地排队，拿到许可后才订阅实际的模型流，许可一直持有到流结束、出错或被取消。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public class ConcurrencyLimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final String provider;
+    private final LlmConcurrencyLimiter limiter;
+
+    public ConcurrencyLimitedChatModel(ChatModel delegate, String provider, LlmConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.provider = provider;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        try (LlmConcurrencyLimiter.Permit permit = limiter.acquire(provider, estimateTokens(prompt))) {
+            try {
+                ChatResponse response = delegate.call(prompt);
+                permit.onSuccess();
+                return response;
+            } catch (RuntimeException e) {
+                permit.onFailure(e);
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return limiter.acquireAsync(provider, estimateTokens(prompt))
+                .flatMapMany(permit -> Flux.using(() -> permit,
+                        p -> delegate.stream(prompt)
+                                .doOnComplete(p::onSuccess)
+                                .doOnError(p::onFailure),
+                        LlmConcurrencyLimiter.Permit::close));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return delegate.getDefaultOptions();
+    }
+
+    /**
+     * 被包装的实际 ChatModel
+     */
+    public ChatModel getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * 所属提供方
+     */
+    public String getProvider() {
+        return provider;
+    }
+
+    private static int estimateTokens(Prompt prompt) {
+        return TokenEstimator.estimate(prompt.getContents());
+    }
+}
@@ -0,0 +1,124 @@
+package com.n1etzsch3.novi.aiconfig.model;
+
+import com.n1etzsch3.novi.aiconfig.config.LlmRoutingProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 模型路由统计
+ * <p>
+ * 按模型记录最近若干次流式调用的首 Token 延迟（TTFT），据此计算对冲延迟；
+ * 同时计量故障切换与对冲的次数。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Component
+public class ModelRoutingStats {
+
+    private final LlmRoutingProperties.Hedge hedge;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, LatencyWindow> windows = new ConcurrentHashMap<>();
+    private final Map<SwitchKey, Counter> switchCounters = new ConcurrentHashMap<>();
+
+    public ModelRoutingStats(LlmRoutingProperties routingProperties,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.hedge = routingProperties.getHedge();
+        this.meterRegistry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+    }
+
+    /**
+     * 记录一次首 Token 延迟
+     */
+    public void recordFirstToken(String model, long nanos) {
+        windows.computeIfAbsent(model, this::createWindow).record(nanos);
+    }
+
+    /**
+     * 主模型的对冲延迟：最近样本的指定分位数，样本不足时使用初始值，并限制在上下限之间
+     */
+    public Duration hedgeDelay(String model) {
+        LatencyWindow window = windows.get(model);
+        long nanos = window == null ? -1 : window.percentile(hedge.getPercentile(), hedge.getMinSamples());
+        Duration delay = nanos < 0 ? hedge.getInitialDelay() : Duration.ofNanos(nanos);
+        if (delay.compareTo(hedge.getMinDelay()) < 0) {
+            return hedge.getMinDelay();
+        }
+        return delay.compareTo(hedge.getMaxDelay()) > 0 ? hedge.getMaxDelay() : delay;
+    }
+
+    /**
+     * 记录一次切换：因主模型失败（failover）或超过对冲延迟（hedge）而启用备选模型
+     */
+    public void recordSwitch(String from, String to, String reason) {
+        switchCounters.computeIfAbsent(new SwitchKey(from, to, reason), key -> Counter
+                .builder("novi.llm.routing.switch")
+                .description("Requests sent to a secondary model")
+                .tag("from", key.from())
+                .tag("to", key.to())
+                .tag("reason", key.reason())
+                .register(meterRegistry))
+                .increment();
+    }
+
+    private record SwitchKey(String from, String to, String reason) {
+    }
+
+    private LatencyWindow createWindow(String model) {
+        Timer timer = Timer.builder("novi.llm.ttft")
+                .description("Time to first streamed token per model")
+                .tag("model", model)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return new LatencyWindow(Math.max(1, hedge.getSampleSize()), timer);
+    }
+
+    /**
+     * 固定容量的环形样本窗口
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private final Timer timer;
+        private int next;
+        private int count;
+
+        LatencyWindow(int size, Timer timer) {
+            this.samples = new long[size];
+            this.timer = timer;
+        }
+
+        void record(long nanos) {
+            timer.record(nanos, TimeUnit.NANOSECONDS);
+            synchronized (this) {
+                samples[next] = nanos;
+                next = (next + 1) % samples.length;
+                count = Math.min(count + 1, samples.length);
+            }
+        }
+
+        long percentile(double percentile, int minSamples) {
+            long[] copy;
+            synchronized (this) {
+                if (count == 0 || count < minSamples) {
+                    return -1;
+                }
+                copy = Arrays.copyOf(samples, count);
+            }
+            Arrays.sort(copy);
+            int index = (int) Math.ceil(percentile * copy.length) - 1;
+            return copy[Math.max(0, Math.min(index, copy.length - 1))];
+        }
+    }
+}
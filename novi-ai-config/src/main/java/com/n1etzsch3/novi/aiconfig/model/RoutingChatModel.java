@@ -0,0 +1,199 @@
+package com.n1etzsch3.novi.aiconfig.model;
+
+import com.n1etzsch3.novi.aiconfig.config.LlmRoutingProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.ChatOptions;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.ai.model.ModelOptionsUtils;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 多模型路由 ChatModel
+ * <p>
+ * 按顺序持有主模型和若干备选模型：
+ * <ul>
+ * <li>阻塞调用：主模型失败后依次改用下一个模型（故障切换）；</li>
+ * <li>流式调用：主模型在产出首个 Token 前失败或返回空流时立即改用下一个模型；
+ * 开启对冲后，主模型超过其首 Token 延迟分位数仍未产出时，同时向下一个模型发出相同请求，
+ * 先产出 Token 的一方胜出，另一方被取消。已产出 Token 后的失败不再切换，避免内容重复。</li>
+ * </ul>
+ * 提示词中的调用选项发往备选模型时，在备选模型默认选项的基础上覆盖请求指定的参数（温度、深度思考开关等），
+ * 模型名保持备选模型自己的。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+public class RoutingChatModel implements ChatModel {
+
+    /**
+     * 参与路由的模型
+     *
+     * @param name      模型名称
+     * @param chatModel 模型实例
+     */
+    public record Candidate(String name, ChatModel chatModel) {
+    }
+
+    private final List<Candidate> candidates;
+    private final LlmRoutingProperties.Hedge hedge;
+    private final ModelRoutingStats stats;
+
+    public RoutingChatModel(List<Candidate> candidates, LlmRoutingProperties.Hedge hedge, ModelRoutingStats stats) {
+        if (candidates.isEmpty()) {
+            throw new IllegalArgumentException("RoutingChatModel requires at least one candidate");
+        }
+        this.candidates = List.copyOf(candidates);
+        this.hedge = hedge;
+        this.stats = stats;
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        RuntimeException lastError = null;
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            try {
+                return candidate.chatModel().call(promptFor(i, prompt));
+            } catch (RuntimeException e) {
+                lastError = e;
+                if (i + 1 < candidates.size()) {
+                    String next = candidates.get(i + 1).name();
+                    log.warn("Model {} failed ({}), failing over to {}", candidate.name(), e.getMessage(), next);
+                    stats.recordSwitch(candidate.name(), next, "failover");
+                }
+            }
+        }
+        throw lastError;
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        // 每次订阅独立计算对冲延迟和切换状态
+        return Flux.defer(() -> route(prompt, 0));
+    }
+
+    @Override
+    public ChatOptions getDefaultOptions() {
+        return getPrimary().getDefaultOptions();
+    }
+
+    /**
+     * 主模型
+     */
+    public ChatModel getPrimary() {
+        return candidates.get(0).chatModel();
+    }
+
+    /**
+     * 是否与给定候选列表完全一致（名称相同且为同一实例）
+     */
+    public boolean hasCandidates(List<Candidate> other) {
+        if (other.size() != candidates.size()) {
+            return false;
+        }
+        for (int i = 0; i < other.size(); i++) {
+            Candidate a = candidates.get(i);
+            Candidate b = other.get(i);
+            if (!a.name().equals(b.name()) || a.chatModel() != b.chatModel()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Flux<ChatResponse> route(Prompt prompt, int index) {
+        Candidate candidate = candidates.get(index);
+        Flux<ChatResponse> attempt = timedStream(candidate, promptFor(index, prompt));
+        if (index == candidates.size() - 1) {
+            return attempt;
+        }
+
+        // 主模型在首个 Token 前失败或返回空流时，立即放行下一个模型
+        AtomicBoolean emitted = new AtomicBoolean();
+        AtomicBoolean failed = new AtomicBoolean();
+        Sinks.Empty<Void> failure = Sinks.empty();
+        Flux<ChatResponse> primary = attempt
+                .doOnNext(response -> emitted.set(true))
+                .doOnError(e -> {
+                    if (!emitted.get()) {
+                        log.warn("Model {} failed before first token ({})", candidate.name(), e.getMessage());
+                        failed.set(true);
+                        failure.tryEmitEmpty();
+                    }
+                })
+                .doOnComplete(() -> {
+                    if (!emitted.get()) {
+                        failed.set(true);
+                        failure.tryEmitEmpty();
+                    }
+                });
+
+        Mono<?> trigger = hedge.isEnabled()
+                ? Mono.firstWithSignal(Mono.delay(stats.hedgeDelay(candidate.name())), failure.asMono())
+                : failure.asMono();
+        Flux<ChatResponse> secondary = trigger.thenMany(Flux.defer(() -> {
+            String next = candidates.get(index + 1).name();
+            String reason = failed.get() ? "failover" : "hedge";
+            log.info("Routing stream from {} to {} ({})", candidate.name(), next, reason);
+            stats.recordSwitch(candidate.name(), next, reason);
+            return route(prompt, index + 1);
+        }));
+
+        // 先产出 Token 的一方胜出，另一方（包括尚未触发的对冲计时）被取消
+        return Flux.firstWithValue(primary, secondary)
+                .onErrorMap(NoSuchElementException.class, RoutingChatModel::lastError);
+    }
+
+    private Flux<ChatResponse> timedStream(Candidate candidate, Prompt prompt) {
+        return Flux.defer(() -> {
+            long start = System.nanoTime();
+            AtomicBoolean first = new AtomicBoolean(true);
+            return candidate.chatModel().stream(prompt)
+                    .doOnNext(response -> {
+                        if (first.compareAndSet(true, false)) {
+                            stats.recordFirstToken(candidate.name(), System.nanoTime() - start);
+                        }
+                    });
+        });
+    }
+
+    private Prompt promptFor(int index, Prompt prompt) {
+        ChatOptions requested = prompt.getOptions();
+        if (index == 0 || requested == null) {
+            return prompt;
+        }
+        ChatOptions defaults = candidates.get(index).chatModel().getDefaultOptions();
+        if (defaults == null) {
+            // 不使用提示词选项的模型（如 OpenAI 兼容客户端），原样转发
+            return new Prompt(prompt.getInstructions(), requested.copy());
+        }
+        // 请求选项中的非空字段覆盖备选模型的默认选项，模型名除外
+        Map<String, Object> overrides = ModelOptionsUtils.objectToMap(requested);
+        overrides.remove("model");
+        ChatOptions merged = ModelOptionsUtils.merge(overrides, defaults, defaults.getClass());
+        return new Prompt(prompt.getInstructions(), merged);
+    }
+
+    /**
+     * 所有模型都失败时，firstWithValue 把各自的异常合并在 NoSuchElementException 的 cause 中，取最后一个模型的异常向上抛出
+     */
+    private static Throwable lastError(NoSuchElementException e) {
+        if (e.getCause() == null) {
+            return e;
+        }
+        List<Throwable> errors = Exceptions.unwrapMultiple(e.getCause());
+        return errors.isEmpty() ? e : errors.get(errors.size() - 1);
+    }
+}
@@ -30,6 +30,18 @@ public interface AiPromptConfigService {
      */
     String getSystemPromptByContext(com.n1etzsch3.novi.common.enums.PromptContextType contextType);
 
+    /**
+     * 根据上下文类型获取预编译的系统提示词模板
+     * <p>
+     * 回退规则与 {@link #getSystemPromptByContext} 一致，编译结果按配置 Key 和版本缓存。
+     * </p>
+     *
+     * @param contextType 上下文类型
+     * @return 编译后的系统提示词模板
+     */
+    com.n1etzsch3.novi.aiconfig.template.CompiledPromptTemplate getCompiledSystemPrompt(
+            com.n1etzsch3.novi.common.enums.PromptContextType contextType);
+
     /**
      * 根据 Key 获取配置值 (无回退)。
      *
@@ -8,10 +8,19 @@ import com.n1etzsch3.novi.aiconfig.mapper.AiModelConfigMapper;
 import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.stream.Collectors;
 
 /**
@@ -19,6 +28,12 @@ import java.util.stream.Collectors;
  * <p>
  * 提供模型查询和切换功能。
  * </p>
+ * <p>
+ * 所有模型配置以不可变快照的形式保存在内存中，通过 {@link AtomicReference} 原子替换，
+ * 查询激活模型、按名称查找模型都不访问数据库，也不加锁。
+ * 快照在切换模型后立即重建，另由定时任务执行一次轻量的版本查询，
+ * 发现表数据被直接修改时再整体重载。
+ * </p>
  *
  * @author N1etzsch3
  * @since 2025-11-29
@@ -30,6 +45,21 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
 
     private final AiModelConfigMapper aiModelConfigMapper;
 
+    /**
+     * 当前模型配置快照，未加载时为 null
+     */
+    private final AtomicReference<ModelConfigSnapshot> snapshot = new AtomicReference<>();
+
+    /**
+     * 模型配置快照
+     *
+     * @param version 加载时的表版本签名
+     * @param models  按模型名称索引的全部配置
+     * @param active  激活的模型，没有时为 null
+     */
+    private record ModelConfigSnapshot(String version, Map<String, AiModelConfig> models, AiModelConfig active) {
+    }
+
     @Override
     public AiModelConfigDTO getActiveModelDTO() {
         AiModelConfig activeModel = getActiveModel();
@@ -38,8 +68,7 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
 
     @Override
     public List<AiModelConfigDTO> listAllModelsDTO() {
-        List<AiModelConfig> models = aiModelConfigMapper.selectList(null);
-        return models.stream()
+        return currentSnapshot().models().values().stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
     }
@@ -64,11 +93,32 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
         // 2. 原子性切换模型
         // 使用 CASE WHEN 语句一次性更新所有行，避免并发导致的多个激活模型问题
         aiModelConfigMapper.activateModelByName(modelName);
+        reloadAfterCommit();
 
         log.info("Successfully switched model from [{}] to [{}]", oldModelName, modelName);
         return true;
     }
 
+    /**
+     * 在当前事务提交后刷新快照
+     * <p>
+     * 在事务内刷新读到的仍是提交前的数据，且其他线程会在提交前看到新快照；
+     * 事务回滚时保持原快照。没有事务时立即刷新。
+     * </p>
+     */
+    private void reloadAfterCommit() {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            reload();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                reload();
+            }
+        });
+    }
+
     /**
      * 获取当前激活的模型配置（内部使用）
      * <p>
@@ -79,51 +129,100 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
      */
     @Override
     public AiModelConfig getActiveModel() {
-        // Use selectList instead of selectOne to prevent TooManyResultsException
-        List<AiModelConfig> activeModels = aiModelConfigMapper.selectList(
-                new LambdaQueryWrapper<AiModelConfig>()
-                        .eq(AiModelConfig::getIsActive, true));
-
-        if (activeModels == null || activeModels.isEmpty()) {
-            log.warn("No active AI model found in database. Attempting to auto-activate the first available model.");
-
-            // Query for any model
-            List<AiModelConfig> allModels = aiModelConfigMapper
-                    .selectList(new LambdaQueryWrapper<AiModelConfig>().last("LIMIT 1"));
-
-            if (allModels != null && !allModels.isEmpty()) {
-                AiModelConfig fallbackModel = allModels.get(0);
-                log.info("Auto-activating model: {}", fallbackModel.getModelName());
-
-                // Activate this model
-                fallbackModel.setIsActive(true);
-                aiModelConfigMapper.updateById(fallbackModel);
-
-                // Ensure others are deactivated if relying on activateModelByName logic
-                // elsewhere?
-                // But for safety, let's just use the mapper's atomic activation if possible.
-                // Or just updating this one is enough if we assume others are 0.
-                // Better use activateModelByName to be clean, but that requires name.
-                aiModelConfigMapper.activateModelByName(fallbackModel.getModelName());
-
-                // Refetch to be sure or just return modified object (updated active status)
-                // Returning modified object is faster but might miss DB triggers (unlikely
-                // here).
-                // Let's just return the object with true.
-                fallbackModel.setIsActive(true);
-                return fallbackModel;
-            }
+        AiModelConfig active = currentSnapshot().active();
+        if (active != null) {
+            return active;
+        }
+        return activateFallbackModel();
+    }
 
-            log.error("No AI models configured in database at all.");
-            return null;
+    /**
+     * 没有激活模型时自动激活第一个可用的模型
+     */
+    private synchronized AiModelConfig activateFallbackModel() {
+        // 其他线程可能已经完成了激活
+        ModelConfigSnapshot current = currentSnapshot();
+        if (current.active() != null) {
+            return current.active();
         }
+        log.warn("No active AI model found in database. Attempting to auto-activate the first available model.");
+
+        // Query for any model
+        List<AiModelConfig> allModels = aiModelConfigMapper
+                .selectList(new LambdaQueryWrapper<AiModelConfig>().last("LIMIT 1"));
 
+        if (allModels != null && !allModels.isEmpty()) {
+            AiModelConfig fallbackModel = allModels.get(0);
+            log.info("Auto-activating model: {}", fallbackModel.getModelName());
+
+            // 原子性激活该模型，其余模型置为非激活
+            aiModelConfigMapper.activateModelByName(fallbackModel.getModelName());
+            return reload().active();
+        }
+
+        log.error("No AI models configured in database at all.");
+        return null;
+    }
+
+    /**
+     * 定时检查模型配置表是否被修改
+     * <p>
+     * 只执行一条聚合查询比较版本签名，签名变化时才重新加载整张表。
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${novi.ai.model.refresh-interval:30s}",
+            initialDelayString = "${novi.ai.model.refresh-interval:30s}")
+    public void refreshIfChanged() {
+        ModelConfigSnapshot current = snapshot.get();
+        if (current == null) {
+            return;
+        }
+        try {
+            String version = aiModelConfigMapper.selectVersion();
+            if (!Objects.equals(version, current.version())) {
+                log.info("AI model config changed in database, reloading snapshot");
+                reload();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to check AI model config version: {}", e.getMessage());
+        }
+    }
+
+    private ModelConfigSnapshot currentSnapshot() {
+        ModelConfigSnapshot current = snapshot.get();
+        return current != null ? current : reload();
+    }
+
+    /**
+     * 从数据库重新加载全部模型配置并原子替换快照
+     * <p>
+     * 先读取版本签名再读取数据，加载期间如有并发修改，下一次版本检查会再次重载。
+     * </p>
+     */
+    private synchronized ModelConfigSnapshot reload() {
+        String version = aiModelConfigMapper.selectVersion();
+        List<AiModelConfig> rows = aiModelConfigMapper.selectList(
+                new LambdaQueryWrapper<AiModelConfig>().orderByAsc(AiModelConfig::getId));
+
+        Map<String, AiModelConfig> models = new LinkedHashMap<>();
+        List<AiModelConfig> activeModels = new ArrayList<>();
+        if (rows != null) {
+            for (AiModelConfig row : rows) {
+                models.put(row.getModelName(), row);
+                if (Boolean.TRUE.equals(row.getIsActive())) {
+                    activeModels.add(row);
+                }
+            }
+        }
         if (activeModels.size() > 1) {
             log.warn("Found {} active AI models in database. Using the first one: {}",
                     activeModels.size(), activeModels.get(0).getModelName());
         }
 
-        return activeModels.get(0);
+        ModelConfigSnapshot loaded = new ModelConfigSnapshot(version, Collections.unmodifiableMap(models),
+                activeModels.isEmpty() ? null : activeModels.get(0));
+        snapshot.set(loaded);
+        return loaded;
     }
 
     @Override
@@ -131,9 +230,7 @@ public class AiModelConfigServiceImpl implements AiModelConfigService {
         if (modelName == null || modelName.isBlank()) {
             return null;
         }
-        return aiModelConfigMapper.selectOne(
-                new LambdaQueryWrapper<AiModelConfig>()
-                        .eq(AiModelConfig::getModelName, modelName));
+        return currentSnapshot().models().get(modelName);
     }
 
     /**
@@ -2,6 +2,9 @@ package com.n1etzsch3.novi.aiconfig.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.n1etzsch3.novi.aiconfig.mapper.AiPromptConfigMapper;
+import com.n1etzsch3.novi.aiconfig.store.AiPromptConfigStore;
+import com.n1etzsch3.novi.aiconfig.template.CompiledPromptTemplate;
+import com.n1etzsch3.novi.aiconfig.template.PromptTemplateEngine;
 import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
 import com.n1etzsch3.novi.aiconfig.service.AiPromptConfigService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +18,7 @@ import java.util.List;
  * <p>
  * 实现管理和检索 AI 提示词配置的逻辑。
  * 包含默认性格和语气的回退机制。
+ * 所有查询都由 {@link AiPromptConfigStore} 从内存中提供，写操作会同步更新存储。
  * </p>
  *
  * @author N1etzsch3
@@ -26,15 +30,21 @@ import java.util.List;
 public class AiPromptConfigServiceImpl implements AiPromptConfigService {
 
     private final AiPromptConfigMapper aiPromptConfigMapper;
+    private final AiPromptConfigStore aiPromptConfigStore;
+    private final PromptTemplateEngine promptTemplateEngine;
+
+    private static final String DEFAULT_SYSTEM_PROMPT = "You are a helpful assistant.";
+    private static final CompiledPromptTemplate DEFAULT_SYSTEM_TEMPLATE =
+            CompiledPromptTemplate.compile(DEFAULT_SYSTEM_PROMPT);
 
     @Override
     public String getSystemPromptTemplate() {
-        AiPromptConfig config = aiPromptConfigMapper.selectById("system_prompt_template");
+        AiPromptConfig config = aiPromptConfigStore.get("system_prompt_template");
         if (config != null) {
             return config.getConfigValue();
         }
         log.warn("System prompt config 'system_prompt_template' not found, using default.");
-        return "You are a helpful assistant.";
+        return DEFAULT_SYSTEM_PROMPT;
     }
 
     @Override
@@ -42,7 +52,7 @@ public class AiPromptConfigServiceImpl implements AiPromptConfigService {
         // 根据上下文类型构建配置键
         String configKey = "system_prompt_" + contextType.getCode();
 
-        AiPromptConfig config = aiPromptConfigMapper.selectById(configKey);
+        AiPromptConfig config = aiPromptConfigStore.get(configKey);
         if (config != null) {
             log.info("Using context-specific prompt: {}", configKey);
             return config.getConfigValue();
@@ -53,21 +63,40 @@ public class AiPromptConfigServiceImpl implements AiPromptConfigService {
         return getSystemPromptTemplate();
     }
 
+    @Override
+    public CompiledPromptTemplate getCompiledSystemPrompt(
+            com.n1etzsch3.novi.common.enums.PromptContextType contextType) {
+        String configKey = "system_prompt_" + contextType.getCode();
+        CompiledPromptTemplate template = promptTemplateEngine.getTemplate(configKey);
+        if (template != null) {
+            return template;
+        }
+
+        // 如果没有找到特定上下文的提示词，回退到默认提示词
+        log.warn("Context-specific prompt '{}' not found, falling back to default", configKey);
+        template = promptTemplateEngine.getTemplate("system_prompt_template");
+        if (template != null) {
+            return template;
+        }
+        log.warn("System prompt config 'system_prompt_template' not found, using default.");
+        return DEFAULT_SYSTEM_TEMPLATE;
+    }
+
     @Override
     public String getConfigValue(String key) {
-        AiPromptConfig config = aiPromptConfigMapper.selectById(key);
+        AiPromptConfig config = aiPromptConfigStore.get(key);
         return config != null ? config.getConfigValue() : null;
     }
 
     @Override
     public String getPersonalityDescription(String personalityKey) {
-        AiPromptConfig config = aiPromptConfigMapper.selectById(personalityKey);
+        AiPromptConfig config = aiPromptConfigStore.get(personalityKey);
         if (config != null) {
             return config.getConfigValue();
         }
         // 如果未找到特定性格，则回退到默认性格
         if (!"personality_default".equals(personalityKey)) {
-            config = aiPromptConfigMapper.selectById("personality_default");
+            config = aiPromptConfigStore.get("personality_default");
             if (config != null) {
                 return config.getConfigValue();
             }
@@ -77,13 +106,13 @@ public class AiPromptConfigServiceImpl implements AiPromptConfigService {
 
     @Override
     public String getToneStyleDescription(String toneStyleKey) {
-        AiPromptConfig config = aiPromptConfigMapper.selectById(toneStyleKey);
+        AiPromptConfig config = aiPromptConfigStore.get(toneStyleKey);
         if (config != null) {
             return config.getConfigValue();
         }
         // 回退到默认语气
         if (!"tone_default".equals(toneStyleKey)) {
-            config = aiPromptConfigMapper.selectById("tone_default");
+            config = aiPromptConfigStore.get("tone_default");
             if (config != null) {
                 return config.getConfigValue();
             }
@@ -98,12 +127,15 @@ public class AiPromptConfigServiceImpl implements AiPromptConfigService {
             throw new RuntimeException("Config key already exists: " + config.getConfigKey());
         }
         aiPromptConfigMapper.insert(config);
+        // 立即同步到内存存储
+        aiPromptConfigStore.reloadKey(config.getConfigKey());
         log.info("Added new prompt config: {}", config.getConfigKey());
     }
 
     @Override
     public void removeConfig(String configKey) {
         aiPromptConfigMapper.deleteById(configKey);
+        aiPromptConfigStore.evict(configKey);
         log.info("Removed prompt config: {}", configKey);
     }
 
@@ -0,0 +1,222 @@
+package com.n1etzsch3.novi.aiconfig.store;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.n1etzsch3.novi.aiconfig.mapper.AiPromptConfigMapper;
+import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * AI 提示词配置内存存储
+ * <p>
+ * 启动后首次访问时一次性加载整张 ai_prompt_config 表，之后所有查询都从并发 Map 中读取，
+ * 构建一次系统提示词或出题提示词不再产生数据库查询。
+ * </p>
+ * <p>
+ * 数据同步方式：
+ * <ul>
+ * <li>通过 {@code AiPromptConfigService} 的写操作会立即更新存储；</li>
+ * <li>定时任务按 update_time 增量拉取被直接修改的行，行数不一致（有行被删除）时整表重载。</li>
+ * </ul>
+ * 每次内容发生变化都会递增 {@link #getVersion() 版本号}，供依赖配置内容的下游缓存判断是否过期。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class AiPromptConfigStore {
+
+    private final AiPromptConfigMapper aiPromptConfigMapper;
+
+    private final Map<String, AiPromptConfig> configs = new ConcurrentHashMap<>();
+    private final AtomicLong version = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 已加载数据中最大的 update_time，作为增量拉取的起点
+     */
+    private volatile LocalDateTime watermark;
+    private volatile boolean loaded;
+
+    public AiPromptConfigStore(AiPromptConfigMapper aiPromptConfigMapper,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.aiPromptConfigMapper = aiPromptConfigMapper;
+        meterRegistryProvider.ifAvailable(registry -> {
+            FunctionCounter.builder("novi.prompt.config.lookups", hits, LongAdder::doubleValue)
+                    .tag("result", "hit")
+                    .description("Prompt config lookups served from memory")
+                    .register(registry);
+            FunctionCounter.builder("novi.prompt.config.lookups", misses, LongAdder::doubleValue)
+                    .tag("result", "miss")
+                    .description("Prompt config lookups for keys that do not exist")
+                    .register(registry);
+            Gauge.builder("novi.prompt.config.size", configs, Map::size)
+                    .description("Prompt configs held in memory")
+                    .register(registry);
+        });
+    }
+
+    /**
+     * 按 Key 获取配置
+     *
+     * @param key 配置 Key
+     * @return 配置对象，不存在时返回 null
+     */
+    public AiPromptConfig get(String key) {
+        ensureLoaded();
+        AiPromptConfig config = configs.get(key);
+        if (config != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return config;
+    }
+
+    /**
+     * 按 Key 获取配置值
+     *
+     * @param key 配置 Key
+     * @return 配置值，不存在时返回 null
+     */
+    public String getValue(String key) {
+        AiPromptConfig config = get(key);
+        return config != null ? config.getConfigValue() : null;
+    }
+
+    /**
+     * 当前内容版本号，任意配置被新增、修改或删除后递增
+     */
+    public long getVersion() {
+        ensureLoaded();
+        return version.get();
+    }
+
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * 写入后立即从数据库重新读取该 Key 并更新存储
+     *
+     * @param key 配置 Key
+     */
+    public void reloadKey(String key) {
+        if (!loaded) {
+            return;
+        }
+        AiPromptConfig fresh = aiPromptConfigMapper.selectById(key);
+        if (fresh == null) {
+            evict(key);
+        } else {
+            apply(fresh);
+        }
+    }
+
+    /**
+     * 删除后立即从存储中移除该 Key
+     *
+     * @param key 配置 Key
+     */
+    public void evict(String key) {
+        if (configs.remove(key) != null) {
+            version.incrementAndGet();
+        }
+    }
+
+    /**
+     * 定时增量同步
+     * <p>
+     * 拉取 update_time 不早于水位线的行（同一秒内的修改也能被捕获），
+     * 再比较总行数，发现有行被删除时整表重载。
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${novi.ai.prompt.refresh-interval:30s}",
+            initialDelayString = "${novi.ai.prompt.refresh-interval:30s}")
+    public void refresh() {
+        if (!loaded) {
+            return;
+        }
+        try {
+            LocalDateTime since = watermark;
+            List<AiPromptConfig> changed = aiPromptConfigMapper.selectList(
+                    new LambdaQueryWrapper<AiPromptConfig>()
+                            .ge(since != null, AiPromptConfig::getUpdateTime, since));
+            changed.forEach(this::apply);
+
+            Long total = aiPromptConfigMapper.selectCount(null);
+            if (total != null && total != configs.size()) {
+                log.info("Prompt config row count changed ({} -> {}), reloading all", configs.size(), total);
+                reloadAll();
+            }
+        } catch (Exception e) {
+            log.warn("Failed to refresh prompt configs: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 整表重载
+     */
+    public synchronized void reloadAll() {
+        List<AiPromptConfig> rows = aiPromptConfigMapper.selectList(null);
+        Map<String, AiPromptConfig> fresh = new ConcurrentHashMap<>();
+        LocalDateTime max = null;
+        for (AiPromptConfig row : rows) {
+            fresh.put(row.getConfigKey(), row);
+            max = later(max, row.getUpdateTime());
+        }
+        configs.keySet().retainAll(fresh.keySet());
+        configs.putAll(fresh);
+        watermark = max;
+        version.incrementAndGet();
+        loaded = true;
+        log.info("Loaded {} prompt configs into memory", rows.size());
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reloadAll();
+                }
+            }
+        }
+    }
+
+    private void apply(AiPromptConfig fresh) {
+        AiPromptConfig previous = configs.put(fresh.getConfigKey(), fresh);
+        if (previous == null
+                || !Objects.equals(previous.getConfigValue(), fresh.getConfigValue())
+                || !Objects.equals(previous.getConfigType(), fresh.getConfigType())) {
+            version.incrementAndGet();
+        }
+        watermark = later(watermark, fresh.getUpdateTime());
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.isAfter(a) ? b : a;
+    }
+}
@@ -0,0 +1,147 @@
+package com.n1etzsch3.novi.aiconfig.template;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 预编译的提示词模板
+ * <p>
+ * 模板在编译时被一次性切分为"文本片段 / 变量占位符"交替的片段列表，
+ * 渲染时按顺序把片段和变量值追加到同一个 StringBuilder 中，只遍历一遍，
+ * 不再像逐个变量 {@code String.replace} 那样每个变量都扫描并复制整段模板。
+ * </p>
+ * <p>
+ * 占位符语法为 {@code {identifier}}（字母、数字、下划线，且不以数字开头），
+ * 其余花括号（例如模板中内嵌的 JSON 示例）按原文保留；
+ * 渲染时未提供值的占位符也按原文保留。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public final class CompiledPromptTemplate {
+
+    /**
+     * 单个线程复用的 StringBuilder 超过该容量后不再缓存，避免长期占用大块内存
+     */
+    private static final int MAX_REUSABLE_CAPACITY = 256 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(4096));
+
+    /**
+     * 文本片段，长度比 variables 多 1：literals[0] var[0] literals[1] var[1] ... literals[n]
+     */
+    private final String[] literals;
+    private final String[] variables;
+    private final String[] placeholders;
+    private final int literalLength;
+
+    private CompiledPromptTemplate(String[] literals, String[] variables) {
+        this.literals = literals;
+        this.variables = variables;
+        this.placeholders = new String[variables.length];
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        for (int i = 0; i < variables.length; i++) {
+            placeholders[i] = "{" + variables[i] + "}";
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * 编译模板
+     *
+     * @param source 模板原文
+     * @return 编译后的模板
+     */
+    public static CompiledPromptTemplate compile(String source) {
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int i = 0;
+        int length = source.length();
+        while (i < length) {
+            char c = source.charAt(i);
+            if (c == '{') {
+                int end = identifierEnd(source, i + 1);
+                if (end > i + 1 && end < length && source.charAt(end) == '}') {
+                    literals.add(literal.toString());
+                    literal.setLength(0);
+                    variables.add(source.substring(i + 1, end));
+                    i = end + 1;
+                    continue;
+                }
+            }
+            literal.append(c);
+            i++;
+        }
+        literals.add(literal.toString());
+        return new CompiledPromptTemplate(literals.toArray(new String[0]), variables.toArray(new String[0]));
+    }
+
+    private static int identifierEnd(String source, int start) {
+        int i = start;
+        while (i < source.length()) {
+            char c = source.charAt(i);
+            boolean valid = c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z')
+                    || (i > start && c >= '0' && c <= '9');
+            if (!valid) {
+                break;
+            }
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * 使用给定变量渲染模板
+     *
+     * @param values 变量值，值为 null 时渲染为空字符串
+     * @return 渲染结果
+     */
+    public String render(Map<String, ?> values) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        try {
+            renderTo(out, values);
+            return out.toString();
+        } finally {
+            if (out.capacity() > MAX_REUSABLE_CAPACITY) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * 将渲染结果追加到给定的 StringBuilder
+     *
+     * @param out    输出目标
+     * @param values 变量值
+     */
+    public void renderTo(StringBuilder out, Map<String, ?> values) {
+        out.ensureCapacity(out.length() + literalLength + 64 * variables.length);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]);
+            if (values.containsKey(variables[i])) {
+                Object value = values.get(variables[i]);
+                if (value != null) {
+                    out.append(value);
+                }
+            } else {
+                out.append(placeholders[i]);
+            }
+        }
+        out.append(literals[variables.length]);
+    }
+
+    /**
+     * 模板中出现的变量名（按出现顺序，可能重复）
+     */
+    public List<String> getVariables() {
+        return List.of(variables);
+    }
+}
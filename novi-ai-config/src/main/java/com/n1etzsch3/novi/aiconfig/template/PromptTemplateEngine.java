@@ -0,0 +1,59 @@
+package com.n1etzsch3.novi.aiconfig.template;
+
+import com.n1etzsch3.novi.aiconfig.store.AiPromptConfigStore;
+import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 提示词模板引擎
+ * <p>
+ * 以 ai_prompt_config 的 Key 和 {@link AiPromptConfigStore} 的版本号缓存编译结果：
+ * 配置未变化时直接复用已编译的模板；版本号变化后只有原文确实改变的模板才会重新编译。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Component
+public class PromptTemplateEngine {
+
+    private final AiPromptConfigStore aiPromptConfigStore;
+    private final Map<String, Entry> templates = new ConcurrentHashMap<>();
+
+    private record Entry(long version, String source, CompiledPromptTemplate template) {
+    }
+
+    public PromptTemplateEngine(AiPromptConfigStore aiPromptConfigStore) {
+        this.aiPromptConfigStore = aiPromptConfigStore;
+    }
+
+    /**
+     * 获取指定配置 Key 对应的编译后模板
+     *
+     * @param configKey 配置 Key
+     * @return 编译后的模板，配置不存在或为空时返回 null
+     */
+    public CompiledPromptTemplate getTemplate(String configKey) {
+        long version = aiPromptConfigStore.getVersion();
+        Entry cached = templates.get(configKey);
+        if (cached != null && cached.version() == version) {
+            return cached.template();
+        }
+
+        AiPromptConfig config = aiPromptConfigStore.get(configKey);
+        String source = config != null ? config.getConfigValue() : null;
+        if (source == null || source.isEmpty()) {
+            templates.remove(configKey);
+            return null;
+        }
+
+        CompiledPromptTemplate template = cached != null && cached.source().equals(source)
+                ? cached.template()
+                : CompiledPromptTemplate.compile(source);
+        templates.put(configKey, new Entry(version, source, template));
+        return template;
+    }
+}
@@ -0,0 +1,168 @@
+package com.n1etzsch3.novi.aiconfig.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.core.ResolvableType;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ReactiveHttpInputMessage;
+import org.springframework.http.codec.ServerSentEventHttpMessageReader;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocation benchmark for streamed chat completions: the previous
+ * {@code bodyToFlux(String.class)} + {@code readTree} path against
+ * {@link OpenAiSseDecoder}. Each operation decodes {@link #TOKENS} events
+ * delivered in network-sized buffers, so {@code gc.alloc.rate.norm / TOKENS}
+ * is the per-token allocation.
+ * <p>
+ * Run after {@code mvn -pl novi-ai-config test-compile} with the test classpath,
+ * e.g. from the IDE via {@link #main}, which enables the GC profiler.
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OpenAiSseDecoderBenchmark {
+
+    static final int TOKENS = 200;
+
+    @Param({ "1024", "8192" })
+    int bufferSize;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final OpenAiSseDecoder decoder = new OpenAiSseDecoder(objectMapper.getFactory());
+    private final ServerSentEventHttpMessageReader sseReader =
+            new ServerSentEventHttpMessageReader(new Jackson2JsonDecoder(objectMapper));
+
+    private List<byte[]> chunks;
+
+    @Setup
+    public void setUp() {
+        StringBuilder body = new StringBuilder();
+        for (int i = 0; i < TOKENS; i++) {
+            body.append("data: {\"id\":\"chatcmpl-8f2a\",\"object\":\"chat.completion.chunk\",\"created\":1760000000,")
+                    .append("\"model\":\"qwen-plus\",\"choices\":[{\"index\":0,\"delta\":{\"content\":\"词元")
+                    .append(i)
+                    .append("\"},\"finish_reason\":null,\"logprobs\":null}]}\n\n");
+        }
+        body.append("data: [DONE]\n\n");
+        byte[] bytes = body.toString().getBytes(StandardCharsets.UTF_8);
+        chunks = new ArrayList<>();
+        for (int i = 0; i < bytes.length; i += bufferSize) {
+            byte[] chunk = new byte[Math.min(bufferSize, bytes.length - i)];
+            System.arraycopy(bytes, i, chunk, 0, chunk.length);
+            chunks.add(chunk);
+        }
+    }
+
+    private Flux<DataBuffer> body() {
+        return Flux.fromIterable(chunks).map(DefaultDataBufferFactory.sharedInstance::wrap);
+    }
+
+    @Benchmark
+    public List<ChatResponse> legacy() {
+        ReactiveHttpInputMessage message = new ReactiveHttpInputMessage() {
+            @Override
+            public HttpHeaders getHeaders() {
+                HttpHeaders headers = new HttpHeaders();
+                headers.setContentType(MediaType.TEXT_EVENT_STREAM);
+                return headers;
+            }
+
+            @Override
+            public Flux<DataBuffer> getBody() {
+                return body();
+            }
+        };
+        return sseReader.read(ResolvableType.forClass(String.class), message, Collections.emptyMap())
+                .cast(String.class)
+                .filter(chunk -> {
+                    String trimmed = chunk.trim();
+                    return !trimmed.isEmpty() && !"[DONE]".equals(trimmed);
+                })
+                .map(chunk -> {
+                    String trimmed = chunk.trim();
+                    return trimmed.startsWith("data:") ? trimmed.substring(5).trim() : trimmed;
+                })
+                .<ChatResponse>handle((chunk, sink) -> {
+                    ChatResponse response = parseWithTree(chunk);
+                    if (response != null) {
+                        sink.next(response);
+                    }
+                })
+                .collectList()
+                .block();
+    }
+
+    @Benchmark
+    public List<ChatResponse> decoder() {
+        return decoder.decode(body())
+                .map(OpenAiSseDecoderBenchmark::toChatResponse)
+                .collectList()
+                .block();
+    }
+
+    private ChatResponse parseWithTree(String json) {
+        try {
+            JsonNode delta = objectMapper.readTree(json).path("choices").path(0).path("delta");
+            String reasoning = delta.path("reasoning_content").asText("");
+            String content = delta.path("content").asText("");
+            if (reasoning.isEmpty() && content.isEmpty()) {
+                return null;
+            }
+            return toChatResponse(new OpenAiSseDecoder.Delta(content, reasoning));
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static ChatResponse toChatResponse(OpenAiSseDecoder.Delta delta) {
+        String reasoning = delta.reasoningContent();
+        AssistantMessage message = (reasoning != null && !reasoning.isEmpty())
+                ? new AssistantMessage("", Map.of("reasoning_content", reasoning))
+                : new AssistantMessage(delta.content());
+        return new ChatResponse(Collections.singletonList(new Generation(message)));
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(OpenAiSseDecoderBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
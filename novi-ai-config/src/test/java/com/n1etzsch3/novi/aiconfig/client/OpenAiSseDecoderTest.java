@@ -0,0 +1,96 @@
+package com.n1etzsch3.novi.aiconfig.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DefaultDataBufferFactory;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OpenAiSseDecoderTest {
+
+    private static final String STREAM = ": keep-alive\r\n"
+            + "\r\n"
+            + "event: message\r\n"
+            + "data: {\"id\":\"1\",\"choices\":[{\"index\":0,\"delta\":{\"role\":\"assistant\",\"reasoning_content\":\"想一想\"}}]}\r\n"
+            + "\r\n"
+            + "data:{\"choices\":[{\"delta\":{\"content\":\"你好\",\"tool_calls\":[{\"id\":\"x\"}]},\"logprobs\":null}],\"usage\":{\"total_tokens\":3}}\n"
+            + "\n"
+            + "data: {\"choices\":[{\"delta\":{\"content\":null}}]}\n"
+            + "\n"
+            + "data: {\"choices\":[],\"usage\":{}}\n"
+            + "\n"
+            + "data: {\"choices\":[{\"delta\":{\"content\":\"\\u4e16界\\n\"}}]}\n"
+            + "\n"
+            + "data: [DONE]\n"
+            + "\n";
+
+    private final OpenAiSseDecoder decoder = new OpenAiSseDecoder(new ObjectMapper().getFactory());
+
+    private static List<OpenAiSseDecoder.Delta> expected() {
+        return List.of(
+                new OpenAiSseDecoder.Delta(null, "想一想"),
+                new OpenAiSseDecoder.Delta("你好", null),
+                new OpenAiSseDecoder.Delta("世界\n", null));
+    }
+
+    @Test
+    void decode_SingleBuffer() {
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(STREAM.getBytes(StandardCharsets.UTF_8));
+
+        List<OpenAiSseDecoder.Delta> deltas = decoder.decode(Flux.just(buffer))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(expected(), deltas);
+    }
+
+    @Test
+    void decode_EventsSplitAtEveryByteBoundary() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        for (int split = 1; split < bytes.length; split++) {
+            OpenAiSseDecoder.Session session = decoder.newSession();
+            List<OpenAiSseDecoder.Delta> deltas = new ArrayList<>();
+            session.feed(bytes, 0, split, deltas::add);
+            session.feed(bytes, split, bytes.length - split, deltas::add);
+            assertNull(session.finish());
+            assertEquals(expected(), deltas, "split at " + split);
+        }
+    }
+
+    @Test
+    void decode_OneByteBuffers() {
+        byte[] bytes = STREAM.getBytes(StandardCharsets.UTF_8);
+        List<DataBuffer> buffers = new ArrayList<>();
+        for (byte b : bytes) {
+            buffers.add(DefaultDataBufferFactory.sharedInstance.wrap(new byte[] { b }));
+        }
+
+        List<OpenAiSseDecoder.Delta> deltas = decoder.decode(Flux.fromIterable(buffers))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(expected(), deltas);
+    }
+
+    @Test
+    void decode_FlushesUnterminatedEventAndSkipsMalformedJson() {
+        String body = "data: {not json}\n\n"
+                + "{\"choices\":[{\"delta\":{\"content\":\"bare\"}}]}\n"
+                + "data: {\"choices\":[{\"delta\":{\"content\":\"tail\"}}]}";
+        DataBuffer buffer = DefaultDataBufferFactory.sharedInstance.wrap(body.getBytes(StandardCharsets.UTF_8));
+
+        List<OpenAiSseDecoder.Delta> deltas = decoder.decode(Flux.just(buffer))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of(new OpenAiSseDecoder.Delta("bare", null), new OpenAiSseDecoder.Delta("tail", null)),
+                deltas);
+    }
+}
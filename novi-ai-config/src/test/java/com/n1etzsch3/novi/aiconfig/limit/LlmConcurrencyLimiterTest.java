@@ -0,0 +1,177 @@
+package com.n1etzsch3.novi.aiconfig.limit;
+
+import com.n1etzsch3.novi.aiconfig.config.LlmConcurrencyProperties;
+import com.n1etzsch3.novi.aiconfig.model.ChatModels;
+import com.n1etzsch3.novi.aiconfig.model.ConcurrencyLimitedChatModel;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class LlmConcurrencyLimiterTest {
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Mock
+    private ChatModel chatModel;
+
+    private LlmConcurrencyLimiter limiter;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeEach
+    void setUp() {
+        LlmConcurrencyProperties properties = new LlmConcurrencyProperties();
+        properties.getDefaultLimit().setMaxConcurrency(2);
+        properties.setLimits(Map.of(
+                "api.example.com", limit(1, 1, 0),
+                "busy.example.com", limit(8, 2, 0),
+                "tpm.example.com", limit(8, 1, 600)));
+        properties.setAcquireTimeout(Duration.ofMillis(50));
+        properties.setDecreaseCooldown(Duration.ZERO);
+        when(meterRegistryProvider.getIfAvailable(any())).thenReturn(meterRegistry);
+        limiter = new LlmConcurrencyLimiter(properties, meterRegistryProvider);
+    }
+
+    private static LlmConcurrencyProperties.ProviderLimit limit(int max, int min, int tokensPerMinute) {
+        LlmConcurrencyProperties.ProviderLimit limit = new LlmConcurrencyProperties.ProviderLimit();
+        limit.setMaxConcurrency(max);
+        limit.setMinConcurrency(min);
+        limit.setTokensPerMinute(tokensPerMinute);
+        return limit;
+    }
+
+    @Test
+    void acquire_TimesOutWhenProviderSaturated() {
+        LlmConcurrencyLimiter.Permit permit = limiter.acquire("api.example.com", 10);
+
+        assertThrows(IllegalStateException.class, () -> limiter.acquire("api.example.com", 10));
+        // 其他提供方不受影响
+        limiter.acquire("other.example.com", 10).close();
+
+        permit.close();
+        permit.close(); // 重复归还不会多放出许可
+        assertEquals(0, limiter.inFlight("api.example.com"));
+        limiter.acquire("api.example.com", 10).close();
+
+        // 排队耗时按结果分别计量
+        assertEquals(1, meterRegistry.get("novi.llm.limiter.wait")
+                .tags("provider", "api.example.com", "outcome", "timeout").timer().count());
+        assertEquals(2, meterRegistry.get("novi.llm.limiter.wait")
+                .tags("provider", "api.example.com", "outcome", "acquired").timer().count());
+    }
+
+    @Test
+    void window_ShrinksOnOverloadAndRecoversOnSuccess() {
+        WebClientResponseException tooManyRequests = WebClientResponseException.create(
+                HttpStatus.TOO_MANY_REQUESTS.value(), "Too Many Requests", null, null, null);
+
+        LlmConcurrencyLimiter.Permit permit = limiter.acquire("busy.example.com", 0);
+        permit.onFailure(new RuntimeException("wrapped", tooManyRequests));
+        permit.close();
+        assertEquals(4.0, limiter.window("busy.example.com"));
+
+        permit = limiter.acquire("busy.example.com", 0);
+        permit.onFailure(new RuntimeException("Connection reset"));
+        permit.close();
+        assertEquals(4.0, limiter.window("busy.example.com"), "非过载错误不缩小窗口");
+
+        permit = limiter.acquire("busy.example.com", 0);
+        permit.onFailure(new RuntimeException("request 4291 failed: Too Many Requests in output"));
+        permit.close();
+        assertEquals(4.0, limiter.window("busy.example.com"), "只按状态码判断，不匹配消息");
+
+        for (int i = 0; i < 3; i++) {
+            permit = limiter.acquire("busy.example.com", 0);
+            permit.onFailure(tooManyRequests);
+            permit.close();
+        }
+        assertEquals(2.0, limiter.window("busy.example.com"), "不低于 minConcurrency");
+
+        for (int i = 0; i < 20; i++) {
+            permit = limiter.acquire("busy.example.com", 0);
+            permit.onSuccess();
+            permit.close();
+        }
+        assertTrue(limiter.window("busy.example.com") > 5.0);
+    }
+
+    @Test
+    void acquire_WaitsForTokenBucket() {
+        // 每分钟 600 Token，即每 100ms 补充 1 个；桶初始是满的
+        limiter.acquire("tpm.example.com", 600).close();
+        assertThrows(IllegalStateException.class, () -> limiter.acquire("tpm.example.com", 100));
+    }
+
+    @Test
+    void limitedChatModel_ReleasesPermitWhenCallOrStreamEnds() {
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+        when(chatModel.call(any(Prompt.class))).thenReturn(response);
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(response, response));
+        ConcurrencyLimitedChatModel limited = new ConcurrencyLimitedChatModel(chatModel, "api.example.com", limiter);
+
+        assertSame(response, limited.call(new Prompt("hi")));
+        assertEquals(0, limiter.inFlight("api.example.com"));
+
+        assertEquals(2, limited.stream(new Prompt("hi")).collectList().block(Duration.ofSeconds(5)).size());
+        assertEquals(0, limiter.inFlight("api.example.com"));
+
+        // 取消订阅同样归还许可
+        limited.stream(new Prompt("hi")).take(1).blockLast(Duration.ofSeconds(5));
+        assertEquals(0, limiter.inFlight("api.example.com"));
+        assertSame(chatModel, ChatModels.unwrap(limited));
+    }
+
+    @Test
+    void limitedChatModel_StreamQueuesWithoutBlockingTheSubscriber() {
+        ChatResponse response = new ChatResponse(List.of(new Generation(new AssistantMessage("ok"))));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(response));
+        ConcurrencyLimitedChatModel limited = new ConcurrencyLimitedChatModel(chatModel, "api.example.com", limiter);
+        LlmConcurrencyLimiter.Permit held = limiter.acquire("api.example.com", 0);
+
+        // 许可被占用时订阅立即返回，不占用订阅线程
+        List<ChatResponse> received = new CopyOnWriteArrayList<>();
+        limited.stream(new Prompt("hi")).subscribe(received::add);
+        assertTrue(received.isEmpty());
+
+        held.close();
+        assertEquals(List.of(response), received);
+        assertEquals(0, limiter.inFlight("api.example.com"));
+
+        // 排队中取消订阅会退出队列，后来者不受影响
+        held = limiter.acquire("api.example.com", 0);
+        limited.stream(new Prompt("hi")).subscribe().dispose();
+        held.close();
+        limiter.acquire("api.example.com", 0).close();
+        assertEquals(0, limiter.inFlight("api.example.com"));
+
+        // 排队超时以异常结束
+        held = limiter.acquire("api.example.com", 0);
+        assertThrows(IllegalStateException.class,
+                () -> limited.stream(new Prompt("hi")).blockLast(Duration.ofSeconds(5)));
+        held.close();
+    }
+}
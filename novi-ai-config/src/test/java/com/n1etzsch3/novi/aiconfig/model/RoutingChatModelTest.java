@@ -0,0 +1,158 @@
+package com.n1etzsch3.novi.aiconfig.model;
+
+import com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions;
+import com.n1etzsch3.novi.aiconfig.config.LlmRoutingProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.beans.factory.ObjectProvider;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class RoutingChatModelTest {
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    @Mock
+    private ChatModel primary;
+
+    @Mock
+    private ChatModel secondary;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private LlmRoutingProperties properties;
+    private ModelRoutingStats stats;
+
+    @BeforeEach
+    void setUp() {
+        properties = new LlmRoutingProperties();
+        properties.getHedge().setInitialDelay(Duration.ofMillis(100));
+        properties.getHedge().setMinDelay(Duration.ofMillis(50));
+        when(meterRegistryProvider.getIfAvailable(any())).thenReturn(meterRegistry);
+        stats = new ModelRoutingStats(properties, meterRegistryProvider);
+    }
+
+    private RoutingChatModel routing() {
+        return new RoutingChatModel(List.of(
+                new RoutingChatModel.Candidate("primary", primary),
+                new RoutingChatModel.Candidate("secondary", secondary)), properties.getHedge(), stats);
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+
+    private static String collect(Flux<ChatResponse> flux) {
+        return flux.map(r -> r.getResult().getOutput().getText())
+                .collect(Collectors.joining())
+                .block(Duration.ofSeconds(5));
+    }
+
+    private double switches(String reason) {
+        return meterRegistry.find("novi.llm.routing.switch").tag("reason", reason).counters().stream()
+                .mapToDouble(c -> c.count()).sum();
+    }
+
+    @Test
+    void call_FailsOverToNextModel() {
+        when(primary.call(any(Prompt.class))).thenThrow(new RuntimeException("503 Service Unavailable"));
+        when(secondary.call(any(Prompt.class))).thenReturn(response("ok"));
+
+        assertEquals("ok", routing().call(new Prompt("hi")).getResult().getOutput().getText());
+        assertEquals(1.0, switches("failover"));
+    }
+
+    @Test
+    void call_CopiesRequestOptionsToTheSecondaryModelKeepingItsModelName() {
+        when(primary.call(any(Prompt.class))).thenThrow(new RuntimeException("503 Service Unavailable"));
+        when(secondary.getDefaultOptions()).thenReturn(DashScopeChatOptions.builder()
+                .withModel("qwen-plus").withTemperature(0.3).build());
+        ArgumentCaptor<Prompt> sent = ArgumentCaptor.forClass(Prompt.class);
+        when(secondary.call(sent.capture())).thenReturn(response("ok"));
+
+        Prompt prompt = new Prompt("hi", DashScopeChatOptions.builder()
+                .withModel("qwen-max").withEnableThinking(true).withEnableSearch(false).build());
+        routing().call(prompt);
+
+        DashScopeChatOptions options = (DashScopeChatOptions) sent.getValue().getOptions();
+        assertEquals("qwen-plus", options.getModel());
+        assertEquals(0.3, options.getTemperature());
+        assertEquals(Boolean.TRUE, options.getEnableThinking());
+        assertEquals(Boolean.FALSE, options.getEnableSearch());
+        assertEquals("hi", sent.getValue().getContents());
+    }
+
+    @Test
+    void recordSwitch_ReusesOneCounterPerTagSet() {
+        stats.recordSwitch("primary", "secondary", "hedge");
+        stats.recordSwitch("primary", "secondary", "hedge");
+
+        assertEquals(1, meterRegistry.find("novi.llm.routing.switch").counters().size());
+        assertEquals(2.0, switches("hedge"));
+    }
+
+    @Test
+    void stream_FailsOverBeforeFirstTokenOnly() {
+        when(primary.stream(any(Prompt.class))).thenReturn(Flux.error(new RuntimeException("429")));
+        when(secondary.stream(any(Prompt.class))).thenReturn(Flux.just(response("a"), response("b")));
+
+        assertEquals("ab", collect(routing().stream(new Prompt("hi"))));
+        assertEquals(1.0, switches("failover"));
+
+        // 已产出 Token 后的失败直接向上抛出，不切换
+        when(primary.stream(any(Prompt.class)))
+                .thenReturn(Flux.concat(Flux.just(response("x")), Flux.error(new IllegalStateException("reset"))));
+        assertThrows(IllegalStateException.class, () -> collect(routing().stream(new Prompt("hi"))));
+        assertEquals(1.0, switches("failover"));
+    }
+
+    @Test
+    void stream_HedgesSlowPrimaryAndCancelsLoser() {
+        properties.getHedge().setEnabled(true);
+        AtomicBoolean primaryCancelled = new AtomicBoolean();
+        when(primary.stream(any(Prompt.class))).thenReturn(Flux.just(response("slow"))
+                .delaySubscription(Duration.ofSeconds(3))
+                .doOnCancel(() -> primaryCancelled.set(true)));
+        when(secondary.stream(any(Prompt.class))).thenReturn(Flux.just(response("fast")));
+
+        assertEquals("fast", collect(routing().stream(new Prompt("hi"))));
+        assertTrue(primaryCancelled.get());
+        assertEquals(1.0, switches("hedge"));
+    }
+
+    @Test
+    void stream_AllModelsFailing_PropagatesLastError() {
+        when(primary.stream(any(Prompt.class))).thenReturn(Flux.error(new RuntimeException("primary down")));
+        when(secondary.stream(any(Prompt.class))).thenReturn(Flux.error(new IllegalStateException("secondary down")));
+
+        IllegalStateException e = assertThrows(IllegalStateException.class,
+                () -> collect(routing().stream(new Prompt("hi"))));
+        assertEquals("secondary down", e.getMessage());
+    }
+
+    @Test
+    void unwrap_ReturnsPrimaryDelegate() {
+        assertSame(primary, ChatModels.unwrap(routing()));
+    }
+}
@@ -8,7 +8,12 @@ import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.*;
@@ -44,18 +49,84 @@ class AiModelConfigServiceImplTest {
         targetModel.setModelName("NewModel");
         targetModel.setIsActive(false);
 
-        // Mock sequential calls:
-        // 1. getActiveModel -> selectOne (returns activeModel)
-        // 2. switchModelByName -> selectOne (returns targetModel)
-        when(aiModelConfigMapper.selectOne(any()))
-                .thenReturn(activeModel)
-                .thenReturn(targetModel);
+        AiModelConfig oldAfterSwitch = new AiModelConfig();
+        oldAfterSwitch.setId(1L);
+        oldAfterSwitch.setModelName("OldModel");
+        oldAfterSwitch.setIsActive(false);
+
+        AiModelConfig newAfterSwitch = new AiModelConfig();
+        newAfterSwitch.setId(2L);
+        newAfterSwitch.setModelName("NewModel");
+        newAfterSwitch.setIsActive(true);
+
+        // Mock sequential snapshot loads:
+        // 1. getActiveModel -> initial snapshot (OldModel active)
+        // 2. switchModelByName -> reload after activation (NewModel active)
+        when(aiModelConfigMapper.selectVersion()).thenReturn("v1", "v2");
+        when(aiModelConfigMapper.selectList(any()))
+                .thenReturn(List.of(activeModel, targetModel))
+                .thenReturn(List.of(oldAfterSwitch, newAfterSwitch));
+        when(aiModelConfigMapper.selectCount(any())).thenReturn(1L);
 
         // Execute
         boolean result = aiModelConfigService.switchModelByName("NewModel");
 
         // Verify
         assertTrue(result);
-        verify(aiModelConfigMapper, times(2)).update(any(), any());
+        verify(aiModelConfigMapper).activateModelByName("NewModel");
+        assertEquals("NewModel", aiModelConfigService.getActiveModel().getModelName());
+        // Served from the in-memory snapshot, no further queries
+        verify(aiModelConfigMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void switchModelByName_ReloadsSnapshotOnlyAfterCommit() {
+        AiModelConfig oldModel = new AiModelConfig();
+        oldModel.setId(1L);
+        oldModel.setModelName("OldModel");
+        oldModel.setIsActive(true);
+        AiModelConfig newModel = new AiModelConfig();
+        newModel.setId(2L);
+        newModel.setModelName("NewModel");
+        newModel.setIsActive(true);
+
+        when(aiModelConfigMapper.selectVersion()).thenReturn("v1", "v2");
+        when(aiModelConfigMapper.selectList(any()))
+                .thenReturn(List.of(oldModel))
+                .thenReturn(List.of(newModel));
+        when(aiModelConfigMapper.selectCount(any())).thenReturn(1L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(aiModelConfigService.switchModelByName("NewModel"));
+            // 提交前其他线程仍看到原快照
+            assertEquals("OldModel", aiModelConfigService.getActiveModel().getModelName());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+            assertEquals("NewModel", aiModelConfigService.getActiveModel().getModelName());
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void refreshIfChanged_ReloadsOnlyWhenVersionChanges() {
+        AiModelConfig model = new AiModelConfig();
+        model.setId(1L);
+        model.setModelName("OnlyModel");
+        model.setIsActive(true);
+
+        when(aiModelConfigMapper.selectVersion()).thenReturn("v1", "v1", "v2", "v2");
+        when(aiModelConfigMapper.selectList(any())).thenReturn(List.of(model));
+
+        assertEquals("OnlyModel", aiModelConfigService.getActiveModel().getModelName());
+
+        // Same version: no reload
+        aiModelConfigService.refreshIfChanged();
+        verify(aiModelConfigMapper, times(1)).selectList(any());
+
+        // Version changed: reload
+        aiModelConfigService.refreshIfChanged();
+        verify(aiModelConfigMapper, times(2)).selectList(any());
     }
 }
@@ -0,0 +1,104 @@
+package com.n1etzsch3.novi.aiconfig.store;
+
+import com.n1etzsch3.novi.aiconfig.mapper.AiPromptConfigMapper;
+import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class AiPromptConfigStoreTest {
+
+    @Mock
+    private AiPromptConfigMapper aiPromptConfigMapper;
+
+    @Mock
+    private ObjectProvider<MeterRegistry> meterRegistryProvider;
+
+    private AiPromptConfigStore store;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize TableInfo for MyBatis-Plus LambdaWrapper to work
+        com.baomidou.mybatisplus.core.metadata.TableInfoHelper
+                .initTableInfo(new org.apache.ibatis.builder.MapperBuilderAssistant(
+                        new com.baomidou.mybatisplus.core.MybatisConfiguration(), ""), AiPromptConfig.class);
+        store = new AiPromptConfigStore(aiPromptConfigMapper, meterRegistryProvider);
+    }
+
+    private static AiPromptConfig config(String key, String value, LocalDateTime updateTime) {
+        AiPromptConfig config = new AiPromptConfig();
+        config.setConfigKey(key);
+        config.setConfigValue(value);
+        config.setUpdateTime(updateTime);
+        return config;
+    }
+
+    @Test
+    void get_LoadsOnceAndCountsHitsAndMisses() {
+        when(aiPromptConfigMapper.selectList(any()))
+                .thenReturn(List.of(config("tone_default", "正常语气", LocalDateTime.now())));
+
+        assertEquals("正常语气", store.getValue("tone_default"));
+        assertEquals("正常语气", store.getValue("tone_default"));
+        assertNull(store.getValue("tone_missing"));
+
+        verify(aiPromptConfigMapper, times(1)).selectList(any());
+        assertEquals(2, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+    }
+
+    @Test
+    void refresh_AppliesIncrementalChangesAndBumpsVersion() {
+        LocalDateTime t0 = LocalDateTime.of(2026, 1, 1, 0, 0);
+        when(aiPromptConfigMapper.selectList(any()))
+                .thenReturn(List.of(config("tone_default", "正常语气", t0)))
+                .thenReturn(List.of(config("tone_default", "温柔语气", t0.plusMinutes(1))));
+        when(aiPromptConfigMapper.selectCount(any())).thenReturn(1L);
+
+        long before = store.getVersion();
+        store.refresh();
+
+        assertEquals("温柔语气", store.getValue("tone_default"));
+        assertTrue(store.getVersion() > before);
+    }
+
+    @Test
+    void refresh_ReloadsAllWhenRowsDeleted() {
+        LocalDateTime t0 = LocalDateTime.of(2026, 1, 1, 0, 0);
+        when(aiPromptConfigMapper.selectList(any()))
+                .thenReturn(List.of(config("a", "1", t0), config("b", "2", t0)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(config("a", "1", t0)));
+        when(aiPromptConfigMapper.selectCount(any())).thenReturn(1L);
+
+        assertEquals("2", store.getValue("b"));
+        store.refresh();
+
+        assertNull(store.getValue("b"));
+        assertEquals("1", store.getValue("a"));
+    }
+
+    @Test
+    void evict_RemovesKeyImmediately() {
+        when(aiPromptConfigMapper.selectList(any()))
+                .thenReturn(List.of(config("a", "1", LocalDateTime.now())));
+
+        long before = store.getVersion();
+        store.evict("a");
+
+        assertNull(store.getValue("a"));
+        assertEquals(before + 1, store.getVersion());
+    }
+}
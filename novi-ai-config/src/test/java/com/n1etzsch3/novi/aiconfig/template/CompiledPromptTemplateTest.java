@@ -0,0 +1,45 @@
+package com.n1etzsch3.novi.aiconfig.template;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class CompiledPromptTemplateTest {
+
+    @Test
+    void render_ReplacesPlaceholdersInOnePass() {
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile("你好 {nickname}，现在是 {current_time}。再见 {nickname}");
+
+        String result = template.render(Map.of("nickname", "老铁", "current_time", "10:00"));
+
+        assertEquals("你好 老铁，现在是 10:00。再见 老铁", result);
+        assertEquals(List.of("nickname", "current_time", "nickname"), template.getVariables());
+    }
+
+    @Test
+    void render_KeepsJsonBracesAndUnknownPlaceholders() {
+        CompiledPromptTemplate template = CompiledPromptTemplate.compile(
+                "格式: {\"stem\": \"...\", \"options\": [{ }]} 数量 {quantity} 保留 {unknown} {1abc} {}");
+
+        String result = template.render(Map.of("quantity", "5"));
+
+        assertEquals("格式: {\"stem\": \"...\", \"options\": [{ }]} 数量 5 保留 {unknown} {1abc} {}", result);
+    }
+
+    @Test
+    void render_NullValueRendersEmpty() {
+        Map<String, Object> values = new HashMap<>();
+        values.put("theme", null);
+
+        assertEquals("主题:", CompiledPromptTemplate.compile("主题:{theme}").render(values));
+    }
+
+    @Test
+    void render_UnclosedBraceIsLiteral() {
+        assertEquals("a {b", CompiledPromptTemplate.compile("a {b").render(Map.of("b", "x")));
+    }
+}
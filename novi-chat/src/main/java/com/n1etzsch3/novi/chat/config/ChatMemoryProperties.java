@@ -0,0 +1,166 @@
+package com.n1etzsch3.novi.chat.config;
+
+import com.n1etzsch3.novi.common.enums.PromptContextType;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 聊天记忆配置
+ * <p>
+ * 对应配置前缀 {@code novi.chat.memory}，控制加载历史消息时的滑动窗口大小。
+ * 窗口只在指定了 {@link PromptContextType} 时生效：可以为每种上下文类型单独配置窗口，未配置的类型使用默认窗口；
+ * 不带上下文类型的读取（{@code ChatMemory#get(String)}）仍返回完整会话。
+ * 同时包含消息写后缓冲 ({@code novi.chat.memory.write-behind}) 与热点会话缓存 ({@code novi.chat.memory.cache}) 的参数。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.chat.memory")
+public class ChatMemoryProperties {
+
+    /**
+     * 默认历史窗口：指定了上下文类型但该类型未单独配置时使用
+     */
+    private HistoryWindow defaultWindow = new HistoryWindow(20, 0);
+
+    /**
+     * 按上下文类型覆盖的历史窗口
+     */
+    private Map<PromptContextType, HistoryWindow> windows = new LinkedHashMap<>();
+
+    /**
+     * 仅按 Token 预算裁剪时，每次向数据库分页拉取的消息条数
+     */
+    private int pageSize = 50;
+
+    /**
+     * 消息写后缓冲配置
+     */
+    private WriteBehind writeBehind = new WriteBehind();
+
+    /**
+     * 热点会话缓存配置
+     */
+    private HistoryCache cache = new HistoryCache();
+
+    /**
+     * 获取指定上下文类型的历史窗口
+     *
+     * @param contextType 上下文类型，为 null 时返回不限制的全量窗口
+     * @return 历史窗口配置
+     */
+    public HistoryWindow windowFor(PromptContextType contextType) {
+        if (contextType == null) {
+            return HistoryWindow.unbounded();
+        }
+        return windows.getOrDefault(contextType, defaultWindow);
+    }
+
+    /**
+     * 历史窗口
+     */
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class HistoryWindow {
+
+        /**
+         * 不限条数、不限 Token 的全量窗口
+         */
+        public static HistoryWindow unbounded() {
+            return new HistoryWindow(0, 0);
+        }
+
+        /**
+         * 最多加载的最新消息条数（小于等于 0 表示不限制）
+         */
+        private int maxMessages;
+
+        /**
+         * 历史消息的 Token 预算（小于等于 0 表示不限制）
+         */
+        private int maxTokens;
+
+        /**
+         * 是否为不限条数、不限 Token 的全量窗口
+         */
+        public boolean isUnbounded() {
+            return maxMessages <= 0 && maxTokens <= 0;
+        }
+    }
+
+    /**
+     * 消息写后缓冲 (Write-Behind) 配置
+     */
+    @Data
+    public static class WriteBehind {
+
+        /**
+         * 是否启用写后缓冲，关闭时每轮对话同步写库
+         */
+        private boolean enabled = true;
+
+        /**
+         * 待写入队列容量，队满时由请求线程代为刷写
+         */
+        private int queueCapacity = 10000;
+
+        /**
+         * 单次批量插入的最大条数
+         */
+        private int batchSize = 200;
+
+        /**
+         * 最早一条消息入队后的最长等待时间，超时即刷写
+         */
+        private Duration flushInterval = Duration.ofMillis(200);
+
+        /**
+         * 单条消息最多写入尝试次数，超过后丢弃并记录错误；失败的消息在下一次刷写时重试
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * 停机时等待后台线程退出的最长时间
+         */
+        private Duration shutdownTimeout = Duration.ofSeconds(10);
+    }
+
+    /**
+     * 热点会话历史缓存配置
+     */
+    @Data
+    public static class HistoryCache {
+
+        /**
+         * 是否启用缓存
+         */
+        private boolean enabled = true;
+
+        /**
+         * 每个会话最多缓存的最新消息条数，应不小于各历史窗口的 max-messages
+         */
+        private int maxMessages = 50;
+
+        /**
+         * 缓存整体占用的内存上限（按消息内容估算）
+         */
+        private DataSize maxMemory = DataSize.ofMegabytes(64);
+
+        /**
+         * 会话空闲多久后被淘汰
+         */
+        private Duration expireAfterAccess = Duration.ofMinutes(30);
+    }
+}
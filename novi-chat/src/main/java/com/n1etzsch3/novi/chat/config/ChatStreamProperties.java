@@ -0,0 +1,89 @@
+package com.n1etzsch3.novi.chat.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 流式聊天输出配置
+ * <p>
+ * 对应配置前缀 {@code novi.chat.stream}。上游模型常以 1~3 个字符为单位推送增量，
+ * 逐条序列化并刷写 SSE 帧的开销较大，开启合并后把连续的同类增量合并为一个事件下发。
+ * 流式请求中的数据库操作（会话、人设、历史消息读写）在独立的阻塞调度器上执行，不占用 Servlet 线程。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.chat.stream")
+public class ChatStreamProperties {
+
+    /**
+     * 增量合并配置
+     */
+    private Coalesce coalesce = new Coalesce();
+
+    /**
+     * 阻塞操作调度器配置
+     */
+    private Blocking blocking = new Blocking();
+
+    /**
+     * 增量合并 (Coalescing) 配置
+     */
+    @Data
+    public static class Coalesce {
+
+        /**
+         * 是否合并连续的 CONTENT / REASONING 增量；首个增量始终立即下发
+         */
+        private boolean enabled = true;
+
+        /**
+         * 合并时间窗口：窗口内收到的增量合并为一个事件
+         */
+        private Duration window = Duration.ofMillis(40);
+
+        /**
+         * 单个窗口最多累积的增量字符数（按 Java char 计），达到后立即下发
+         */
+        private int maxChars = 128;
+    }
+
+    /**
+     * 阻塞操作调度器配置
+     */
+    @Data
+    public static class Blocking {
+
+        /**
+         * 调度器类型
+         */
+        private Mode mode = Mode.BOUNDED_ELASTIC;
+
+        /**
+         * 有界弹性调度器的最大线程数
+         */
+        private int threadCap = 64;
+
+        /**
+         * 有界弹性调度器线程全忙时允许排队的任务数
+         */
+        private int queuedTaskCap = 10000;
+
+        public enum Mode {
+            /**
+             * Reactor 有界弹性线程池
+             */
+            BOUNDED_ELASTIC,
+            /**
+             * 每个任务一个虚拟线程
+             */
+            VIRTUAL
+        }
+    }
+}
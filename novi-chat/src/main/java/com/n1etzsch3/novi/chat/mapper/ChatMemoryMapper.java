@@ -2,7 +2,13 @@ package com.n1etzsch3.novi.chat.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.List;
 
 /**
  * 聊天记忆 Mapper
@@ -15,4 +21,46 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface ChatMemoryMapper extends BaseMapper<ChatMessage> {
-}
\ No newline at end of file
+
+    /**
+     * 倒序查询会话中最新的若干条消息
+     * <p>
+     * 使用 (user_id, session_id, id) 索引做反向扫描，LIMIT 下推到数据库，
+     * 不再把整段会话历史拉回应用层裁剪。
+     * </p>
+     *
+     * @param userId    用户ID
+     * @param sessionId 会话ID
+     * @param beforeId  只查询 ID 小于该值的消息（用于分页），为 null 时从最新一条开始
+     * @param limit     最多返回的条数
+     * @return 按 ID 倒序排列的消息列表（最新的在前）
+     */
+    @Select("<script>" +
+            "SELECT id, user_id, session_id, role, content, `timestamp` FROM chat_message " +
+            "WHERE user_id = #{userId} AND session_id = #{sessionId} " +
+            "<if test='beforeId != null'>AND id &lt; #{beforeId} </if>" +
+            "ORDER BY id DESC LIMIT #{limit}" +
+            "</script>")
+    List<ChatMessage> selectLatest(@Param("userId") Long userId,
+            @Param("sessionId") String sessionId,
+            @Param("beforeId") Long beforeId,
+            @Param("limit") int limit);
+
+    /**
+     * 多行批量插入聊天消息
+     * <p>
+     * 一条 INSERT ... VALUES (...), (...) 写入整批消息，自增 ID 回填到实体。
+     * </p>
+     *
+     * @param messages 待插入的消息
+     * @return 插入的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO chat_message (user_id, session_id, role, content, `timestamp`) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.userId}, #{m.sessionId}, #{m.role}, #{m.content}, #{m.timestamp})" +
+            "</foreach>" +
+            "</script>")
+    @Options(useGeneratedKeys = true, keyProperty = "messages.id", keyColumn = "id")
+    int insertBatch(@Param("messages") List<ChatMessage> messages);
+}
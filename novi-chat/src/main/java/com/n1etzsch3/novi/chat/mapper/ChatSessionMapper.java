@@ -2,7 +2,13 @@ package com.n1etzsch3.novi.chat.mapper;
 
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
 
 /**
  * 聊天会话 Mapper
@@ -15,4 +21,48 @@ import org.apache.ibatis.annotations.Mapper;
  */
 @Mapper
 public interface ChatSessionMapper extends BaseMapper<ChatSession> {
+
+    /**
+     * 按主键判断会话是否存在
+     *
+     * @param id 会话ID
+     * @return 是否存在
+     */
+    @Select("SELECT EXISTS(SELECT 1 FROM chat_session WHERE id = #{id})")
+    boolean existsById(@Param("id") String id);
+
+    /**
+     * 刷新会话的最后活跃时间，会话不存在时以给定标题创建
+     * <p>
+     * 一条 INSERT ... ON DUPLICATE KEY UPDATE 完成，并发重建同一会话时不会主键冲突。
+     * 影响行数无法可靠区分插入与更新（驱动默认按匹配行计数，已有行的时间未变化时同样返回 1），
+     * 需要知道会话是否已存在时先调用 {@link #existsById(String)}。
+     * </p>
+     *
+     * @param session 会话（id、userId、title、createdAt、updatedAt）
+     * @return 影响的行数
+     */
+    @Insert("INSERT INTO chat_session (id, user_id, title, created_at, updated_at) " +
+            "VALUES (#{s.id}, #{s.userId}, #{s.title}, #{s.createdAt}, #{s.updatedAt}) " +
+            "ON DUPLICATE KEY UPDATE updated_at = VALUES(updated_at)")
+    int upsertTouch(@Param("s") ChatSession session);
+
+    /**
+     * 批量推进会话的最后活跃时间
+     * <p>
+     * 一条 UPDATE ... CASE 写入整批会话，只会把时间往后推；已被删除的会话不会被重新创建。
+     * </p>
+     *
+     * @param sessions 会话（id、updatedAt）
+     * @return 影响的行数
+     */
+    @Update("<script>" +
+            "UPDATE chat_session SET updated_at = CASE id " +
+            "<foreach collection='sessions' item='s'>" +
+            "WHEN #{s.id} THEN GREATEST(updated_at, #{s.updatedAt}) " +
+            "</foreach>" +
+            "END WHERE id IN " +
+            "<foreach collection='sessions' item='s' open='(' separator=',' close=')'>#{s.id}</foreach>" +
+            "</script>")
+    int touchBatch(@Param("sessions") List<ChatSession> sessions);
 }
@@ -0,0 +1,433 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.n1etzsch3.novi.chat.config.ChatMemoryProperties;
+import com.n1etzsch3.novi.chat.mapper.ChatMemoryMapper;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Supplier;
+
+/**
+ * 聊天消息写后缓冲 (Write-Behind)
+ * <p>
+ * 将待持久化的 {@link ChatMessage} 放入有界队列，由后台线程在攒够一批或等待超时后，
+ * 以一条多行 INSERT 批量写入数据库，请求线程不再同步等待插入。
+ * </p>
+ * <p>
+ * 尚未落库的消息同时记录在按会话划分的内存覆盖层中，
+ * 读取同一会话的历史时会与数据库结果合并，保证"读己之写"。
+ * 队列满时由调用线程直接执行一次刷写（背压），不会丢消息，也不会打乱同一会话内的顺序。
+ * 写入失败的消息保留在覆盖层中，连同同一会话排在它之后的消息一起在下一次刷写时按原顺序重试，
+ * 超过 maxAttempts 次才丢弃并记录错误。
+ * 入队的是消息副本，落库后回填的 ID 不会写回调用方持有的实体。
+ * 应用关闭时会把队列中剩余的消息全部刷入数据库；关闭开始后提交的消息改为同步写入。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class ChatMessageWriteBehindBuffer {
+
+    private final ChatMemoryMapper chatMemoryMapper;
+    private final ChatMemoryProperties.WriteBehind config;
+    private final BlockingQueue<PendingMessage> queue;
+
+    /**
+     * 尚未落库的消息覆盖层，key 为 "userId:sessionId"
+     */
+    private final Map<String, List<PendingMessage>> overlay = new ConcurrentHashMap<>();
+
+    /**
+     * 刷写锁：保证同一时刻只有一个批次在写库，且清空会话时不会与进行中的批次交错
+     */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    /**
+     * 状态锁：入队时持读锁检查 running 并入队，关闭时持写锁切换状态，
+     * 保证关闭后的最终刷写之后不会再有消息进入队列
+     */
+    private final ReentrantReadWriteLock stateLock = new ReentrantReadWriteLock();
+
+    /**
+     * 待重试的消息，按原写入顺序排列，排在下一批次最前面；由 flushLock 保护
+     */
+    private final List<PendingMessage> retries = new ArrayList<>();
+    private volatile int retryCount;
+
+    private final Timer flushTimer;
+    private final Counter flushedCounter;
+    private final Counter failedCounter;
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    /**
+     * 待写入的消息及其落库后分配的 ID
+     */
+    private static final class PendingMessage {
+        private final String conversationKey;
+        private final ChatMessage message;
+        private final long enqueuedAt;
+        private volatile Long persistedId;
+        private int attempts;
+
+        private PendingMessage(String conversationKey, ChatMessage message) {
+            this.conversationKey = conversationKey;
+            this.message = message;
+            this.enqueuedAt = System.nanoTime();
+        }
+    }
+
+    public ChatMessageWriteBehindBuffer(ChatMemoryMapper chatMemoryMapper,
+            ChatMemoryProperties chatMemoryProperties,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.chatMemoryMapper = chatMemoryMapper;
+        this.config = chatMemoryProperties.getWriteBehind();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+        this.flushTimer = Timer.builder("novi.chat.memory.flush.latency")
+                .description("Latency of one chat message batch insert")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(registry);
+        this.flushedCounter = Counter.builder("novi.chat.memory.flushed")
+                .description("Chat messages persisted by the write-behind buffer")
+                .register(registry);
+        this.failedCounter = Counter.builder("novi.chat.memory.flush.failed")
+                .description("Chat messages that could not be persisted")
+                .register(registry);
+        Gauge.builder("novi.chat.memory.queue.depth", queue, BlockingQueue::size)
+                .description("Chat messages waiting to be persisted")
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!config.isEnabled()) {
+            log.info("聊天消息写后缓冲已关闭，消息将同步写入数据库");
+            return;
+        }
+        running = true;
+        flusher = new Thread(this::runFlushLoop, "chat-message-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("聊天消息写后缓冲已启动: capacity={}, batchSize={}, flushInterval={}",
+                config.getQueueCapacity(), config.getBatchSize(), config.getFlushInterval());
+    }
+
+    /**
+     * 应用关闭时停止后台线程，并把剩余消息全部写入数据库
+     */
+    @PreDestroy
+    public void shutdown() {
+        stateLock.writeLock().lock();
+        try {
+            if (!running) {
+                return;
+            }
+            running = false;
+        } finally {
+            stateLock.writeLock().unlock();
+        }
+        LockSupport.unpark(flusher);
+        try {
+            flusher.join(config.getShutdownTimeout().toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int remaining = queue.size() + retryCount;
+        // 重试次数有上限，循环一定会结束
+        while (!queue.isEmpty() || retryCount > 0) {
+            flushBatch();
+        }
+        log.info("聊天消息写后缓冲已关闭，停机时补刷 {} 条消息", remaining);
+    }
+
+    /**
+     * 提交一批属于同一会话的消息
+     *
+     * @param conversationKey 复合键 "userId:sessionId"
+     * @param messages        待持久化的消息实体
+     */
+    public void enqueue(String conversationKey, List<ChatMessage> messages) {
+        if (messages.isEmpty()) {
+            return;
+        }
+        stateLock.readLock().lock();
+        try {
+            if (!running) {
+                chatMemoryMapper.insertBatch(messages);
+                return;
+            }
+            enqueueRunning(conversationKey, messages);
+        } finally {
+            stateLock.readLock().unlock();
+        }
+    }
+
+    private void enqueueRunning(String conversationKey, List<ChatMessage> messages) {
+        List<PendingMessage> pending = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            pending.add(new PendingMessage(conversationKey, copyOf(message, null)));
+        }
+        // 先进入覆盖层再入队，保证刷写完成后的移除一定能找到对应条目
+        overlay.compute(conversationKey, (k, list) -> {
+            List<PendingMessage> target = list != null ? list : Collections.synchronizedList(new ArrayList<>());
+            target.addAll(pending);
+            return target;
+        });
+
+        for (PendingMessage item : pending) {
+            while (!queue.offer(item)) {
+                // 队列已满：由调用线程代为刷写一批，形成背压
+                flushBatch();
+            }
+        }
+        if (queue.size() >= config.getBatchSize()) {
+            LockSupport.unpark(flusher);
+        }
+    }
+
+    /**
+     * 读取数据库并合并同一会话尚未落库的消息，保证"读己之写"
+     * <p>
+     * 覆盖层快照在查询数据库之前取得：快照中已经写入且出现在查询结果里的消息会被去重，
+     * 其余消息按写入顺序追加到末尾。刚好在查询前后完成落库、尚未回填 ID 的消息，
+     * 按角色和内容与查询结果中未被认领的行匹配去重。
+     * </p>
+     *
+     * @param conversationKey 复合键 "userId:sessionId"
+     * @param loader          数据库查询，返回按 ID 正序排列的消息
+     * @return 合并后按写入顺序排列的消息
+     */
+    public List<ChatMessage> readThrough(String conversationKey, Supplier<List<ChatMessage>> loader) {
+        List<PendingMessage> snapshot = snapshot(conversationKey);
+        List<ChatMessage> persisted = loader.get();
+        if (snapshot.isEmpty()) {
+            return persisted;
+        }
+
+        Set<Long> claimed = new HashSet<>();
+        Set<Long> persistedIds = new HashSet<>();
+        for (ChatMessage message : persisted) {
+            persistedIds.add(message.getId());
+        }
+
+        List<ChatMessage> merged = new ArrayList<>(persisted);
+        for (PendingMessage item : snapshot) {
+            Long id = item.persistedId != null ? item.persistedId : item.message.getId();
+            if (id != null) {
+                if (persistedIds.contains(id)) {
+                    claimed.add(id);
+                    continue;
+                }
+            } else if (claimByContent(item.message, persisted, claimed)) {
+                continue;
+            }
+            merged.add(copyOf(item.message, id));
+        }
+        // 已落库但不在本次查询结果中的消息按 ID 归位，仍未落库的保持在末尾
+        merged.sort(Comparator.comparing(ChatMessage::getId, Comparator.nullsLast(Comparator.naturalOrder())));
+        return merged;
+    }
+
+    private boolean claimByContent(ChatMessage pending, List<ChatMessage> persisted, Set<Long> claimed) {
+        for (int i = persisted.size() - 1; i >= 0; i--) {
+            ChatMessage row = persisted.get(i);
+            if (!claimed.contains(row.getId())
+                    && row.getRole() == pending.getRole()
+                    && Objects.equals(row.getContent(), pending.getContent())) {
+                claimed.add(row.getId());
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private List<PendingMessage> snapshot(String conversationKey) {
+        List<PendingMessage> list = overlay.get(conversationKey);
+        if (list == null) {
+            return Collections.emptyList();
+        }
+        synchronized (list) {
+            return new ArrayList<>(list);
+        }
+    }
+
+    private ChatMessage copyOf(ChatMessage source, Long id) {
+        return ChatMessage.builder()
+                .id(id)
+                .userId(source.getUserId())
+                .sessionId(source.getSessionId())
+                .role(source.getRole())
+                .content(source.getContent())
+                .timestamp(source.getTimestamp())
+                .build();
+    }
+
+    /**
+     * 丢弃某个会话所有尚未落库的消息
+     * <p>
+     * 会等待进行中的批次结束，返回后该会话不会再有旧消息被写入数据库。
+     * </p>
+     *
+     * @param conversationKey 复合键 "userId:sessionId"
+     */
+    public void discard(String conversationKey) {
+        flushLock.lock();
+        try {
+            queue.removeIf(item -> item.conversationKey.equals(conversationKey));
+            retries.removeIf(item -> item.conversationKey.equals(conversationKey));
+            retryCount = retries.size();
+            overlay.remove(conversationKey);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void runFlushLoop() {
+        long intervalNanos = config.getFlushInterval().toNanos();
+        while (running) {
+            try {
+                PendingMessage head = queue.peek();
+                if (head == null) {
+                    LockSupport.parkNanos(this, intervalNanos);
+                    if (retryCount > 0) {
+                        // 有待重试的消息时，每个刷写间隔重试一次，相当于退避
+                        flushBatch();
+                    }
+                    continue;
+                }
+                long wait = head.enqueuedAt + intervalNanos - System.nanoTime();
+                if (queue.size() < config.getBatchSize() && wait > 0) {
+                    LockSupport.parkNanos(this, wait);
+                    continue;
+                }
+                flushBatch();
+            } catch (Exception e) {
+                log.error("聊天消息刷写线程异常", e);
+            }
+        }
+    }
+
+    /**
+     * 从队列取出一批消息并写入数据库
+     * <p>
+     * 上次失败的消息排在批次最前面。批量插入失败时逐条写入：某条失败后，
+     * 同一会话在它之后的消息不再写入，一起留到下一次刷写按原顺序重试，其他会话不受影响。
+     * </p>
+     */
+    private void flushBatch() {
+        flushLock.lock();
+        try {
+            List<PendingMessage> batch = new ArrayList<>(retries);
+            retries.clear();
+            queue.drainTo(batch, Math.max(0, config.getBatchSize() - batch.size()));
+            if (batch.isEmpty()) {
+                retryCount = 0;
+                return;
+            }
+
+            List<ChatMessage> entities = new ArrayList<>(batch.size());
+            for (PendingMessage item : batch) {
+                entities.add(item.message);
+            }
+
+            long start = System.nanoTime();
+            List<PendingMessage> done = batch;
+            try {
+                chatMemoryMapper.insertBatch(entities);
+            } catch (Exception e) {
+                log.warn("批量写入 {} 条聊天消息失败，改为逐条写入: {}", entities.size(), e.getMessage());
+                done = insertOneByOne(batch);
+            }
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            retryCount = retries.size();
+
+            for (PendingMessage item : done) {
+                item.persistedId = item.message.getId();
+            }
+            flushedCounter.increment(done.size());
+            removeFromOverlay(done);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * 逐条写入
+     *
+     * @return 已落库或已放弃的消息（需要从覆盖层移除）；失败待重试的消息放入 retries
+     */
+    private List<PendingMessage> insertOneByOne(List<PendingMessage> batch) {
+        List<PendingMessage> done = new ArrayList<>(batch.size());
+        Set<String> blocked = new HashSet<>();
+        for (PendingMessage item : batch) {
+            if (blocked.contains(item.conversationKey)) {
+                // 同一会话前面的消息还没写入，保持顺序一起重试
+                retries.add(item);
+                continue;
+            }
+            try {
+                item.message.setId(null);
+                chatMemoryMapper.insert(item.message);
+                done.add(item);
+            } catch (Exception e) {
+                item.attempts++;
+                if (item.attempts >= config.getMaxAttempts()) {
+                    failedCounter.increment();
+                    log.error("聊天消息写入 {} 次仍失败，已丢弃 (Key: {})", item.attempts, item.conversationKey, e);
+                    done.add(item);
+                } else {
+                    log.warn("聊天消息写入失败，稍后重试 ({}/{}, Key: {}): {}", item.attempts,
+                            config.getMaxAttempts(), item.conversationKey, e.getMessage());
+                    blocked.add(item.conversationKey);
+                    retries.add(item);
+                }
+            }
+        }
+        return done;
+    }
+
+    private void removeFromOverlay(List<PendingMessage> batch) {
+        Map<String, Set<PendingMessage>> byConversation = new HashMap<>();
+        for (PendingMessage item : batch) {
+            byConversation.computeIfAbsent(item.conversationKey,
+                    k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(item);
+        }
+        byConversation.forEach((key, flushed) -> overlay.computeIfPresent(key, (k, list) -> {
+            synchronized (list) {
+                list.removeIf(flushed::contains);
+                return list.isEmpty() ? null : list;
+            }
+        }));
+    }
+}
@@ -0,0 +1,192 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.n1etzsch3.novi.chat.mapper.ChatSessionMapper;
+import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 会话活跃时间合并写入
+ * <p>
+ * 每轮对话都要刷新 chat_session.updated_at。本节点最近确认存在的会话只在内存中记录最新的活跃时间，
+ * 由定时任务以一条 UPDATE 批量写回，活跃会话不再每条消息写一次会话表；
+ * 首次遇到的会话先按主键确认是否存在，存在时同样只记录内存中的时间，
+ * 不存在时才以一条 INSERT ... ON DUPLICATE KEY UPDATE 重建（并发重建同一会话时不会冲突）。
+ * 是否重建以存在性查询为准，不依赖 upsert 的影响行数。
+ * </p>
+ * <p>
+ * 代价是会话列表按活跃时间排序时最多滞后一个刷写周期；应用关闭时会写回剩余的活跃时间。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class ChatSessionTouchBuffer {
+
+    private final ChatSessionMapper chatSessionMapper;
+    private final boolean enabled;
+    private final int batchSize;
+
+    /**
+     * 本节点已确认存在的会话
+     */
+    private final Cache<String, Boolean> knownSessions;
+
+    /**
+     * 尚未写回的活跃时间，key 为会话 ID
+     */
+    private final Map<String, LocalDateTime> pending = new ConcurrentHashMap<>();
+
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private final Counter flushedCounter;
+
+    public ChatSessionTouchBuffer(ChatSessionMapper chatSessionMapper,
+            ObjectProvider<MeterRegistry> meterRegistryProvider,
+            @Value("${novi.chat.session.touch.enabled:true}") boolean enabled,
+            @Value("${novi.chat.session.touch.batch-size:500}") int batchSize,
+            @Value("${novi.chat.session.touch.known-sessions:100000}") long knownSessions,
+            @Value("${novi.chat.session.touch.expire-after-access:30m}") Duration expireAfterAccess) {
+        this.chatSessionMapper = chatSessionMapper;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.knownSessions = Caffeine.newBuilder()
+                .maximumSize(knownSessions)
+                .expireAfterAccess(expireAfterAccess)
+                .build();
+
+        MeterRegistry registry = meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry);
+        this.flushedCounter = Counter.builder("novi.chat.session.touch.flushed")
+                .description("Session activity timestamps written back in batches")
+                .register(registry);
+        Gauge.builder("novi.chat.session.touch.pending", pending, Map::size)
+                .description("Sessions with an activity timestamp waiting to be written")
+                .register(registry);
+    }
+
+    /**
+     * 记录一个刚创建的会话，之后的活跃时间走内存合并
+     *
+     * @param sessionId 会话ID
+     */
+    public void register(String sessionId) {
+        if (enabled) {
+            knownSessions.put(sessionId, Boolean.TRUE);
+        }
+    }
+
+    /**
+     * 刷新会话的活跃时间
+     * <p>
+     * 已确认存在的会话只更新内存中的时间；否则先查询会话是否存在，
+     * 存在时同样只记录时间，不存在时立即以给定标题重建。
+     * </p>
+     *
+     * @param userId        用户ID
+     * @param sessionId     会话ID
+     * @param restoredTitle 会话不存在、需要重建时使用的标题
+     * @param now           活跃时间
+     * @return 会话是否被重建
+     */
+    public boolean touch(Long userId, String sessionId, String restoredTitle, LocalDateTime now) {
+        if (enabled && knownSessions.getIfPresent(sessionId) != null) {
+            pending.merge(sessionId, now, ChatSessionTouchBuffer::latest);
+            return false;
+        }
+
+        ChatSession session = new ChatSession();
+        session.setId(sessionId);
+        session.setUserId(userId);
+        session.setUpdatedAt(now);
+        if (chatSessionMapper.existsById(sessionId)) {
+            if (enabled) {
+                register(sessionId);
+                pending.merge(sessionId, now, ChatSessionTouchBuffer::latest);
+            } else {
+                chatSessionMapper.touchBatch(List.of(session));
+            }
+            return false;
+        }
+
+        session.setTitle(restoredTitle);
+        session.setCreatedAt(now);
+        chatSessionMapper.upsertTouch(session);
+        register(sessionId);
+        return true;
+    }
+
+    /**
+     * 批量写回内存中的活跃时间
+     */
+    @Scheduled(fixedDelayString = "${novi.chat.session.touch.flush-interval:5s}",
+            initialDelayString = "${novi.chat.session.touch.flush-interval:5s}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        flushLock.lock();
+        try {
+            List<ChatSession> batch = new ArrayList<>(Math.min(batchSize, pending.size()));
+            for (String sessionId : pending.keySet()) {
+                LocalDateTime updatedAt = pending.remove(sessionId);
+                if (updatedAt == null) {
+                    continue;
+                }
+                ChatSession session = new ChatSession();
+                session.setId(sessionId);
+                session.setUpdatedAt(updatedAt);
+                batch.add(session);
+                if (batch.size() >= batchSize) {
+                    write(batch);
+                    batch = new ArrayList<>(batchSize);
+                }
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    private void write(List<ChatSession> batch) {
+        try {
+            chatSessionMapper.touchBatch(batch);
+            flushedCounter.increment(batch.size());
+        } catch (Exception e) {
+            // 放回内存，下个周期重试；期间新的活跃时间会与之合并
+            log.warn("Failed to write back {} session activity timestamps: {}", batch.size(), e.getMessage());
+            for (ChatSession session : batch) {
+                pending.merge(session.getId(), session.getUpdatedAt(), ChatSessionTouchBuffer::latest);
+            }
+        }
+    }
+
+    private static LocalDateTime latest(LocalDateTime a, LocalDateTime b) {
+        return a.isAfter(b) ? a : b;
+    }
+}
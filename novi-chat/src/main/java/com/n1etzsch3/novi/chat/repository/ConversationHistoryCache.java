@@ -0,0 +1,174 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.n1etzsch3.novi.chat.config.ChatMemoryProperties;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntFunction;
+
+/**
+ * 热点会话历史缓存
+ * <p>
+ * 以复合键 "userId:sessionId" 缓存每个会话最新的若干条消息。
+ * 服务端自己刚写入的历史不必再从 MySQL 读回：首轮对话加载一次后，
+ * 之后每轮的 add() 直接追加到缓存，稳定进行中的会话不再产生历史查询。
+ * </p>
+ * <p>
+ * 缓存按估算的内存占用设置上限，每个会话最多保留 maxMessages 条，
+ * 长时间未访问的会话会被淘汰；clear() 会使对应会话失效。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class ConversationHistoryCache {
+
+    /**
+     * 单条消息在缓存中的固定开销估算（对象头、字段、列表槽位等）
+     */
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final ChatMemoryProperties.HistoryCache config;
+    private final Cache<String, Entry> cache;
+
+    /**
+     * 写入序号：每次 append 在持久化前后各递增一次，加载前后各读取一次，
+     * 用于判断缓存中的数据是否已经包含某次写入的消息
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 缓存的会话尾部
+     *
+     * @param messages 按写入顺序排列的最新消息（不可变）
+     * @param complete 是否已包含该会话的全部消息
+     */
+    public record CachedHistory(List<ChatMessage> messages, boolean complete) {
+    }
+
+    /**
+     * 缓存条目
+     *
+     * @param history 会话尾部
+     * @param start   数据来源（加载或最近一次追加）开始时的写入序号
+     * @param end     数据来源结束时的写入序号
+     */
+    private record Entry(CachedHistory history, long start, long end) {
+    }
+
+    public ConversationHistoryCache(ChatMemoryProperties chatMemoryProperties,
+            ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this.config = chatMemoryProperties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(config.getMaxMemory().toBytes())
+                .weigher((String key, Entry value) -> weigh(value.history()))
+                .expireAfterAccess(config.getExpireAfterAccess())
+                .recordStats()
+                .build();
+        meterRegistryProvider.ifAvailable(
+                registry -> CaffeineCacheMetrics.monitor(registry, cache, "chatHistory"));
+    }
+
+    /**
+     * 是否启用缓存
+     */
+    public boolean isEnabled() {
+        return config.isEnabled() && config.getMaxMessages() > 0;
+    }
+
+    /**
+     * 获取会话的缓存尾部，未命中时通过 loader 加载
+     * <p>
+     * loader 接收需要加载的条数上限，返回按写入顺序排列的最新消息，
+     * 返回条数小于上限即视为已包含完整会话。
+     * </p>
+     *
+     * @param conversationId 复合键 "userId:sessionId"
+     * @param loader         未命中时的加载函数
+     * @return 缓存的会话尾部；缓存未启用时返回 null
+     */
+    public CachedHistory getOrLoad(String conversationId, IntFunction<List<ChatMessage>> loader) {
+        if (!isEnabled()) {
+            return null;
+        }
+        int capacity = config.getMaxMessages();
+        return cache.get(conversationId, key -> {
+            long start = sequence.get();
+            List<ChatMessage> loaded = loader.apply(capacity);
+            return new Entry(tail(loaded, capacity, loaded.size() < capacity), start, sequence.get());
+        }).history();
+    }
+
+    /**
+     * 在缓存中追加消息，同时执行持久化动作
+     * <p>
+     * 持久化在缓存的原子操作之外执行，不会在持有缓存锁时阻塞数据库写入；
+     * 之后只在原子操作内更新窗口。根据写入序号判断缓存中的数据与本次持久化的先后：
+     * 在持久化开始前就已加载完成的追加新消息，在持久化完成后才开始加载的已经包含新消息，
+     * 两者重叠（与并发的加载或同一会话的其他写入交错）时使缓存失效，由下一次读取重新加载，
+     * 保证新消息既不会丢失也不会被重复计入。会话未被缓存时只执行持久化。
+     * </p>
+     *
+     * @param conversationId 复合键 "userId:sessionId"
+     * @param messages       新消息
+     * @param persist        持久化动作
+     */
+    public void append(String conversationId, List<ChatMessage> messages, Runnable persist) {
+        if (!isEnabled()) {
+            persist.run();
+            return;
+        }
+        long before = sequence.incrementAndGet();
+        persist.run();
+        long after = sequence.incrementAndGet();
+        cache.asMap().computeIfPresent(conversationId, (key, current) -> {
+            if (current.start() >= after) {
+                return current;
+            }
+            if (current.end() >= before) {
+                return null;
+            }
+            CachedHistory history = current.history();
+            List<ChatMessage> combined = new ArrayList<>(history.messages().size() + messages.size());
+            combined.addAll(history.messages());
+            combined.addAll(messages);
+            return new Entry(tail(combined, config.getMaxMessages(), history.complete()), current.start(), after);
+        });
+    }
+
+    /**
+     * 使会话缓存失效
+     *
+     * @param conversationId 复合键 "userId:sessionId"
+     */
+    public void invalidate(String conversationId) {
+        cache.invalidate(conversationId);
+    }
+
+    private CachedHistory tail(List<ChatMessage> messages, int capacity, boolean complete) {
+        if (messages.size() <= capacity) {
+            return new CachedHistory(List.copyOf(messages), complete);
+        }
+        return new CachedHistory(List.copyOf(messages.subList(messages.size() - capacity, messages.size())), false);
+    }
+
+    private static int weigh(CachedHistory history) {
+        long bytes = MESSAGE_OVERHEAD_BYTES;
+        for (ChatMessage message : history.messages()) {
+            String content = message.getContent();
+            bytes += MESSAGE_OVERHEAD_BYTES + (content == null ? 0 : 2L * content.length());
+        }
+        return (int) Math.min(Integer.MAX_VALUE, bytes);
+    }
+}
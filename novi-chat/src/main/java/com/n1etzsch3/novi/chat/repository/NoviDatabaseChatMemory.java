@@ -1,8 +1,11 @@
 package com.n1etzsch3.novi.chat.repository;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.n1etzsch3.novi.chat.config.ChatMemoryProperties;
 import com.n1etzsch3.novi.chat.mapper.ChatMemoryMapper;
+import com.n1etzsch3.novi.common.enums.PromptContextType;
 import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import com.n1etzsch3.novi.common.utils.TokenEstimator;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.*;
@@ -11,6 +14,7 @@ import org.springframework.stereotype.Component;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
@@ -23,6 +27,18 @@ import java.util.stream.Collectors;
  * 【重构】：
  * 移除了对 ThreadLocal (LoginUserContext) 的依赖。
  * 现在所有方法都从传入的 conversationId (复合键 "userId:sessionId") 中解析 userId。
+ *
+ * 【滑动窗口】：
+ * 读取历史时只加载最新的 N 条消息，或恰好填满 Token 预算的消息，
+ * 窗口大小由 {@link ChatMemoryProperties} 按 {@link PromptContextType} 配置。
+ *
+ * 【写后缓冲】：
+ * add() 只把消息交给 {@link ChatMessageWriteBehindBuffer} 批量异步落库，
+ * get() 会合并同一会话尚未落库的消息，保证下一轮对话能读到上一轮的内容。
+ *
+ * 【热点会话缓存】：
+ * 会话最新的消息缓存在 {@link ConversationHistoryCache} 中，add() 追加、clear() 失效，
+ * 进行中的会话在首轮之后不再查询历史。
  */
 @Slf4j
 @Component // 注册为 Spring Bean
@@ -30,6 +46,9 @@ import java.util.stream.Collectors;
 public class NoviDatabaseChatMemory implements ChatMemory {
 
     private final ChatMemoryMapper chatMemoryMapper;
+    private final ChatMemoryProperties chatMemoryProperties;
+    private final ChatMessageWriteBehindBuffer writeBehindBuffer;
+    private final ConversationHistoryCache historyCache;
 
     /**
      * 【新增】用于解析复合键的内部类或记录 (Record)
@@ -59,8 +78,14 @@ public class NoviDatabaseChatMemory implements ChatMemory {
         }
     }
 
-    public NoviDatabaseChatMemory(ChatMemoryMapper chatMemoryMapper) {
+    public NoviDatabaseChatMemory(ChatMemoryMapper chatMemoryMapper,
+            ChatMemoryProperties chatMemoryProperties,
+            ChatMessageWriteBehindBuffer writeBehindBuffer,
+            ConversationHistoryCache historyCache) {
         this.chatMemoryMapper = chatMemoryMapper;
+        this.chatMemoryProperties = chatMemoryProperties;
+        this.writeBehindBuffer = writeBehindBuffer;
+        this.historyCache = historyCache;
     }
 
     @Override
@@ -72,42 +97,208 @@ public class NoviDatabaseChatMemory implements ChatMemory {
             return;
         }
 
+        List<ChatMessage> entities = new ArrayList<>(messages.size());
         for (Message message : messages) {
             // 我们只持久化 USER 和 ASSISTANT 的消息
             if (message.getMessageType() == MessageType.USER || message.getMessageType() == MessageType.ASSISTANT) {
                 // 【关键修改】
-                ChatMessage chatMessage = toChatMessageEntity(message, key.userId, key.sessionId);
-                chatMemoryMapper.insert(chatMessage);
+                entities.add(toChatMessageEntity(message, key.userId, key.sessionId));
             }
         }
+        // 交给写后缓冲异步批量落库，不在请求线程上逐条 INSERT；同时追加到热点会话缓存
+        historyCache.append(conversationId, entities,
+                () -> writeBehindBuffer.enqueue(conversationId, entities));
     }
 
+    /**
+     * 获取最新的 lastN 条历史消息
+     * <p>
+     * LIMIT 直接下推到 SQL，按 ID 倒序扫描索引，只取回需要的行。
+     * </p>
+     *
+     * @param conversationId 复合键 "userId:sessionId"
+     * @param lastN          最多返回的条数，小于等于 0 表示返回全部
+     * @return 按时间正序排列的消息列表
+     */
     public List<Message> get(String conversationId, int lastN) {
-        // 【关键修改】
+        return get(conversationId, new ChatMemoryProperties.HistoryWindow(lastN, 0));
+    }
+
+    /**
+     * 按指定上下文类型的窗口配置获取历史消息
+     *
+     * @param conversationId 复合键 "userId:sessionId"
+     * @param contextType    提示词上下文类型
+     * @return 按时间正序排列的消息列表
+     */
+    public List<Message> get(String conversationId, PromptContextType contextType) {
+        return get(conversationId, chatMemoryProperties.windowFor(contextType));
+    }
+
+    /**
+     * 获取完整的会话历史
+     * <p>
+     * 不带上下文类型时不做窗口裁剪，需要窗口时使用 {@link #withContext(PromptContextType)}。
+     * </p>
+     */
+    @Override
+    public List<Message> get(String conversationId) {
+        return get(conversationId, ChatMemoryProperties.HistoryWindow.unbounded());
+    }
+
+    /**
+     * 返回一个绑定了上下文类型的 ChatMemory 视图
+     * <p>
+     * MessageChatMemoryAdvisor 只会调用 {@link ChatMemory#get(String)}，
+     * 通过该视图可以让不同场景使用各自的历史窗口。
+     * </p>
+     *
+     * @param contextType 提示词上下文类型
+     * @return 读取时使用该上下文窗口的 ChatMemory
+     */
+    public ChatMemory withContext(PromptContextType contextType) {
+        NoviDatabaseChatMemory delegate = this;
+        return new ChatMemory() {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                delegate.add(conversationId, messages);
+            }
+
+            @Override
+            public List<Message> get(String conversationId) {
+                return delegate.get(conversationId, contextType);
+            }
+
+            @Override
+            public void clear(String conversationId) {
+                delegate.clear(conversationId);
+            }
+        };
+    }
+
+    private List<Message> get(String conversationId, ChatMemoryProperties.HistoryWindow window) {
         ParsedKey key = parseCompositeKey(conversationId);
         if (key == null || key.userId == null) {
             log.warn("NoviDatabaseChatMemory.get: 未找到用户ID，返回空列表 (Key: {})", conversationId);
             return Collections.emptyList();
         }
 
-        List<ChatMessage> chatMessages = chatMemoryMapper.selectList(
-                new LambdaQueryWrapper<ChatMessage>()
-                        .eq(ChatMessage::getUserId, key.userId)
-                        .eq(ChatMessage::getSessionId, key.sessionId)
-                        .orderByAsc(ChatMessage::getId));
+        // 优先使用热点会话缓存，缓存的尾部不足以覆盖窗口时才回源数据库
+        if (!window.isUnbounded()) {
+            ConversationHistoryCache.CachedHistory cached = historyCache.getOrLoad(conversationId,
+                    capacity -> writeBehindBuffer.readThrough(conversationId, () -> loadLatest(key, capacity)));
+            if (cached != null) {
+                List<ChatMessage> trimmed = trimToWindow(cached.messages(), window);
+                boolean covered = cached.complete()
+                        || trimmed.size() < cached.messages().size()
+                        || (window.getMaxMessages() > 0 && trimmed.size() >= window.getMaxMessages());
+                if (covered) {
+                    return trimmed.stream()
+                            .map(this::toSpringAiMessage)
+                            .collect(Collectors.toList());
+                }
+            }
+        }
 
-        List<Message> springMessages = chatMessages.stream()
+        // 合并写后缓冲中尚未落库的消息后，再按窗口裁剪一次
+        List<ChatMessage> messages = writeBehindBuffer.readThrough(conversationId, () -> loadWindow(key, window));
+        return trimToWindow(messages, window).stream()
                 .map(this::toSpringAiMessage)
                 .collect(Collectors.toList());
+    }
 
-        if (lastN > 0 && springMessages.size() > lastN) {
-            return springMessages.subList(springMessages.size() - lastN, springMessages.size());
+    /**
+     * 从数据库加载最新的 limit 条消息
+     *
+     * @return 按 ID 正序排列的消息实体
+     */
+    private List<ChatMessage> loadLatest(ParsedKey key, int limit) {
+        List<ChatMessage> newestFirst = new ArrayList<>(
+                chatMemoryMapper.selectLatest(key.userId, key.sessionId, null, limit));
+        Collections.reverse(newestFirst);
+        return newestFirst;
+    }
+
+    /**
+     * 按窗口配置从数据库加载消息
+     * <p>
+     * 从最新一条消息开始倒序读取，直到达到条数上限或 Token 预算。
+     * 只配置了 Token 预算时按 pageSize 分页读取，预算用完立即停止，不会多读整段历史。
+     * 至少保留最新的一条消息，即使它本身就超出了预算。
+     * </p>
+     *
+     * @return 按 ID 正序排列的消息实体
+     */
+    private List<ChatMessage> loadWindow(ParsedKey key, ChatMemoryProperties.HistoryWindow window) {
+        if (window.isUnbounded()) {
+            return chatMemoryMapper.selectList(
+                    new LambdaQueryWrapper<ChatMessage>()
+                            .eq(ChatMessage::getUserId, key.userId)
+                            .eq(ChatMessage::getSessionId, key.sessionId)
+                            .orderByAsc(ChatMessage::getId));
         }
-        return springMessages;
+
+        int maxMessages = window.getMaxMessages();
+        int maxTokens = window.getMaxTokens();
+        int pageSize = maxMessages > 0 ? maxMessages : Math.max(1, chatMemoryProperties.getPageSize());
+
+        List<ChatMessage> newestFirst = new ArrayList<>();
+        int usedTokens = 0;
+        Long beforeId = null;
+
+        while (true) {
+            int limit = maxMessages > 0 ? Math.min(pageSize, maxMessages - newestFirst.size()) : pageSize;
+            List<ChatMessage> page = chatMemoryMapper.selectLatest(key.userId, key.sessionId, beforeId, limit);
+
+            for (ChatMessage message : page) {
+                if (maxTokens > 0) {
+                    int tokens = TokenEstimator.estimateMessage(message.getContent());
+                    if (usedTokens + tokens > maxTokens && !newestFirst.isEmpty()) {
+                        Collections.reverse(newestFirst);
+                        return newestFirst;
+                    }
+                    usedTokens += tokens;
+                }
+                newestFirst.add(message);
+            }
+
+            boolean exhausted = page.size() < limit;
+            boolean full = maxMessages > 0 && newestFirst.size() >= maxMessages;
+            if (exhausted || full) {
+                break;
+            }
+            beforeId = page.get(page.size() - 1).getId();
+        }
+
+        Collections.reverse(newestFirst);
+        return newestFirst;
     }
 
-    public List<Message> get(String conversationId) {
-        return get(conversationId, -1);
+    /**
+     * 对合并后的消息重新应用窗口限制（条数上限与 Token 预算），保留最新的部分
+     */
+    private List<ChatMessage> trimToWindow(List<ChatMessage> messages, ChatMemoryProperties.HistoryWindow window) {
+        if (window.isUnbounded()) {
+            return messages;
+        }
+        int maxMessages = window.getMaxMessages();
+        int maxTokens = window.getMaxTokens();
+        int from = messages.size();
+        int usedTokens = 0;
+        while (from > 0) {
+            if (maxMessages > 0 && messages.size() - from >= maxMessages) {
+                break;
+            }
+            if (maxTokens > 0) {
+                int tokens = TokenEstimator.estimateMessage(messages.get(from - 1).getContent());
+                if (usedTokens + tokens > maxTokens && from < messages.size()) {
+                    break;
+                }
+                usedTokens += tokens;
+            }
+            from--;
+        }
+        return from == 0 ? messages : messages.subList(from, messages.size());
     }
 
     @Override
@@ -118,10 +309,13 @@ public class NoviDatabaseChatMemory implements ChatMemory {
             log.warn("NoviDatabaseChatMemory.clear: 未找到用户ID，操作中止 (Key: {})", conversationId);
             return;
         }
+        // 先丢弃尚未落库的消息，避免删除后又被后台线程写回
+        writeBehindBuffer.discard(conversationId);
         chatMemoryMapper.delete(
                 new LambdaQueryWrapper<ChatMessage>()
                         .eq(ChatMessage::getUserId, key.userId)
                         .eq(ChatMessage::getSessionId, key.sessionId));
+        historyCache.invalidate(conversationId);
     }
 
     // --- 辅助转换方法 ---
@@ -0,0 +1,198 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.n1etzsch3.novi.aiconfig.service.AiPromptConfigService;
+import com.n1etzsch3.novi.aiconfig.store.AiPromptConfigStore;
+import com.n1etzsch3.novi.common.pojo.entity.UserAccount;
+import com.n1etzsch3.novi.user.event.UserProfileChangedEvent;
+import com.n1etzsch3.novi.user.mapper.UserAccountMapper;
+import com.n1etzsch3.novi.user.pojo.dto.NoviPersonaSettings;
+import com.n1etzsch3.novi.user.service.UserPreferenceService;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**
+ * 用户人设上下文缓存
+ * <p>
+ * 按用户ID缓存构建好友聊天系统提示词所需的全部用户资料：称呼、解析后的人设设置，
+ * 以及预先渲染好的性格/语气/语言描述。命中时一轮对话不再读取 user_account 表，
+ * 也不再重复解析 preferences JSON。
+ * </p>
+ * <p>
+ * 用户修改资料或偏好后通过 {@link UserProfileChangedEvent} 失效对应条目；
+ * 提示词配置版本变化时只重新渲染描述文本，不重新查询用户资料。
+ * 写入后的过期时间作为多实例部署下的兜底。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class PersonaContextCache {
+
+    private static final String DEFAULT_NICKNAME = "老铁";
+
+    private final UserAccountMapper userAccountMapper;
+    private final UserPreferenceService userPreferenceService;
+    private final AiPromptConfigService aiPromptConfigService;
+    private final AiPromptConfigStore aiPromptConfigStore;
+    private final Cache<Long, PersonaContext> cache;
+
+    /**
+     * 用户人设上下文
+     *
+     * @param nickname        AI 对用户的称呼（已按 偏好称呼 > 昵称 > 默认 的顺序确定）
+     * @param settings        解析后的人设设置
+     * @param personality     渲染好的性格/语气/语言描述
+     * @param promptVersion   渲染描述时提示词配置的版本
+     */
+    public record PersonaContext(String nickname, NoviPersonaSettings settings, String personality,
+            long promptVersion) {
+    }
+
+    public PersonaContextCache(UserAccountMapper userAccountMapper,
+            UserPreferenceService userPreferenceService,
+            AiPromptConfigService aiPromptConfigService,
+            AiPromptConfigStore aiPromptConfigStore,
+            ObjectProvider<MeterRegistry> meterRegistryProvider,
+            @Value("${novi.chat.persona.cache-size:10000}") long cacheSize,
+            @Value("${novi.chat.persona.expire-after-write:30m}") Duration expireAfterWrite) {
+        this.userAccountMapper = userAccountMapper;
+        this.userPreferenceService = userPreferenceService;
+        this.aiPromptConfigService = aiPromptConfigService;
+        this.aiPromptConfigStore = aiPromptConfigStore;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(cacheSize)
+                .expireAfterWrite(expireAfterWrite)
+                .recordStats()
+                .build();
+        meterRegistryProvider.ifAvailable(
+                registry -> CaffeineCacheMetrics.monitor(registry, cache, "personaContext"));
+    }
+
+    /**
+     * 获取用户的人设上下文
+     * <p>
+     * 未命中时以一次只查询昵称和偏好两列的 SELECT 加载；
+     * 提示词配置变化后重新渲染描述文本。
+     * </p>
+     *
+     * @param userId 用户ID
+     * @return 人设上下文
+     */
+    public PersonaContext get(Long userId) {
+        long promptVersion = aiPromptConfigStore.getVersion();
+        PersonaContext context = cache.get(userId, id -> load(id, promptVersion));
+        if (context.promptVersion() != promptVersion) {
+            PersonaContext stale = context;
+            context = cache.asMap().computeIfPresent(userId, (id, current) -> current == stale
+                    ? render(current.nickname(), current.settings(), promptVersion)
+                    : current);
+            if (context == null) {
+                context = cache.get(userId, id -> load(id, promptVersion));
+            }
+        }
+        return context;
+    }
+
+    /**
+     * 使指定用户的缓存失效
+     *
+     * @param userId 用户ID
+     */
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+    }
+
+    /**
+     * 用户资料变更后失效缓存
+     * <p>
+     * 在事务提交后执行，避免提交前的并发读取把旧资料重新写回缓存；
+     * 不在事务中发布的事件立即执行。
+     * </p>
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onUserProfileChanged(UserProfileChangedEvent event) {
+        invalidate(event.userId());
+        log.debug("Persona context invalidated for user {}", event.userId());
+    }
+
+    private PersonaContext load(Long userId, long promptVersion) {
+        UserAccount user = userAccountMapper.selectOne(
+                new LambdaQueryWrapper<UserAccount>()
+                        .select(UserAccount::getNickname, UserAccount::getPreferences)
+                        .eq(UserAccount::getId, userId));
+        NoviPersonaSettings settings = userPreferenceService.parsePersonaSettings(userId,
+                user != null ? user.getPreferences() : null);
+        if (settings == null) {
+            settings = new NoviPersonaSettings();
+        }
+
+        String nickname = StringUtils.hasText(settings.getUserAddressName())
+                ? settings.getUserAddressName()
+                : (user != null && StringUtils.hasText(user.getNickname()) ? user.getNickname() : DEFAULT_NICKNAME);
+        return render(nickname, settings, promptVersion);
+    }
+
+    private PersonaContext render(String nickname, NoviPersonaSettings settings, long promptVersion) {
+        return new PersonaContext(nickname, settings, buildPersonalityDescription(settings), promptVersion);
+    }
+
+    /**
+     * 将结构化的偏好设置转换为 AI 能理解的自然语言描述
+     */
+    private String buildPersonalityDescription(NoviPersonaSettings settings) {
+        StringBuilder desc = new StringBuilder();
+
+        // A. 处理核心性格 (Personality Mode)
+        String mode = settings.getPersonalityMode();
+        // 防止 null
+        if (mode == null)
+            mode = "default";
+
+        // 尝试从数据库获取配置
+        String personalityKey = "personality_" + mode;
+        // 使用 getConfigValue 而不是 getPersonalityDescription，以便区分"未找到"和"默认值"
+        String personalityDesc = aiPromptConfigService.getConfigValue(personalityKey);
+
+        if (personalityDesc == null) {
+            // 如果数据库中没有找到对应的 Key
+            if ("default".equals(mode)) {
+                // 如果是默认模式但没配置，使用硬编码兜底
+                personalityDesc = "随性自然，说话直爽。";
+            } else {
+                // 否则，认为 mode 本身就是用户自定义的 Prompt
+                personalityDesc = mode;
+            }
+        }
+        desc.append(personalityDesc);
+
+        // B. 处理语气风格 (Tone Style)
+        String tone = settings.getToneStyle();
+        if (tone != null) {
+            String toneKey = "tone_" + tone;
+            desc.append(" ").append(aiPromptConfigService.getToneStyleDescription(toneKey));
+        }
+
+        // C. 处理语言限制 (Language)
+        String lang = settings.getLanguage();
+        if ("zh_CN".equals(lang)) {
+            desc.append(" 请全程强制使用中文回复，即使我用英文问你。");
+        } else if ("en_US".equals(lang)) {
+            desc.append("必须全程英文回答！即便我用中文问你，你的回复也必须是英文！严禁出现中文！");
+        }
+
+        return desc.toString();
+    }
+}
@@ -26,6 +26,9 @@ public interface ChatService {
 
     /**
      * 处理流式聊天消息。
+     * <p>
+     * 返回的流在订阅后才开始准备会话，其中的数据库访问不在调用线程上执行。
+     * </p>
      *
      * @param userId  用户 ID。
      * @param request 聊天请求对象。
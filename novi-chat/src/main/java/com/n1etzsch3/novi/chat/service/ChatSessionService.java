@@ -1,5 +1,7 @@
 package com.n1etzsch3.novi.chat.service;
 
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
 import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
 
 import java.util.List;
@@ -7,6 +9,16 @@ import java.util.List;
 public interface ChatSessionService {
     List<ChatSession> getUserSessions(Long userId);
 
+    /**
+     * 按最后活跃时间倒序分页获取会话列表（只包含 id、标题和时间）
+     */
+    CursorPage<ChatSession> getUserSessionsPage(Long userId, String cursor, Integer limit);
+
+    /**
+     * 从最新一条开始向前分页获取会话消息，每页内按时间正序排列
+     */
+    CursorPage<ChatMessage> getSessionMessagesPage(Long userId, String sessionId, String cursor, Integer limit);
+
     void validateSessionOwner(String sessionId, Long userId);
 
     void deleteSession(String sessionId, Long userId);
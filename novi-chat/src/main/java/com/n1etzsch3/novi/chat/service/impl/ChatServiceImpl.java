@@ -1,38 +1,46 @@
 package com.n1etzsch3.novi.chat.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.n1etzsch3.novi.chat.mapper.ChatSessionMapper;
-import com.n1etzsch3.novi.user.mapper.UserAccountMapper;
 import com.n1etzsch3.novi.chat.pojo.dto.ChatRequest;
 import com.n1etzsch3.novi.chat.pojo.dto.ChatResponse;
-import com.n1etzsch3.novi.user.pojo.dto.NoviPersonaSettings;
+import com.n1etzsch3.novi.common.enums.PromptContextType;
 import com.n1etzsch3.novi.common.pojo.dto.StreamEvent;
+import com.n1etzsch3.novi.common.pojo.entity.AiModelConfig;
 import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
-import com.n1etzsch3.novi.common.pojo.entity.UserAccount;
+import com.n1etzsch3.novi.common.utils.StreamEventJsonWriter;
+import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
 import com.n1etzsch3.novi.aiconfig.service.AiPromptConfigService;
+import com.n1etzsch3.novi.aiconfig.template.CompiledPromptTemplate;
 import com.n1etzsch3.novi.aiconfig.factory.DynamicChatModelFactory;
+import com.n1etzsch3.novi.chat.repository.ChatSessionTouchBuffer;
+import com.n1etzsch3.novi.chat.repository.NoviDatabaseChatMemory;
+import com.n1etzsch3.novi.chat.repository.PersonaContextCache;
 import com.n1etzsch3.novi.chat.service.ChatService;
-import com.n1etzsch3.novi.user.service.UserPreferenceService;
+import com.n1etzsch3.novi.chat.stream.StreamEventCoalescer;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.memory.ChatMemory;
 import org.springframework.ai.chat.messages.Message;
-import org.springframework.ai.chat.prompt.SystemPromptTemplate;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.client.advisor.MessageChatMemoryAdvisor;
 
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 import org.springframework.util.StringUtils;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.TextStyle;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * 聊天服务实现类
@@ -48,47 +56,142 @@ import java.util.UUID;
 @Slf4j
 public class ChatServiceImpl implements ChatService {
 
+    private static final String RESTORED_SESSION_TITLE = "Restored Session";
+
     private final ChatClient chatClient;
     private final DynamicChatModelFactory dynamicChatModelFactory;
-    private final ObjectMapper objectMapper;
+    private final AiModelConfigService aiModelConfigService;
     private final ChatSessionMapper chatSessionMapper;
-    private final UserAccountMapper userAccountMapper;
-    private final UserPreferenceService userPreferenceService;
+    private final PersonaContextCache personaContextCache;
     private final AiPromptConfigService aiPromptConfigService;
-    private final ChatMemory chatMemory;
+    private final NoviDatabaseChatMemory chatMemory;
+    private final StreamEventCoalescer streamEventCoalescer;
+    private final Scheduler chatBlockingScheduler;
+    private final ChatSessionTouchBuffer sessionTouchBuffer;
 
     public ChatServiceImpl(
             ChatClient chatClient,
             DynamicChatModelFactory dynamicChatModelFactory,
-            ObjectMapper objectMapper,
+            AiModelConfigService aiModelConfigService,
             ChatSessionMapper chatSessionMapper,
-            UserAccountMapper userAccountMapper,
-            UserPreferenceService userPreferenceService,
+            PersonaContextCache personaContextCache,
             AiPromptConfigService aiPromptConfigService,
-            ChatMemory chatMemory) {
+            NoviDatabaseChatMemory chatMemory,
+            StreamEventCoalescer streamEventCoalescer,
+            Scheduler chatBlockingScheduler,
+            ChatSessionTouchBuffer sessionTouchBuffer) {
         this.chatClient = chatClient;
         this.dynamicChatModelFactory = dynamicChatModelFactory;
-        this.objectMapper = objectMapper;
+        this.aiModelConfigService = aiModelConfigService;
         this.chatSessionMapper = chatSessionMapper;
-        this.userAccountMapper = userAccountMapper;
-        this.userPreferenceService = userPreferenceService;
+        this.personaContextCache = personaContextCache;
         this.aiPromptConfigService = aiPromptConfigService;
         this.chatMemory = chatMemory;
+        this.streamEventCoalescer = streamEventCoalescer;
+        this.chatBlockingScheduler = chatBlockingScheduler;
+        this.sessionTouchBuffer = sessionTouchBuffer;
     }
 
+    /**
+     * 按 ai_model_config 主键缓存的 ChatClient，模型实例被重建后随之重建
+     */
+    private final Map<Long, ModelClient> modelClients = new ConcurrentHashMap<>();
+
+    private record ModelClient(ChatModel chatModel, ChatClient chatClient) {
+    }
+
+    /**
+     * 每个会话最后一次尚未完成的异步历史写入，同一会话的写入依次串在其后执行
+     */
+    private final Map<String, CompletableFuture<Void>> pendingWrites = new ConcurrentHashMap<>();
+
     /**
      * 根据请求的模型名称获取对应的 ChatClient
      * <p>
-     * 如果请求指定了模型，则创建一个使用该模型的临时 ChatClient；
-     * 否则使用默认的 chatClient（使用数据库中的激活模型）。
+     * 如果请求指定了已配置的模型，则复用该模型对应的 ChatClient（按 ai_model_config 主键缓存，
+     * 底层 ChatModel 因配置变化被重建时同步重建）；
+     * 未指定或名称未配置时使用默认的 chatClient（使用数据库中的激活模型），
+     * 客户端传入的任意名称不会进入缓存。
      * </p>
      */
     private ChatClient getChatClientForModel(String modelName) {
         if (modelName == null || modelName.isBlank()) {
             return chatClient;
         }
-        log.info("Using per-request model: {}", modelName);
-        return ChatClient.builder(dynamicChatModelFactory.createChatModel(modelName)).build();
+        AiModelConfig config = aiModelConfigService.getModelByName(modelName);
+        if (config == null) {
+            log.warn("Requested model '{}' not found, falling back to active model", modelName);
+            return chatClient;
+        }
+        log.info("Using per-request model: {}", config.getModelName());
+        ChatModel chatModel = dynamicChatModelFactory.createChatModel(config.getModelName());
+        ModelClient cached = modelClients.get(config.getId());
+        if (cached != null && cached.chatModel() == chatModel) {
+            return cached.chatClient();
+        }
+        ModelClient created = new ModelClient(chatModel, ChatClient.builder(chatModel).build());
+        modelClients.put(config.getId(), created);
+        return created.chatClient();
+    }
+
+    /**
+     * 辅助方法：构建聊天记忆 Advisor。
+     * <p>
+     * 聊天场景使用好友聊天上下文对应的历史窗口，只加载最近的消息。
+     * 历史加载在阻塞调度器上执行；流式调用的历史写入发生在模型流结束的线程上（通常是 HTTP 客户端的事件循环），
+     * 因此同样转交给阻塞调度器执行。
+     * </p>
+     *
+     * @param compositeKey  复合键 "userId:sessionId"
+     * @param offloadWrites 是否将历史写入转交给阻塞调度器
+     */
+    private MessageChatMemoryAdvisor buildMemoryAdvisor(String compositeKey, boolean offloadWrites) {
+        ChatMemory memory = chatMemory.withContext(PromptContextType.FRIENDLY_CHAT);
+        return MessageChatMemoryAdvisor
+                .builder(offloadWrites ? offloadWrites(memory) : memory)
+                .conversationId(compositeKey)
+                .scheduler(chatBlockingScheduler)
+                .build();
+    }
+
+    /**
+     * 包装聊天记忆，使写入在阻塞调度器上异步执行
+     * <p>
+     * 同一会话的写入按提交顺序串行执行：用户消息和助手回复分别在不同线程上提交，
+     * 直接各自调度到多线程的阻塞调度器上可能乱序落库。读取前等待该会话尚未完成的写入。
+     * </p>
+     */
+    private ChatMemory offloadWrites(ChatMemory memory) {
+        return new ChatMemory() {
+            @Override
+            public void add(String conversationId, List<Message> messages) {
+                Runnable write = () -> {
+                    try {
+                        memory.add(conversationId, messages);
+                    } catch (RuntimeException e) {
+                        log.error("Failed to save chat history, Session: {}", conversationId, e);
+                    }
+                };
+                CompletableFuture<Void> next = pendingWrites.compute(conversationId, (key, tail) -> tail == null
+                        ? CompletableFuture.runAsync(write, chatBlockingScheduler::schedule)
+                        : tail.thenRunAsync(write, chatBlockingScheduler::schedule));
+                next.whenComplete((v, ex) -> pendingWrites.remove(conversationId, next));
+            }
+
+            @Override
+            public List<Message> get(String conversationId) {
+                CompletableFuture<Void> pending = pendingWrites.get(conversationId);
+                if (pending != null) {
+                    pending.join();
+                }
+                return memory.get(conversationId);
+            }
+
+            @Override
+            public void clear(String conversationId) {
+                memory.clear(conversationId);
+            }
+        };
     }
 
     /**
@@ -103,11 +206,16 @@ public class ChatServiceImpl implements ChatService {
 
     /**
      * 辅助方法：获取或创建聊天会话。
+     * <p>
+     * 已有会话只刷新活跃时间：本节点最近确认过的会话在内存中合并后定时批量写回，
+     * 其余情况以一条 upsert 刷新，会话不存在时直接重建。
+     * </p>
      */
     private SessionInfo getOrCreateSession(Long userId, String requestedSessionId, String messageContent) {
         boolean isNewSession = !StringUtils.hasText(requestedSessionId);
         String finalSessionId = isNewSession ? UUID.randomUUID().toString() : requestedSessionId;
         String finalTitle = null;
+        LocalDateTime now = LocalDateTime.now();
 
         if (isNewSession) {
             ChatSession session = new ChatSession();
@@ -117,28 +225,14 @@ public class ChatServiceImpl implements ChatService {
                     ? messageContent.substring(0, 20) + "..."
                     : messageContent;
             session.setTitle(finalTitle);
-            session.setCreatedAt(LocalDateTime.now());
-            session.setUpdatedAt(LocalDateTime.now());
+            session.setCreatedAt(now);
+            session.setUpdatedAt(now);
             chatSessionMapper.insert(session);
+            sessionTouchBuffer.register(finalSessionId);
             log.info("Created new session (DB): {}, Title: {}", finalSessionId, finalTitle);
-        } else {
-            int rows = chatSessionMapper.update(null,
-                    new LambdaUpdateWrapper<ChatSession>()
-                            .eq(ChatSession::getId, finalSessionId)
-                            .set(ChatSession::getUpdatedAt, LocalDateTime.now()));
-            if (rows == 0) {
-                log.warn("Session {} not found in DB, recreating.", finalSessionId);
-                finalTitle = "Restored Session";
-                ChatSession session = new ChatSession();
-                session.setId(finalSessionId);
-                session.setUserId(userId);
-                session.setTitle(finalTitle);
-                session.setCreatedAt(LocalDateTime.now());
-                session.setUpdatedAt(LocalDateTime.now());
-                chatSessionMapper.insert(session);
-            } else {
-                finalTitle = null;
-            }
+        } else if (sessionTouchBuffer.touch(userId, finalSessionId, RESTORED_SESSION_TITLE, now)) {
+            log.warn("Session {} not found in DB, recreated.", finalSessionId);
+            finalTitle = RESTORED_SESSION_TITLE;
         }
         return new SessionInfo(finalSessionId, finalTitle);
     }
@@ -162,7 +256,7 @@ public class ChatServiceImpl implements ChatService {
         String AIResponse = clientToUse.prompt()
                 .messages(systemMessage)
                 .user(userMessage)
-                .advisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId(compositeKey).build())
+                .advisors(buildMemoryAdvisor(compositeKey, false))
                 .call()
                 .content();
 
@@ -176,59 +270,64 @@ public class ChatServiceImpl implements ChatService {
     public Flux<String> handleStreamMessage(Long userId, ChatRequest request) {
         String userMessage = request.getMessage();
 
-        // 1. 准备系统消息
-        Message systemMessage = buildSystemMessage(userId, userMessage);
-
-        // 2. 获取会话
-        SessionInfo sessionInfo = getOrCreateSession(userId, request.getSessionId(), userMessage);
-        String sessionIdToUse = sessionInfo.sessionId();
-        String compositeKey = createCompositeKey(userId, sessionIdToUse);
+        // 1. 系统消息、会话与 ChatClient 的准备都涉及数据库访问，在阻塞调度器上执行，不占用 Servlet 线程
+        return Mono.fromCallable(() -> prepareStream(userId, request))
+                .subscribeOn(chatBlockingScheduler)
+                .flatMapMany(stream -> {
+                    String sessionIdToUse = stream.sessionInfo().sessionId();
+
+                    // 2. 创建元数据事件
+                    StreamEvent metadataEvent = StreamEvent.metadata(sessionIdToUse, stream.sessionInfo().title());
+                    Flux<StreamEvent> metadataStream = Flux.just(metadataEvent);
+
+                    // 3. AI 内容流 - 注入系统消息
+                    Flux<StreamEvent> contentStream = stream.chatClient().prompt()
+                            .messages(stream.systemMessage())
+                            .user(userMessage)
+                            .advisors(buildMemoryAdvisor(stream.compositeKey(), true))
+                            .stream()
+                            .chatResponse()
+                            .<StreamEvent>handle((chatResponse, sink) -> {
+                                if (chatResponse.getResults().isEmpty()) {
+                                    return; // Skip empty results
+                                }
+                                org.springframework.ai.chat.model.Generation generation = chatResponse.getResult();
+                                Object reasoningObj = generation.getMetadata().get("reasoning_content");
+                                String reasoning = reasoningObj instanceof String ? (String) reasoningObj : null;
+
+                                if (StringUtils.hasText(reasoning)) {
+                                    sink.next(new StreamEvent("REASONING", null, reasoning, null, null));
+                                } else {
+                                    String content = generation.getOutput().getText();
+                                    if (StringUtils.hasText(content)) {
+                                        sink.next(StreamEvent.content(content));
+                                    }
+                                    // If no content, just don't emit anything (skip)
+                                }
+                            });
+
+                    // 4. 合并相邻的细碎增量（首个增量立即下发），与元数据一起输出
+                    return Flux.concat(metadataStream, streamEventCoalescer.coalesce(contentStream))
+                            .doOnComplete(() -> log.info("Stream response completed, Session: {}", sessionIdToUse));
+                })
+                // 5. 固定骨架直接拼接，避免每个增量都走 ObjectMapper 的反射序列化
+                .map(StreamEventJsonWriter::write)
+                .doOnError(e -> log.error("Stream processing error, User: {}", userId, e));
+    }
 
-        // 3. 创建元数据事件
-        StreamEvent metadataEvent = StreamEvent.metadata(sessionIdToUse, sessionInfo.title());
-        Flux<StreamEvent> metadataStream = Flux.just(metadataEvent);
+    private record StreamContext(SessionInfo sessionInfo, String compositeKey, Message systemMessage,
+            ChatClient chatClient) {
+    }
 
-        // 4. 获取要使用的 ChatClient（支持请求指定模型）
+    /**
+     * 流式调用的准备工作：构建系统消息、获取或创建会话、选择 ChatClient（均可能访问数据库）
+     */
+    private StreamContext prepareStream(Long userId, ChatRequest request) {
+        Message systemMessage = buildSystemMessage(userId, request.getMessage());
+        SessionInfo sessionInfo = getOrCreateSession(userId, request.getSessionId(), request.getMessage());
+        String compositeKey = createCompositeKey(userId, sessionInfo.sessionId());
         ChatClient clientToUse = getChatClientForModel(request.getModel());
-
-        // 5. AI 内容流 - 注入系统消息
-        Flux<StreamEvent> contentStream = clientToUse.prompt()
-                .messages(systemMessage)
-                .user(userMessage)
-                .advisors(MessageChatMemoryAdvisor.builder(chatMemory).conversationId(compositeKey).build())
-                .stream()
-                .chatResponse()
-                .<StreamEvent>handle((chatResponse, sink) -> {
-                    if (chatResponse.getResults().isEmpty()) {
-                        return; // Skip empty results
-                    }
-                    org.springframework.ai.chat.model.Generation generation = chatResponse.getResult();
-                    Object reasoningObj = generation.getMetadata().get("reasoning_content");
-                    String reasoning = reasoningObj instanceof String ? (String) reasoningObj : null;
-
-                    if (StringUtils.hasText(reasoning)) {
-                        sink.next(new StreamEvent("REASONING", null, reasoning, null, null));
-                    } else {
-                        String content = generation.getOutput().getText();
-                        if (StringUtils.hasText(content)) {
-                            sink.next(StreamEvent.content(content));
-                        }
-                        // If no content, just don't emit anything (skip)
-                    }
-                });
-
-        // 5. 合并并序列化
-        return Flux.concat(metadataStream, contentStream)
-                .<String>handle((event, sink) -> {
-                    try {
-                        sink.next(objectMapper.writeValueAsString(event));
-                    } catch (JsonProcessingException e) {
-                        log.error("Serialization failed", e);
-                        sink.error(new RuntimeException("Stream serialization error", e));
-                    }
-                })
-                .doOnError(e -> log.error("Stream processing error, User: {}", userId, e))
-                .doOnComplete(() -> log.info("Stream response completed, Session: {}", sessionIdToUse));
+        return new StreamContext(sessionInfo, compositeKey, systemMessage, clientToUse);
     }
 
     /**
@@ -237,7 +336,7 @@ public class ChatServiceImpl implements ChatService {
      * 默认使用好友聊天上下文
      */
     private Message buildSystemMessage(Long userId, String userMessage) {
-        return buildSystemMessage(userId, userMessage, com.n1etzsch3.novi.common.enums.PromptContextType.FRIENDLY_CHAT);
+        return buildSystemMessage(userId, userMessage, PromptContextType.FRIENDLY_CHAT);
     }
 
     /**
@@ -250,30 +349,18 @@ public class ChatServiceImpl implements ChatService {
      * @return 构建好的系统消息
      */
     private Message buildSystemMessage(Long userId, String userMessage,
-            com.n1etzsch3.novi.common.enums.PromptContextType contextType) {
-        // 1. 获取用户信息
-        UserAccount user = userAccountMapper.selectById(userId);
-
-        // 2. 根据上下文类型获取对应的系统提示词模板
-        String systemPromptTemplateStr = aiPromptConfigService.getSystemPromptByContext(contextType);
+            PromptContextType contextType) {
+        // 1. 根据上下文类型获取对应的系统提示词模板（预编译，按配置版本缓存）
+        CompiledPromptTemplate systemTemplate = aiPromptConfigService.getCompiledSystemPrompt(contextType);
         log.info("Using {} context for user {}", contextType.getDescription(), userId);
 
-        // 3. 如果是好友聊天上下文，需要构建个性化设置
-        if (contextType == com.n1etzsch3.novi.common.enums.PromptContextType.FRIENDLY_CHAT) {
-            // 获取用户偏好
-            NoviPersonaSettings settings = userPreferenceService.getPersonaSettings(userId);
-            if (settings == null) {
-                settings = new NoviPersonaSettings(); // 兜底
-            }
-
-            // 确定称呼
-            String nickname = StringUtils.hasText(settings.getUserAddressName())
-                    ? settings.getUserAddressName()
-                    : (StringUtils.hasText(user.getNickname()) ? user.getNickname() : "老铁");
-
-            // 构建自然语言的人设描述
-            String personalityDesc = buildPersonalityDescription(settings);
-            log.info("用户 {} 的最终人设 Prompt: {}", userId, personalityDesc);
+        // 2. 如果是好友聊天上下文，需要构建个性化设置
+        if (contextType == PromptContextType.FRIENDLY_CHAT) {
+            // 称呼与人设描述来自按用户缓存的人设上下文，命中时不读取用户表
+            PersonaContextCache.PersonaContext persona = personaContextCache.get(userId);
+            String nickname = persona.nickname();
+            String personalityDesc = persona.personality();
+            log.debug("用户 {} 的最终人设 Prompt: {}", userId, personalityDesc);
 
             // 获取记忆
             String memories = "（暂无特殊记忆，就像平时一样闲聊）";
@@ -297,7 +384,6 @@ public class ChatServiceImpl implements ChatService {
                 seasonHint = "冬季，天气寒冷";
 
             // 构建并返回 System Message
-            SystemPromptTemplate systemTemplate = new SystemPromptTemplate(systemPromptTemplateStr);
             Map<String, Object> promptVars = Map.of(
                     "nickname", nickname,
                     "personality", personalityDesc,
@@ -307,65 +393,16 @@ public class ChatServiceImpl implements ChatService {
                     "current_date", dateStr + " " + weekStr,
                     "season_hint", seasonHint);
 
-            return systemTemplate.createMessage(promptVars);
+            return new SystemMessage(systemTemplate.render(promptVars));
         } else {
             // 专业场景：只填充时间等基本信息
             LocalDateTime now = LocalDateTime.now();
             String timeStr = now.format(DateTimeFormatter.ofPattern("HH:mm"));
 
-            SystemPromptTemplate systemTemplate = new SystemPromptTemplate(systemPromptTemplateStr);
             Map<String, Object> promptVars = Map.of(
                     "current_time", timeStr);
 
-            return systemTemplate.createMessage(promptVars);
+            return new SystemMessage(systemTemplate.render(promptVars));
         }
     }
-
-    /**
-     * 【新增辅助方法】将结构化的偏好设置转换为 AI 能理解的自然语言描述
-     */
-    private String buildPersonalityDescription(NoviPersonaSettings settings) {
-        StringBuilder desc = new StringBuilder();
-
-        // A. 处理核心性格 (Personality Mode)
-        String mode = settings.getPersonalityMode();
-        log.info(mode);
-        // 防止 null
-        if (mode == null)
-            mode = "default";
-
-        // 尝试从数据库获取配置
-        String personalityKey = "personality_" + mode;
-        // 使用 getConfigValue 而不是 getPersonalityDescription，以便区分"未找到"和"默认值"
-        String personalityDesc = aiPromptConfigService.getConfigValue(personalityKey);
-
-        if (personalityDesc == null) {
-            // 如果数据库中没有找到对应的 Key
-            if ("default".equals(mode)) {
-                // 如果是默认模式但没配置，使用硬编码兜底
-                personalityDesc = "随性自然，说话直爽。";
-            } else {
-                // 否则，认为 mode 本身就是用户自定义的 Prompt
-                personalityDesc = mode;
-            }
-        }
-        desc.append(personalityDesc);
-
-        // B. 处理语气风格 (Tone Style)
-        String tone = settings.getToneStyle();
-        if (tone != null) {
-            String toneKey = "tone_" + tone;
-            desc.append(" ").append(aiPromptConfigService.getToneStyleDescription(toneKey));
-        }
-
-        // C. 处理语言限制 (Language)
-        String lang = settings.getLanguage();
-        if ("zh_CN".equals(lang)) {
-            desc.append(" 请全程强制使用中文回复，即使我用英文问你。");
-        } else if ("en_US".equals(lang)) {
-            desc.append("必须全程英文回答！即便我用中文问你，你的回复也必须是英文！严禁出现中文！");
-        }
-
-        return desc.toString();
-    }
-}
\ No newline at end of file
+}
@@ -4,14 +4,23 @@ import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.baomidou.mybatisplus.core.conditions.update.LambdaUpdateWrapper;
 import com.n1etzsch3.novi.common.exception.BusinessException;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.n1etzsch3.novi.chat.mapper.ChatMemoryMapper;
 import com.n1etzsch3.novi.chat.mapper.ChatSessionMapper;
+import com.n1etzsch3.novi.chat.repository.ChatMessageWriteBehindBuffer;
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
 import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
 import com.n1etzsch3.novi.chat.service.ChatSessionService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 /**
  * 聊天会话服务实现类
@@ -25,16 +34,76 @@ import java.util.List;
 public class ChatSessionServiceImpl implements ChatSessionService {
 
     private final ChatSessionMapper chatSessionMapper;
+    private final ChatMemoryMapper chatMemoryMapper;
+    private final ChatMessageWriteBehindBuffer writeBehindBuffer;
 
     @Override
     public List<ChatSession> getUserSessions(Long userId) {
         return chatSessionMapper.selectList(
                 new LambdaQueryWrapper<ChatSession>()
+                        .select(ChatSession::getId, ChatSession::getTitle,
+                                ChatSession::getCreatedAt, ChatSession::getUpdatedAt)
                         .eq(ChatSession::getUserId, userId)
                         .eq(ChatSession::getIsDeleted, 0)
                         .orderByDesc(ChatSession::getUpdatedAt));
     }
 
+    @Override
+    public CursorPage<ChatSession> getUserSessionsPage(Long userId, String cursor, Integer limit) {
+        int pageSize = CursorPage.normalizeLimit(limit);
+        String[] key = CursorPage.decode(cursor, 2);
+
+        // 沿 idx_user_updated (user_id, updated_at[, id]) 倒序扫描，游标为上一页最后一行的 (updated_at, id)。
+        // updated_at 随会话活跃而变化：翻页期间被刷新的会话移到列表最前，本轮翻页中不会再出现
+        // （不会重复，但尚未翻到的会被跳过），客户端回到第一页即可看到；列表按最近活跃排序是有意为之
+        LambdaQueryWrapper<ChatSession> query = new LambdaQueryWrapper<ChatSession>()
+                .select(ChatSession::getId, ChatSession::getTitle,
+                        ChatSession::getCreatedAt, ChatSession::getUpdatedAt)
+                .eq(ChatSession::getUserId, userId)
+                .eq(ChatSession::getIsDeleted, 0);
+        if (key != null) {
+            LocalDateTime updatedAt = CursorPage.parseTime(key[0]);
+            String id = key[1];
+            query.and(w -> w.lt(ChatSession::getUpdatedAt, updatedAt)
+                    .or(o -> o.eq(ChatSession::getUpdatedAt, updatedAt).lt(ChatSession::getId, id)));
+        }
+        query.orderByDesc(ChatSession::getUpdatedAt)
+                .orderByDesc(ChatSession::getId)
+                .last("LIMIT " + (pageSize + 1));
+
+        return CursorPage.of(chatSessionMapper.selectList(query), pageSize,
+                session -> new Object[] { session.getUpdatedAt(), session.getId() });
+    }
+
+    @Override
+    public CursorPage<ChatMessage> getSessionMessagesPage(Long userId, String sessionId, String cursor,
+            Integer limit) {
+        validateSessionOwner(sessionId, userId);
+        int pageSize = CursorPage.normalizeLimit(limit);
+        String[] key = CursorPage.decode(cursor, 1);
+        Long beforeId = key == null ? null : CursorPage.parseId(key[0]);
+
+        // 沿 idx_user_session_id (user_id, session_id, id) 倒序取一页，游标为本页最早一条消息的 ID
+        AtomicBoolean hasMore = new AtomicBoolean();
+        Supplier<List<ChatMessage>> loader = () -> {
+            List<ChatMessage> rows = new ArrayList<>(
+                    chatMemoryMapper.selectLatest(userId, sessionId, beforeId, pageSize + 1));
+            hasMore.set(rows.size() > pageSize);
+            List<ChatMessage> page = new ArrayList<>(rows.subList(0, Math.min(rows.size(), pageSize)));
+            Collections.reverse(page);
+            return page;
+        };
+        // 第一页需要合并写后缓冲中尚未落库的最新消息
+        List<ChatMessage> items = beforeId == null
+                ? writeBehindBuffer.readThrough(userId + ":" + sessionId, loader)
+                : loader.get();
+
+        String nextCursor = hasMore.get() && !items.isEmpty() && items.get(0).getId() != null
+                ? CursorPage.encode(items.get(0).getId())
+                : null;
+        return new CursorPage<>(items, nextCursor, nextCursor != null);
+    }
+
     @Override
     public void validateSessionOwner(String sessionId, Long userId) {
         Long count = chatSessionMapper.selectCount(
@@ -0,0 +1,107 @@
+package com.n1etzsch3.novi.chat.stream;
+
+import com.n1etzsch3.novi.chat.config.ChatStreamProperties;
+import com.n1etzsch3.novi.common.pojo.dto.StreamEvent;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * 流式事件合并器
+ * <p>
+ * 首个事件立即下发，保证首字延迟不变；之后的事件按时间窗口或累积字符数攒批，
+ * 批内相邻的同类 CONTENT / REASONING 增量拼接为一个事件，其余事件及类型切换处保持原有顺序。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Component
+public class StreamEventCoalescer {
+
+    private static final String CONTENT = "CONTENT";
+    private static final String REASONING = "REASONING";
+
+    private final ChatStreamProperties.Coalesce coalesce;
+
+    public StreamEventCoalescer(ChatStreamProperties properties) {
+        this.coalesce = properties.getCoalesce();
+    }
+
+    /**
+     * 合并增量事件流
+     *
+     * @param events 模型增量事件流
+     * @return 合并后的事件流，未启用时原样返回
+     */
+    public Flux<StreamEvent> coalesce(Flux<StreamEvent> events) {
+        if (!coalesce.isEnabled()) {
+            return events;
+        }
+        int maxChars = Math.max(1, coalesce.getMaxChars());
+        return events.switchOnFirst((first, flux) -> {
+            if (!first.hasValue()) {
+                return flux;
+            }
+            // switchOnFirst 会重放首个元素：首个事件单独立即下发，其余攒批合并
+            return Flux.concat(
+                    Flux.just(Objects.requireNonNull(first.get())),
+                    flux.skip(1)
+                            .windowTimeout(Integer.MAX_VALUE, coalesce.getWindow())
+                            .concatMap(window -> bufferByChars(window, maxChars))
+                            .concatMapIterable(StreamEventCoalescer::merge));
+        });
+    }
+
+    /**
+     * 在一个时间窗口内按累积字符数切分批次：达到 maxChars 时立即下发，单个超长增量独自成批
+     */
+    private static Flux<List<StreamEvent>> bufferByChars(Flux<StreamEvent> window, int maxChars) {
+        int[] buffered = {0};
+        return window.bufferUntil(event -> {
+            String content = event.getContent();
+            buffered[0] += content == null ? 0 : content.length();
+            if (buffered[0] < maxChars) {
+                return false;
+            }
+            buffered[0] = 0;
+            return true;
+        });
+    }
+
+    /**
+     * 将一批事件中相邻的同类增量拼接为一个事件
+     */
+    static List<StreamEvent> merge(List<StreamEvent> batch) {
+        List<StreamEvent> merged = new ArrayList<>(2);
+        String type = null;
+        StringBuilder text = null;
+        for (StreamEvent event : batch) {
+            // 没有内容的增量不参与拼接，原样保留
+            boolean delta = event.getContent() != null
+                    && (CONTENT.equals(event.getEventType()) || REASONING.equals(event.getEventType()));
+            if (delta && event.getEventType().equals(type)) {
+                text.append(event.getContent());
+                continue;
+            }
+            if (text != null) {
+                merged.add(new StreamEvent(type, null, text.toString(), null, null));
+                text = null;
+                type = null;
+            }
+            if (delta) {
+                type = event.getEventType();
+                text = new StringBuilder(event.getContent());
+            } else {
+                merged.add(event);
+            }
+        }
+        if (text != null) {
+            merged.add(new StreamEvent(type, null, text.toString(), null, null));
+        }
+        return merged;
+    }
+}
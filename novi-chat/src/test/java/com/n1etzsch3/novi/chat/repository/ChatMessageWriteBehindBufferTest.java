@@ -0,0 +1,123 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.n1etzsch3.novi.chat.config.ChatMemoryProperties;
+import com.n1etzsch3.novi.chat.mapper.ChatMemoryMapper;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+class ChatMessageWriteBehindBufferTest {
+
+    private static final String KEY = "1:s1";
+
+    private final ChatMemoryMapper mapper = mock(ChatMemoryMapper.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicLong ids = new AtomicLong();
+    private ChatMemoryProperties properties;
+    private ChatMessageWriteBehindBuffer buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new ChatMemoryProperties();
+        // 刷写间隔足够长，消息只会在 shutdown 时落库，测试结果确定
+        properties.getWriteBehind().setFlushInterval(Duration.ofHours(1));
+        properties.getWriteBehind().setMaxAttempts(2);
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable(any())).thenReturn(registry);
+        buffer = new ChatMessageWriteBehindBuffer(mapper, properties, provider);
+        buffer.start();
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.builder().userId(1L).sessionId("s1")
+                .role(ChatMessage.MessageRole.USER).content(content).build();
+    }
+
+    @Test
+    void enqueue_PersistsCopiesWithoutTouchingCallerEntities() {
+        doAnswer(inv -> {
+            List<ChatMessage> batch = inv.getArgument(0);
+            batch.forEach(m -> m.setId(ids.incrementAndGet()));
+            return batch.size();
+        }).when(mapper).insertBatch(anyList());
+        ChatMessage original = message("hello");
+
+        buffer.enqueue(KEY, List.of(original));
+        assertEquals(List.of("hello"), contents(buffer.readThrough(KEY, List::of)));
+        buffer.shutdown();
+
+        assertNull(original.getId());
+        verify(mapper).insertBatch(argThat(batch -> batch.size() == 1 && batch.get(0) != original));
+        assertEquals(1, registry.get("novi.chat.memory.flushed").counter().count());
+    }
+
+    @Test
+    void flush_RetriesFailedMessagesInOrderBeforeGivingUp() {
+        when(mapper.insertBatch(anyList())).thenThrow(new RuntimeException("batch"));
+        List<String> inserted = new ArrayList<>();
+        AtomicLong failuresLeft = new AtomicLong(1);
+        when(mapper.insert(any(ChatMessage.class))).thenAnswer(inv -> {
+            ChatMessage m = inv.getArgument(0);
+            if (m.getContent().equals("a") && failuresLeft.getAndDecrement() > 0) {
+                throw new RuntimeException("row");
+            }
+            inserted.add(m.getContent());
+            return 1;
+        });
+
+        buffer.enqueue(KEY, List.of(message("a"), message("b")));
+        buffer.shutdown();
+
+        // a 第一次失败时 b 也被推迟，重试后仍按 a、b 的顺序写入
+        assertEquals(List.of("a", "b"), inserted);
+        InOrder order = inOrder(mapper);
+        order.verify(mapper).insert(argThat((ChatMessage m) -> m.getContent().equals("a")));
+        order.verify(mapper).insert(argThat((ChatMessage m) -> m.getContent().equals("a")));
+        order.verify(mapper).insert(argThat((ChatMessage m) -> m.getContent().equals("b")));
+        assertEquals(0, registry.get("novi.chat.memory.flush.failed").counter().count());
+        assertTrue(buffer.readThrough(KEY, List::of).isEmpty());
+    }
+
+    @Test
+    void flush_DropsMessageAfterMaxAttempts() {
+        when(mapper.insertBatch(anyList())).thenThrow(new RuntimeException("batch"));
+        when(mapper.insert(any(ChatMessage.class))).thenThrow(new RuntimeException("row"));
+
+        buffer.enqueue(KEY, List.of(message("a"), message("b")));
+        buffer.shutdown();
+
+        verify(mapper, times(4)).insert(any(ChatMessage.class));
+        assertEquals(2, registry.get("novi.chat.memory.flush.failed").counter().count());
+        assertTrue(buffer.readThrough(KEY, List::of).isEmpty());
+    }
+
+    @Test
+    void enqueue_AfterShutdownWritesSynchronously() {
+        buffer.shutdown();
+        List<ChatMessage> messages = List.of(message("late"));
+
+        buffer.enqueue(KEY, messages);
+
+        verify(mapper).insertBatch(messages);
+    }
+
+    private static List<String> contents(List<ChatMessage> messages) {
+        return messages.stream().map(ChatMessage::getContent).toList();
+    }
+}
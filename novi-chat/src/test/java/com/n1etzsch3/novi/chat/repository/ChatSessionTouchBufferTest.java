@@ -0,0 +1,98 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.n1etzsch3.novi.chat.mapper.ChatSessionMapper;
+import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class ChatSessionTouchBufferTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 10, 18, 12, 0, 0);
+
+    private final ChatSessionMapper mapper = mock(ChatSessionMapper.class);
+    private ChatSessionTouchBuffer buffer;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ObjectProvider<MeterRegistry> provider = mock(ObjectProvider.class);
+        when(provider.getIfAvailable(any())).thenReturn(new SimpleMeterRegistry());
+        buffer = new ChatSessionTouchBuffer(mapper, provider, true, 500, 1000, Duration.ofMinutes(30));
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<ChatSession> flushed() {
+        ArgumentCaptor<List<ChatSession>> batch = ArgumentCaptor.forClass(List.class);
+        verify(mapper).touchBatch(batch.capture());
+        return batch.getValue();
+    }
+
+    @Test
+    void touch_ExistingSessionIsNotReportedAsRecreatedEvenWithAnUnchangedTimestamp() {
+        when(mapper.existsById("s1")).thenReturn(true);
+
+        assertFalse(buffer.touch(1L, "s1", "Restored Session", T0));
+        // 之后的活跃时间只在内存中合并
+        assertFalse(buffer.touch(1L, "s1", "Restored Session", T0.plusSeconds(5)));
+        assertFalse(buffer.touch(1L, "s1", "Restored Session", T0.plusSeconds(3)));
+
+        verify(mapper, times(1)).existsById("s1");
+        verify(mapper, never()).upsertTouch(any());
+        buffer.flush();
+        List<ChatSession> batch = flushed();
+        assertEquals(1, batch.size());
+        assertEquals(T0.plusSeconds(5), batch.get(0).getUpdatedAt());
+    }
+
+    @Test
+    void touch_MissingSessionIsRecreatedOnce() {
+        when(mapper.existsById("s1")).thenReturn(false);
+
+        assertTrue(buffer.touch(1L, "s1", "Restored Session", T0));
+        assertFalse(buffer.touch(1L, "s1", "Restored Session", T0.plusSeconds(1)));
+
+        ArgumentCaptor<ChatSession> session = ArgumentCaptor.forClass(ChatSession.class);
+        verify(mapper).upsertTouch(session.capture());
+        assertEquals("Restored Session", session.getValue().getTitle());
+        assertEquals(1L, session.getValue().getUserId());
+        assertEquals(T0, session.getValue().getCreatedAt());
+    }
+
+    @Test
+    void touch_RegisteredSessionSkipsTheDatabase() {
+        buffer.register("s1");
+
+        assertFalse(buffer.touch(1L, "s1", "Restored Session", T0));
+
+        verify(mapper, never()).existsById(anyString());
+        verify(mapper, never()).upsertTouch(any());
+    }
+
+    @Test
+    void flush_KeepsTimestampsWhenTheWriteFails() {
+        buffer.register("s1");
+        buffer.touch(1L, "s1", "Restored Session", T0);
+        when(mapper.touchBatch(anyList())).thenThrow(new RuntimeException("down")).thenReturn(1);
+
+        buffer.flush();
+        buffer.flush();
+
+        verify(mapper, times(2)).touchBatch(anyList());
+        buffer.flush();
+        verify(mapper, times(2)).touchBatch(anyList());
+    }
+}
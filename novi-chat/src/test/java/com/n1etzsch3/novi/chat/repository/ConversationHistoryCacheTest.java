@@ -0,0 +1,83 @@
+package com.n1etzsch3.novi.chat.repository;
+
+import com.n1etzsch3.novi.chat.config.ChatMemoryProperties;
+import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+class ConversationHistoryCacheTest {
+
+    private static final String KEY = "1:s1";
+
+    private ConversationHistoryCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ChatMemoryProperties properties = new ChatMemoryProperties();
+        properties.getCache().setMaxMessages(3);
+        cache = new ConversationHistoryCache(properties, mock(ObjectProvider.class));
+    }
+
+    private static ChatMessage message(String content) {
+        return ChatMessage.builder().role(ChatMessage.MessageRole.USER).content(content).build();
+    }
+
+    private static List<String> contents(ConversationHistoryCache.CachedHistory history) {
+        return history.messages().stream().map(ChatMessage::getContent).toList();
+    }
+
+    @Test
+    void append_ExtendsCachedWindowWithoutReloading() {
+        cache.getOrLoad(KEY, limit -> List.of(message("a")));
+        AtomicInteger persisted = new AtomicInteger();
+
+        cache.append(KEY, List.of(message("b"), message("c")), persisted::incrementAndGet);
+        cache.append(KEY, List.of(message("d")), persisted::incrementAndGet);
+
+        ConversationHistoryCache.CachedHistory history = cache.getOrLoad(KEY, limit -> fail("should not reload"));
+        assertEquals(List.of("b", "c", "d"), contents(history));
+        assertFalse(history.complete());
+        assertEquals(2, persisted.get());
+    }
+
+    @Test
+    void append_OnlyPersistsWhenConversationIsNotCached() {
+        AtomicInteger persisted = new AtomicInteger();
+
+        cache.append(KEY, List.of(message("a")), persisted::incrementAndGet);
+
+        assertEquals(1, persisted.get());
+        assertEquals(List.of("x"), contents(cache.getOrLoad(KEY, limit -> List.of(message("x")))));
+    }
+
+    @Test
+    void append_PersistsOutsideTheCacheLockAndNeverDoubleCountsAConcurrentLoad() {
+        List<ChatMessage> table = new ArrayList<>(List.of(message("a")));
+        cache.getOrLoad(KEY, limit -> List.copyOf(table));
+        cache.invalidate(KEY);
+
+        // 持久化期间同一会话被重新加载，加载结果已经包含新消息
+        cache.append(KEY, List.of(message("b")), () -> {
+            table.add(message("b"));
+            cache.getOrLoad(KEY, limit -> List.copyOf(table));
+        });
+
+        AtomicInteger loads = new AtomicInteger();
+        ConversationHistoryCache.CachedHistory history = cache.getOrLoad(KEY, limit -> {
+            loads.incrementAndGet();
+            return List.copyOf(table);
+        });
+        assertEquals(List.of("a", "b"), contents(history));
+        assertEquals(1, loads.get());
+    }
+}
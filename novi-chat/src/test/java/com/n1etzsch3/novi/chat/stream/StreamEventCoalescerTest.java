@@ -0,0 +1,157 @@
+package com.n1etzsch3.novi.chat.stream;
+
+import com.n1etzsch3.novi.chat.config.ChatStreamProperties;
+import com.n1etzsch3.novi.common.pojo.dto.StreamEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.awaitility.Awaitility.await;
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamEventCoalescerTest {
+
+    private final Sinks.Many<StreamEvent> upstream = Sinks.many().unicast().onBackpressureBuffer();
+    private final List<StreamEvent> received = new CopyOnWriteArrayList<>();
+    private final AtomicBoolean completed = new AtomicBoolean();
+    private Disposable subscription;
+
+    @AfterEach
+    void tearDown() {
+        if (subscription != null) {
+            subscription.dispose();
+        }
+    }
+
+    private void subscribe(Duration window, int maxChars) {
+        ChatStreamProperties properties = new ChatStreamProperties();
+        properties.getCoalesce().setWindow(window);
+        properties.getCoalesce().setMaxChars(maxChars);
+        subscription = new StreamEventCoalescer(properties).coalesce(upstream.asFlux())
+                .subscribe(received::add, e -> fail(e), () -> completed.set(true));
+    }
+
+    private void emit(StreamEvent... events) {
+        for (StreamEvent event : events) {
+            upstream.tryEmitNext(event).orThrow();
+        }
+    }
+
+    private static StreamEvent reasoning(String content) {
+        return new StreamEvent("REASONING", null, content, null, null);
+    }
+
+    private static List<String> describe(List<StreamEvent> events) {
+        return events.stream().map(e -> e.getEventType() + ":" + e.getContent()).toList();
+    }
+
+    @Test
+    void coalesce_FirstEventBypassesTheWindow() {
+        subscribe(Duration.ofHours(1), 32);
+
+        emit(StreamEvent.content("a"));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> received.size() == 1);
+        emit(StreamEvent.content("b"));
+        assertEquals(List.of("CONTENT:a"), describe(received));
+    }
+
+    @Test
+    void coalesce_FlushesWhenMaxCharsIsReached() {
+        subscribe(Duration.ofHours(1), 4);
+
+        emit(StreamEvent.content("a"), StreamEvent.content("bc"), StreamEvent.content("de"),
+                StreamEvent.content("f"));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> received.size() == 2);
+        assertEquals(List.of("CONTENT:a", "CONTENT:bcde"), describe(received));
+        assertFalse(completed.get());
+    }
+
+    @Test
+    void coalesce_FlushesAnOversizedDeltaOnItsOwn() {
+        subscribe(Duration.ofHours(1), 4);
+
+        emit(StreamEvent.content("a"), StreamEvent.content("一段很长的增量"), StreamEvent.content("b"));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> received.size() == 2);
+        assertEquals(List.of("CONTENT:a", "CONTENT:一段很长的增量"), describe(received));
+        assertFalse(completed.get());
+    }
+
+    @Test
+    void coalesce_KeepsManySmallDeltasWithinTheCharBudget() {
+        subscribe(Duration.ofHours(1), 128);
+
+        for (int i = 0; i < 50; i++) {
+            emit(StreamEvent.content(i == 0 ? "首" : "x"));
+        }
+        upstream.tryEmitComplete().orThrow();
+
+        await().atMost(Duration.ofSeconds(2)).untilTrue(completed);
+        assertEquals(List.of("CONTENT:首", "CONTENT:" + "x".repeat(49)), describe(received));
+    }
+
+    @Test
+    void coalesce_FlushesWhenTheWindowElapses() {
+        subscribe(Duration.ofMillis(50), 100);
+
+        emit(StreamEvent.content("a"), StreamEvent.content("b"), StreamEvent.content("c"));
+
+        await().atMost(Duration.ofSeconds(2)).until(() -> received.size() == 2);
+        assertEquals(List.of("CONTENT:a", "CONTENT:bc"), describe(received));
+        assertFalse(completed.get());
+    }
+
+    @Test
+    void coalesce_FlushesThePendingBatchOnCompletion() {
+        subscribe(Duration.ofHours(1), 32);
+
+        emit(StreamEvent.content("a"), StreamEvent.content("b"), StreamEvent.content("c"));
+        upstream.tryEmitComplete().orThrow();
+
+        await().atMost(Duration.ofSeconds(2)).untilTrue(completed);
+        assertEquals(List.of("CONTENT:a", "CONTENT:bc"), describe(received));
+    }
+
+    @Test
+    void coalesce_ReturnsTheStreamUnchangedWhenDisabled() {
+        ChatStreamProperties properties = new ChatStreamProperties();
+        properties.getCoalesce().setEnabled(false);
+        Flux<StreamEvent> events = Flux.just(StreamEvent.content("a"), StreamEvent.content("b"));
+
+        assertSame(events, new StreamEventCoalescer(properties).coalesce(events));
+    }
+
+    @Test
+    void merge_KeepsOrderAcrossTypeChanges() {
+        List<StreamEvent> merged = StreamEventCoalescer.merge(List.of(
+                reasoning("思"), reasoning("考"),
+                StreamEvent.content("答"),
+                StreamEvent.error("中断"),
+                StreamEvent.content("继"), StreamEvent.content("续"),
+                reasoning("再想")));
+
+        assertEquals(List.of("REASONING:思考", "CONTENT:答", "ERROR:null", "CONTENT:继续", "REASONING:再想"),
+                describe(merged));
+        assertEquals("中断", merged.get(2).getErrorMessage());
+    }
+
+    @Test
+    void merge_PassesThroughDeltasWithoutContent() {
+        StreamEvent empty = StreamEvent.content(null);
+
+        List<StreamEvent> merged = StreamEventCoalescer.merge(List.of(
+                StreamEvent.content("a"), empty, StreamEvent.content("b"), StreamEvent.content("c")));
+
+        assertEquals(List.of("CONTENT:a", "CONTENT:null", "CONTENT:bc"), describe(merged));
+        assertSame(empty, merged.get(1));
+    }
+}
@@ -0,0 +1,154 @@
+package com.n1etzsch3.novi.common.pojo.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果
+ * <p>
+ * 基于索引键（keyset）分页：游标记录上一页最后一行的排序键，下一页从该位置继续扫描索引，
+ * 查询耗时与翻到第几页、用户历史总量无关。游标对客户端不透明，原样回传即可。
+ * </p>
+ *
+ * @param <T> 列表项类型
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    /**
+     * 默认每页条数
+     */
+    public static final int DEFAULT_LIMIT = 20;
+
+    /**
+     * 每页条数上限
+     */
+    public static final int MAX_LIMIT = 100;
+
+    private static final String SEPARATOR = "|";
+
+    /**
+     * 当前页数据
+     */
+    private List<T> items;
+
+    /**
+     * 下一页游标，没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有更多数据
+     */
+    private boolean hasMore;
+
+    /**
+     * 由多查询一行的结果构建分页
+     *
+     * @param rows      按排序键查询到的行，最多 limit + 1 条
+     * @param limit     每页条数
+     * @param cursorKey 由一行计算其游标键（各部分按顺序编码）
+     * @return 分页结果
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int limit, Function<T, Object[]> cursorKey) {
+        boolean hasMore = rows.size() > limit;
+        List<T> items = hasMore ? rows.subList(0, limit) : rows;
+        String nextCursor = hasMore ? encode(cursorKey.apply(items.get(items.size() - 1))) : null;
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
+    /**
+     * 规范化每页条数：未传时取默认值，并限制在 [1, MAX_LIMIT]
+     */
+    public static int normalizeLimit(Integer limit) {
+        if (limit == null) {
+            return DEFAULT_LIMIT;
+        }
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+
+    /**
+     * 编码游标
+     *
+     * @param parts 排序键的各部分
+     * @return URL 安全的游标字符串
+     */
+    public static String encode(Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor 游标字符串，为空时返回 null（第一页）
+     * @param parts  期望的部分数量
+     * @return 排序键的各部分
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static String[] decode(String cursor, int parts) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] decoded = raw.split("\\|", parts);
+            if (decoded.length != parts) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            return decoded;
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * 解析游标中的时间部分
+     *
+     * @param part {@link #decode} 返回的一部分
+     * @return 时间
+     * @throws IllegalArgumentException 格式不正确
+     */
+    public static LocalDateTime parseTime(String part) {
+        try {
+            return LocalDateTime.parse(part);
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * 解析游标中的数值 ID 部分
+     *
+     * @param part {@link #decode} 返回的一部分
+     * @return ID
+     * @throws IllegalArgumentException 格式不正确
+     */
+    public static Long parseId(String part) {
+        try {
+            return Long.valueOf(part);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+}
@@ -41,7 +41,7 @@ public class AiPromptConfig {
     private String description;
 
     /**
-     * 配置类型 (0:系统, 1:性格, 2:语气风格)。
+     * 配置类型 (0:系统, 1:性格, 2:语气风格, 3:出题模板, 4:题型输出约束)。
      */
     private Integer configType;
 
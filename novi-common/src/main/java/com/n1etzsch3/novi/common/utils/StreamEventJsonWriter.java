@@ -0,0 +1,128 @@
+package com.n1etzsch3.novi.common.utils;
+
+import com.n1etzsch3.novi.common.pojo.dto.StreamEvent;
+
+/**
+ * StreamEvent 专用 JSON 序列化器
+ * <p>
+ * 流式聊天每个增量都要序列化一次 {@link StreamEvent}，走 ObjectMapper 的反射路径开销偏大。
+ * 这里直接拼接预先生成的 JSON 片段，只对字段值做转义，写入按线程复用的缓冲区。
+ * </p>
+ * <p>
+ * 输出与 ObjectMapper 默认配置下的序列化结果逐字节一致：字段顺序与声明顺序相同，
+ * 值为 null 的字段省略（对应 {@code @JsonInclude(NON_NULL)}），
+ * 转义规则与 Jackson 相同（{@code "}、{@code \}、控制字符，非 ASCII 字符原样输出）。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public final class StreamEventJsonWriter {
+
+    private static final String CONTENT_PREFIX = "{\"eventType\":\"CONTENT\",\"content\":\"";
+    private static final String REASONING_PREFIX = "{\"eventType\":\"REASONING\",\"content\":\"";
+    private static final String SUFFIX = "\"}";
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    /**
+     * 复用缓冲区的容量上限，超出后丢弃，避免长消息长期占用内存
+     */
+    private static final int MAX_POOLED_CAPACITY = 16 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUFFER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private StreamEventJsonWriter() {
+    }
+
+    /**
+     * 序列化为 JSON 字符串
+     *
+     * @param event 流式事件
+     * @return 与 {@code objectMapper.writeValueAsString(event)} 相同的 JSON
+     */
+    public static String write(StreamEvent event) {
+        StringBuilder out = BUFFER.get();
+        out.setLength(0);
+        try {
+            writeTo(event, out);
+            return out.toString();
+        } finally {
+            if (out.capacity() > MAX_POOLED_CAPACITY) {
+                BUFFER.remove();
+            }
+        }
+    }
+
+    /**
+     * 序列化并追加到给定缓冲区
+     *
+     * @param event 流式事件
+     * @param out   目标缓冲区
+     */
+    public static void writeTo(StreamEvent event, StringBuilder out) {
+        String prefix = deltaPrefix(event);
+        if (prefix != null) {
+            // 最常见的增量事件：固定骨架 + 转义后的内容
+            out.append(prefix);
+            escape(event.getContent(), out);
+            out.append(SUFFIX);
+            return;
+        }
+        out.append('{');
+        boolean first = field("eventType", event.getEventType(), true, out);
+        first = field("sessionId", event.getSessionId(), first, out);
+        first = field("content", event.getContent(), first, out);
+        first = field("errorMessage", event.getErrorMessage(), first, out);
+        field("title", event.getTitle(), first, out);
+        out.append('}');
+    }
+
+    private static String deltaPrefix(StreamEvent event) {
+        if (event.getContent() == null || event.getSessionId() != null
+                || event.getErrorMessage() != null || event.getTitle() != null) {
+            return null;
+        }
+        if ("CONTENT".equals(event.getEventType())) {
+            return CONTENT_PREFIX;
+        }
+        return "REASONING".equals(event.getEventType()) ? REASONING_PREFIX : null;
+    }
+
+    private static boolean field(String name, String value, boolean first, StringBuilder out) {
+        if (value == null) {
+            return first;
+        }
+        if (!first) {
+            out.append(',');
+        }
+        out.append('"').append(name).append("\":\"");
+        escape(value, out);
+        out.append('"');
+        return false;
+    }
+
+    private static void escape(String value, StringBuilder out) {
+        int length = value.length();
+        int start = 0;
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x20 && c != '"' && c != '\\') {
+                continue;
+            }
+            out.append(value, start, i);
+            start = i + 1;
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\b' -> out.append("\\b");
+                case '\t' -> out.append("\\t");
+                case '\n' -> out.append("\\n");
+                case '\f' -> out.append("\\f");
+                case '\r' -> out.append("\\r");
+                default -> out.append("\\u00").append(HEX[c >> 4]).append(HEX[c & 0xF]);
+            }
+        }
+        out.append(value, start, length);
+    }
+}
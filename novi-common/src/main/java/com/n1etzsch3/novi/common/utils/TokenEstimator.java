@@ -0,0 +1,68 @@
+package com.n1etzsch3.novi.common.utils;
+
+/**
+ * Token 估算工具类
+ * <p>
+ * 在不引入分词器的前提下粗略估算文本消耗的 Token 数，
+ * 用于历史窗口裁剪、限流等只需要数量级准确的场景。
+ * </p>
+ * <p>
+ * 估算规则：CJK 字符按 1 个 Token 计，其余字符按约 4 个字符 1 个 Token 计，
+ * 每条消息额外计入固定的角色/分隔开销。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public final class TokenEstimator {
+
+    /**
+     * 每条消息的固定开销（角色标记、分隔符等）
+     */
+    public static final int MESSAGE_OVERHEAD = 4;
+
+    private TokenEstimator() {
+    }
+
+    /**
+     * 估算一段文本的 Token 数
+     *
+     * @param text 文本内容，可为 null
+     * @return 估算的 Token 数
+     */
+    public static int estimate(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int cjk = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isCjk(c)) {
+                cjk++;
+            } else {
+                other++;
+            }
+        }
+        return cjk + (other + 3) / 4;
+    }
+
+    /**
+     * 估算一条聊天消息的 Token 数（包含固定开销）
+     *
+     * @param content 消息内容
+     * @return 估算的 Token 数
+     */
+    public static int estimateMessage(CharSequence content) {
+        return estimate(content) + MESSAGE_OVERHEAD;
+    }
+
+    private static boolean isCjk(char c) {
+        return (c >= '\u4E00' && c <= '\u9FFF') // CJK 统一表意文字
+                || (c >= '\u3400' && c <= '\u4DBF') // 扩展 A
+                || (c >= '\u3000' && c <= '\u303F') // CJK 标点
+                || (c >= '\uFF00' && c <= '\uFFEF') // 全角字符
+                || (c >= '\u3040' && c <= '\u30FF') // 日文假名
+                || (c >= '\uAC00' && c <= '\uD7AF'); // 韩文
+    }
+}
@@ -0,0 +1,45 @@
+package com.n1etzsch3.novi.common.pojo.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CursorPageTest {
+
+    @Test
+    void of_EncodesTheLastRowOfAFullPage() {
+        LocalDateTime time = LocalDateTime.of(2026, 10, 18, 12, 30, 15, 123_000_000);
+
+        CursorPage<Long> page = CursorPage.of(List.of(9L, 8L, 7L), 2, id -> new Object[] { time, id });
+
+        assertEquals(List.of(9L, 8L), page.getItems());
+        assertTrue(page.isHasMore());
+        String[] key = CursorPage.decode(page.getNextCursor(), 2);
+        assertEquals(time, CursorPage.parseTime(key[0]));
+        assertEquals(8L, CursorPage.parseId(key[1]));
+    }
+
+    @Test
+    void of_HasNoCursorOnTheLastPage() {
+        CursorPage<Long> page = CursorPage.of(List.of(2L, 1L), 2, id -> new Object[] { id });
+
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+        assertNull(CursorPage.decode(null, 1));
+    }
+
+    @Test
+    void parse_RejectsMalformedParts() {
+        String[] key = CursorPage.decode(CursorPage.encode("yesterday", "abc"), 2);
+
+        assertEquals("无效的分页游标",
+                assertThrows(IllegalArgumentException.class, () -> CursorPage.parseTime(key[0])).getMessage());
+        assertEquals("无效的分页游标",
+                assertThrows(IllegalArgumentException.class, () -> CursorPage.parseId(key[1])).getMessage());
+        assertThrows(IllegalArgumentException.class, () -> CursorPage.decode(CursorPage.encode(1L), 2));
+        assertThrows(IllegalArgumentException.class, () -> CursorPage.decode("%%%", 1));
+    }
+}
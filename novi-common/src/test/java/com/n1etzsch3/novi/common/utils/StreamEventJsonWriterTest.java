@@ -0,0 +1,91 @@
+package com.n1etzsch3.novi.common.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.n1etzsch3.novi.common.pojo.dto.StreamEvent;
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class StreamEventJsonWriterTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    /**
+     * 随机字符的取值来源：控制字符、引号、反斜杠、ASCII、中文、emoji（代理对）与孤立代理项
+     */
+    private static final String[] SAMPLES = {
+            "\u0000", "\u0001", "\u001F", "\b", "\t", "\n", "\f", "\r", "\u007F",
+            "\"", "\\", "/", "a", "Z", "0", " ", "{", "}",
+            "中", "文", "，", "。",
+            "😀", "🎉", "👍🏽",
+            "\uD83D", "\uDE00", "\uDBFF", "\uDC00",
+            "\u2028", "\u2029", "\uFEFF", "\uFFFF"
+    };
+
+    private void assertSameAsObjectMapper(StreamEvent event) throws Exception {
+        assertEquals(objectMapper.writeValueAsString(event), StreamEventJsonWriter.write(event));
+    }
+
+    @Test
+    void write_MatchesObjectMapperForFixedEvents() throws Exception {
+        assertSameAsObjectMapper(StreamEvent.content(""));
+        assertSameAsObjectMapper(StreamEvent.content("你好，\"世界\"\\n\n😀"));
+        assertSameAsObjectMapper(new StreamEvent("REASONING", null, "思考\u0000中", null, null));
+        assertSameAsObjectMapper(StreamEvent.metadata("s-1", "新会话"));
+        assertSameAsObjectMapper(StreamEvent.error("模型服务繁忙\r\n"));
+        assertSameAsObjectMapper(new StreamEvent("DONE", null, null, null, null));
+        assertSameAsObjectMapper(new StreamEvent(null, null, null, null, null));
+        assertSameAsObjectMapper(new StreamEvent("CONTENT", "s-1", "x", "e", "t"));
+    }
+
+    @Test
+    void write_MatchesObjectMapperForRandomizedContent() throws Exception {
+        // 固定种子，失败时可以复现
+        Random random = new Random(20261018L);
+        String[] types = {"CONTENT", "REASONING", "METADATA", "ERROR", "DONE"};
+        for (int i = 0; i < 2000; i++) {
+            StreamEvent event = new StreamEvent(
+                    types[random.nextInt(types.length)],
+                    random.nextInt(4) == 0 ? randomText(random) : null,
+                    random.nextInt(5) == 0 ? null : randomText(random),
+                    random.nextInt(4) == 0 ? randomText(random) : null,
+                    random.nextInt(4) == 0 ? randomText(random) : null);
+            assertSameAsObjectMapper(event);
+        }
+    }
+
+    @Test
+    void write_MatchesObjectMapperForEveryBmpChar() throws Exception {
+        StringBuilder all = new StringBuilder(0x10000);
+        for (int c = 0; c <= 0xFFFF; c++) {
+            all.append((char) c);
+        }
+        assertSameAsObjectMapper(StreamEvent.content(all.toString()));
+    }
+
+    @Test
+    void writeTo_AppendsToTheGivenBuffer() throws Exception {
+        StringBuilder out = new StringBuilder("data:");
+        StreamEvent event = StreamEvent.content("\"😀\"");
+
+        StreamEventJsonWriter.writeTo(event, out);
+
+        assertEquals("data:" + objectMapper.writeValueAsString(event), out.toString());
+    }
+
+    private static String randomText(Random random) {
+        int length = random.nextInt(40);
+        StringBuilder text = new StringBuilder(length * 2);
+        for (int i = 0; i < length; i++) {
+            if (random.nextInt(8) == 0) {
+                // 偶尔混入任意 char，覆盖样本之外的取值
+                text.append((char) random.nextInt(0x10000));
+            } else {
+                text.append(SAMPLES[random.nextInt(SAMPLES.length)]);
+            }
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,43 @@
+package com.n1etzsch3.novi.question.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * 出题/组卷执行器配置
+ * <p>
+ * 对应配置前缀 {@code novi.generation.executor}。
+ * 出题和组卷任务几乎全部时间都阻塞在模型调用和 JDBC 上，
+ * 虚拟线程模式下每个任务一个虚拟线程，不再受固定线程池和队列长度限制，
+ * 实际并发由按提供方划分的模型调用许可数控制（见 {@code novi.ai.concurrency}）。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.generation.executor")
+public class GenerationExecutorProperties {
+
+    /**
+     * 执行模式
+     */
+    private Mode mode = Mode.PLATFORM;
+
+    public enum Mode {
+        /**
+         * 固定大小的平台线程池
+         */
+        PLATFORM,
+        /**
+         * 每个任务一个虚拟线程
+         */
+        VIRTUAL
+    }
+
+    public boolean isVirtual() {
+        return mode == Mode.VIRTUAL;
+    }
+}
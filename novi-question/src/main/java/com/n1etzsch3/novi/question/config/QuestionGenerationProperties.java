@@ -0,0 +1,58 @@
+package com.n1etzsch3.novi.question.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * AI出题配置
+ * <p>
+ * 对应配置前缀 {@code novi.question.generation}。
+ * 一次出多道题时，每道题都是一次独立的模型调用，
+ * 并发模式下这些调用在专用线程池中同时发出，耗时接近最慢的一次调用。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.question.generation")
+public class QuestionGenerationProperties {
+
+    /**
+     * 是否并发发出单题调用，关闭后逐题顺序调用
+     */
+    private boolean concurrent = true;
+
+    /**
+     * 等待全部单题调用完成的最长时间（包含重试），超时的题目按失败处理
+     */
+    private Duration timeout = Duration.ofMinutes(3);
+
+    /**
+     * 单次模型调用（一次流式输出）的最长时间，超时后取消该次调用并按失败重试
+     */
+    private Duration attemptTimeout = Duration.ofMinutes(2);
+
+    /**
+     * 出题线程池配置
+     */
+    private Executor executor = new Executor();
+
+    @Data
+    public static class Executor {
+
+        /**
+         * 线程数，即同时进行的单题调用上限（所有请求共享）
+         */
+        private int poolSize = 9;
+
+        /**
+         * 等待队列长度，队列满时由提交任务的线程自己执行
+         */
+        private int queueCapacity = 100;
+    }
+}
@@ -0,0 +1,99 @@
+package com.n1etzsch3.novi.question.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalTime;
+
+/**
+ * 题目预生成池配置
+ * <p>
+ * 对应配置前缀 {@code novi.question.pool}。
+ * 同一 (科目, 题型, 难度, 主题) 组合被反复请求时，池中预先保存若干道已校验的题目，
+ * 出题请求直接从池中取题，不再等待模型调用；库存在系统空闲或低峰时段后台补充。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "novi.question.pool")
+public class QuestionPoolProperties {
+
+    /**
+     * 是否启用预生成池
+     */
+    private boolean enabled = false;
+
+    /**
+     * 最多跟踪的组合数，超出时淘汰最久未被请求的组合
+     */
+    private int maxCombinations = 200;
+
+    /**
+     * 每个组合补充到的目标库存（可供出题的题目数）
+     */
+    private int targetStock = 10;
+
+    /**
+     * 库存低于该值时开始补充
+     */
+    private int lowWatermark = 3;
+
+    /**
+     * 每道题最多发给多少个不同用户，达到后下架
+     */
+    private int maxServesPerItem = 50;
+
+    /**
+     * 题目在池中的最长保留时间
+     */
+    private Duration itemTtl = Duration.ofDays(7);
+
+    /**
+     * 组合在该时间内被请求过才会补充库存，超过后连同库存一起移除
+     */
+    private Duration demandTtl = Duration.ofDays(1);
+
+    /**
+     * 组合在 demandTtl 内至少被请求多少次才会后台补充
+     */
+    private int minDemand = 2;
+
+    /**
+     * 后台补充配置
+     */
+    private Refill refill = new Refill();
+
+    @Data
+    public static class Refill {
+
+        /**
+         * 两次补充之间的间隔
+         */
+        private Duration interval = Duration.ofMinutes(1);
+
+        /**
+         * 每次补充最多发出的模型调用数
+         */
+        private int batchSize = 5;
+
+        /**
+         * 正在进行的实时出题请求不超过该值时视为空闲，允许补充
+         */
+        private int maxActiveRequests = 0;
+
+        /**
+         * 低峰时段开始时间（含），与结束时间都配置时生效，低峰时段内不论是否空闲都补充
+         */
+        private LocalTime offPeakStart;
+
+        /**
+         * 低峰时段结束时间（不含），可早于开始时间表示跨零点
+         */
+        private LocalTime offPeakEnd;
+    }
+}
@@ -0,0 +1,74 @@
+package com.n1etzsch3.novi.question.pojo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 流式出题事件 DTO
+ * <p>
+ * 用于 SSE 事件推送的数据结构，事件名与 eventType 相同。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class QuestionGenerationEvent {
+
+    /**
+     * 事件类型（question/reasoning/error/complete）
+     */
+    private String eventType;
+
+    /**
+     * 题目序号，从 0 开始（question/reasoning/error 事件使用）
+     */
+    private Integer index;
+
+    /**
+     * 该序号生成的题目（当 eventType=question 时使用，模型偶尔会一次返回多道）
+     */
+    private List<Object> questions;
+
+    /**
+     * 思考过程增量（当 eventType=reasoning 时使用）
+     */
+    private String reasoning;
+
+    /**
+     * 错误信息（当 eventType=error 时使用，index 为空表示整体失败）
+     */
+    private String error;
+
+    /**
+     * 出题记录ID（当 eventType=complete 时使用）
+     */
+    private Long recordId;
+
+    /**
+     * 成功数量（当 eventType=complete 时使用）
+     */
+    private Integer successCount;
+
+    /**
+     * 失败数量（当 eventType=complete 时使用）
+     */
+    private Integer failedCount;
+
+    /**
+     * 时间戳
+     */
+    private LocalDateTime timestamp;
+}
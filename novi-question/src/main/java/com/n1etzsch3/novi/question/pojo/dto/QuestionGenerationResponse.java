@@ -1,6 +1,5 @@
 package com.n1etzsch3.novi.question.pojo.dto;
 
-import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.NoArgsConstructor;
 import lombok.Setter;
@@ -17,7 +16,6 @@ import lombok.Setter;
 @Getter
 @Setter
 @NoArgsConstructor
-@AllArgsConstructor
 public class QuestionGenerationResponse {
 
     /**
@@ -43,4 +41,25 @@ public class QuestionGenerationResponse {
     private String theme;
     private String difficulty;
     private Integer quantity;
+
+    /**
+     * 本次成功生成的题目数（仅生成时返回，查询历史时为空）
+     */
+    private Integer successCount;
+
+    /**
+     * 本次生成失败的题目数（仅生成时返回，查询历史时为空）
+     */
+    private Integer failedCount;
+
+    public QuestionGenerationResponse(Long recordId, String questions, String subject, String questionType,
+            String theme, String difficulty, Integer quantity) {
+        this.recordId = recordId;
+        this.questions = questions;
+        this.subject = subject;
+        this.questionType = questionType;
+        this.theme = theme;
+        this.difficulty = difficulty;
+        this.quantity = quantity;
+    }
 }
@@ -1,5 +1,6 @@
 package com.n1etzsch3.novi.question.service;
 
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
 import com.n1etzsch3.novi.question.pojo.dto.PaperDetailResponse;
 import com.n1etzsch3.novi.question.pojo.dto.PaperGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.dto.PaperHistoryItem;
@@ -35,6 +36,16 @@ public interface PaperGenerationService {
      */
     List<PaperHistoryItem> getPaperHistory(Long userId);
 
+    /**
+     * 按创建时间倒序分页获取套卷历史
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，第一页为 null
+     * @param limit  每页条数，为 null 时使用默认值
+     * @return 一页历史记录
+     */
+    CursorPage<PaperHistoryItem> getPaperHistoryPage(Long userId, String cursor, Integer limit);
+
     /**
      * 获取套卷详情
      *
@@ -1,8 +1,11 @@
 package com.n1etzsch3.novi.question.service;
 
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationEvent;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationResponse;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionHistoryItem;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -31,6 +34,25 @@ public interface QuestionGenerationService {
      */
     QuestionGenerationResponse generateQuestions(Long userId, QuestionGenerationRequest request);
 
+    /**
+     * 流式生成题目（SSE 推送）
+     * <p>
+     * 事件名与 {@link QuestionGenerationEvent#getEventType()} 相同：
+     * <ul>
+     * <li>question - 某道题目校验通过</li>
+     * <li>reasoning - 深度思考模式下某道题目的思考过程增量</li>
+     * <li>error - 某道题目生成失败；index 为空时表示整体失败</li>
+     * <li>complete - 出题记录已保存，包含记录ID和成功/失败数量</li>
+     * </ul>
+     * 参数校验失败时在调用线程上直接抛出异常，此时不会发送任何事件。
+     * </p>
+     *
+     * @param userId  用户ID
+     * @param request 出题请求配置
+     * @param emitter SSE 发送器
+     */
+    void generateQuestionsAsync(Long userId, QuestionGenerationRequest request, SseEmitter emitter);
+
     /**
      * 获取用户的出题历史记录列表
      *
@@ -39,6 +61,16 @@ public interface QuestionGenerationService {
      */
     List<QuestionHistoryItem> getGenerationHistory(Long userId);
 
+    /**
+     * 按创建时间倒序分页获取用户的出题历史记录
+     *
+     * @param userId 用户ID
+     * @param cursor 上一页返回的游标，第一页为 null
+     * @param limit  每页条数，为 null 时使用默认值
+     * @return 一页历史记录
+     */
+    CursorPage<QuestionHistoryItem> getGenerationHistoryPage(Long userId, String cursor, Integer limit);
+
     /**
      * 获取单条出题记录详情
      *
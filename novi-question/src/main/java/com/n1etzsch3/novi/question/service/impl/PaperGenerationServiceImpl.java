@@ -1,15 +1,17 @@
 package com.n1etzsch3.novi.question.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
 import com.n1etzsch3.novi.common.pojo.entity.PaperGenerationRecord;
 import com.n1etzsch3.novi.common.pojo.entity.PaperQuestionDetail;
 import com.n1etzsch3.novi.question.mapper.PaperGenerationRecordMapper;
 import com.n1etzsch3.novi.question.mapper.PaperQuestionDetailMapper;
-import com.n1etzsch3.novi.question.mapper.QuestionCategoryMapper;
 import com.n1etzsch3.novi.question.pojo.dto.*;
 import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
 import com.n1etzsch3.novi.question.service.PaperGenerationService;
 import com.n1etzsch3.novi.question.service.QuestionGenerationService;
+import com.n1etzsch3.novi.question.store.QuestionCategoryStore;
+import com.n1etzsch3.novi.question.utils.SseEventSender;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -36,9 +38,9 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
 
     private final PaperGenerationRecordMapper paperGenerationRecordMapper;
     private final PaperQuestionDetailMapper paperQuestionDetailMapper;
-    private final QuestionCategoryMapper questionCategoryMapper;
+    private final QuestionCategoryStore questionCategoryStore;
     private final QuestionGenerationService questionGenerationService;
-    private final ThreadPoolExecutor paperGenerationExecutor;
+    private final ExecutorService paperGenerationExecutor;
 
     @Override
     public void generatePaperAsync(Long userId, PaperGenerationRequest request, SseEmitter emitter) {
@@ -57,67 +59,58 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
             log.info("Auto mode generated {} question types", paperConfig.size());
         }
 
-        // 3. 创建异步任务列表
+        // 3. 先创建套卷记录，各题型完成后立即落库明细并推送
+        Long paperId = createPaperRecord(userId, request);
+        // 客户端断开后套卷仍继续生成并落库，只是不再推送事件
+        SseEventSender sender = new SseEventSender(emitter);
+
+        // 4. 创建异步任务列表
         List<CompletableFuture<QuestionTypeResult>> futures = new ArrayList<>();
-        Map<Integer, PaperConfigItem> configMap = new HashMap<>();
 
         for (PaperConfigItem config : paperConfig) {
-            configMap.put(config.getOrder(), config);
-
-            CompletableFuture<QuestionTypeResult> future = CompletableFuture.supplyAsync(() -> {
-                try {
-                    return generateQuestionType(userId, config, request.getEnableThinking(), request.getModel());
-                } catch (Exception e) {
-                    log.error("Failed to generate question type: {}", config.getQuestionTypeCode(), e);
-                    return QuestionTypeResult.builder()
-                            .questionTypeCode(config.getQuestionTypeCode())
-                            .order(config.getOrder())
-                            .success(false)
-                            .errorMessage(e.getMessage())
-                            .build();
-                }
-            }, paperGenerationExecutor);
+            CompletableFuture<QuestionTypeResult> future = CompletableFuture.supplyAsync(
+                    () -> generateQuestionType(userId, config, request.getEnableThinking(), request.getModel()),
+                    paperGenerationExecutor)
+                    // 每个题型单独兜底：生成、落库或推送出错只影响该题型，不会让汇总阶段失败
+                    .handle((result, ex) -> {
+                        QuestionTypeResult finished = ex != null ? failedResult(config, ex) : result;
+                        // 不等其他题型：保存明细后立即发送该题型的事件
+                        finished = saveDetailOrFail(paperId, finished);
+                        sendTypeEvent(sender, paperId, finished);
+                        return finished;
+                    });
 
             futures.add(future);
         }
 
-        // 3. 等待所有任务完成并收集结果
+        // 5. 全部题型结束后汇总
         CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
-                .thenApply(v -> {
-                    // 从 futures 中获取所有结果（确保顺序和完整性）
-                    List<QuestionTypeResult> results = futures.stream()
-                            .map(CompletableFuture::join)
-                            .collect(Collectors.toList());
-                    return results;
-                })
+                .thenApply(v -> futures.stream()
+                        .map(CompletableFuture::join)
+                        .collect(Collectors.toList()))
                 .whenComplete((results, ex) -> {
+                    // 6. 无论成功与否都回填总题数，总题数为 0 的套卷不会出现在历史列表中
+                    List<QuestionTypeResult> finished = results != null ? results : completedResults(futures);
+                    try {
+                        updatePaperTotal(paperId, finished);
+                    } catch (Exception e) {
+                        log.error("Failed to update total questions for paper {}", paperId, e);
+                    }
                     if (ex != null) {
                         log.error("Failed to complete paper generation", ex);
-                        emitter.completeWithError(ex);
+                        sender.completeWithError(ex);
                         return;
                     }
 
                     try {
-                        // 4. 为每个结果发送 SSE 事件（按顺序）
-                        for (QuestionTypeResult result : results) {
-                            if (!result.getSuccess()) {
-                                emitter.send(createErrorEvent(result));
-                            } else {
-                                emitter.send(createQuestionEvent(result));
-                            }
-                        }
-
-                        // 5. 保存套卷记录
-                        Long paperId = savePaperRecord(userId, request, results);
-
-                        // 6. 发送完成事件
-                        emitter.send(createCompleteEvent(paperId, results));
-                        emitter.complete();
+                        // 7. 发送完成事件
+                        sender.send(createCompleteEvent(paperId, results));
+                        sender.complete();
 
                         log.info("Paper generation completed for user: {}, paperId: {}", userId, paperId);
                     } catch (Exception e) {
                         log.error("Failed to send SSE events or save paper", e);
-                        emitter.completeWithError(e);
+                        sender.completeWithError(e);
                     }
                 });
     }
@@ -127,11 +120,8 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
      */
     private void validateRequest(PaperGenerationRequest request) {
         // 验证科目是否存在
-        QuestionCategory subject = questionCategoryMapper.selectOne(
-                new LambdaQueryWrapper<QuestionCategory>()
-                        .eq(QuestionCategory::getId, request.getSubjectId())
-                        .eq(QuestionCategory::getCategoryType, 1));
-        if (subject == null) {
+        QuestionCategory subject = questionCategoryStore.getById(request.getSubjectId());
+        if (subject == null || subject.getCategoryType() != QuestionCategoryStore.TYPE_SUBJECT) {
             throw new IllegalArgumentException("科目不存在");
         }
 
@@ -147,12 +137,10 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
 
             // 验证题型编码是否存在
             for (PaperConfigItem config : request.getPaperConfig()) {
-                QuestionCategory questionType = questionCategoryMapper.selectOne(
-                        new LambdaQueryWrapper<QuestionCategory>()
-                                .eq(QuestionCategory::getCode, config.getQuestionTypeCode())
-                                .eq(QuestionCategory::getParentId, request.getSubjectId())
-                                .eq(QuestionCategory::getCategoryType, 2));
-                if (questionType == null) {
+                QuestionCategory questionType = questionCategoryStore.getByCode(config.getQuestionTypeCode());
+                if (questionType == null
+                        || questionType.getCategoryType() != QuestionCategoryStore.TYPE_QUESTION_TYPE
+                        || !request.getSubjectId().equals(questionType.getParentId())) {
                     throw new IllegalArgumentException("题型不存在: " + config.getQuestionTypeCode());
                 }
             }
@@ -166,11 +154,8 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
      */
     private List<PaperConfigItem> autoGeneratePaperConfig(Long subjectId) {
         // 查询科目下的所有题型
-        List<QuestionCategory> questionTypes = questionCategoryMapper.selectList(
-                new LambdaQueryWrapper<QuestionCategory>()
-                        .eq(QuestionCategory::getParentId, subjectId)
-                        .eq(QuestionCategory::getCategoryType, 2)
-                        .orderByAsc(QuestionCategory::getSortOrder));
+        List<QuestionCategory> questionTypes = questionCategoryStore.getChildren(subjectId,
+                QuestionCategoryStore.TYPE_QUESTION_TYPE);
 
         if (questionTypes.isEmpty()) {
             throw new IllegalArgumentException("该科目下没有题型，无法自动生成套卷");
@@ -211,17 +196,14 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
 
         try {
             // 1. 查询题型信息
-            QuestionCategory questionType = questionCategoryMapper.selectOne(
-                    new LambdaQueryWrapper<QuestionCategory>()
-                            .eq(QuestionCategory::getCode, config.getQuestionTypeCode())
-                            .eq(QuestionCategory::getCategoryType, 2));
+            QuestionCategory questionType = questionCategoryStore.getByCode(config.getQuestionTypeCode());
 
-            if (questionType == null) {
+            if (questionType == null || questionType.getCategoryType() != QuestionCategoryStore.TYPE_QUESTION_TYPE) {
                 throw new IllegalArgumentException("题型不存在: " + config.getQuestionTypeCode());
             }
 
             // 2. 查询科目信息
-            QuestionCategory subject = questionCategoryMapper.selectById(questionType.getParentId());
+            QuestionCategory subject = questionCategoryStore.getById(questionType.getParentId());
 
             // 3. 构建出题请求
             QuestionGenerationRequest questionRequest = new QuestionGenerationRequest();
@@ -252,9 +234,7 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
             log.error("Failed to generate question type: {}", config.getQuestionTypeCode(), e);
 
             // 查询题型名称以便错误提示
-            QuestionCategory questionType = questionCategoryMapper.selectOne(
-                    new LambdaQueryWrapper<QuestionCategory>()
-                            .eq(QuestionCategory::getCode, config.getQuestionTypeCode()));
+            QuestionCategory questionType = questionCategoryStore.getByCode(config.getQuestionTypeCode());
             String typeName = questionType != null ? questionType.getName() : config.getQuestionTypeCode();
 
             return QuestionTypeResult.builder()
@@ -267,31 +247,79 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
         }
     }
 
+    private QuestionTypeResult failedResult(PaperConfigItem config, Throwable ex) {
+        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+        log.error("Failed to generate question type: {}", config.getQuestionTypeCode(), cause);
+        return QuestionTypeResult.builder()
+                .questionTypeCode(config.getQuestionTypeCode())
+                .order(config.getOrder())
+                .success(false)
+                .errorMessage(cause.getMessage())
+                .build();
+    }
+
     /**
-     * 保存套卷记录
+     * 保存成功题型的明细，保存失败时改为失败结果，不计入总题数
      */
-    @Transactional(rollbackFor = Exception.class)
-    protected Long savePaperRecord(Long userId, PaperGenerationRequest request, List<QuestionTypeResult> results) {
-        // 计算总题目数
-        int totalQuestions = results.stream()
-                .filter(QuestionTypeResult::getSuccess)
-                .mapToInt(QuestionTypeResult::getQuantity)
-                .sum();
+    private QuestionTypeResult saveDetailOrFail(Long paperId, QuestionTypeResult result) {
+        if (!Boolean.TRUE.equals(result.getSuccess())) {
+            return result;
+        }
+        try {
+            savePaperDetail(paperId, result);
+            return result;
+        } catch (Exception e) {
+            log.error("Failed to save paper detail for question type {}", result.getQuestionTypeCode(), e);
+            return QuestionTypeResult.builder()
+                    .questionTypeCode(result.getQuestionTypeCode())
+                    .questionTypeName(result.getQuestionTypeName())
+                    .order(result.getOrder())
+                    .success(false)
+                    .errorMessage("保存题目失败")
+                    .build();
+        }
+    }
+
+    private void sendTypeEvent(SseEventSender sender, Long paperId, QuestionTypeResult result) {
+        try {
+            // 客户端断开不影响其他题型继续生成和落库
+            sender.send(result.getSuccess()
+                    ? createQuestionEvent(paperId, result)
+                    : createErrorEvent(result));
+        } catch (Exception e) {
+            log.warn("Failed to build SSE event for question type {}: {}",
+                    result.getQuestionTypeCode(), e.getMessage());
+        }
+    }
 
+    private static List<QuestionTypeResult> completedResults(List<CompletableFuture<QuestionTypeResult>> futures) {
+        return futures.stream()
+                .filter(f -> f.isDone() && !f.isCompletedExceptionally())
+                .map(CompletableFuture::join)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 创建套卷记录
+     * <p>
+     * 在生成开始前写入，总题数先记为 0，全部题型结束后由 {@link #updatePaperTotal} 回填。
+     * 总题数为 0 的记录（生成中或全部失败）不出现在历史列表中。
+     * </p>
+     */
+    private Long createPaperRecord(Long userId, PaperGenerationRequest request) {
         // 查询科目名称
-        QuestionCategory subject = questionCategoryMapper.selectById(request.getSubjectId());
+        QuestionCategory subject = questionCategoryStore.getById(request.getSubjectId());
 
         // 生成套卷名称
         String paperName = String.format("%s套卷-%s",
                 subject.getName(),
                 LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")));
 
-        // 1. 保存套卷记录
         PaperGenerationRecord paperRecord = PaperGenerationRecord.builder()
                 .userId(userId)
                 .subjectId(request.getSubjectId())
                 .paperName(paperName)
-                .totalQuestions(totalQuestions)
+                .totalQuestions(0)
                 .enableThinking(request.getEnableThinking())
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
@@ -299,35 +327,54 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
 
         paperGenerationRecordMapper.insert(paperRecord);
         log.info("Saved paper record with ID: {}", paperRecord.getId());
+        return paperRecord.getId();
+    }
 
-        // 2. 保存题目明细
-        for (QuestionTypeResult result : results) {
-            if (result.getSuccess()) {
-                PaperQuestionDetail detail = PaperQuestionDetail.builder()
-                        .paperId(paperRecord.getId())
-                        .questionType(result.getQuestionTypeCode())
-                        .questionTypeName(result.getQuestionTypeName())
-                        .difficulty(result.getDifficulty())
-                        .quantity(result.getQuantity())
-                        .theme(result.getTheme())
-                        .generatedQuestions(result.getQuestionsJson())
-                        .displayOrder(result.getOrder())
-                        .createdAt(LocalDateTime.now())
-                        .build();
-
-                paperQuestionDetailMapper.insert(detail);
-            }
-        }
+    /**
+     * 保存单个题型的明细
+     */
+    private void savePaperDetail(Long paperId, QuestionTypeResult result) {
+        PaperQuestionDetail detail = PaperQuestionDetail.builder()
+                .paperId(paperId)
+                .questionType(result.getQuestionTypeCode())
+                .questionTypeName(result.getQuestionTypeName())
+                .difficulty(result.getDifficulty())
+                .quantity(result.getQuantity())
+                .theme(result.getTheme())
+                .generatedQuestions(result.getQuestionsJson())
+                .displayOrder(result.getOrder())
+                .createdAt(LocalDateTime.now())
+                .build();
 
-        return paperRecord.getId();
+        paperQuestionDetailMapper.insert(detail);
+    }
+
+    /**
+     * 回填套卷总题数
+     */
+    private void updatePaperTotal(Long paperId, List<QuestionTypeResult> results) {
+        paperGenerationRecordMapper.updateById(PaperGenerationRecord.builder()
+                .id(paperId)
+                .totalQuestions(countQuestions(results))
+                .updatedAt(LocalDateTime.now())
+                .build());
+    }
+
+    private int countQuestions(List<QuestionTypeResult> results) {
+        return results.stream()
+                .filter(QuestionTypeResult::getSuccess)
+                .mapToInt(QuestionTypeResult::getQuantity)
+                .sum();
     }
 
     /**
      * 创建题目事件
      */
-    private SseEmitter.SseEventBuilder createQuestionEvent(QuestionTypeResult result) throws IOException {
+    private SseEmitter.SseEventBuilder createQuestionEvent(Long paperId, QuestionTypeResult result)
+            throws IOException {
         PaperGenerationResponse response = PaperGenerationResponse.builder()
                 .eventType("question")
+                .paperId(paperId)
                 .questionType(result.getQuestionTypeCode())
                 .questionTypeName(result.getQuestionTypeName())
                 .order(result.getOrder())
@@ -365,10 +412,7 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
             throws IOException {
         long successCount = results.stream().filter(QuestionTypeResult::getSuccess).count();
         long failedCount = results.size() - successCount;
-        int totalQuestions = results.stream()
-                .filter(QuestionTypeResult::getSuccess)
-                .mapToInt(QuestionTypeResult::getQuantity)
-                .sum();
+        int totalQuestions = countQuestions(results);
 
         PaperGenerationResponse response = PaperGenerationResponse.builder()
                 .eventType("complete")
@@ -387,25 +431,71 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
     @Override
     public List<PaperHistoryItem> getPaperHistory(Long userId) {
         List<PaperGenerationRecord> records = paperGenerationRecordMapper.selectList(
-                new LambdaQueryWrapper<PaperGenerationRecord>()
-                        .eq(PaperGenerationRecord::getUserId, userId)
+                historyQuery(userId)
                         .orderByDesc(PaperGenerationRecord::getCreatedAt));
 
+        return toHistoryItems(records);
+    }
+
+    @Override
+    public CursorPage<PaperHistoryItem> getPaperHistoryPage(Long userId, String cursor, Integer limit) {
+        int pageSize = CursorPage.normalizeLimit(limit);
+        String[] key = CursorPage.decode(cursor, 2);
+
+        // 沿 idx_user_created (user_id, created_at[, id]) 倒序扫描，游标为上一页最后一条的 (created_at, id)
+        LambdaQueryWrapper<PaperGenerationRecord> query = historyQuery(userId);
+        if (key != null) {
+            LocalDateTime createdAt = CursorPage.parseTime(key[0]);
+            Long id = CursorPage.parseId(key[1]);
+            query.and(w -> w.lt(PaperGenerationRecord::getCreatedAt, createdAt)
+                    .or(o -> o.eq(PaperGenerationRecord::getCreatedAt, createdAt)
+                            .lt(PaperGenerationRecord::getId, id)));
+        }
+        query.orderByDesc(PaperGenerationRecord::getCreatedAt)
+                .orderByDesc(PaperGenerationRecord::getId)
+                .last("LIMIT " + (pageSize + 1));
+
+        CursorPage<PaperGenerationRecord> page = CursorPage.of(paperGenerationRecordMapper.selectList(query),
+                pageSize, record -> new Object[] { record.getCreatedAt(), record.getId() });
+        return new CursorPage<>(toHistoryItems(page.getItems()), page.getNextCursor(), page.isHasMore());
+    }
+
+    /**
+     * 历史列表查询：只投影列表展示所需的列，跳过尚未完成或没有生成出题目的套卷（总题数为 0）
+     */
+    private LambdaQueryWrapper<PaperGenerationRecord> historyQuery(Long userId) {
+        return new LambdaQueryWrapper<PaperGenerationRecord>()
+                .select(PaperGenerationRecord::getId,
+                        PaperGenerationRecord::getSubjectId,
+                        PaperGenerationRecord::getPaperName,
+                        PaperGenerationRecord::getTotalQuestions,
+                        PaperGenerationRecord::getEnableThinking,
+                        PaperGenerationRecord::getCreatedAt)
+                .eq(PaperGenerationRecord::getUserId, userId)
+                .gt(PaperGenerationRecord::getTotalQuestions, 0);
+    }
+
+    /**
+     * 转换为列表项，科目名称从分类快照中读取
+     */
+    private List<PaperHistoryItem> toHistoryItems(List<PaperGenerationRecord> records) {
         return records.stream()
-                .map(record -> {
-                    QuestionCategory subject = questionCategoryMapper.selectById(record.getSubjectId());
-                    return PaperHistoryItem.builder()
-                            .id(record.getId())
-                            .paperName(record.getPaperName())
-                            .subjectName(subject != null ? subject.getName() : "未知科目")
-                            .totalQuestions(record.getTotalQuestions())
-                            .enableThinking(record.getEnableThinking())
-                            .createdAt(record.getCreatedAt())
-                            .build();
-                })
+                .map(record -> PaperHistoryItem.builder()
+                        .id(record.getId())
+                        .paperName(record.getPaperName())
+                        .subjectName(subjectName(record.getSubjectId()))
+                        .totalQuestions(record.getTotalQuestions())
+                        .enableThinking(record.getEnableThinking())
+                        .createdAt(record.getCreatedAt())
+                        .build())
                 .collect(Collectors.toList());
     }
 
+    private String subjectName(Long subjectId) {
+        QuestionCategory subject = questionCategoryStore.getById(subjectId);
+        return subject != null ? subject.getName() : "未知科目";
+    }
+
     @Override
     public PaperDetailResponse getPaperDetail(Long paperId, Long userId) {
         // 1. 查询套卷记录
@@ -424,10 +514,7 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
                         .eq(PaperQuestionDetail::getPaperId, paperId)
                         .orderByAsc(PaperQuestionDetail::getDisplayOrder));
 
-        // 3. 查询科目名称
-        QuestionCategory subject = questionCategoryMapper.selectById(record.getSubjectId());
-
-        // 4. 封装响应
+        // 3. 封装响应
         List<PaperDetailResponse.QuestionTypeDetail> detailList = details.stream()
                 .map(detail -> PaperDetailResponse.QuestionTypeDetail.builder()
                         .questionType(detail.getQuestionType())
@@ -443,7 +530,7 @@ public class PaperGenerationServiceImpl implements PaperGenerationService {
         return PaperDetailResponse.builder()
                 .id(record.getId())
                 .paperName(record.getPaperName())
-                .subjectName(subject != null ? subject.getName() : "未知科目")
+                .subjectName(subjectName(record.getSubjectId()))
                 .totalQuestions(record.getTotalQuestions())
                 .enableThinking(record.getEnableThinking())
                 .details(detailList)
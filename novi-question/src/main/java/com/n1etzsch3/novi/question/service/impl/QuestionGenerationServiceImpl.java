@@ -2,29 +2,50 @@ package com.n1etzsch3.novi.question.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.n1etzsch3.novi.aiconfig.factory.DynamicChatModelFactory;
+import com.n1etzsch3.novi.aiconfig.model.ChatModels;
 import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
 import com.n1etzsch3.novi.common.pojo.entity.AiModelConfig;
+import com.n1etzsch3.novi.question.config.QuestionGenerationProperties;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationEvent;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationResponse;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionHistoryItem;
-import com.n1etzsch3.novi.common.pojo.entity.QuestionExample;
 import com.n1etzsch3.novi.common.pojo.entity.QuestionGenerationRecord;
-import com.n1etzsch3.novi.question.mapper.QuestionExampleMapper;
 import com.n1etzsch3.novi.question.mapper.QuestionGenerationRecordMapper;
 import com.n1etzsch3.novi.question.service.QuestionGenerationService;
+import com.n1etzsch3.novi.question.store.QuestionExampleStore;
+import com.n1etzsch3.novi.question.store.QuestionPool;
+import com.n1etzsch3.novi.question.utils.QuestionOutputSchema;
 import com.n1etzsch3.novi.question.utils.QuestionPromptBuilder;
+import com.n1etzsch3.novi.question.utils.SseEventSender;
+import com.n1etzsch3.novi.question.utils.StreamingJsonExtractor;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 import java.util.stream.Collectors;
 
 /**
@@ -38,12 +59,15 @@ import java.util.stream.Collectors;
 @Slf4j
 public class QuestionGenerationServiceImpl implements QuestionGenerationService {
 
-    private final QuestionExampleMapper questionExampleMapper;
+    private final QuestionExampleStore questionExampleStore;
     private final QuestionGenerationRecordMapper questionGenerationRecordMapper;
     private final DynamicChatModelFactory dynamicChatModelFactory;
     private final AiModelConfigService aiModelConfigService;
     private final QuestionPromptBuilder questionPromptBuilder;
     private final ObjectMapper objectMapper;
+    private final QuestionGenerationProperties properties;
+    private final ExecutorService questionGenerationExecutor;
+    private final QuestionPool questionPool;
 
     @Override
     @Transactional(rollbackFor = Exception.class)
@@ -55,69 +79,260 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
             throw new IllegalArgumentException("为了保证质量，每次最多生成3道题目。");
         }
 
-        // 1. 查询示例题目 (Few-Shot)
-        // 优化：优先查询指定难度的示例，如果没有，则降级使用 medium 难度
-        List<QuestionExample> examples = questionExampleMapper.selectList(
-                new LambdaQueryWrapper<QuestionExample>()
-                        .eq(QuestionExample::getSubject, request.getSubject())
-                        .eq(QuestionExample::getQuestionType, request.getQuestionType())
-                        .eq(QuestionExample::getDifficulty, request.getDifficulty())
-                        .last("LIMIT 3"));
+        int quantity = request.getQuantity();
+
+        // 1. 默认模型、非深度思考的请求先从预生成池取题，不足的部分再实时生成
+        QuestionPool.PoolKey poolKey = poolKey(request);
+        List<JsonNode> pooled = poolKey != null ? questionPool.take(poolKey, userId, quantity) : List.of();
+        int liveQuantity = quantity - pooled.size();
+        if (!pooled.isEmpty()) {
+            log.info("Served {}/{} questions from the pre-generation pool", pooled.size(), quantity);
+        }
 
-        if (examples.isEmpty()) {
-            log.info("No examples found for difficulty: {}, falling back to 'medium'", request.getDifficulty());
-            examples = questionExampleMapper.selectList(
-                    new LambdaQueryWrapper<QuestionExample>()
-                            .eq(QuestionExample::getSubject, request.getSubject())
-                            .eq(QuestionExample::getQuestionType, request.getQuestionType())
-                            .eq(QuestionExample::getDifficulty, "medium")
-                            .last("LIMIT 3"));
+        // 2. 调用AI生成池中不足的题目（每道题一次独立调用）
+        List<List<Object>> perQuestion = new ArrayList<>(quantity);
+        pooled.forEach(question -> perQuestion.add(List.of(question)));
+        boolean shouldEnableThinking = false;
+        if (liveQuantity > 0) {
+            try (QuestionPool.ActiveRequest ignored = questionPool.trackActive()) {
+                shouldEnableThinking = shouldEnableThinking(request.getEnableThinking(), request.getModel());
+                List<List<Object>> live = generateLive(request, liveQuantity, shouldEnableThinking);
+                perQuestion.addAll(live);
+                offerToPool(poolKey, userId, live);
+            }
+        }
+
+        return saveResult(userId, request, shouldEnableThinking, perQuestion);
+    }
+
+    /**
+     * 流式生成题目
+     * <p>
+     * 池中取到的题目立即推送；其余题目在出题线程池中逐题生成，每道题校验通过后立即推送，
+     * 深度思考模式下同时推送思考过程增量。所有题目结束后再写入出题记录并发送完成事件，
+     * 请求线程只负责校验和构建提示词，不等待模型调用。
+     * 客户端断开或整体超时时中断仍在进行的单题任务，正在等待的模型流随之取消。
+     * </p>
+     */
+    @Override
+    public void generateQuestionsAsync(Long userId, QuestionGenerationRequest request, SseEmitter emitter) {
+        log.info("Starting streaming question generation for user: {}, subject: {}", userId, request.getSubject());
+
+        // 0. 校验数量，请求线程上直接抛出，由全局异常处理返回
+        if (request.getQuantity() > 3) {
+            throw new IllegalArgumentException("为了保证质量，每次最多生成3道题目。");
         }
 
-        // 2. 循环调用AI生成题目
-        List<Object> allQuestions = new java.util.ArrayList<>();
         int quantity = request.getQuantity();
+        SseEventSender sender = new SseEventSender(emitter);
+
+        // 1. 池中取到的题目立即推送
+        QuestionPool.PoolKey poolKey = poolKey(request);
+        List<JsonNode> pooled = poolKey != null ? questionPool.take(poolKey, userId, quantity) : List.of();
+        List<List<Object>> perQuestion = new ArrayList<>(quantity);
+        for (JsonNode question : pooled) {
+            send(sender, questionEvent(perQuestion.size(), List.of(question)));
+            perQuestion.add(List.of(question));
+        }
 
-        // 检查是否应该启用深度思考 (需要检查指定的模型或活跃模型)
-        boolean shouldEnableThinking = shouldEnableThinking(request.getEnableThinking(), request.getModel());
-        log.info("Deep thinking enabled: {}, model: {}", shouldEnableThinking, request.getModel());
+        int liveQuantity = quantity - pooled.size();
+        if (liveQuantity == 0) {
+            log.info("Served all {} questions from the pre-generation pool", quantity);
+            finishStream(userId, request, false, perQuestion, sender);
+            return;
+        }
 
-        // 创建单题请求对象 (用于构建提示词)
-        QuestionGenerationRequest singleRequest = new QuestionGenerationRequest();
-        singleRequest.setSubject(request.getSubject());
-        singleRequest.setQuestionType(request.getQuestionType());
-        singleRequest.setTheme(request.getTheme());
-        singleRequest.setDifficulty(request.getDifficulty());
-        singleRequest.setQuantity(1); // 强制每次只生成1道
-        singleRequest.setEnableThinking(shouldEnableThinking);
-        singleRequest.setModel(request.getModel());
+        // 2. 其余题目逐题异步生成，每道题完成后立即推送
+        QuestionPool.ActiveRequest active = questionPool.trackActive();
+        boolean shouldEnableThinking;
+        List<String> prompts;
+        QuestionOutputSchema schema;
+        try {
+            shouldEnableThinking = shouldEnableThinking(request.getEnableThinking(), request.getModel());
+            prompts = buildPrompts(request, liveQuantity, shouldEnableThinking);
+            schema = questionPromptBuilder.resolveSchema(request.getSubject(), request.getQuestionType());
+        } catch (RuntimeException e) {
+            active.close();
+            throw e;
+        }
 
-        for (int i = 0; i < quantity; i++) {
-            try {
-                // 构建提示词
-                String promptText = questionPromptBuilder.buildPrompt(singleRequest, examples);
-                log.info("Generating question {}/{}. Prompt: {}", i + 1, quantity, promptText);
-
-                // 调用AI (带重试，传递深度思考配置和模型名)
-                String jsonContent = callAiWithRetry(promptText, shouldEnableThinking, request.getModel());
-
-                // 解析并添加到总列表
-                // AI返回的是一个数组，我们需要把里面的元素取出来放进总列表
-                com.fasterxml.jackson.databind.JsonNode rootNode = objectMapper.readTree(jsonContent);
-                if (rootNode.isArray()) {
-                    for (com.fasterxml.jackson.databind.JsonNode node : rootNode) {
-                        allQuestions.add(node);
+        List<LiveQuestion> live = new ArrayList<>(liveQuantity);
+        for (int i = 0; i < liveQuantity; i++) {
+            int index = pooled.size() + i;
+            String promptText = prompts.get(i);
+            Consumer<String> reasoningListener = shouldEnableThinking
+                    ? delta -> send(sender, reasoningEvent(index, delta))
+                    : null;
+            live.add(submitQuestion(index, quantity, () -> {
+                List<Object> questions = generateSingle(index, quantity, promptText, schema, shouldEnableThinking,
+                        request.getModel(), reasoningListener);
+                send(sender, questions != null
+                        ? questionEvent(index, questions)
+                        : errorEvent(index, "该题生成失败"));
+                return questions;
+            }));
+        }
+        // 客户端断开后不再需要结果：中断仍在进行的模型调用
+        sender.onDisconnect(() -> live.forEach(LiveQuestion::cancel));
+
+        // 3. 全部结束（或超时）后按顺序汇总、回填预生成池并落库；
+        // 汇总涉及数据库写入，不在完成最后一道题的线程或超时计时线程上执行
+        CompletableFuture.allOf(live.stream().map(LiveQuestion::result).toArray(CompletableFuture[]::new))
+                .orTimeout(properties.getTimeout().toMillis(), TimeUnit.MILLISECONDS)
+                .whenComplete((v, ex) -> runOnExecutor(() -> {
+                    try {
+                        List<List<Object>> results = new ArrayList<>(liveQuantity);
+                        for (LiveQuestion question : live) {
+                            if (!question.result().isDone()) {
+                                log.error("Question {}/{} timed out after {}", question.index() + 1, quantity,
+                                        properties.getTimeout());
+                                question.cancel();
+                                send(sender, errorEvent(question.index(), "该题生成超时"));
+                            }
+                            results.add(question.result().getNow(null));
+                        }
+                        perQuestion.addAll(results);
+                        offerToPool(poolKey, userId, results);
+                    } finally {
+                        active.close();
                     }
-                } else {
-                    allQuestions.add(rootNode);
+                    finishStream(userId, request, shouldEnableThinking, perQuestion, sender);
+                }));
+    }
+
+    /**
+     * 正在生成的单道题目
+     *
+     * @param index  题目序号（从 0 开始）
+     * @param result 生成结果，失败、被取消或被拒绝时为 null
+     * @param task   出题线程池中的任务，取消时中断执行线程
+     */
+    private record LiveQuestion(int index, CompletableFuture<List<Object>> result, Future<?> task) {
+
+        void cancel() {
+            task.cancel(true);
+            result.complete(null);
+        }
+    }
+
+    /**
+     * 把单题任务提交到出题线程池，保留 Future 以便中断
+     * <p>
+     * 中断会让等待中的 blockLast 取消模型流并放弃重试。线程池拒绝任务时该题直接按失败处理。
+     * </p>
+     */
+    private LiveQuestion submitQuestion(int index, int total, Callable<List<Object>> generation) {
+        CompletableFuture<List<Object>> result = new CompletableFuture<>();
+        Future<?> task;
+        try {
+            task = questionGenerationExecutor.submit(() -> {
+                List<Object> questions = null;
+                try {
+                    questions = generation.call();
+                } catch (Exception e) {
+                    log.error("Failed to generate question {}/{}", index + 1, total, e);
+                } finally {
+                    result.complete(questions);
                 }
+            });
+        } catch (RejectedExecutionException e) {
+            log.error("Question generation executor rejected question {}/{}", index + 1, total, e);
+            result.complete(null);
+            task = CompletableFuture.completedFuture(null);
+        }
+        return new LiveQuestion(index, result, task);
+    }
 
-            } catch (Exception e) {
-                log.error("Failed to generate question {}/{}", i + 1, quantity, e);
-                // 可以选择继续生成剩下的，或者直接报错。这里选择继续，尽可能返回部分结果
-                // 但如果一个都生成不出来，最后会是空的
+    /**
+     * 在出题线程池中执行，线程池拒绝（如正在关闭）时在当前线程执行，保证 SSE 连接总能结束
+     */
+    private void runOnExecutor(Runnable task) {
+        try {
+            questionGenerationExecutor.execute(task);
+        } catch (RejectedExecutionException e) {
+            log.warn("Question generation executor rejected the task, running it on {}",
+                    Thread.currentThread().getName());
+            task.run();
+        }
+    }
+
+    /**
+     * 写入出题记录并发送完成事件；没有任何题目成功时发送整体错误事件
+     */
+    private void finishStream(Long userId, QuestionGenerationRequest request, boolean shouldEnableThinking,
+            List<List<Object>> perQuestion, SseEventSender sender) {
+        try {
+            QuestionGenerationResponse response = saveResult(userId, request, shouldEnableThinking, perQuestion);
+            send(sender, QuestionGenerationEvent.builder()
+                    .eventType("complete")
+                    .recordId(response.getRecordId())
+                    .successCount(response.getSuccessCount())
+                    .failedCount(response.getFailedCount())
+                    .timestamp(LocalDateTime.now())
+                    .build());
+            log.info("Streaming question generation completed for user: {}, recordId: {}", userId,
+                    response.getRecordId());
+        } catch (Exception e) {
+            log.error("Streaming question generation failed for user: {}", userId, e);
+            send(sender, errorEvent(null, e.getMessage()));
+        }
+        sender.complete();
+    }
+
+    private static void send(SseEventSender sender, QuestionGenerationEvent event) {
+        sender.send(SseEmitter.event().name(event.getEventType()).data(event));
+    }
+
+    private static QuestionGenerationEvent questionEvent(int index, List<Object> questions) {
+        return QuestionGenerationEvent.builder()
+                .eventType("question")
+                .index(index)
+                .questions(questions)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static QuestionGenerationEvent reasoningEvent(int index, String reasoning) {
+        return QuestionGenerationEvent.builder()
+                .eventType("reasoning")
+                .index(index)
+                .reasoning(reasoning)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    private static QuestionGenerationEvent errorEvent(Integer index, String error) {
+        return QuestionGenerationEvent.builder()
+                .eventType("error")
+                .index(index)
+                .error(error)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    /**
+     * 按题目顺序汇总结果并写入出题记录
+     *
+     * @param perQuestion 每道题的生成结果，失败的题目为 null
+     * @return 出题响应
+     */
+    private QuestionGenerationResponse saveResult(Long userId, QuestionGenerationRequest request,
+            boolean shouldEnableThinking, List<List<Object>> perQuestion) {
+        int quantity = request.getQuantity();
+
+        // 按题目顺序汇总，失败的题目跳过，尽可能返回部分结果
+        List<Object> allQuestions = new ArrayList<>();
+        int successCount = 0;
+        for (List<Object> questions : perQuestion) {
+            if (questions != null) {
+                allQuestions.addAll(questions);
+                successCount++;
             }
         }
+        int failedCount = quantity - successCount;
+        if (failedCount > 0) {
+            log.warn("Question generation partially failed: {}/{} succeeded", successCount, quantity);
+        }
 
         if (allQuestions.isEmpty()) {
             throw new RuntimeException("多次尝试后未能生成任何题目。");
@@ -152,7 +367,7 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
                 record.getSubject(), record.getQuestionType(), record.getTheme(), finalJson.length());
 
         // 5. 返回结果
-        return new QuestionGenerationResponse(
+        QuestionGenerationResponse response = new QuestionGenerationResponse(
                 record.getId(),
                 finalJson,
                 record.getSubject(),
@@ -160,6 +375,203 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
                 record.getTheme(),
                 record.getDifficulty(),
                 record.getQuantity());
+        response.setSuccessCount(successCount);
+        response.setFailedCount(failedCount);
+        return response;
+    }
+
+    /**
+     * 实时生成题目
+     *
+     * @param request              出题请求
+     * @param quantity             需要实时生成的题目数
+     * @param shouldEnableThinking 是否启用深度思考
+     * @return 每道题的生成结果，失败的题目为 null
+     */
+    private List<List<Object>> generateLive(QuestionGenerationRequest request, int quantity,
+            boolean shouldEnableThinking) {
+        log.info("Deep thinking enabled: {}, model: {}", shouldEnableThinking, request.getModel());
+
+        // 提示词在当前线程按顺序构建，模型调用按配置并发或顺序执行
+        List<String> prompts = buildPrompts(request, quantity, shouldEnableThinking);
+        QuestionOutputSchema schema = questionPromptBuilder.resolveSchema(request.getSubject(),
+                request.getQuestionType());
+        return properties.isConcurrent() && quantity > 1
+                ? generateConcurrently(prompts, schema, shouldEnableThinking, request.getModel())
+                : generateSequentially(prompts, schema, shouldEnableThinking, request.getModel());
+    }
+
+    /**
+     * 按顺序构建每道题的提示词
+     */
+    private List<String> buildPrompts(QuestionGenerationRequest request, int quantity, boolean shouldEnableThinking) {
+        String examples = resolveExamples(request.getSubject(), request.getQuestionType(), request.getDifficulty());
+        QuestionGenerationRequest singleRequest = singleRequest(request.getSubject(), request.getQuestionType(),
+                request.getTheme(), request.getDifficulty(), shouldEnableThinking, request.getModel());
+        List<String> prompts = new ArrayList<>(quantity);
+        for (int i = 0; i < quantity; i++) {
+            String promptText = questionPromptBuilder.buildPrompt(singleRequest, examples);
+            log.info("Generating question {}/{}. Prompt: {}", i + 1, quantity, promptText);
+            prompts.add(promptText);
+        }
+        return prompts;
+    }
+
+    /**
+     * 获取示例题目 (Few-Shot) 的渲染文本
+     * <p>
+     * 从内存示例存储读取：优先指定难度的示例，没有则已降级为 medium 难度，示例文本也已预先渲染。
+     * </p>
+     */
+    private String resolveExamples(String subject, String questionType, String difficulty) {
+        QuestionExampleStore.ExampleSet examples = questionExampleStore.get(subject, questionType, difficulty);
+        if (!Objects.equals(examples.difficulty(), difficulty)) {
+            log.info("No examples found for difficulty: {}, falling back to '{}'", difficulty,
+                    examples.isEmpty() ? "none" : examples.difficulty());
+        }
+        return examples.rendered();
+    }
+
+    /**
+     * 创建单题请求对象 (用于构建提示词)
+     */
+    private static QuestionGenerationRequest singleRequest(String subject, String questionType, String theme,
+            String difficulty, boolean enableThinking, String model) {
+        QuestionGenerationRequest singleRequest = new QuestionGenerationRequest();
+        singleRequest.setSubject(subject);
+        singleRequest.setQuestionType(questionType);
+        singleRequest.setTheme(theme);
+        singleRequest.setDifficulty(difficulty);
+        singleRequest.setQuantity(1); // 强制每次只生成1道
+        singleRequest.setEnableThinking(enableThinking);
+        singleRequest.setModel(model);
+        return singleRequest;
+    }
+
+    /**
+     * 只有使用默认模型、不开启深度思考的请求才与池中题目等价，可以走预生成池
+     *
+     * @return 组合键；不走池时为 null
+     */
+    private QuestionPool.PoolKey poolKey(QuestionGenerationRequest request) {
+        boolean eligible = questionPool.isEnabled()
+                && !StringUtils.hasText(request.getModel())
+                && !Boolean.TRUE.equals(request.getEnableThinking());
+        return eligible
+                ? QuestionPool.key(request.getSubject(), request.getQuestionType(), request.getDifficulty(),
+                        request.getTheme())
+                : null;
+    }
+
+    /**
+     * 实时生成成功的题目放回预生成池
+     */
+    private void offerToPool(QuestionPool.PoolKey poolKey, Long userId, List<List<Object>> live) {
+        if (poolKey == null) {
+            return;
+        }
+        questionPool.offer(poolKey, userId, live.stream()
+                .filter(Objects::nonNull)
+                .flatMap(List::stream)
+                .map(JsonNode.class::cast)
+                .toList());
+    }
+
+    /**
+     * 后台补充预生成池
+     * <p>
+     * 池内部判断是否空闲或处于低峰时段；每次为一个组合生成一道题，
+     * 与实时出题使用相同的提示词、重试和 JSON 校验。
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${novi.question.pool.refill.interval:1m}",
+            initialDelayString = "${novi.question.pool.refill.interval:1m}")
+    public void refillPool() {
+        questionPool.refill(this::generateForPool);
+    }
+
+    private List<JsonNode> generateForPool(QuestionPool.PoolKey key) {
+        String examples = resolveExamples(key.subject(), key.questionType(), key.difficulty());
+        String promptText = questionPromptBuilder.buildPrompt(
+                singleRequest(key.subject(), key.questionType(), key.theme(), key.difficulty(), false, null),
+                examples);
+        return callAiWithRetry(promptText,
+                questionPromptBuilder.resolveSchema(key.subject(), key.questionType()), false, null, null);
+    }
+
+    /**
+     * 在出题线程池中并发发出单题调用，按题目顺序收集结果
+     * <p>
+     * 每道题各自带重试；整体等待时间受 timeout 限制，超时或失败的题目结果为 null。
+     * 超时的题目通过 ExecutorService 返回的 Future 中断执行线程，正在等待的模型流随之取消，
+     * 不会在请求返回后继续占用模型配额。
+     * </p>
+     */
+    private List<List<Object>> generateConcurrently(List<String> prompts, QuestionOutputSchema schema,
+            boolean enableThinking, String modelName) {
+        List<Future<List<Object>>> futures = new ArrayList<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            int index = i;
+            String promptText = prompts.get(i);
+            try {
+                futures.add(questionGenerationExecutor.submit(
+                        () -> generateSingle(index, prompts.size(), promptText, schema, enableThinking, modelName,
+                                null)));
+            } catch (RejectedExecutionException e) {
+                log.error("Question generation executor rejected question {}/{}", index + 1, prompts.size(), e);
+                futures.add(CompletableFuture.completedFuture(null));
+            }
+        }
+
+        long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+        List<List<Object>> results = new ArrayList<>(futures.size());
+        for (int i = 0; i < futures.size(); i++) {
+            Future<List<Object>> future = futures.get(i);
+            try {
+                long remaining = Math.max(0L, deadline - System.nanoTime());
+                results.add(future.get(remaining, TimeUnit.NANOSECONDS));
+            } catch (TimeoutException e) {
+                log.error("Question {}/{} timed out after {}", i + 1, futures.size(), properties.getTimeout());
+                future.cancel(true);
+                results.add(null);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new RuntimeException("出题被中断", e);
+            } catch (ExecutionException e) {
+                results.add(null);
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 在当前线程逐题调用
+     */
+    private List<List<Object>> generateSequentially(List<String> prompts, QuestionOutputSchema schema,
+            boolean enableThinking, String modelName) {
+        List<List<Object>> results = new ArrayList<>(prompts.size());
+        for (int i = 0; i < prompts.size(); i++) {
+            results.add(generateSingle(i, prompts.size(), prompts.get(i), schema, enableThinking, modelName, null));
+        }
+        return results;
+    }
+
+    /**
+     * 生成单道题目
+     *
+     * @param reasoningListener 思考过程增量的接收者，可为空
+     * @return 解析出的题目节点；失败时返回 null
+     */
+    private List<Object> generateSingle(int index, int total, String promptText, QuestionOutputSchema schema,
+            boolean enableThinking, String modelName, Consumer<String> reasoningListener) {
+        try {
+            // 调用AI (带重试，传递深度思考配置和模型名)，返回已解析的题目节点
+            return new ArrayList<>(callAiWithRetry(promptText, schema, enableThinking, modelName, reasoningListener));
+        } catch (Exception e) {
+            log.error("Failed to generate question {}/{}", index + 1, total, e);
+            return null;
+        }
     }
 
     /**
@@ -202,13 +614,20 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
 
     /**
      * 调用AI并带有重试机制
+     * <p>
+     * 统一使用流式调用，边接收边提取并校验题目：输出一旦确定无法满足题型输出约束，
+     * 立即取消上游订阅并开始下一次尝试，不再为注定失败的输出等待完整响应。
+     * </p>
      *
      * @param promptText     提示词文本
+     * @param schema         题型输出约束（可为空）
      * @param enableThinking 是否启用深度思考
      * @param modelName      指定的模型名称（可为空）
-     * @return AI生成的JSON内容
+     * @param reasoningListener 思考过程增量的接收者（可为空）
+     * @return 解析出的题目节点
      */
-    private String callAiWithRetry(String promptText, boolean enableThinking, String modelName) {
+    private List<JsonNode> callAiWithRetry(String promptText, QuestionOutputSchema schema, boolean enableThinking,
+            String modelName, Consumer<String> reasoningListener) {
         int maxRetries = 1;
         int attempt = 0;
         Exception lastException = null;
@@ -223,9 +642,9 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
 
                 // 构建 Prompt 和 Options
                 Prompt prompt;
-                if (enableThinking && chatModel instanceof com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel) {
+                if (enableThinking && ChatModels
+                        .unwrap(chatModel) instanceof com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel dashScopeChatModel) {
                     // DashScope 深度思考模式必须使用流式调用，并且需要特定的 Options
-                    com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel dashScopeChatModel = (com.alibaba.cloud.ai.dashscope.chat.DashScopeChatModel) chatModel;
                     com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions options = com.alibaba.cloud.ai.dashscope.chat.DashScopeChatOptions
                             .builder()
                             .withModel(dashScopeChatModel.getDefaultOptions().getModel())
@@ -234,70 +653,41 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
                             .build();
                     prompt = new org.springframework.ai.chat.prompt.Prompt(promptText, options);
                     log.info("Using DashScope Deep Thinking mode (Streaming required)");
-
-                    // 使用流式调用并聚合结果
-                    // 注册 ReasoningContentAdvisor 以提取思考过程
-                    StringBuilder contentBuilder = new StringBuilder();
-
-                    chatModel.stream(prompt)
-                            .doOnNext(chatResponse -> {
-                                if (chatResponse.getResults() != null && !chatResponse.getResults().isEmpty()) {
-                                    // 尝试提取思考内容并打印日志 (模拟 Advisor 的行为)
-                                    org.springframework.ai.chat.metadata.ChatGenerationMetadata metadata = chatResponse
-                                            .getResults().get(0)
-                                            .getMetadata();
-                                    if (metadata != null) {
-                                        Object reasoning = metadata.get("reasoning_content");
-                                        if (reasoning == null) {
-                                            reasoning = metadata.get("reasoningContent");
-                                        }
-                                        if (reasoning != null
-                                                && org.springframework.util.StringUtils.hasText(reasoning.toString())) {
-                                            log.debug("Thinking: {}", reasoning);
-                                        }
-                                    }
-
-                                    // 聚合实际内容
-                                    String part = chatResponse.getResults().get(0).getOutput().getText();
-                                    if (part != null) {
-                                        contentBuilder.append(part);
-                                    }
-                                }
-                            })
-                            .blockLast(); // 阻塞直到流结束
-
-                    String rawContent = contentBuilder.toString();
-                    log.info("AI Raw Content Length: {}", rawContent.length());
-
-                    String jsonContent = cleanJsonContent(rawContent);
-                    validateJson(jsonContent);
-                    return jsonContent;
-
                 } else {
                     if (enableThinking) {
                         log.info("Deep thinking enabled using OpenAiCompatibleChatModel.");
                     }
-                    // 普通模式，可以使用 call 或 stream
                     prompt = new org.springframework.ai.chat.prompt.Prompt(promptText);
-                    ChatResponse response = chatModel.call(prompt);
+                }
 
-                    // Log thinking content if available
-                    if (enableThinking && response.getResults() != null && !response.getResults().isEmpty()) {
-                        Generation gen = response.getResults().get(0);
-                        if (gen.getMetadata() != null && gen.getMetadata().containsKey("reasoning_content")) {
-                            log.debug("Thinking (Generic): {}", (Object) gen.getMetadata().get("reasoning_content"));
-                        }
-                    }
+                // 边接收边提取题目；输出不合法或违反约束时 feed 抛出异常，错误信号会取消上游订阅，
+                // 根容器闭合后也不再等待模型后续的说明文字
+                StreamingJsonExtractor extractor = new StreamingJsonExtractor(objectMapper, schema);
 
-                    String rawContent = response.getResults().get(0).getOutput().getText();
-                    log.info("AI Raw Content Length: {}", rawContent != null ? rawContent.length() : 0);
+                chatModel.stream(prompt)
+                        .doOnNext(chatResponse -> {
+                            if (chatResponse.getResults() != null && !chatResponse.getResults().isEmpty()) {
+                                Generation generation = chatResponse.getResults().get(0);
+                                if (enableThinking) {
+                                    forwardReasoning(generation, reasoningListener);
+                                }
+                                // 增量提取实际内容
+                                extractor.feed(generation.getOutput().getText());
+                            }
+                        })
+                        .takeUntil(chatResponse -> extractor.isComplete())
+                        // 阻塞直到根容器闭合或流结束；超时会取消上游订阅，按失败重试
+                        .blockLast(properties.getAttemptTimeout());
 
-                    String jsonContent = cleanJsonContent(rawContent);
-                    validateJson(jsonContent);
-                    return jsonContent;
-                }
+                log.info("AI Raw Content Length: {}", extractor.length());
+                return extractor.finish();
 
             } catch (Exception e) {
+                if (Thread.currentThread().isInterrupted() || e.getCause() instanceof InterruptedException) {
+                    // 任务被取消（客户端断开或整体超时），blockLast 已取消模型流，不再重试
+                    Thread.currentThread().interrupt();
+                    throw new RuntimeException("题目生成已取消", e);
+                }
                 log.warn("AI generation failed on attempt {}/{}: {}", attempt, maxRetries + 1, e.getMessage());
                 lastException = e;
             }
@@ -305,26 +695,90 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
         throw new RuntimeException("重试后未能生成有效的题目", lastException);
     }
 
+    /**
+     * 提取思考内容并打印日志 (模拟 ReasoningContentAdvisor 的行为)
+     * <p>
+     * DashScope 放在生成元数据中，OpenAI 兼容模型放在消息元数据中。
+     * </p>
+     */
+    private static void forwardReasoning(Generation generation, Consumer<String> reasoningListener) {
+        Object reasoning = null;
+        org.springframework.ai.chat.metadata.ChatGenerationMetadata metadata = generation.getMetadata();
+        if (metadata != null) {
+            reasoning = metadata.get("reasoning_content");
+            if (reasoning == null) {
+                reasoning = metadata.get("reasoningContent");
+            }
+        }
+        if (reasoning == null && generation.getOutput().getMetadata() != null) {
+            reasoning = generation.getOutput().getMetadata().get("reasoning_content");
+        }
+        if (reasoning != null && StringUtils.hasText(reasoning.toString())) {
+            log.debug("Thinking: {}", reasoning);
+            if (reasoningListener != null) {
+                reasoningListener.accept(reasoning.toString());
+            }
+        }
+    }
+
     @Override
     public List<QuestionHistoryItem> getGenerationHistory(Long userId) {
         List<QuestionGenerationRecord> records = questionGenerationRecordMapper.selectList(
-                new LambdaQueryWrapper<QuestionGenerationRecord>()
-                        .eq(QuestionGenerationRecord::getUserId, userId)
+                historyQuery(userId)
                         .orderByDesc(QuestionGenerationRecord::getCreatedAt));
 
         return records.stream()
-                .map(record -> new QuestionHistoryItem(
-                        record.getId(),
-                        record.getSubject(),
-                        record.getQuestionType(),
-                        record.getTheme(),
-                        record.getDifficulty(),
-                        record.getQuantity(),
-                        record.getEnableThinking(), // 包含深度思考标记
-                        record.getCreatedAt()))
+                .map(this::toHistoryItem)
                 .collect(Collectors.toList());
     }
 
+    @Override
+    public CursorPage<QuestionHistoryItem> getGenerationHistoryPage(Long userId, String cursor, Integer limit) {
+        int pageSize = CursorPage.normalizeLimit(limit);
+        String[] key = CursorPage.decode(cursor, 1);
+        Long beforeId = key == null ? null : CursorPage.parseId(key[0]);
+
+        // 自增 ID 与创建时间同序，沿 idx_user_id (user_id[, id]) 倒序扫描，游标为上一页最后一条的 ID
+        List<QuestionGenerationRecord> records = questionGenerationRecordMapper.selectList(
+                historyQuery(userId)
+                        .lt(beforeId != null, QuestionGenerationRecord::getId, beforeId)
+                        .orderByDesc(QuestionGenerationRecord::getId)
+                        .last("LIMIT " + (pageSize + 1)));
+
+        CursorPage<QuestionGenerationRecord> page = CursorPage.of(records, pageSize,
+                record -> new Object[] { record.getId() });
+        return new CursorPage<>(page.getItems().stream().map(this::toHistoryItem).collect(Collectors.toList()),
+                page.getNextCursor(), page.isHasMore());
+    }
+
+    /**
+     * 历史列表查询：只投影列表展示所需的列，不读取 generated_questions 大字段
+     */
+    private LambdaQueryWrapper<QuestionGenerationRecord> historyQuery(Long userId) {
+        return new LambdaQueryWrapper<QuestionGenerationRecord>()
+                .select(QuestionGenerationRecord::getId,
+                        QuestionGenerationRecord::getSubject,
+                        QuestionGenerationRecord::getQuestionType,
+                        QuestionGenerationRecord::getTheme,
+                        QuestionGenerationRecord::getDifficulty,
+                        QuestionGenerationRecord::getQuantity,
+                        QuestionGenerationRecord::getEnableThinking,
+                        QuestionGenerationRecord::getCreatedAt)
+                .eq(QuestionGenerationRecord::getUserId, userId);
+    }
+
+    private QuestionHistoryItem toHistoryItem(QuestionGenerationRecord record) {
+        return new QuestionHistoryItem(
+                record.getId(),
+                record.getSubject(),
+                record.getQuestionType(),
+                record.getTheme(),
+                record.getDifficulty(),
+                record.getQuantity(),
+                record.getEnableThinking(), // 包含深度思考标记
+                record.getCreatedAt());
+    }
+
     @Override
     public QuestionGenerationResponse getRecordDetail(Long recordId, Long userId) {
         QuestionGenerationRecord record = questionGenerationRecordMapper.selectOne(
@@ -378,62 +832,4 @@ public class QuestionGenerationServiceImpl implements QuestionGenerationService
 
         log.info("Batch deleted {} question generation records for user {}", deletedCount, userId);
     }
-
-    /**
-     * 清理AI返回的内容，提取有效的JSON部分
-     */
-    private String cleanJsonContent(String content) {
-        if (content == null) {
-            return "[]";
-        }
-        String cleaned = content.trim();
-
-        // 寻找第一个 '{' 或 '['
-        int firstBrace = cleaned.indexOf('{');
-        int firstBracket = cleaned.indexOf('[');
-
-        int start = -1;
-        if (firstBrace != -1 && firstBracket != -1) {
-            start = Math.min(firstBrace, firstBracket);
-        } else if (firstBrace != -1) {
-            start = firstBrace;
-        } else if (firstBracket != -1) {
-            start = firstBracket;
-        }
-
-        if (start == -1) {
-            return "[]"; // 没有找到JSON起始符号
-        }
-
-        // 寻找最后一个 '}' 或 ']'
-        int lastBrace = cleaned.lastIndexOf('}');
-        int lastBracket = cleaned.lastIndexOf(']');
-
-        int end = -1;
-        if (lastBrace != -1 && lastBracket != -1) {
-            end = Math.max(lastBrace, lastBracket);
-        } else if (lastBrace != -1) {
-            end = lastBrace;
-        } else if (lastBracket != -1) {
-            end = lastBracket;
-        }
-
-        if (end == -1 || end < start) {
-            return "[]"; // 没有找到JSON结束符号或顺序错误
-        }
-
-        return cleaned.substring(start, end + 1);
-    }
-
-    /**
-     * 验证JSON格式是否有效
-     */
-    private void validateJson(String json) {
-        try {
-            objectMapper.readTree(json);
-        } catch (JsonProcessingException e) {
-            log.error("Invalid JSON from AI: {}", json, e);
-            throw new RuntimeException("AI 生成了无效的数据", e);
-        }
-    }
 }
@@ -0,0 +1,256 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.n1etzsch3.novi.question.mapper.QuestionCategoryMapper;
+import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 题目分类内存快照
+ * <p>
+ * question_category 是一张只有几十行、极少变动的字典表，却在出题、组卷、历史列表的每条路径上被反复查询。
+ * 这里首次访问时一次性加载整张表，构建按 ID、按编码、按 (名称, 类型) 和按父级索引的不可变快照，
+ * 之后所有查询都只读快照，不产生 SQL。
+ * </p>
+ * <p>
+ * 数据同步方式：定时任务重新读取整张表，与当前快照逐行比较，内容有变化时原子替换为新快照；
+ * 后台直接修改分类后也可调用 {@link #reload()} 立即生效。读操作始终看到某一个完整版本，不会读到半新半旧的数据。
+ * </p>
+ * <p>
+ * 返回的分类对象由快照内所有调用方共享，只读，调用方不得修改。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuestionCategoryStore {
+
+    /**
+     * 分类类型：科目
+     */
+    public static final int TYPE_SUBJECT = 1;
+
+    /**
+     * 分类类型：题型
+     */
+    public static final int TYPE_QUESTION_TYPE = 2;
+
+    private static final Comparator<QuestionCategory> SORT_ORDER = Comparator
+            .comparing(QuestionCategory::getSortOrder, Comparator.nullsFirst(Comparator.naturalOrder()))
+            .thenComparing(QuestionCategory::getId, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final QuestionCategoryMapper questionCategoryMapper;
+
+    private volatile Snapshot snapshot;
+
+    /**
+     * 按 ID 获取分类
+     *
+     * @param id 分类 ID
+     * @return 分类，不存在时返回 null
+     */
+    public QuestionCategory getById(Long id) {
+        return id != null ? snapshot().byId.get(id) : null;
+    }
+
+    /**
+     * 按编码获取分类（编码全表唯一）
+     *
+     * @param code 分类编码
+     * @return 分类，不存在时返回 null
+     */
+    public QuestionCategory getByCode(String code) {
+        return code != null ? snapshot().byCode.get(code) : null;
+    }
+
+    /**
+     * 按名称和类型获取分类，同名时取排序最靠前的一条
+     *
+     * @param name         分类名称
+     * @param categoryType 分类类型
+     * @return 分类，不存在时返回 null
+     */
+    public QuestionCategory getByName(String name, int categoryType) {
+        if (name == null) {
+            return null;
+        }
+        Map<String, QuestionCategory> byName = snapshot().byTypeAndName.get(categoryType);
+        return byName != null ? byName.get(name) : null;
+    }
+
+    /**
+     * 获取指定类型的所有分类，按排序号升序
+     *
+     * @param categoryType 分类类型
+     * @return 分类列表（不可修改）
+     */
+    public List<QuestionCategory> getByType(int categoryType) {
+        return snapshot().byType.getOrDefault(categoryType, Collections.emptyList());
+    }
+
+    /**
+     * 获取指定父级下某类型的子分类，按排序号升序
+     *
+     * @param parentId     父级 ID
+     * @param categoryType 分类类型
+     * @return 子分类列表（不可修改）
+     */
+    public List<QuestionCategory> getChildren(Long parentId, int categoryType) {
+        List<QuestionCategory> children = snapshot().childrenByParent.get(parentId);
+        if (children == null) {
+            return Collections.emptyList();
+        }
+        return children.stream()
+                .filter(child -> Objects.equals(child.getCategoryType(), categoryType))
+                .toList();
+    }
+
+    /**
+     * 获取分类树，根节点为 parent_id = 0 的分类
+     *
+     * @return 树形结构的分类列表（不可修改）
+     */
+    public List<QuestionCategory> getTree() {
+        return snapshot().tree;
+    }
+
+    /**
+     * 定时同步：整表读取，内容有变化时替换快照
+     */
+    @Scheduled(fixedDelayString = "${novi.question.category.refresh-interval:30s}",
+            initialDelayString = "${novi.question.category.refresh-interval:30s}")
+    public void refresh() {
+        if (snapshot == null) {
+            return;
+        }
+        try {
+            reload();
+        } catch (Exception e) {
+            log.warn("Failed to refresh question categories: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 立即从数据库重新加载，内容与当前快照相同时保持不变
+     */
+    public synchronized void reload() {
+        List<QuestionCategory> rows = questionCategoryMapper.selectList(null);
+        Snapshot current = snapshot;
+        if (current != null && current.rows.equals(rows)) {
+            return;
+        }
+        snapshot = new Snapshot(rows);
+        log.info("Loaded {} question categories into memory", rows.size());
+    }
+
+    private Snapshot snapshot() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    reload();
+                }
+                current = snapshot;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 某一时刻 question_category 的完整只读视图
+     */
+    private static final class Snapshot {
+
+        private final List<QuestionCategory> rows;
+        private final Map<Long, QuestionCategory> byId;
+        private final Map<String, QuestionCategory> byCode;
+        private final Map<Integer, Map<String, QuestionCategory>> byTypeAndName;
+        private final Map<Integer, List<QuestionCategory>> byType;
+        private final Map<Long, List<QuestionCategory>> childrenByParent;
+        private final List<QuestionCategory> tree;
+
+        private Snapshot(List<QuestionCategory> loaded) {
+            List<QuestionCategory> sorted = loaded.stream().map(Snapshot::copy).sorted(SORT_ORDER).toList();
+
+            Map<Long, QuestionCategory> ids = new HashMap<>();
+            Map<String, QuestionCategory> codes = new HashMap<>();
+            Map<Integer, Map<String, QuestionCategory>> names = new HashMap<>();
+            Map<Integer, List<QuestionCategory>> types = new HashMap<>();
+            Map<Long, List<QuestionCategory>> children = new HashMap<>();
+            for (QuestionCategory category : sorted) {
+                ids.put(category.getId(), category);
+                codes.putIfAbsent(category.getCode(), category);
+                names.computeIfAbsent(category.getCategoryType(), k -> new HashMap<>())
+                        .putIfAbsent(category.getName(), category);
+                types.computeIfAbsent(category.getCategoryType(), k -> new ArrayList<>()).add(category);
+                children.computeIfAbsent(category.getParentId(), k -> new ArrayList<>()).add(category);
+            }
+
+            this.rows = loaded.stream().map(Snapshot::copy).toList();
+            this.byId = Map.copyOf(ids);
+            this.byCode = Map.copyOf(codes);
+            this.byTypeAndName = freeze(names);
+            this.byType = freezeLists(types);
+            this.childrenByParent = freezeLists(children);
+            this.tree = buildTree(0L, this.childrenByParent);
+        }
+
+        /**
+         * 树节点是独立副本，平铺索引中的分类对象不带 children
+         */
+        private static List<QuestionCategory> buildTree(Long parentId, Map<Long, List<QuestionCategory>> children) {
+            List<QuestionCategory> nodes = children.get(parentId);
+            if (nodes == null) {
+                return Collections.emptyList();
+            }
+            List<QuestionCategory> result = new ArrayList<>(nodes.size());
+            for (QuestionCategory node : nodes) {
+                QuestionCategory treeNode = copy(node);
+                if (children.containsKey(node.getId())) {
+                    treeNode.setChildren(buildTree(node.getId(), children));
+                }
+                result.add(treeNode);
+            }
+            return Collections.unmodifiableList(result);
+        }
+
+        private static QuestionCategory copy(QuestionCategory source) {
+            QuestionCategory copy = new QuestionCategory();
+            copy.setId(source.getId());
+            copy.setName(source.getName());
+            copy.setCode(source.getCode());
+            copy.setParentId(source.getParentId());
+            copy.setCategoryType(source.getCategoryType());
+            copy.setSortOrder(source.getSortOrder());
+            copy.setGenerationCount(source.getGenerationCount());
+            copy.setCreateTime(source.getCreateTime());
+            copy.setUpdateTime(source.getUpdateTime());
+            return copy;
+        }
+
+        private static <K, V> Map<Integer, Map<K, V>> freeze(Map<Integer, Map<K, V>> source) {
+            Map<Integer, Map<K, V>> frozen = new HashMap<>();
+            source.forEach((key, value) -> frozen.put(key, Map.copyOf(value)));
+            return Map.copyOf(frozen);
+        }
+
+        private static <K> Map<K, List<QuestionCategory>> freezeLists(Map<K, List<QuestionCategory>> source) {
+            Map<K, List<QuestionCategory>> frozen = new HashMap<>();
+            source.forEach((key, value) -> frozen.put(key, List.copyOf(value)));
+            return Map.copyOf(frozen);
+        }
+    }
+}
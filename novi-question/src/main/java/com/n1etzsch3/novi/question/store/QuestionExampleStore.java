@@ -0,0 +1,246 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.n1etzsch3.novi.common.pojo.entity.QuestionExample;
+import com.n1etzsch3.novi.question.mapper.QuestionExampleMapper;
+import com.n1etzsch3.novi.question.utils.QuestionPromptBuilder;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 出题示例（Few-Shot）内存存储
+ * <p>
+ * 每次出题都要按 (科目, 题型, 难度) 取最多 {@value #EXAMPLES_PER_SET} 道示例，指定难度没有示例时降级到
+ * {@value #FALLBACK_DIFFICULTY}，示例内容又是较大的 JSON。这里首次访问时一次性加载 question_example 表，
+ * 为每个 (科目, 题型, 难度) 预先算好降级后的示例集合以及渲染好的提示词文本，出题时只做一次 Map 查找。
+ * </p>
+ * <p>
+ * 数据同步方式：定时任务按 updated_at 增量拉取被修改的行，再比对表中全部 ID：
+ * 被删除的行从内存移除，出现内存中没有且未被增量拉到的行时整表重载；
+ * 有变化时重建索引并原子替换，读操作始终看到某一个完整版本。
+ * </p>
+ * <p>
+ * 科目、题型和难度按去除首尾空白并转为小写后的值匹配，与 MySQL 默认的大小写不敏感排序规则保持一致
+ * （排序规则的其他等价关系，例如全半角，不做处理）。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class QuestionExampleStore {
+
+    /**
+     * 每组示例的最大数量
+     */
+    public static final int EXAMPLES_PER_SET = 3;
+
+    /**
+     * 指定难度没有示例时使用的降级难度
+     */
+    public static final String FALLBACK_DIFFICULTY = "medium";
+
+    private static final ExampleSet EMPTY = new ExampleSet(null, Collections.emptyList(),
+            QuestionPromptBuilder.renderExamples(Collections.emptyList()));
+
+    private final QuestionExampleMapper questionExampleMapper;
+
+    /**
+     * 当前全部示例（按 ID），增量同步在其副本上修改后整体替换
+     */
+    private volatile Map<Long, QuestionExample> rows;
+    private volatile Map<TypeKey, Group> index;
+
+    /**
+     * 已加载数据中最大的 updated_at，作为增量拉取的起点
+     */
+    private volatile LocalDateTime watermark;
+
+    /**
+     * 获取出题示例集合
+     *
+     * @param subject      科目名称
+     * @param questionType 题型名称
+     * @param difficulty   难度
+     * @return 已按降级规则选定的示例集合，没有任何示例时返回空集合（渲染文本为占位提示）
+     */
+    public ExampleSet get(String subject, String questionType, String difficulty) {
+        Group group = index().get(TypeKey.of(subject, questionType));
+        if (group == null) {
+            return EMPTY;
+        }
+        ExampleSet exact = difficulty != null ? group.byDifficulty.get(normalize(difficulty)) : null;
+        return exact != null ? exact : group.fallback;
+    }
+
+    /**
+     * 定时增量同步
+     * <p>
+     * 拉取 updated_at 不早于水位线的行（同一秒内的修改也能被捕获），
+     * 再比对全部 ID：仅行数无法发现“删一行又插一行”的情况。
+     * </p>
+     */
+    @Scheduled(fixedDelayString = "${novi.question.example.refresh-interval:30s}",
+            initialDelayString = "${novi.question.example.refresh-interval:30s}")
+    public void refresh() {
+        if (index == null) {
+            return;
+        }
+        try {
+            sync();
+        } catch (Exception e) {
+            log.warn("Failed to refresh question examples: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 整表重载
+     */
+    public synchronized void reloadAll() {
+        Map<Long, QuestionExample> fresh = new HashMap<>();
+        LocalDateTime max = null;
+        for (QuestionExample row : questionExampleMapper.selectList(null)) {
+            fresh.put(row.getId(), row);
+            max = later(max, row.getUpdatedAt());
+        }
+        install(fresh, max);
+        log.info("Loaded {} question examples into memory", fresh.size());
+    }
+
+    private synchronized void sync() {
+        LocalDateTime since = watermark;
+        List<QuestionExample> changed = questionExampleMapper.selectList(
+                new LambdaQueryWrapper<QuestionExample>()
+                        .ge(since != null, QuestionExample::getUpdatedAt, since));
+
+        Map<Long, QuestionExample> current = rows;
+        Map<Long, QuestionExample> next = null;
+        LocalDateTime max = since;
+        for (QuestionExample row : changed) {
+            max = later(max, row.getUpdatedAt());
+            if (!row.equals(current.get(row.getId()))) {
+                if (next == null) {
+                    next = new HashMap<>(current);
+                }
+                next.put(row.getId(), row);
+            }
+        }
+
+        Set<Long> ids = new HashSet<>();
+        for (Object id : questionExampleMapper.selectObjs(
+                new LambdaQueryWrapper<QuestionExample>().select(QuestionExample::getId))) {
+            ids.add(((Number) id).longValue());
+        }
+        Map<Long, QuestionExample> known = next != null ? next : current;
+        if (!known.keySet().containsAll(ids)) {
+            // 新行的 updated_at 早于水位线（例如手工导入的历史数据），增量拉取拿不到
+            log.info("Found question examples missing from memory, reloading all");
+            reloadAll();
+            return;
+        }
+        if (known.size() != ids.size()) {
+            if (next == null) {
+                next = new HashMap<>(current);
+            }
+            int before = next.size();
+            next.keySet().retainAll(ids);
+            log.info("Removed {} deleted question examples", before - next.size());
+        }
+        if (next != null) {
+            install(next, max);
+            log.info("Refreshed {} question examples", changed.size());
+        } else {
+            watermark = max;
+        }
+    }
+
+    private Map<TypeKey, Group> index() {
+        Map<TypeKey, Group> current = index;
+        if (current == null) {
+            synchronized (this) {
+                if (index == null) {
+                    reloadAll();
+                }
+                current = index;
+            }
+        }
+        return current;
+    }
+
+    private void install(Map<Long, QuestionExample> fresh, LocalDateTime max) {
+        Map<TypeKey, Map<String, List<QuestionExample>>> grouped = new HashMap<>();
+        fresh.values().stream()
+                .sorted(Comparator.comparing(QuestionExample::getId))
+                .forEach(row -> grouped
+                        .computeIfAbsent(TypeKey.of(row.getSubject(), row.getQuestionType()), k -> new HashMap<>())
+                        .computeIfAbsent(normalize(row.getDifficulty()), k -> new ArrayList<>())
+                        .add(row));
+
+        Map<TypeKey, Group> built = new HashMap<>();
+        grouped.forEach((key, byDifficulty) -> {
+            Map<String, ExampleSet> sets = new HashMap<>();
+            byDifficulty.forEach((difficulty, examples) -> {
+                List<QuestionExample> selected = List.copyOf(
+                        examples.subList(0, Math.min(EXAMPLES_PER_SET, examples.size())));
+                // 示例集合保留行中的原始难度写法
+                sets.put(difficulty, new ExampleSet(selected.get(0).getDifficulty(), selected,
+                        QuestionPromptBuilder.renderExamples(selected)));
+            });
+            built.put(key, new Group(Map.copyOf(sets), sets.getOrDefault(FALLBACK_DIFFICULTY, EMPTY)));
+        });
+
+        this.rows = Map.copyOf(fresh);
+        this.index = Map.copyOf(built);
+        this.watermark = max;
+    }
+
+    private static String normalize(String value) {
+        return value != null ? value.strip().toLowerCase(Locale.ROOT) : null;
+    }
+
+    private static LocalDateTime later(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.isAfter(a) ? b : a;
+    }
+
+    /**
+     * 一组出题示例
+     *
+     * @param difficulty 示例实际所属的难度（发生降级时与请求难度不同），没有示例时为 null
+     * @param examples   示例列表（不可修改）
+     * @param rendered   渲染后可直接填入提示词 {examples} 变量的文本
+     */
+    public record ExampleSet(String difficulty, List<QuestionExample> examples, String rendered) {
+
+        public boolean isEmpty() {
+            return examples.isEmpty();
+        }
+    }
+
+    private record TypeKey(String subject, String questionType) {
+
+        static TypeKey of(String subject, String questionType) {
+            return new TypeKey(normalize(subject), normalize(questionType));
+        }
+    }
+
+    private record Group(Map<String, ExampleSet> byDifficulty, ExampleSet fallback) {
+    }
+}
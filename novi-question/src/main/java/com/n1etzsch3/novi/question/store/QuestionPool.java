@@ -0,0 +1,401 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.n1etzsch3.novi.question.config.QuestionPoolProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import org.springframework.util.StringUtils;
+
+import java.time.Clock;
+import java.time.LocalTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * 题目预生成池
+ * <p>
+ * 按 (科目, 题型, 难度, 主题) 组合保存有限数量的已校验题目。出题请求先从池中取题，
+ * 同一道题可以发给不同用户，但不会重复发给同一个用户；每道题发放次数和保留时间都有上限。
+ * 实时生成的题目也会放回池中，供其他用户复用。
+ * </p>
+ * <p>
+ * 只有在 demandTtl 内被请求达到 minDemand 次的组合才会后台补充，补充只在系统空闲
+ * （实时出题请求数不超过阈值）或低峰时段进行，每轮调用次数有上限。库存按最近请求该组合的用户分别计算，
+ * 取其中最少的一位：某个用户已经拿完池中的题时，即使其他用户还有库存也会补充；
+ * 池满时新题替换发放次数最多的旧题。组合数由 Caffeine 按 maxCombinations 限制。
+ * </p>
+ * <p>
+ * 指标：
+ * <ul>
+ * <li>{@code novi.question.pool.questions}：可走池的出题请求中，按 result=hit/miss 统计的题目数，即命中率；</li>
+ * <li>{@code novi.question.pool.stock} / {@code novi.question.pool.combinations}：当前库存与组合数；</li>
+ * <li>{@code novi.question.pool.refill.lag}：组合库存跌破低水位到补回低水位之间的耗时；</li>
+ * <li>{@code novi.question.pool.refill.generated}：后台补充发出的生成次数。</li>
+ * </ul>
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Component
+public class QuestionPool {
+
+    private final QuestionPoolProperties properties;
+    private final Clock clock;
+    private final Cache<PoolKey, Entry> cache;
+    private final Map<PoolKey, Entry> entries;
+    private final AtomicInteger activeRequests = new AtomicInteger();
+
+    private final Counter hits;
+    private final Counter misses;
+    private final Counter generated;
+    private final Timer refillLag;
+
+    public QuestionPool(QuestionPoolProperties properties, ObjectProvider<MeterRegistry> meterRegistryProvider) {
+        this(properties, meterRegistryProvider.getIfAvailable(() -> Metrics.globalRegistry), Clock.systemDefaultZone());
+    }
+
+    QuestionPool(QuestionPoolProperties properties, MeterRegistry registry, Clock clock) {
+        this.properties = properties;
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxCombinations())
+                .executor(Runnable::run)
+                .build();
+        this.entries = cache.asMap();
+        this.hits = Counter.builder("novi.question.pool.questions")
+                .tag("result", "hit")
+                .description("Pool-eligible questions served from the pre-generated pool")
+                .register(registry);
+        this.misses = Counter.builder("novi.question.pool.questions")
+                .tag("result", "miss")
+                .description("Pool-eligible questions that had to be generated live")
+                .register(registry);
+        this.generated = Counter.builder("novi.question.pool.refill.generated")
+                .description("Model calls issued by background pool refills")
+                .register(registry);
+        this.refillLag = Timer.builder("novi.question.pool.refill.lag")
+                .description("Time a combination stayed below the low watermark before being refilled")
+                .register(registry);
+        Gauge.builder("novi.question.pool.stock", this, QuestionPool::totalStock)
+                .description("Questions currently available in the pool")
+                .register(registry);
+        Gauge.builder("novi.question.pool.combinations", cache, Cache::estimatedSize)
+                .description("Combinations tracked by the pool")
+                .register(registry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * 构造组合键，主题为空白时与未指定主题视为同一组合
+     */
+    public static PoolKey key(String subject, String questionType, String difficulty, String theme) {
+        return new PoolKey(subject, questionType, difficulty, StringUtils.hasText(theme) ? theme.trim() : "");
+    }
+
+    /**
+     * 取题并记录一次需求
+     *
+     * @param key      组合
+     * @param userId   用户 ID，不会取到该用户已经拿到过的题
+     * @param quantity 需要的题目数
+     * @return 取到的题目，可能少于 quantity；池未启用时为空列表
+     */
+    public List<JsonNode> take(PoolKey key, Long userId, int quantity) {
+        if (!properties.isEnabled()) {
+            return List.of();
+        }
+        long now = clock.millis();
+        Entry entry = cache.get(key, k -> new Entry(now));
+        List<JsonNode> taken = entry.take(userId, quantity, now);
+        hits.increment(taken.size());
+        misses.increment(quantity - taken.size());
+        return taken;
+    }
+
+    /**
+     * 放入实时生成的题目，视为已发给生成它的用户
+     *
+     * @param key       组合
+     * @param userId    拿到这些题目的用户
+     * @param questions 已校验的题目
+     */
+    public void offer(PoolKey key, Long userId, List<JsonNode> questions) {
+        if (!properties.isEnabled() || questions.isEmpty()) {
+            return;
+        }
+        Entry entry = entries.get(key);
+        if (entry != null) {
+            entry.add(questions, userId, clock.millis());
+        }
+    }
+
+    /**
+     * 标记一次实时出题开始，返回的句柄在结束时关闭，用于判断系统是否空闲
+     */
+    public ActiveRequest trackActive() {
+        activeRequests.incrementAndGet();
+        AtomicBoolean closed = new AtomicBoolean();
+        return () -> {
+            if (closed.compareAndSet(false, true)) {
+                activeRequests.decrementAndGet();
+            }
+        };
+    }
+
+    /**
+     * 后台补充一轮库存
+     * <p>
+     * 先清理过期的题目和组合，再按缺口从大到小为需求足够的组合调用生成函数，
+     * 直到达到目标库存、本轮调用次数用完或系统不再空闲。单个组合生成失败时跳过该组合。
+     * </p>
+     *
+     * @param generator 为组合生成一批已校验题目
+     */
+    public void refill(Function<PoolKey, List<JsonNode>> generator) {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        long now = clock.millis();
+        evictStale(now);
+        if (!canRefill()) {
+            return;
+        }
+
+        List<Map.Entry<PoolKey, Entry>> candidates = entries.entrySet().stream()
+                .filter(e -> e.getValue().demand(now) >= properties.getMinDemand())
+                .filter(e -> e.getValue().lowestStock(now) < properties.getTargetStock())
+                .sorted(Comparator.comparingInt(e -> e.getValue().lowestStock(now)))
+                .toList();
+
+        int budget = properties.getRefill().getBatchSize();
+        for (Map.Entry<PoolKey, Entry> candidate : candidates) {
+            Entry entry = candidate.getValue();
+            while (budget > 0 && entry.lowestStock(clock.millis()) < properties.getTargetStock() && canRefill()) {
+                budget--;
+                generated.increment();
+                List<JsonNode> questions;
+                try {
+                    questions = generator.apply(candidate.getKey());
+                } catch (Exception e) {
+                    log.warn("Failed to refill question pool for {}: {}", candidate.getKey(), e.getMessage());
+                    break;
+                }
+                entry.add(questions, null, clock.millis());
+            }
+            if (budget <= 0) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * 当前池中的题目总数（不区分用户）
+     */
+    public int totalStock() {
+        long now = clock.millis();
+        return entries.values().stream().mapToInt(entry -> entry.available(now)).sum();
+    }
+
+    /**
+     * 指定组合当前可供出题的题目数（不区分用户）
+     */
+    public int stock(PoolKey key) {
+        Entry entry = entries.get(key);
+        return entry == null ? 0 : entry.available(clock.millis());
+    }
+
+    private boolean canRefill() {
+        return activeRequests.get() <= properties.getRefill().getMaxActiveRequests() || isOffPeak();
+    }
+
+    private boolean isOffPeak() {
+        LocalTime start = properties.getRefill().getOffPeakStart();
+        LocalTime end = properties.getRefill().getOffPeakEnd();
+        if (start == null || end == null) {
+            return false;
+        }
+        LocalTime now = LocalTime.now(clock);
+        return start.isBefore(end)
+                ? !now.isBefore(start) && now.isBefore(end)
+                : !now.isBefore(start) || now.isBefore(end);
+    }
+
+    private void evictStale(long now) {
+        long demandTtl = properties.getDemandTtl().toMillis();
+        entries.entrySet().removeIf(e -> now - e.getValue().lastRequested > demandTtl);
+        entries.values().forEach(entry -> entry.purge(now));
+    }
+
+    /**
+     * 进行中的实时出题请求，重复关闭无副作用
+     */
+    public interface ActiveRequest extends AutoCloseable {
+
+        @Override
+        void close();
+    }
+
+    /**
+     * 组合键
+     */
+    public record PoolKey(String subject, String questionType, String difficulty, String theme) {
+    }
+
+    private record Request(Long userId, long time) {
+    }
+
+    private static final class PooledQuestion {
+
+        private final JsonNode question;
+        private final long createdAt;
+        private final Set<Long> servedTo = new HashSet<>();
+
+        private PooledQuestion(JsonNode question, long createdAt) {
+            this.question = question;
+            this.createdAt = createdAt;
+        }
+    }
+
+    /**
+     * 单个组合的库存，方法在实例上同步
+     */
+    private final class Entry {
+
+        private final List<PooledQuestion> items = new ArrayList<>();
+
+        /**
+         * 最近 minDemand 次请求，用于判断需求是否足够，以及按用户计算库存
+         */
+        private final Deque<Request> requests = new ArrayDeque<>();
+        private volatile long lastRequested;
+
+        /**
+         * 库存跌破低水位的时间，未跌破时为 -1
+         */
+        private long belowSince;
+
+        private Entry(long now) {
+            this.lastRequested = now;
+            this.belowSince = now;
+        }
+
+        synchronized List<JsonNode> take(Long userId, int quantity, long now) {
+            lastRequested = now;
+            requests.addLast(new Request(userId, now));
+            while (requests.size() > Math.max(1, properties.getMinDemand())) {
+                requests.removeFirst();
+            }
+            purge(now);
+
+            List<JsonNode> taken = new ArrayList<>(quantity);
+            Iterator<PooledQuestion> iterator = items.iterator();
+            while (taken.size() < quantity && iterator.hasNext()) {
+                PooledQuestion item = iterator.next();
+                if (item.servedTo.add(userId)) {
+                    taken.add(item.question);
+                    if (item.servedTo.size() >= properties.getMaxServesPerItem()) {
+                        iterator.remove();
+                    }
+                }
+            }
+            markIfLow(now);
+            return taken;
+        }
+
+        synchronized void add(List<JsonNode> questions, Long servedTo, long now) {
+            for (JsonNode question : questions) {
+                if (items.size() >= properties.getTargetStock() && !evictMostServed()) {
+                    break;
+                }
+                PooledQuestion item = new PooledQuestion(question, now);
+                if (servedTo != null) {
+                    item.servedTo.add(servedTo);
+                }
+                items.add(item);
+            }
+            if (belowSince >= 0 && lowestStock() >= properties.getLowWatermark()) {
+                refillLag.record(now - belowSince, TimeUnit.MILLISECONDS);
+                belowSince = -1;
+            }
+        }
+
+        /**
+         * 池满时下架发放次数最多的一道题，为新题腾出位置；没有发放过的题不下架
+         */
+        private boolean evictMostServed() {
+            PooledQuestion mostServed = items.stream()
+                    .max(Comparator.comparingInt(item -> item.servedTo.size()))
+                    .orElse(null);
+            return mostServed != null && !mostServed.servedTo.isEmpty() && items.remove(mostServed);
+        }
+
+        /**
+         * 最近请求该组合的用户中，可取题数最少的那位还能取到的题数；没有请求记录时为题目总数
+         */
+        synchronized int lowestStock(long now) {
+            purge(now);
+            return lowestStock();
+        }
+
+        private int lowestStock() {
+            int lowest = items.size();
+            for (Request request : requests) {
+                int stock = 0;
+                for (PooledQuestion item : items) {
+                    if (!item.servedTo.contains(request.userId())) {
+                        stock++;
+                    }
+                }
+                lowest = Math.min(lowest, stock);
+            }
+            return lowest;
+        }
+
+        private void markIfLow(long now) {
+            if (belowSince < 0 && lowestStock() < properties.getLowWatermark()) {
+                belowSince = now;
+            }
+        }
+
+        synchronized int available(long now) {
+            purge(now);
+            return items.size();
+        }
+
+        synchronized int demand(long now) {
+            long since = now - properties.getDemandTtl().toMillis();
+            requests.removeIf(request -> request.time() < since);
+            return requests.size();
+        }
+
+        synchronized void purge(long now) {
+            long ttl = properties.getItemTtl().toMillis();
+            items.removeIf(item -> now - item.createdAt > ttl);
+            markIfLow(now);
+        }
+    }
+}
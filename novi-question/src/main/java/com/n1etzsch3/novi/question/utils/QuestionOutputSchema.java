@@ -0,0 +1,78 @@
+package com.n1etzsch3.novi.question.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 题型输出约束
+ * <p>
+ * 保存在 ai_prompt_config 中，Key 格式为 {@code schema:{subject}:{type}}，值为 JSON，例如：
+ * </p>
+ *
+ * <pre>
+ * {"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}
+ * </pre>
+ * <p>
+ * 出题模板的输出示例是单个对象而文字要求又是数组，模型两种形式都会输出，因此内置约束的 root 取 any。
+ * </p>
+ * <ul>
+ * <li>root：根容器类型，array / object / any，默认 any；</li>
+ * <li>required：每道题目对象必须包含的字段；</li>
+ * <li>maxItems：最多允许的题目对象数，0 表示不限；</li>
+ * <li>maxLength：模型正文（不含思考过程）最多允许的字符数，0 表示不限。</li>
+ * </ul>
+ * <p>
+ * 由 {@link StreamingJsonExtractor} 在流式输出过程中检查，一旦确定无法满足就中断本次调用。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public record QuestionOutputSchema(Root root, List<String> required, int maxItems, int maxLength) {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 不做任何约束
+     */
+    public static final QuestionOutputSchema NONE = new QuestionOutputSchema(Root.ANY, List.of(), 0, 0);
+
+    public QuestionOutputSchema {
+        required = List.copyOf(required);
+    }
+
+    /**
+     * 根容器类型
+     */
+    public enum Root {
+        ARRAY, OBJECT, ANY
+    }
+
+    /**
+     * 解析配置值
+     *
+     * @param json 配置中的 JSON 文本
+     * @return 约束
+     * @throws IllegalArgumentException 配置不是合法的 JSON 或字段取值无效
+     */
+    public static QuestionOutputSchema parse(String json) {
+        JsonNode node;
+        try {
+            node = MAPPER.readTree(json);
+        } catch (Exception e) {
+            throw new IllegalArgumentException("题型输出约束不是合法的 JSON", e);
+        }
+        if (node == null || !node.isObject()) {
+            throw new IllegalArgumentException("题型输出约束必须是 JSON 对象");
+        }
+        Root root = Root.valueOf(node.path("root").asText("any").toUpperCase(Locale.ROOT));
+        List<String> required = new ArrayList<>();
+        node.path("required").forEach(field -> required.add(field.asText()));
+        return new QuestionOutputSchema(root, required, node.path("maxItems").asInt(0),
+                node.path("maxLength").asInt(0));
+    }
+}
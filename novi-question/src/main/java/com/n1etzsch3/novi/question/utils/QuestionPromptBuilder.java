@@ -1,12 +1,13 @@
 package com.n1etzsch3.novi.question.utils;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.n1etzsch3.novi.aiconfig.mapper.AiPromptConfigMapper;
+import com.n1etzsch3.novi.aiconfig.store.AiPromptConfigStore;
+import com.n1etzsch3.novi.aiconfig.template.CompiledPromptTemplate;
+import com.n1etzsch3.novi.aiconfig.template.PromptTemplateEngine;
 import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
 import com.n1etzsch3.novi.common.pojo.entity.QuestionExample;
-import com.n1etzsch3.novi.question.mapper.QuestionCategoryMapper;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
+import com.n1etzsch3.novi.question.store.QuestionCategoryStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -15,6 +16,7 @@ import org.springframework.util.StringUtils;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * AI出题提示词构建器 (元数据驱动版)
@@ -31,18 +33,37 @@ import java.util.Map;
 @Slf4j
 public class QuestionPromptBuilder {
 
-    private final AiPromptConfigMapper aiPromptConfigMapper;
-    private final QuestionCategoryMapper questionCategoryMapper;
+    private final AiPromptConfigStore aiPromptConfigStore;
+    private final QuestionCategoryStore questionCategoryStore;
+    private final PromptTemplateEngine promptTemplateEngine;
+
+    /**
+     * 题型输出约束缓存，按提示词配置版本号失效
+     */
+    private final Map<String, SchemaEntry> schemas = new ConcurrentHashMap<>();
+
+    private record SchemaEntry(long version, QuestionOutputSchema schema) {
+    }
 
     /**
      * 构建出题提示词 (完全动态化)
      */
     public String buildPrompt(QuestionGenerationRequest request, List<QuestionExample> examples) {
+        return buildPrompt(request, renderExamples(examples));
+    }
 
-        // 1. 动态获取 Code (实现热重载的关键)
-        // 建议加上 @Cacheable 缓存，避免频繁查库 (后续优化)
-        String subjectCode = getCategoryCodeByName(request.getSubject(), 1); // 1=科目
-        String typeCode = getCategoryCodeByName(request.getQuestionType(), 2); // 2=题型
+    /**
+     * 构建出题提示词，示例部分使用已渲染好的文本
+     *
+     * @param request      出题请求
+     * @param examplesText {@link #renderExamples} 渲染的示例文本
+     * @return 提示词
+     */
+    public String buildPrompt(QuestionGenerationRequest request, String examplesText) {
+
+        // 1. 动态获取 Code (从分类快照读取，后台修改分类后随快照刷新生效)
+        String subjectCode = getCategoryCodeByName(request.getSubject(), QuestionCategoryStore.TYPE_SUBJECT);
+        String typeCode = getCategoryCodeByName(request.getQuestionType(), QuestionCategoryStore.TYPE_QUESTION_TYPE);
 
         if (subjectCode == null || typeCode == null) {
             throw new IllegalArgumentException(
@@ -52,7 +73,7 @@ public class QuestionPromptBuilder {
         // 2. 动态获取提示词模板
         // Key 格式: prompt:{subject}:{type}
         String templateKey = String.format("prompt:%s:%s", subjectCode, typeCode);
-        String template = getConfigValue(templateKey, null);
+        CompiledPromptTemplate template = promptTemplateEngine.getTemplate(templateKey);
 
         if (template == null) {
             throw new IllegalStateException("未找到对应的提示词模板，请检查 ai_prompt_config 表。Key: " + templateKey);
@@ -71,30 +92,62 @@ public class QuestionPromptBuilder {
         variables.put("theme", StringUtils.hasText(request.getTheme()) ? request.getTheme() : "综合考点");
         variables.put("difficulty", difficultyDesc); // 这里填入的是查出来的具体描述文本
         variables.put("quantity", String.valueOf(request.getQuantity()));
-        variables.put("examples", buildExamplesString(examples));
+        variables.put("examples", examplesText);
+
+        // 5. 一次遍历渲染预编译模板并返回
+        return template.render(variables);
+    }
+
+    /**
+     * 获取题型输出约束
+     * <p>
+     * Key 格式: schema:{subject}:{type}；未配置或配置无效时返回 {@link QuestionOutputSchema#NONE}。
+     * </p>
+     *
+     * @param subject      科目名称
+     * @param questionType 题型名称
+     * @return 输出约束
+     */
+    public QuestionOutputSchema resolveSchema(String subject, String questionType) {
+        String subjectCode = getCategoryCodeByName(subject, QuestionCategoryStore.TYPE_SUBJECT);
+        String typeCode = getCategoryCodeByName(questionType, QuestionCategoryStore.TYPE_QUESTION_TYPE);
+        if (subjectCode == null || typeCode == null) {
+            return QuestionOutputSchema.NONE;
+        }
+
+        String schemaKey = String.format("schema:%s:%s", subjectCode, typeCode);
+        long version = aiPromptConfigStore.getVersion();
+        SchemaEntry cached = schemas.get(schemaKey);
+        if (cached != null && cached.version() == version) {
+            return cached.schema();
+        }
 
-        // 5. 替换并返回
-        return replaceVariables(template, variables);
+        QuestionOutputSchema schema = QuestionOutputSchema.NONE;
+        String value = getConfigValue(schemaKey, null);
+        if (value != null) {
+            try {
+                schema = QuestionOutputSchema.parse(value);
+            } catch (IllegalArgumentException e) {
+                log.warn("Invalid output schema for key: {}, ignoring: {}", schemaKey, e.getMessage());
+            }
+        }
+        schemas.put(schemaKey, new SchemaEntry(version, schema));
+        return schema;
     }
 
     /**
-     * 根据名称查询 Code (查 question_category 表)
-     * 实际生产中应配合 Redis 或 Caffeine 缓存
+     * 根据名称查询 Code (读 question_category 内存快照)
      */
-    private String getCategoryCodeByName(String name, Integer type) {
-        QuestionCategory category = questionCategoryMapper.selectOne(
-                new LambdaQueryWrapper<QuestionCategory>()
-                        .eq(QuestionCategory::getName, name)
-                        .eq(QuestionCategory::getCategoryType, type)
-                        .last("LIMIT 1"));
+    private String getCategoryCodeByName(String name, int type) {
+        QuestionCategory category = questionCategoryStore.getByName(name, type);
         return category != null ? category.getCode() : null;
     }
 
     /**
-     * 获取配置值辅助方法
+     * 获取配置值辅助方法（从内存中的提示词配置存储读取）
      */
     private String getConfigValue(String key, String defaultValue) {
-        AiPromptConfig config = aiPromptConfigMapper.selectById(key);
+        AiPromptConfig config = aiPromptConfigStore.get(key);
         if (config != null && StringUtils.hasText(config.getConfigValue())) {
             return config.getConfigValue();
         }
@@ -105,7 +158,10 @@ public class QuestionPromptBuilder {
         return defaultValue;
     }
 
-    private String buildExamplesString(List<QuestionExample> examples) {
+    /**
+     * 渲染示例列表为提示词 {examples} 变量的文本
+     */
+    public static String renderExamples(List<QuestionExample> examples) {
         if (examples == null || examples.isEmpty()) {
             return "（暂无参考示例，请严格遵循 JSON 格式要求）";
         }
@@ -116,15 +172,4 @@ public class QuestionPromptBuilder {
         }
         return sb.toString();
     }
-
-    private String replaceVariables(String template, Map<String, String> variables) {
-        String result = template;
-        for (Map.Entry<String, String> entry : variables.entrySet()) {
-            // 使用 replace 而不是 replaceAll 避免正则转义问题
-            // 简单防御：防止 null 值
-            String value = entry.getValue() != null ? entry.getValue() : "";
-            result = result.replace("{" + entry.getKey() + "}", value);
-        }
-        return result;
-    }
 }
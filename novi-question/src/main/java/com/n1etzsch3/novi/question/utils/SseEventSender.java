@@ -0,0 +1,125 @@
+package com.n1etzsch3.novi.question.utils;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * SSE 事件发送器
+ * <p>
+ * 多个生成任务在各自的线程上完成并共用一个 {@link SseEmitter}，由本类串行化写出。
+ * 用 ReentrantLock 而非 synchronized：虚拟线程在 synchronized 内阻塞写出时会钉住载体线程。
+ * </p>
+ * <p>
+ * 第一次写出失败、连接超时或出错都视为客户端已断开：之后的事件不再发送，
+ * 并依次执行通过 {@link #onDisconnect(Runnable)} 注册的回调（例如取消仍在进行的模型调用）。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+public class SseEventSender {
+
+    private final SseEmitter emitter;
+    private final ReentrantLock sendLock = new ReentrantLock();
+    private final AtomicBoolean disconnected = new AtomicBoolean();
+    private final List<Runnable> disconnectListeners = new CopyOnWriteArrayList<>();
+
+    public SseEventSender(SseEmitter emitter) {
+        this.emitter = emitter;
+        emitter.onTimeout(this::disconnect);
+        emitter.onError(e -> disconnect());
+    }
+
+    /**
+     * 发送一个事件
+     *
+     * @param event 事件
+     * @return 是否已写出；客户端已断开时返回 false
+     */
+    public boolean send(SseEmitter.SseEventBuilder event) {
+        boolean failed = false;
+        sendLock.lock();
+        try {
+            if (disconnected.get()) {
+                return false;
+            }
+            emitter.send(event);
+            return true;
+        } catch (Exception e) {
+            failed = true;
+            log.warn("Failed to send SSE event, stop streaming: {}", e.getMessage());
+            return false;
+        } finally {
+            sendLock.unlock();
+            if (failed) {
+                disconnect();
+            }
+        }
+    }
+
+    /**
+     * 正常结束连接
+     */
+    public void complete() {
+        sendLock.lock();
+        try {
+            emitter.complete();
+        } catch (Exception e) {
+            log.debug("Failed to complete SSE emitter: {}", e.getMessage());
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * 以错误结束连接
+     */
+    public void completeWithError(Throwable error) {
+        sendLock.lock();
+        try {
+            emitter.completeWithError(error);
+        } catch (Exception e) {
+            log.debug("Failed to complete SSE emitter with error: {}", e.getMessage());
+        } finally {
+            sendLock.unlock();
+        }
+    }
+
+    /**
+     * 注册客户端断开时的回调；已经断开时立即执行
+     */
+    public void onDisconnect(Runnable listener) {
+        disconnectListeners.add(listener);
+        if (disconnected.get() && disconnectListeners.remove(listener)) {
+            listener.run();
+        }
+    }
+
+    /**
+     * 客户端是否已断开
+     */
+    public boolean isDisconnected() {
+        return disconnected.get();
+    }
+
+    private void disconnect() {
+        if (!disconnected.compareAndSet(false, true)) {
+            return;
+        }
+        for (Runnable listener : disconnectListeners) {
+            if (disconnectListeners.remove(listener)) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    log.warn("SSE disconnect listener failed: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package com.n1etzsch3.novi.question.utils;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 增量 JSON 提取器
+ * <p>
+ * 按模型输出的分片逐字符扫描：根容器之前的说明文字和 markdown 代码块标记直接跳过，
+ * 根数组中的每个对象在右括号闭合时立即单独解析，解析结果直接交给调用方，不再整体二次解析。
+ * 根容器闭合后即视为完成，之后的内容不再处理。
+ * </p>
+ * <p>
+ * 括号不匹配、根数组中出现非对象元素、对象本身不是合法 JSON，或输出已经无法满足
+ * {@link QuestionOutputSchema}（根容器类型不符、对象闭合时缺少必填字段、题目数或长度超限）时立即抛出
+ * {@link MalformedJsonException}，调用方可以据此提前结束流并重试，而不必等模型输出完毕。
+ * 实例不是线程安全的，每次模型调用使用一个新实例。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public class StreamingJsonExtractor {
+
+    private final ObjectMapper objectMapper;
+    private final QuestionOutputSchema schema;
+    private final List<JsonNode> nodes = new ArrayList<>();
+
+    /**
+     * 当前正在读取的顶层对象文本，为空表示不在对象内
+     */
+    private final StringBuilder current = new StringBuilder();
+
+    /**
+     * 未闭合的括号
+     */
+    private final StringBuilder stack = new StringBuilder();
+
+    private boolean rootArray;
+    private boolean inString;
+    private boolean escaped;
+    private boolean complete;
+    private int length;
+
+    public StreamingJsonExtractor(ObjectMapper objectMapper) {
+        this(objectMapper, QuestionOutputSchema.NONE);
+    }
+
+    /**
+     * @param schema 题型输出约束，为空时不做约束
+     */
+    public StreamingJsonExtractor(ObjectMapper objectMapper, QuestionOutputSchema schema) {
+        this.objectMapper = objectMapper;
+        this.schema = schema != null ? schema : QuestionOutputSchema.NONE;
+    }
+
+    /**
+     * 输入一段模型输出
+     *
+     * @param chunk 输出分片，可为空
+     * @return 本次新闭合的顶层对象，按出现顺序排列
+     * @throws MalformedJsonException 输出已经确定不是合法的题目 JSON
+     */
+    public List<JsonNode> feed(CharSequence chunk) {
+        if (chunk == null || complete) {
+            return List.of();
+        }
+        length += chunk.length();
+        if (schema.maxLength() > 0 && length > schema.maxLength()) {
+            throw new MalformedJsonException("AI 输出超过长度上限 " + schema.maxLength(), null);
+        }
+        int before = nodes.size();
+        for (int i = 0; i < chunk.length() && !complete; i++) {
+            accept(chunk.charAt(i));
+        }
+        return nodes.size() == before ? List.of() : List.copyOf(nodes.subList(before, nodes.size()));
+    }
+
+    /**
+     * 根容器是否已经闭合
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * 已输入的字符数
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * 输出结束，返回全部顶层对象
+     * <p>
+     * 根数组缺少右括号但已读到的对象都完整时仍然接受；停在某个对象中途或没有任何对象时抛出异常。
+     * </p>
+     *
+     * @throws MalformedJsonException 输出不完整或没有题目
+     */
+    public List<JsonNode> finish() {
+        if (!current.isEmpty()) {
+            throw new MalformedJsonException("AI 输出在题目中途结束", null);
+        }
+        if (nodes.isEmpty()) {
+            throw new MalformedJsonException("AI 输出中没有找到题目", null);
+        }
+        return List.copyOf(nodes);
+    }
+
+    private void accept(char c) {
+        if (stack.isEmpty()) {
+            // 根容器之前：跳过说明文字和 ```json 标记
+            if (c == '[') {
+                checkRoot(QuestionOutputSchema.Root.ARRAY);
+                stack.append(c);
+                rootArray = true;
+            } else if (c == '{') {
+                checkRoot(QuestionOutputSchema.Root.OBJECT);
+                stack.append(c);
+                current.append(c);
+            }
+            return;
+        }
+
+        if (!current.isEmpty()) {
+            current.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+                return;
+            }
+            switch (c) {
+                case '"' -> inString = true;
+                case '{', '[' -> stack.append(c);
+                case '}', ']' -> {
+                    close(c);
+                    if (stack.length() == (rootArray ? 1 : 0)) {
+                        emit();
+                    }
+                }
+                default -> {
+                }
+            }
+            return;
+        }
+
+        // 根数组内、两个对象之间
+        if (c == '{') {
+            if (schema.maxItems() > 0 && nodes.size() >= schema.maxItems()) {
+                throw new MalformedJsonException("AI 输出的题目数超过上限 " + schema.maxItems(), null);
+            }
+            stack.append(c);
+            current.append(c);
+        } else if (c == ']') {
+            stack.setLength(0);
+            complete = true;
+        } else if (c != ',' && !Character.isWhitespace(c)) {
+            throw new MalformedJsonException("AI 输出的题目数组中出现了非对象元素: " + c, null);
+        }
+    }
+
+    private void checkRoot(QuestionOutputSchema.Root root) {
+        if (schema.root() != QuestionOutputSchema.Root.ANY && schema.root() != root) {
+            throw new MalformedJsonException("AI 输出的根类型应为 " + schema.root(), null);
+        }
+    }
+
+    private void close(char c) {
+        char open = stack.charAt(stack.length() - 1);
+        if ((c == '}') != (open == '{')) {
+            throw new MalformedJsonException("AI 输出的括号不匹配", null);
+        }
+        stack.setLength(stack.length() - 1);
+    }
+
+    private void emit() {
+        String text = current.toString();
+        current.setLength(0);
+        JsonNode node;
+        try {
+            node = objectMapper.readTree(text);
+        } catch (JsonProcessingException e) {
+            throw new MalformedJsonException("AI 生成了无效的数据", e);
+        }
+        for (String field : schema.required()) {
+            if (!node.hasNonNull(field)) {
+                throw new MalformedJsonException("AI 输出的题目缺少字段 " + field, null);
+            }
+        }
+        nodes.add(node);
+        if (!rootArray) {
+            complete = true;
+        }
+    }
+
+    /**
+     * 模型输出不是合法的题目 JSON，或不满足题型输出约束
+     */
+    public static class MalformedJsonException extends RuntimeException {
+
+        public MalformedJsonException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+}
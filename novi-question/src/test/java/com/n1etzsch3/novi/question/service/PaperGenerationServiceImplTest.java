@@ -0,0 +1,179 @@
+package com.n1etzsch3.novi.question.service;
+
+import com.n1etzsch3.novi.common.pojo.entity.PaperGenerationRecord;
+import com.n1etzsch3.novi.common.pojo.entity.PaperQuestionDetail;
+import com.n1etzsch3.novi.question.mapper.PaperGenerationRecordMapper;
+import com.n1etzsch3.novi.question.mapper.PaperQuestionDetailMapper;
+import com.n1etzsch3.novi.question.pojo.dto.PaperConfigItem;
+import com.n1etzsch3.novi.question.pojo.dto.PaperGenerationRequest;
+import com.n1etzsch3.novi.question.pojo.dto.PaperGenerationResponse;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationResponse;
+import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
+import com.n1etzsch3.novi.question.service.impl.PaperGenerationServiceImpl;
+import com.n1etzsch3.novi.question.store.QuestionCategoryStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class PaperGenerationServiceImplTest {
+
+    @Mock
+    private PaperGenerationRecordMapper paperGenerationRecordMapper;
+
+    @Mock
+    private PaperQuestionDetailMapper paperQuestionDetailMapper;
+
+    @Mock
+    private QuestionCategoryStore questionCategoryStore;
+
+    @Mock
+    private QuestionGenerationService questionGenerationService;
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    private PaperGenerationServiceImpl paperGenerationService;
+
+    @BeforeEach
+    void setUp() {
+        paperGenerationService = new PaperGenerationServiceImpl(paperGenerationRecordMapper,
+                paperQuestionDetailMapper, questionCategoryStore, questionGenerationService, executor);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    private static QuestionCategory category(long id, String code, int type, Long parentId) {
+        QuestionCategory category = new QuestionCategory();
+        category.setId(id);
+        category.setName(code);
+        category.setCode(code);
+        category.setCategoryType(type);
+        category.setParentId(parentId);
+        return category;
+    }
+
+    private static PaperConfigItem item(String code, int quantity, int order) {
+        return PaperConfigItem.builder().questionTypeCode(code).quantity(quantity).difficulty("medium")
+                .order(order).build();
+    }
+
+    @Test
+    void generatePaperAsync_FailedDetailSaveOnlyFailsThatTypeAndTotalIsAlwaysWritten() throws Exception {
+        when(questionCategoryStore.getById(1L))
+                .thenReturn(category(1L, "英语", QuestionCategoryStore.TYPE_SUBJECT, null));
+        when(questionCategoryStore.getByCode("A"))
+                .thenReturn(category(2L, "A", QuestionCategoryStore.TYPE_QUESTION_TYPE, 1L));
+        when(questionCategoryStore.getByCode("B"))
+                .thenReturn(category(3L, "B", QuestionCategoryStore.TYPE_QUESTION_TYPE, 1L));
+        doAnswer(inv -> {
+            inv.<PaperGenerationRecord>getArgument(0).setId(10L);
+            return 1;
+        }).when(paperGenerationRecordMapper).insert(any(PaperGenerationRecord.class));
+        when(questionGenerationService.generateQuestions(eq(1L), any(QuestionGenerationRequest.class)))
+                .thenAnswer(inv -> {
+                    QuestionGenerationResponse response = new QuestionGenerationResponse();
+                    response.setQuestions("[{\"question\":\"" + inv.<QuestionGenerationRequest>getArgument(1)
+                            .getQuestionType() + "\"}]");
+                    return response;
+                });
+        when(paperQuestionDetailMapper.insert(any(PaperQuestionDetail.class))).thenAnswer(inv -> {
+            if ("B".equals(inv.<PaperQuestionDetail>getArgument(0).getQuestionType())) {
+                throw new IllegalStateException("Deadlock found");
+            }
+            return 1;
+        });
+
+        PaperGenerationRequest request = new PaperGenerationRequest();
+        request.setSubjectId(1L);
+        request.setPaperConfig(List.of(item("A", 2, 1), item("B", 3, 2)));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        paperGenerationService.generatePaperAsync(1L, request, emitter);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        List<PaperGenerationResponse> events = emitter.events;
+        assertEquals(3, events.size());
+        assertTrue(events.stream().anyMatch(e -> "question".equals(e.getEventType()) && "A".equals(e.getQuestionType())));
+        assertTrue(events.stream().anyMatch(e -> "error".equals(e.getEventType()) && "B".equals(e.getQuestionType())));
+
+        PaperGenerationResponse complete = events.get(2);
+        assertEquals("complete", complete.getEventType());
+        assertEquals(2, complete.getTotalQuestions());
+        assertEquals(1, complete.getSuccessCount());
+        assertEquals(1, complete.getFailedCount());
+
+        ArgumentCaptor<PaperGenerationRecord> update = ArgumentCaptor.forClass(PaperGenerationRecord.class);
+        verify(paperGenerationRecordMapper).updateById(update.capture());
+        assertEquals(10L, update.getValue().getId());
+        assertEquals(2, update.getValue().getTotalQuestions());
+    }
+
+    @Test
+    void generatePaperAsync_WritesZeroTotalWhenEveryTypeFails() throws Exception {
+        when(questionCategoryStore.getById(1L))
+                .thenReturn(category(1L, "英语", QuestionCategoryStore.TYPE_SUBJECT, null));
+        when(questionCategoryStore.getByCode("A"))
+                .thenReturn(category(2L, "A", QuestionCategoryStore.TYPE_QUESTION_TYPE, 1L));
+        when(questionGenerationService.generateQuestions(eq(1L), any(QuestionGenerationRequest.class)))
+                .thenThrow(new IllegalStateException("模型服务繁忙"));
+
+        PaperGenerationRequest request = new PaperGenerationRequest();
+        request.setSubjectId(1L);
+        request.setPaperConfig(List.of(item("A", 2, 1)));
+        RecordingEmitter emitter = new RecordingEmitter();
+
+        paperGenerationService.generatePaperAsync(1L, request, emitter);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        verify(paperGenerationRecordMapper).updateById(
+                argThat((PaperGenerationRecord record) -> record.getTotalQuestions() == 0));
+        verify(paperQuestionDetailMapper, never()).insert(any(PaperQuestionDetail.class));
+    }
+
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<PaperGenerationResponse> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(PaperGenerationResponse.class::isInstance)
+                    .map(PaperGenerationResponse.class::cast)
+                    .forEach(events::add);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+
+        @Override
+        public void completeWithError(Throwable ex) {
+            completed.countDown();
+        }
+    }
+}
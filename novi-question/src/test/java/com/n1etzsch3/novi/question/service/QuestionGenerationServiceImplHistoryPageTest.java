@@ -0,0 +1,88 @@
+package com.n1etzsch3.novi.question.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
+import com.n1etzsch3.novi.common.pojo.entity.QuestionGenerationRecord;
+import com.n1etzsch3.novi.question.mapper.QuestionGenerationRecordMapper;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionHistoryItem;
+import com.n1etzsch3.novi.question.service.impl.QuestionGenerationServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@ExtendWith(MockitoExtension.class)
+class QuestionGenerationServiceImplHistoryPageTest {
+
+    @Mock
+    private QuestionGenerationRecordMapper questionGenerationRecordMapper;
+
+    @InjectMocks
+    private QuestionGenerationServiceImpl questionGenerationService;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize TableInfo for MyBatis-Plus LambdaWrapper to work
+        com.baomidou.mybatisplus.core.metadata.TableInfoHelper
+                .initTableInfo(
+                        new org.apache.ibatis.builder.MapperBuilderAssistant(
+                                new com.baomidou.mybatisplus.core.MybatisConfiguration(), ""),
+                        QuestionGenerationRecord.class);
+    }
+
+    private static QuestionGenerationRecord record(long id) {
+        QuestionGenerationRecord record = new QuestionGenerationRecord();
+        record.setId(id);
+        record.setSubject("语文");
+        return record;
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getGenerationHistoryPage_ReturnsCursorAndSkipsQuestionJson() {
+        when(questionGenerationRecordMapper.selectList(any(LambdaQueryWrapper.class)))
+                .thenReturn(List.of(record(9), record(7), record(4)));
+
+        CursorPage<QuestionHistoryItem> page = questionGenerationService.getGenerationHistoryPage(1L, null, 2);
+
+        assertEquals(2, page.getItems().size());
+        assertTrue(page.isHasMore());
+        assertArrayEquals(new String[] { "7" }, CursorPage.decode(page.getNextCursor(), 1));
+
+        ArgumentCaptor<LambdaQueryWrapper<QuestionGenerationRecord>> captor =
+                ArgumentCaptor.forClass(LambdaQueryWrapper.class);
+        verify(questionGenerationRecordMapper).selectList(captor.capture());
+        assertFalse(captor.getValue().getSqlSelect().contains("generated_questions"));
+        assertTrue(captor.getValue().getCustomSqlSegment().endsWith("LIMIT 3"));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void getGenerationHistoryPage_LastPageHasNoCursor() {
+        when(questionGenerationRecordMapper.selectList(any(LambdaQueryWrapper.class)))
+                .thenReturn(List.of(record(3)));
+
+        CursorPage<QuestionHistoryItem> page =
+                questionGenerationService.getGenerationHistoryPage(1L, CursorPage.encode(4L), 2);
+
+        assertEquals(1, page.getItems().size());
+        assertFalse(page.isHasMore());
+        assertNull(page.getNextCursor());
+    }
+
+    @Test
+    void getGenerationHistoryPage_RejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> questionGenerationService.getGenerationHistoryPage(1L, CursorPage.encode("abc"), 2));
+    }
+}
@@ -1,16 +1,21 @@
 package com.n1etzsch3.novi.question.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
 import com.n1etzsch3.novi.aiconfig.factory.DynamicChatModelFactory;
 import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
 import com.n1etzsch3.novi.common.pojo.entity.QuestionGenerationRecord;
-import com.n1etzsch3.novi.question.mapper.QuestionExampleMapper;
+import com.n1etzsch3.novi.question.config.QuestionGenerationProperties;
 import com.n1etzsch3.novi.question.mapper.QuestionGenerationRecordMapper;
+import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationEvent;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationResponse;
 import com.n1etzsch3.novi.question.service.impl.QuestionGenerationServiceImpl;
+import com.n1etzsch3.novi.question.store.QuestionExampleStore;
+import com.n1etzsch3.novi.question.store.QuestionPool;
+import com.n1etzsch3.novi.question.utils.QuestionOutputSchema;
 import com.n1etzsch3.novi.question.utils.QuestionPromptBuilder;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -20,12 +25,29 @@ import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.model.Generation;
 import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.publisher.Flux;
 
+import java.io.IOException;
+import java.time.Duration;
 import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -33,7 +55,7 @@ import static org.mockito.Mockito.when;
 public class QuestionGenerationServiceImplTest {
 
     @Mock
-    private QuestionExampleMapper questionExampleMapper;
+    private QuestionExampleStore questionExampleStore;
     @Mock
     private QuestionGenerationRecordMapper questionGenerationRecordMapper;
     @Mock
@@ -42,22 +64,36 @@ public class QuestionGenerationServiceImplTest {
     private AiModelConfigService aiModelConfigService;
     @Mock
     private QuestionPromptBuilder questionPromptBuilder;
+    @Mock
+    private QuestionPool questionPool;
 
     @Mock
     private ChatModel chatModel;
 
     private QuestionGenerationServiceImpl questionGenerationService;
 
+    private static final QuestionExampleStore.ExampleSet NO_EXAMPLES =
+            new QuestionExampleStore.ExampleSet(null, Collections.emptyList(), "no examples");
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(3);
+
     @BeforeEach
     void setUp() {
         questionGenerationService = new QuestionGenerationServiceImpl(
-                questionExampleMapper,
+                questionExampleStore,
                 questionGenerationRecordMapper,
                 dynamicChatModelFactory,
                 aiModelConfigService,
                 questionPromptBuilder,
-                new ObjectMapper() // Use real ObjectMapper
-        );
+                new ObjectMapper(), // Use real ObjectMapper
+                new QuestionGenerationProperties(),
+                executor,
+                questionPool);
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
     }
 
     @Test
@@ -71,8 +107,8 @@ public class QuestionGenerationServiceImplTest {
         request.setQuantity(1);
         request.setEnableThinking(false);
 
-        // Mock Examples (return empty list to trigger fallback or just proceed)
-        when(questionExampleMapper.selectList(any(LambdaQueryWrapper.class))).thenReturn(Collections.emptyList());
+        // Mock Examples (no examples for this subject/type)
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
 
         // Mock ChatModel creation
         when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
@@ -81,10 +117,10 @@ public class QuestionGenerationServiceImplTest {
         String jsonResponse = "[{\"question\":\"test question\",\"options\":[\"A\",\"B\"],\"answer\":\"A\"}]";
         Generation generation = new Generation(new org.springframework.ai.chat.messages.AssistantMessage(jsonResponse));
         ChatResponse chatResponse = new ChatResponse(Collections.singletonList(generation));
-        when(chatModel.call(any(Prompt.class))).thenReturn(chatResponse);
+        when(chatModel.stream(any(Prompt.class))).thenReturn(Flux.just(chatResponse));
 
         // Mock Prompt Builder
-        when(questionPromptBuilder.buildPrompt(any(), any())).thenReturn("test prompt");
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("test prompt");
 
         // Mock Record Mapper Insert
         when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenAnswer(invocation -> {
@@ -100,6 +136,309 @@ public class QuestionGenerationServiceImplTest {
         assertNotNull(response);
         assertEquals(100L, response.getRecordId());
         verify(questionGenerationRecordMapper).insert(any(QuestionGenerationRecord.class));
-        verify(chatModel).call(any(Prompt.class));
+        verify(chatModel).stream(any(Prompt.class));
+    }
+
+    @Test
+    void testGenerateQuestions_ConcurrentPartialSuccess() throws Exception {
+        // Arrange
+        Long userId = 1L;
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(3);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1", "p2", "p3");
+
+        // 三次首轮调用必须同时在途才能越过栅栏，顺序调用会在这里超时
+        CountDownLatch allInFlight = new CountDownLatch(3);
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            String prompt = invocation.<Prompt>getArgument(0).getContents();
+            allInFlight.countDown();
+            if (!allInFlight.await(5, TimeUnit.SECONDS)) {
+                throw new IllegalStateException("calls were not issued concurrently");
+            }
+            if ("p2".equals(prompt)) {
+                throw new RuntimeException("model unavailable");
+            }
+            String json = "[{\"question\":\"" + prompt + "\"}]";
+            return Flux.just(new ChatResponse(Collections.singletonList(
+                    new Generation(new org.springframework.ai.chat.messages.AssistantMessage(json)))));
+        });
+
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenReturn(1);
+
+        // Act
+        QuestionGenerationResponse response = questionGenerationService.generateQuestions(userId, request);
+
+        // Assert: 结果按题目顺序排列，失败的题目在重试后计入 failedCount
+        assertEquals(2, response.getSuccessCount());
+        assertEquals(1, response.getFailedCount());
+        assertEquals("[{\"question\":\"p1\"},{\"question\":\"p3\"}]", response.getQuestions());
+        assertEquals(0, allInFlight.getCount());
+        verify(chatModel, times(4)).stream(any(Prompt.class));
+    }
+
+    @Test
+    void testGenerateQuestions_ServedFromPoolWithoutModelCall() {
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setTheme("  ");
+        request.setQuantity(1);
+
+        when(questionPool.isEnabled()).thenReturn(true);
+        when(questionPool.take(QuestionPool.key("English", "Grammar", "medium", null), 1L, 1))
+                .thenReturn(List.of(JsonNodeFactory.instance.objectNode().put("question", "pooled")));
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenReturn(1);
+
+        QuestionGenerationResponse response = questionGenerationService.generateQuestions(1L, request);
+
+        assertEquals("[{\"question\":\"pooled\"}]", response.getQuestions());
+        assertEquals(1, response.getSuccessCount());
+        verify(dynamicChatModelFactory, never()).createChatModel();
+        verify(questionPool, never()).trackActive();
+    }
+
+    @Test
+    void testGenerateQuestionsAsync_StreamsEachQuestionThenCompletes() throws Exception {
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(2);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1", "p2");
+        when(questionPool.trackActive()).thenReturn(() -> {
+        });
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            String prompt = invocation.<Prompt>getArgument(0).getContents();
+            if ("p2".equals(prompt)) {
+                throw new RuntimeException("model unavailable");
+            }
+            return Flux.just(new ChatResponse(Collections.singletonList(new Generation(
+                    new org.springframework.ai.chat.messages.AssistantMessage("[{\"question\":\"p1\"}]")))));
+        });
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenAnswer(invocation -> {
+            invocation.<QuestionGenerationRecord>getArgument(0).setId(100L);
+            return 1;
+        });
+
+        RecordingEmitter emitter = new RecordingEmitter();
+        questionGenerationService.generateQuestionsAsync(1L, request, emitter);
+
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        List<QuestionGenerationEvent> events = emitter.events;
+        assertEquals(3, events.size());
+        QuestionGenerationEvent question = events.stream()
+                .filter(e -> "question".equals(e.getEventType())).findFirst().orElseThrow();
+        assertEquals(0, question.getIndex());
+        QuestionGenerationEvent error = events.stream()
+                .filter(e -> "error".equals(e.getEventType())).findFirst().orElseThrow();
+        assertEquals(1, error.getIndex());
+
+        // 完成事件总在最后，且记录已写入
+        QuestionGenerationEvent complete = events.get(2);
+        assertEquals("complete", complete.getEventType());
+        assertEquals(100L, complete.getRecordId());
+        assertEquals(1, complete.getSuccessCount());
+        assertEquals(1, complete.getFailedCount());
+        verify(questionGenerationRecordMapper).insert(any(QuestionGenerationRecord.class));
+    }
+
+    @Test
+    void testGenerateQuestions_AbortsStreamOnSchemaViolationAndRetries() {
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(1);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1");
+        when(questionPromptBuilder.resolveSchema("English", "Grammar")).thenReturn(
+                new QuestionOutputSchema(QuestionOutputSchema.Root.ARRAY, List.of("answer"), 0, 0));
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenReturn(1);
+
+        // 第一次输出缺少 answer：首个对象闭合时就应取消订阅，不再消费后续分片
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AtomicInteger tailRequested = new AtomicInteger();
+        Flux<ChatResponse> bad = Flux.concat(
+                Flux.just(chunk("[{\"question\":\"bad\"}")),
+                Flux.defer(() -> {
+                    tailRequested.incrementAndGet();
+                    return Flux.just(chunk(", {\"question\":\"more\"}]"));
+                })).doOnCancel(() -> cancelled.set(true));
+        Flux<ChatResponse> good = Flux.just(chunk("[{\"question\":\"ok\","), chunk("\"answer\":\"A\"}]"),
+                chunk("以上"));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(bad, good);
+
+        QuestionGenerationResponse response = questionGenerationService.generateQuestions(1L, request);
+
+        assertEquals("[{\"question\":\"ok\",\"answer\":\"A\"}]", response.getQuestions());
+        assertTrue(cancelled.get());
+        assertEquals(0, tailRequested.get());
+        verify(chatModel, times(2)).stream(any(Prompt.class));
+    }
+
+    @Test
+    void testGenerateQuestions_CancelsHungStreamAfterAttemptTimeout() {
+        QuestionGenerationProperties properties = new QuestionGenerationProperties();
+        properties.setAttemptTimeout(Duration.ofMillis(100));
+        QuestionGenerationServiceImpl service = new QuestionGenerationServiceImpl(questionExampleStore,
+                questionGenerationRecordMapper, dynamicChatModelFactory, aiModelConfigService, questionPromptBuilder,
+                new ObjectMapper(), properties, executor, questionPool);
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(1);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1");
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenReturn(1);
+
+        // 第一次调用一直没有输出：超时后取消订阅并重试
+        AtomicBoolean cancelled = new AtomicBoolean();
+        Flux<ChatResponse> hung = Flux.concat(Flux.just(chunk("[{\"question\":")), Flux.<ChatResponse>never())
+                .doOnCancel(() -> cancelled.set(true));
+        when(chatModel.stream(any(Prompt.class))).thenReturn(hung, Flux.just(chunk("[{\"question\":\"ok\"}]")));
+
+        QuestionGenerationResponse response = service.generateQuestions(1L, request);
+
+        assertEquals("[{\"question\":\"ok\"}]", response.getQuestions());
+        assertTrue(cancelled.get());
+        verify(chatModel, times(2)).stream(any(Prompt.class));
+    }
+
+    @Test
+    void testGenerateQuestions_TimeoutInterruptsTheHungModelCall() throws Exception {
+        QuestionGenerationProperties properties = new QuestionGenerationProperties();
+        properties.setTimeout(Duration.ofSeconds(2));
+        QuestionGenerationServiceImpl service = new QuestionGenerationServiceImpl(questionExampleStore,
+                questionGenerationRecordMapper, dynamicChatModelFactory, aiModelConfigService, questionPromptBuilder,
+                new ObjectMapper(), properties, executor, questionPool);
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(2);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1", "p2");
+        when(questionGenerationRecordMapper.insert(any(QuestionGenerationRecord.class))).thenReturn(1);
+
+        // p2 一直没有输出，单次尝试超时远大于整体超时
+        CountDownLatch hungCancelled = new CountDownLatch(1);
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            if ("p2".equals(invocation.<Prompt>getArgument(0).getContents())) {
+                return Flux.<ChatResponse>never().doOnCancel(hungCancelled::countDown);
+            }
+            return Flux.just(chunk("[{\"question\":\"p1\"}]"));
+        });
+
+        QuestionGenerationResponse response = service.generateQuestions(1L, request);
+
+        assertEquals("[{\"question\":\"p1\"}]", response.getQuestions());
+        // 请求返回后被中断的调用取消了模型流，且不再重试
+        assertTrue(hungCancelled.await(5, TimeUnit.SECONDS));
+        verify(chatModel, times(2)).stream(any(Prompt.class));
+    }
+
+    @Test
+    void testGenerateQuestionsAsync_ClientDisconnectCancelsRunningModelCalls() throws Exception {
+        QuestionGenerationRequest request = new QuestionGenerationRequest();
+        request.setSubject("English");
+        request.setQuestionType("Grammar");
+        request.setDifficulty("medium");
+        request.setQuantity(2);
+        request.setEnableThinking(false);
+
+        when(questionExampleStore.get("English", "Grammar", "medium")).thenReturn(NO_EXAMPLES);
+        when(dynamicChatModelFactory.createChatModel()).thenReturn(chatModel);
+        when(questionPromptBuilder.buildPrompt(any(), anyString())).thenReturn("p1", "p2");
+        when(questionPool.trackActive()).thenReturn(() -> {
+        });
+
+        // p2 一直没有输出；p1 等 p2 开始后才返回，返回后推送失败即客户端已断开
+        CountDownLatch hungStarted = new CountDownLatch(1);
+        CountDownLatch hungCancelled = new CountDownLatch(1);
+        when(chatModel.stream(any(Prompt.class))).thenAnswer(invocation -> {
+            if ("p2".equals(invocation.<Prompt>getArgument(0).getContents())) {
+                return Flux.<ChatResponse>never()
+                        .doOnSubscribe(s -> hungStarted.countDown())
+                        .doOnCancel(hungCancelled::countDown);
+            }
+            assertTrue(hungStarted.await(5, TimeUnit.SECONDS));
+            return Flux.just(chunk("[{\"question\":\"p1\"}]"));
+        });
+
+        DisconnectedEmitter emitter = new DisconnectedEmitter();
+        questionGenerationService.generateQuestionsAsync(1L, request, emitter);
+
+        assertTrue(hungCancelled.await(5, TimeUnit.SECONDS));
+        assertTrue(emitter.completed.await(5, TimeUnit.SECONDS));
+        // 被取消的调用不再重试
+        verify(chatModel, times(2)).stream(any(Prompt.class));
+    }
+
+    private static ChatResponse chunk(String text) {
+        return new ChatResponse(Collections.singletonList(
+                new Generation(new org.springframework.ai.chat.messages.AssistantMessage(text))));
+    }
+
+    /**
+     * 记录发送的事件数据
+     */
+    private static final class RecordingEmitter extends SseEmitter {
+
+        private final List<QuestionGenerationEvent> events = new CopyOnWriteArrayList<>();
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            builder.build().stream()
+                    .map(ResponseBodyEmitter.DataWithMediaType::getData)
+                    .filter(QuestionGenerationEvent.class::isInstance)
+                    .map(QuestionGenerationEvent.class::cast)
+                    .forEach(events::add);
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
+    }
+
+    /**
+     * 第一次推送就失败，模拟客户端已断开
+     */
+    private static final class DisconnectedEmitter extends SseEmitter {
+
+        private final CountDownLatch completed = new CountDownLatch(1);
+
+        @Override
+        public void send(SseEventBuilder builder) throws IOException {
+            throw new IOException("Broken pipe");
+        }
+
+        @Override
+        public void complete() {
+            completed.countDown();
+        }
     }
 }
@@ -0,0 +1,99 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.n1etzsch3.novi.question.mapper.QuestionCategoryMapper;
+import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuestionCategoryStoreTest {
+
+    @Mock
+    private QuestionCategoryMapper questionCategoryMapper;
+
+    private QuestionCategoryStore store;
+
+    @BeforeEach
+    void setUp() {
+        store = new QuestionCategoryStore(questionCategoryMapper);
+    }
+
+    private static QuestionCategory category(long id, String name, String code, long parentId, int type, int sort) {
+        QuestionCategory category = new QuestionCategory();
+        category.setId(id);
+        category.setName(name);
+        category.setCode(code);
+        category.setParentId(parentId);
+        category.setCategoryType(type);
+        category.setSortOrder(sort);
+        return category;
+    }
+
+    private static List<QuestionCategory> rows() {
+        return List.of(
+                category(102, "连词成句", "sentence_ordering", 1, 2, 2),
+                category(1, "湖北专升本英语", "english_hubei", 0, 1, 1),
+                category(101, "语法填空", "grammar_fill_blank", 1, 2, 1));
+    }
+
+    @Test
+    void lookups_LoadOnceAndResolveAllIndexes() {
+        when(questionCategoryMapper.selectList(any())).thenReturn(rows());
+
+        assertEquals("湖北专升本英语", store.getById(1L).getName());
+        assertEquals(102L, store.getByCode("sentence_ordering").getId());
+        assertEquals("english_hubei", store.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_SUBJECT).getCode());
+        assertNull(store.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_QUESTION_TYPE));
+        assertNull(store.getById(null));
+        assertEquals(List.of(101L, 102L), store.getChildren(1L, QuestionCategoryStore.TYPE_QUESTION_TYPE).stream()
+                .map(QuestionCategory::getId).toList());
+
+        verify(questionCategoryMapper, times(1)).selectList(any());
+    }
+
+    @Test
+    void getTree_NestsChildrenWithoutTouchingFlatIndexes() {
+        when(questionCategoryMapper.selectList(any())).thenReturn(rows());
+
+        List<QuestionCategory> tree = store.getTree();
+
+        assertEquals(1, tree.size());
+        assertEquals(List.of("grammar_fill_blank", "sentence_ordering"), tree.get(0).getChildren().stream()
+                .map(QuestionCategory::getCode).toList());
+        assertNull(store.getById(1L).getChildren());
+        assertThrows(UnsupportedOperationException.class, () -> tree.add(new QuestionCategory()));
+    }
+
+    @Test
+    void refresh_SwapsSnapshotOnlyWhenRowsChange() {
+        QuestionCategory renamed = category(101, "语法选择", "grammar_fill_blank", 1, 2, 1);
+        when(questionCategoryMapper.selectList(any()))
+                .thenReturn(rows())
+                .thenReturn(rows())
+                .thenReturn(List.of(category(1, "湖北专升本英语", "english_hubei", 0, 1, 1), renamed));
+
+        QuestionCategory before = store.getByCode("grammar_fill_blank");
+        store.refresh();
+        assertSame(before, store.getByCode("grammar_fill_blank"));
+
+        store.refresh();
+        assertEquals("语法选择", store.getByCode("grammar_fill_blank").getName());
+        assertNull(store.getByCode("sentence_ordering"));
+    }
+
+    @Test
+    void refresh_BeforeFirstUseDoesNothing() {
+        store.refresh();
+
+        verifyNoInteractions(questionCategoryMapper);
+    }
+}
@@ -0,0 +1,127 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.n1etzsch3.novi.common.pojo.entity.QuestionExample;
+import com.n1etzsch3.novi.question.mapper.QuestionExampleMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class QuestionExampleStoreTest {
+
+    private static final LocalDateTime T0 = LocalDateTime.of(2026, 10, 18, 10, 0);
+
+    @Mock
+    private QuestionExampleMapper questionExampleMapper;
+
+    private QuestionExampleStore store;
+
+    @BeforeEach
+    void setUp() {
+        // Initialize TableInfo for MyBatis-Plus LambdaWrapper to work
+        com.baomidou.mybatisplus.core.metadata.TableInfoHelper
+                .initTableInfo(new org.apache.ibatis.builder.MapperBuilderAssistant(
+                        new com.baomidou.mybatisplus.core.MybatisConfiguration(), ""), QuestionExample.class);
+        store = new QuestionExampleStore(questionExampleMapper);
+    }
+
+    private static QuestionExample example(long id, String difficulty, String content, LocalDateTime updatedAt) {
+        return QuestionExample.builder()
+                .id(id)
+                .subject("英语")
+                .questionType("翻译")
+                .difficulty(difficulty)
+                .content(content)
+                .updatedAt(updatedAt)
+                .build();
+    }
+
+    @Test
+    void get_ResolvesDifficultyFallbackAndRendersOnce() {
+        when(questionExampleMapper.selectList(isNull())).thenReturn(List.of(
+                example(5, "medium", "m5", T0),
+                example(1, "hard", "h1", T0),
+                example(2, "medium", "m2", T0),
+                example(3, "medium", "m3", T0),
+                example(4, "medium", "m4", T0)));
+
+        QuestionExampleStore.ExampleSet hard = store.get("英语", "翻译", "hard");
+        QuestionExampleStore.ExampleSet simple = store.get("英语", "翻译", "simple");
+
+        assertEquals("hard", hard.difficulty());
+        assertEquals("示例 1:\nh1\n\n", hard.rendered());
+        assertEquals("medium", simple.difficulty());
+        assertEquals(List.of(2L, 3L, 4L), simple.examples().stream().map(QuestionExample::getId).toList());
+        assertSame(simple, store.get("英语", "翻译", "medium"));
+        assertTrue(store.get("英语", "写作", "medium").isEmpty());
+        assertTrue(store.get("英语", "写作", "medium").rendered().contains("暂无参考示例"));
+
+        verify(questionExampleMapper, times(1)).selectList(any());
+    }
+
+    @Test
+    void refresh_AppliesChangedRowsFromWatermark() {
+        when(questionExampleMapper.selectList(isNull())).thenReturn(List.of(example(1, "medium", "old", T0)));
+        store.get("英语", "翻译", "medium");
+
+        when(questionExampleMapper.selectList(any())).thenReturn(List.of(example(1, "medium", "new", T0.plusMinutes(1))));
+        when(questionExampleMapper.selectObjs(any())).thenReturn(List.of(1L));
+        store.refresh();
+
+        assertEquals("示例 1:\nnew\n\n", store.get("英语", "翻译", "medium").rendered());
+        verify(questionExampleMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void refresh_RemovesDeletedRowsWithoutReloading() {
+        when(questionExampleMapper.selectList(any()))
+                .thenReturn(List.of(example(1, "medium", "a", T0), example(2, "hard", "b", T0)))
+                .thenReturn(List.of());
+        when(questionExampleMapper.selectObjs(any())).thenReturn(List.of(1L));
+
+        assertEquals("hard", store.get("英语", "翻译", "hard").difficulty());
+        store.refresh();
+
+        assertEquals("medium", store.get("英语", "翻译", "hard").difficulty());
+        verify(questionExampleMapper, times(2)).selectList(any());
+    }
+
+    @Test
+    void refresh_ReloadsAllWhenADeleteAndAnInsertKeepTheRowCount() {
+        // 删除 2 并插入 3：行数不变，且 3 的 updated_at 早于水位线
+        when(questionExampleMapper.selectList(any()))
+                .thenReturn(List.of(example(1, "medium", "a", T0), example(2, "hard", "b", T0)))
+                .thenReturn(List.of())
+                .thenReturn(List.of(example(1, "medium", "a", T0), example(3, "easy", "c", T0.minusDays(1))));
+        when(questionExampleMapper.selectObjs(any())).thenReturn(List.of(1L, 3L));
+
+        store.get("英语", "翻译", "hard");
+        store.refresh();
+
+        assertEquals("medium", store.get("英语", "翻译", "hard").difficulty());
+        assertEquals("easy", store.get("英语", "翻译", "easy").difficulty());
+        verify(questionExampleMapper, times(3)).selectList(any());
+    }
+
+    @Test
+    void get_MatchesKeysCaseInsensitivelyLikeTheDatabase() {
+        when(questionExampleMapper.selectList(isNull())).thenReturn(List.of(
+                QuestionExample.builder().id(1L).subject("English").questionType("Grammar ").difficulty("Hard")
+                        .content("g1").updatedAt(T0).build()));
+
+        QuestionExampleStore.ExampleSet set = store.get("english", "GRAMMAR", "hard");
+
+        assertEquals("Hard", set.difficulty());
+        assertEquals(List.of(1L), set.examples().stream().map(QuestionExample::getId).toList());
+    }
+}
@@ -0,0 +1,181 @@
+package com.n1etzsch3.novi.question.store;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.n1etzsch3.novi.question.config.QuestionPoolProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class QuestionPoolTest {
+
+    private static final QuestionPool.PoolKey KEY = QuestionPool.key("英语", "翻译", "medium", null);
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-10-18T12:00:00Z"));
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private QuestionPoolProperties properties;
+    private QuestionPool pool;
+
+    @BeforeEach
+    void setUp() {
+        properties = new QuestionPoolProperties();
+        properties.setEnabled(true);
+        properties.setTargetStock(3);
+        properties.setLowWatermark(2);
+        properties.setMinDemand(1);
+        pool = new QuestionPool(properties, registry, clock);
+    }
+
+    private static JsonNode question(String text) {
+        return JsonNodeFactory.instance.objectNode().put("question", text);
+    }
+
+    private List<JsonNode> counter(AtomicInteger calls) {
+        return List.of(question("q" + calls.incrementAndGet()));
+    }
+
+    @Test
+    void take_NeverServesTheSameQuestionToOneUserTwice() {
+        pool.take(KEY, 1L, 1);
+        pool.offer(KEY, 1L, List.of(question("a"), question("b")));
+
+        assertTrue(pool.take(KEY, 1L, 2).isEmpty());
+        assertEquals(List.of(question("a")), pool.take(KEY, 2L, 1));
+        assertEquals(List.of(question("b")), pool.take(KEY, 2L, 3));
+        assertEquals(List.of(question("a"), question("b")), pool.take(KEY, 3L, 2));
+        assertEquals(5, registry.get("novi.question.pool.questions").tag("result", "miss").counter().count());
+        assertEquals(4, registry.get("novi.question.pool.questions").tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void take_RetiresItemsAfterMaxServesAndTtl() {
+        properties.setMaxServesPerItem(2);
+        pool.take(KEY, 1L, 1);
+        pool.offer(KEY, 1L, List.of(question("a")));
+
+        assertEquals(1, pool.take(KEY, 2L, 1).size());
+        assertEquals(0, pool.stock(KEY));
+
+        pool.offer(KEY, 1L, List.of(question("b")));
+        clock.advance(properties.getItemTtl().plusSeconds(1));
+        assertTrue(pool.take(KEY, 3L, 1).isEmpty());
+    }
+
+    @Test
+    void refill_FillsDemandedCombinationsToTargetAndRecordsLag() {
+        AtomicInteger calls = new AtomicInteger();
+        pool.take(KEY, 1L, 1);
+        clock.advance(Duration.ofSeconds(30));
+
+        pool.refill(key -> counter(calls));
+
+        assertEquals(3, calls.get());
+        assertEquals(3, pool.stock(KEY));
+        assertEquals(1, registry.get("novi.question.pool.refill.lag").timer().count());
+        assertEquals(3, registry.get("novi.question.pool.refill.generated").counter().count());
+        assertEquals(3.0, registry.get("novi.question.pool.stock").gauge().value());
+    }
+
+    @Test
+    void refill_SkipsWhenBusyOutsideOffPeakOrDemandTooLow() {
+        AtomicInteger calls = new AtomicInteger();
+        pool.take(KEY, 1L, 1);
+
+        try (QuestionPool.ActiveRequest ignored = pool.trackActive()) {
+            pool.refill(key -> counter(calls));
+            assertEquals(0, calls.get());
+
+            properties.getRefill().setOffPeakStart(LocalTime.of(22, 0));
+            properties.getRefill().setOffPeakEnd(LocalTime.of(13, 0));
+            pool.refill(key -> counter(calls));
+            assertEquals(3, calls.get());
+        }
+
+        properties.setMinDemand(2);
+        QuestionPool.PoolKey rare = QuestionPool.key("英语", "写作", "hard", "环保");
+        pool.take(rare, 1L, 1);
+        pool.refill(key -> counter(calls));
+        assertEquals(0, pool.stock(rare));
+    }
+
+    @Test
+    void refill_TopsUpAUserWhoDrainedTheSharedStock() {
+        AtomicInteger calls = new AtomicInteger();
+        properties.setMinDemand(2);
+        pool.take(KEY, 1L, 1);
+        pool.take(KEY, 2L, 1);
+        pool.refill(key -> counter(calls));
+        assertEquals(3, calls.get());
+
+        // 用户 1 拿完了池中所有题，用户 2 仍有 3 道，仍应为用户 1 补充
+        assertEquals(3, pool.take(KEY, 1L, 3).size());
+        pool.refill(key -> counter(calls));
+
+        assertEquals(6, calls.get());
+        assertEquals(3, pool.stock(KEY));
+        assertEquals(3, pool.take(KEY, 1L, 3).size());
+    }
+
+    @Test
+    void take_BoundsCombinationsWithoutFailing() {
+        properties.setMaxCombinations(2);
+        SimpleMeterRegistry boundedRegistry = new SimpleMeterRegistry();
+        QuestionPool bounded = new QuestionPool(properties, boundedRegistry, clock);
+
+        for (int i = 0; i < 10; i++) {
+            bounded.take(QuestionPool.key("英语", "翻译", "medium", "主题" + i), 1L, 1);
+        }
+
+        assertTrue(boundedRegistry.get("novi.question.pool.combinations").gauge().value() <= 2);
+    }
+
+    @Test
+    void disabledPool_IsInert() {
+        properties.setEnabled(false);
+
+        assertTrue(pool.take(KEY, 1L, 1).isEmpty());
+        pool.refill(key -> {
+            throw new AssertionError("should not generate");
+        });
+        assertEquals(0, pool.totalStock());
+    }
+
+    private static final class MutableClock extends Clock {
+
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
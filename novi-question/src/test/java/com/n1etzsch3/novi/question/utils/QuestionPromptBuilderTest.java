@@ -1,16 +1,15 @@
 package com.n1etzsch3.novi.question.utils;
 
-import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
-import com.n1etzsch3.novi.aiconfig.mapper.AiPromptConfigMapper;
+import com.n1etzsch3.novi.aiconfig.store.AiPromptConfigStore;
+import com.n1etzsch3.novi.aiconfig.template.PromptTemplateEngine;
 import com.n1etzsch3.novi.common.pojo.entity.AiPromptConfig;
 import com.n1etzsch3.novi.common.pojo.entity.QuestionExample;
-import com.n1etzsch3.novi.question.mapper.QuestionCategoryMapper;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.entity.QuestionCategory;
+import com.n1etzsch3.novi.question.store.QuestionCategoryStore;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 
@@ -18,19 +17,21 @@ import java.util.Collections;
 import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
-import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ExtendWith(MockitoExtension.class)
 class QuestionPromptBuilderTest {
 
     @Mock
-    private AiPromptConfigMapper aiPromptConfigMapper;
+    private AiPromptConfigStore aiPromptConfigStore;
 
     @Mock
-    private QuestionCategoryMapper questionCategoryMapper;
+    private QuestionCategoryStore questionCategoryStore;
 
-    @InjectMocks
     private QuestionPromptBuilder questionPromptBuilder;
 
     private QuestionGenerationRequest request;
@@ -38,6 +39,9 @@ class QuestionPromptBuilderTest {
 
     @BeforeEach
     void setUp() {
+        questionPromptBuilder = new QuestionPromptBuilder(aiPromptConfigStore, questionCategoryStore,
+                new PromptTemplateEngine(aiPromptConfigStore));
+
         request = new QuestionGenerationRequest();
         request.setSubject("湖北专升本英语");
         request.setQuestionType("连词成句");
@@ -55,24 +59,25 @@ class QuestionPromptBuilderTest {
         // Mock Category lookup
         QuestionCategory subjectCat = new QuestionCategory();
         subjectCat.setCode("english_hubei");
-        when(questionCategoryMapper.selectOne(any(LambdaQueryWrapper.class)))
-                .thenReturn(subjectCat) // First call for subject
+        when(questionCategoryStore.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_SUBJECT))
+                .thenReturn(subjectCat);
+        when(questionCategoryStore.getByName("连词成句", QuestionCategoryStore.TYPE_QUESTION_TYPE))
                 .thenReturn(new QuestionCategory() {
                     {
                         setCode("sentence_ordering");
                     }
-                }); // Second call for type
+                });
 
         // Mock Template lookup
         AiPromptConfig templateConfig = new AiPromptConfig();
         templateConfig.setConfigValue(
                 "Role: Expert. Task: Generate {quantity} {difficulty} questions about {theme}. Subject: {subject}. Examples: {examples}");
-        when(aiPromptConfigMapper.selectById("prompt:english_hubei:sentence_ordering")).thenReturn(templateConfig);
+        when(aiPromptConfigStore.get("prompt:english_hubei:sentence_ordering")).thenReturn(templateConfig);
 
         // Mock Difficulty lookup
         AiPromptConfig difficultyConfig = new AiPromptConfig();
         difficultyConfig.setConfigValue("Medium Difficulty Description");
-        when(aiPromptConfigMapper.selectById("desc:difficulty:english_hubei:sentence_ordering:medium"))
+        when(aiPromptConfigStore.get("desc:difficulty:english_hubei:sentence_ordering:medium"))
                 .thenReturn(difficultyConfig);
 
         // Execute
@@ -87,7 +92,7 @@ class QuestionPromptBuilderTest {
 
     @Test
     void buildPrompt_MissingCategory_ThrowsException() {
-        when(questionCategoryMapper.selectOne(any(LambdaQueryWrapper.class))).thenReturn(null);
+        when(questionCategoryStore.getByName(anyString(), anyInt())).thenReturn(null);
 
         assertThrows(IllegalArgumentException.class, () -> {
             questionPromptBuilder.buildPrompt(request, examples);
@@ -99,8 +104,9 @@ class QuestionPromptBuilderTest {
         // Mock Category lookup
         QuestionCategory subjectCat = new QuestionCategory();
         subjectCat.setCode("english_hubei");
-        when(questionCategoryMapper.selectOne(any(LambdaQueryWrapper.class)))
-                .thenReturn(subjectCat)
+        when(questionCategoryStore.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_SUBJECT))
+                .thenReturn(subjectCat);
+        when(questionCategoryStore.getByName("连词成句", QuestionCategoryStore.TYPE_QUESTION_TYPE))
                 .thenReturn(new QuestionCategory() {
                     {
                         setCode("sentence_ordering");
@@ -108,7 +114,7 @@ class QuestionPromptBuilderTest {
                 });
 
         // Mock Template lookup (return null)
-        when(aiPromptConfigMapper.selectById("prompt:english_hubei:sentence_ordering")).thenReturn(null);
+        when(aiPromptConfigStore.get("prompt:english_hubei:sentence_ordering")).thenReturn(null);
 
         assertThrows(IllegalStateException.class, () -> {
             questionPromptBuilder.buildPrompt(request, examples);
@@ -120,8 +126,9 @@ class QuestionPromptBuilderTest {
         // Mock Category lookup
         QuestionCategory subjectCat = new QuestionCategory();
         subjectCat.setCode("english_hubei");
-        when(questionCategoryMapper.selectOne(any(LambdaQueryWrapper.class)))
-                .thenReturn(subjectCat)
+        when(questionCategoryStore.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_SUBJECT))
+                .thenReturn(subjectCat);
+        when(questionCategoryStore.getByName("连词成句", QuestionCategoryStore.TYPE_QUESTION_TYPE))
                 .thenReturn(new QuestionCategory() {
                     {
                         setCode("sentence_ordering");
@@ -131,10 +138,10 @@ class QuestionPromptBuilderTest {
         // Mock Template lookup
         AiPromptConfig templateConfig = new AiPromptConfig();
         templateConfig.setConfigValue("Difficulty: {difficulty}");
-        when(aiPromptConfigMapper.selectById("prompt:english_hubei:sentence_ordering")).thenReturn(templateConfig);
+        when(aiPromptConfigStore.get("prompt:english_hubei:sentence_ordering")).thenReturn(templateConfig);
 
         // Mock Difficulty lookup (return null)
-        when(aiPromptConfigMapper.selectById("desc:difficulty:english_hubei:sentence_ordering:medium"))
+        when(aiPromptConfigStore.get("desc:difficulty:english_hubei:sentence_ordering:medium"))
                 .thenReturn(null);
 
         // Execute
@@ -143,4 +150,33 @@ class QuestionPromptBuilderTest {
         // Verify
         assertTrue(prompt.contains("Difficulty: 难度适中，符合考试大纲要求。"));
     }
+
+    @Test
+    void resolveSchema_ParsesConfigOnceAndIgnoresInvalidValues() {
+        QuestionCategory subjectCat = new QuestionCategory();
+        subjectCat.setCode("english_hubei");
+        QuestionCategory typeCat = new QuestionCategory();
+        typeCat.setCode("sentence_ordering");
+        when(questionCategoryStore.getByName("湖北专升本英语", QuestionCategoryStore.TYPE_SUBJECT))
+                .thenReturn(subjectCat);
+        when(questionCategoryStore.getByName("连词成句", QuestionCategoryStore.TYPE_QUESTION_TYPE))
+                .thenReturn(typeCat);
+
+        AiPromptConfig schemaConfig = new AiPromptConfig();
+        schemaConfig.setConfigValue("{\"root\":\"array\",\"required\":[\"content\",\"answers\"],\"maxItems\":1}");
+        when(aiPromptConfigStore.get("schema:english_hubei:sentence_ordering")).thenReturn(schemaConfig);
+
+        QuestionOutputSchema schema = questionPromptBuilder.resolveSchema("湖北专升本英语", "连词成句");
+
+        assertEquals(QuestionOutputSchema.Root.ARRAY, schema.root());
+        assertEquals(List.of("content", "answers"), schema.required());
+        assertEquals(1, schema.maxItems());
+        assertSame(schema, questionPromptBuilder.resolveSchema("湖北专升本英语", "连词成句"));
+        verify(aiPromptConfigStore, times(1)).get("schema:english_hubei:sentence_ordering");
+
+        // 版本号变化后重新读取；配置无效时不做约束
+        schemaConfig.setConfigValue("{\"root\":\"table\"}");
+        when(aiPromptConfigStore.getVersion()).thenReturn(1L);
+        assertSame(QuestionOutputSchema.NONE, questionPromptBuilder.resolveSchema("湖北专升本英语", "连词成句"));
+    }
 }
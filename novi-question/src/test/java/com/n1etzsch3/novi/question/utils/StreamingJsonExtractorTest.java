@@ -0,0 +1,121 @@
+package com.n1etzsch3.novi.question.utils;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingJsonExtractorTest {
+
+    private final StreamingJsonExtractor extractor = new StreamingJsonExtractor(new ObjectMapper());
+
+    @Test
+    void feed_EmitsEachObjectAsItClosesAndSkipsProseAndFences() {
+        assertTrue(extractor.feed("好的，题目如下：\n```json\n[{\"question\":\"a {").isEmpty());
+
+        List<JsonNode> first = extractor.feed("[x]\\\"}\", \"options\":[\"A\"]}, {\"question\"");
+        assertEquals(1, first.size());
+        assertEquals("a {[x]\"}", first.get(0).get("question").asText());
+        assertFalse(extractor.isComplete());
+
+        List<JsonNode> second = extractor.feed(":\"b\"}]\n```\n以上题目{不会被解析");
+        assertEquals("b", second.get(0).get("question").asText());
+        assertTrue(extractor.isComplete());
+        assertEquals(2, extractor.finish().size());
+    }
+
+    @Test
+    void feed_AcceptsSingleRootObject() {
+        extractor.feed("{\"question\":\"only\"}");
+
+        assertTrue(extractor.isComplete());
+        assertEquals("only", extractor.finish().get(0).get("question").asText());
+    }
+
+    @Test
+    void feed_FailsFastOnMalformedOutput() {
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper()).feed("[{\"a\":1]"));
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper()).feed("[\"text\""));
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper()).feed("[{question: 1}"));
+    }
+
+    @Test
+    void finish_RejectsTruncatedOrEmptyOutput() {
+        extractor.feed("[{\"question\":\"a\"}, {\"question\":");
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class, extractor::finish);
+
+        StreamingJsonExtractor unterminated = new StreamingJsonExtractor(new ObjectMapper());
+        unterminated.feed("[{\"question\":\"a\"},");
+        assertEquals(1, unterminated.finish().size());
+
+        StreamingJsonExtractor empty = new StreamingJsonExtractor(new ObjectMapper());
+        empty.feed("抱歉，无法生成。");
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class, empty::finish);
+    }
+
+    @Test
+    void feed_FailsAsSoonAsSchemaCanNoLongerMatch() {
+        QuestionOutputSchema schema = new QuestionOutputSchema(QuestionOutputSchema.Root.ARRAY,
+                List.of("content"), 1, 40);
+
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper(), schema).feed("{\"content\""));
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper(), schema).feed("[{\"title\":\"t\"}"));
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> new StreamingJsonExtractor(new ObjectMapper(), schema).feed("[{\"content\":1}, {"));
+
+        StreamingJsonExtractor overrun = new StreamingJsonExtractor(new ObjectMapper(), schema);
+        overrun.feed("[{\"content\":\"");
+        assertThrows(StreamingJsonExtractor.MalformedJsonException.class,
+                () -> overrun.feed("x".repeat(40)));
+
+        StreamingJsonExtractor valid = new StreamingJsonExtractor(new ObjectMapper(), schema);
+        valid.feed("[{\"content\":\"ok\"}]");
+        assertEquals(1, valid.finish().size());
+    }
+
+    @Test
+    void feed_AcceptsEachSeededTemplateExampleUnderItsSeededSchema() throws Exception {
+        // 测试工作目录为模块目录，初始化脚本位于仓库根目录
+        String sql = Files.readString(Path.of("../sql/ai_prompt_config.sql")).replace("''", "'");
+        Matcher schemas = Pattern.compile("'schema:(english_hubei:\\w+)', '(\\{[^']*})'").matcher(sql);
+        int checked = 0;
+        while (schemas.find()) {
+            QuestionOutputSchema schema = QuestionOutputSchema.parse(schemas.group(2));
+            String example = templateExample(sql, schemas.group(1));
+
+            // 模型照抄示例输出单个对象，或按文字要求包一层数组
+            for (String output : List.of(example, "[" + example + "]")) {
+                StreamingJsonExtractor seeded = new StreamingJsonExtractor(new ObjectMapper(), schema);
+                seeded.feed(output);
+                assertEquals(1, seeded.finish().size(), schemas.group(1));
+            }
+            checked++;
+        }
+        assertEquals(6, checked);
+    }
+
+    /**
+     * 取出题模板中 Output Format 一节的 JSON 示例，去掉示例里的行尾注释
+     */
+    private static String templateExample(String sql, String key) {
+        int template = sql.indexOf("'prompt:" + key + "'");
+        assertTrue(template >= 0, key);
+        int format = sql.indexOf("# Output Format", template);
+        int end = sql.indexOf("# Few-Shot", format);
+        String section = sql.substring(format, end);
+        return section.substring(section.indexOf('{'), section.lastIndexOf('}') + 1)
+                .replaceAll(",[ \\t]*//[^\\n]*", ",");
+    }
+}
@@ -0,0 +1,15 @@
+package com.n1etzsch3.novi.user.event;
+
+/**
+ * 用户资料变更事件
+ * <p>
+ * 昵称、偏好设置等资料写入数据库后发布，
+ * 依赖这些资料的下游缓存（如聊天人设上下文）据此失效对应用户的条目。
+ * </p>
+ *
+ * @param userId 发生变更的用户ID
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+public record UserProfileChangedEvent(Long userId) {
+}
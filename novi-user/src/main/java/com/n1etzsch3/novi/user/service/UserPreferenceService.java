@@ -7,4 +7,9 @@ public interface UserPreferenceService {
     NoviPersonaSettings getPersonaSettings(Long userId);
     NoviPersonaSettings updatePersonaSettings(Long userId, NoviPersonaSettings settings);
 
+    /**
+     * 将 preferences 列中的 JSON 解析为人设设置，内容为空或解析失败时返回默认设置
+     */
+    NoviPersonaSettings parsePersonaSettings(Long userId, String preferencesJson);
+
 }
\ No newline at end of file
@@ -10,10 +10,12 @@ import com.n1etzsch3.novi.user.mapper.UserAccountMapper;
 import com.n1etzsch3.novi.common.pojo.dto.*;
 import com.n1etzsch3.novi.user.pojo.dto.*;
 import com.n1etzsch3.novi.common.pojo.entity.UserAccount;
+import com.n1etzsch3.novi.user.event.UserProfileChangedEvent;
 import com.n1etzsch3.novi.user.service.UserAccountService;
 import com.n1etzsch3.novi.common.utils.JwtUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
@@ -37,6 +39,7 @@ public class UserAccountServiceImpl implements UserAccountService {
     private final UserAccountMapper userAccountMapper;
     private final PasswordEncoder passwordEncoder;
     private final JwtUtils jwtUtils;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public void registerUser(RegistrationRequest request) {
@@ -163,6 +166,7 @@ public class UserAccountServiceImpl implements UserAccountService {
 
         // 4. 执行更新
         userAccountMapper.updateById(user);
+        eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
     }
 
     private final ObjectMapper objectMapper;
@@ -224,6 +228,7 @@ public class UserAccountServiceImpl implements UserAccountService {
                             .set(UserAccount::getUpdatedAt, LocalDateTime.now()));
 
             log.info("成功更新用户 {} 的偏好设置", userId);
+            eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
             return preferences;
 
         } catch (JsonProcessingException e) {
@@ -8,9 +8,11 @@ import com.n1etzsch3.novi.common.exception.BusinessException;
 import com.n1etzsch3.novi.user.mapper.UserAccountMapper;
 import com.n1etzsch3.novi.user.pojo.dto.NoviPersonaSettings;
 import com.n1etzsch3.novi.common.pojo.entity.UserAccount;
+import com.n1etzsch3.novi.user.event.UserProfileChangedEvent;
 import com.n1etzsch3.novi.user.service.UserPreferenceService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.util.StringUtils;
 
@@ -21,6 +23,7 @@ public class UserPreferenceServiceImpl implements UserPreferenceService {
 
     private final UserAccountMapper userAccountMapper; // 复用 Mapper
     private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Override
     public NoviPersonaSettings getPersonaSettings(Long userId) {
@@ -31,7 +34,11 @@ public class UserPreferenceServiceImpl implements UserPreferenceService {
                         .select(UserAccount::getPreferences)
                         .eq(UserAccount::getId, userId));
         String json = userAccount != null ? userAccount.getPreferences() : null;
+        return parsePersonaSettings(userId, json);
+    }
 
+    @Override
+    public NoviPersonaSettings parsePersonaSettings(Long userId, String json) {
         if (!StringUtils.hasText(json)) {
             return new NoviPersonaSettings(); // 返回默认配置
         }
@@ -66,6 +73,7 @@ public class UserPreferenceServiceImpl implements UserPreferenceService {
                             .set(UserAccount::getUpdatedAt,
                                     java.time.LocalDateTime.now()));
             log.info("Updated persona settings for user: {}", userId);
+            eventPublisher.publishEvent(new UserProfileChangedEvent(userId));
             return settings;
         } catch (JsonProcessingException e) {
             log.error("Failed to serialize user preferences for user: {}", userId, e);
@@ -4,6 +4,7 @@ import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.context.annotation.ComponentScan;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication(exclude = {
 		com.alibaba.cloud.ai.autoconfigure.dashscope.DashScopeChatAutoConfiguration.class,
@@ -29,6 +30,7 @@ import org.springframework.context.annotation.ComponentScan;
 		"com.n1etzsch3.novi.question.mapper",
 		"com.n1etzsch3.novi.aiconfig.mapper"
 })
+@EnableScheduling
 public class NoviApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,48 @@
+package com.n1etzsch3.novi.config;
+
+import com.n1etzsch3.novi.chat.config.ChatStreamProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * 流式聊天配置类
+ * <p>
+ * 配置流式聊天中阻塞操作（MyBatis 查询与写入）使用的调度器。
+ * 流式接口返回 Flux 后 Servlet 线程即被释放，会话准备、历史加载和历史写入都在该调度器上执行，
+ * 单机可同时保持的流式会话数不再受 Tomcat 工作线程数限制。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Configuration
+public class ChatStreamConfig {
+
+    /**
+     * 创建流式聊天阻塞操作调度器
+     * <p>
+     * 有界弹性模式：最多 threadCap 个线程，线程全忙时最多排队 queuedTaskCap 个任务<br>
+     * 虚拟线程模式：每个任务一个虚拟线程，threadCap 与 queuedTaskCap 不生效
+     * </p>
+     */
+    @Bean(name = "chatBlockingScheduler", destroyMethod = "dispose")
+    public Scheduler chatBlockingScheduler(ChatStreamProperties properties) {
+        ChatStreamProperties.Blocking config = properties.getBlocking();
+        if (config.getMode() == ChatStreamProperties.Blocking.Mode.VIRTUAL) {
+            log.info("Initializing chat blocking scheduler on virtual threads");
+            return Schedulers.fromExecutorService(
+                    Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("chat-blocking-", 1).factory()),
+                    "chat-blocking");
+        }
+
+        log.info("Chat blocking scheduler initialized: threadCap={}, queuedTaskCap={}",
+                config.getThreadCap(), config.getQueuedTaskCap());
+        return Schedulers.newBoundedElastic(config.getThreadCap(), config.getQueuedTaskCap(), "chat-blocking");
+    }
+}
@@ -1,9 +1,12 @@
 package com.n1etzsch3.novi.config;
 
+import com.n1etzsch3.novi.question.config.GenerationExecutorProperties;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.ThreadPoolExecutor;
@@ -26,15 +29,24 @@ public class PaperGenerationConfig {
     /**
      * 创建组卷专用线程池
      * <p>
+     * 平台线程模式：<br>
      * 核心线程数：3<br>
      * 最大线程数：5<br>
      * 空闲线程存活时间：60秒<br>
      * 队列大小：10<br>
      * 拒绝策略：CallerRunsPolicy（调用者线程执行）
      * </p>
+     * <p>
+     * 虚拟线程模式：每个题型任务一个虚拟线程，突发请求不会再溢出到 Tomcat 请求线程上。
+     * </p>
      */
-    @Bean(name = "paperGenerationExecutor")
-    public ThreadPoolExecutor paperGenerationExecutor() {
+    @Bean(name = "paperGenerationExecutor", destroyMethod = "shutdown")
+    public ExecutorService paperGenerationExecutor(GenerationExecutorProperties properties) {
+        if (properties.isVirtual()) {
+            log.info("Initializing paper generation executor on virtual threads");
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("paper-gen-", 1).factory());
+        }
+
         log.info("Initializing paper generation thread pool");
 
         ThreadPoolExecutor executor = new ThreadPoolExecutor(
@@ -0,0 +1,74 @@
+package com.n1etzsch3.novi.config;
+
+import com.n1etzsch3.novi.question.config.GenerationExecutorProperties;
+import com.n1etzsch3.novi.question.config.QuestionGenerationProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI出题功能配置类
+ * <p>
+ * 配置线程池，用于并发发出同一次出题请求中的单题模型调用。
+ * 与组卷线程池分开：组卷任务本身会调用出题服务并等待单题结果，
+ * 共用同一个线程池会让等待方占满线程而导致饥饿。
+ * </p>
+ *
+ * @author N1etzsch3
+ * @since 2026-10-18
+ */
+@Slf4j
+@Configuration
+public class QuestionGenerationConfig {
+
+    /**
+     * 创建出题专用线程池
+     * <p>
+     * 平台线程模式：核心线程数 = 最大线程数 = poolSize，空闲线程 60 秒后回收，
+     * 拒绝策略为 CallerRunsPolicy（调用者线程执行）<br>
+     * 虚拟线程模式：每道题一个虚拟线程，poolSize 与 queueCapacity 不生效
+     * </p>
+     */
+    @Bean(name = "questionGenerationExecutor", destroyMethod = "shutdown")
+    public ExecutorService questionGenerationExecutor(QuestionGenerationProperties properties,
+            GenerationExecutorProperties executorProperties) {
+        if (executorProperties.isVirtual()) {
+            log.info("Initializing question generation executor on virtual threads");
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("question-gen-", 1).factory());
+        }
+
+        QuestionGenerationProperties.Executor config = properties.getExecutor();
+
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                config.getPoolSize(),
+                config.getPoolSize(),
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(config.getQueueCapacity()),
+                new ThreadFactory() {
+                    private final AtomicInteger threadNumber = new AtomicInteger(1);
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread thread = new Thread(r);
+                        thread.setName("question-gen-" + threadNumber.getAndIncrement());
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                },
+                new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.allowCoreThreadTimeOut(true);
+
+        log.info("Question generation thread pool initialized: poolSize={}, queueCapacity={}",
+                config.getPoolSize(), config.getQueueCapacity());
+
+        return executor;
+    }
+}
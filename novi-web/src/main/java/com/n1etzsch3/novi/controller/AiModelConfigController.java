@@ -1,6 +1,5 @@
 package com.n1etzsch3.novi.controller;
 
-import com.n1etzsch3.novi.aiconfig.factory.DynamicChatModelFactory;
 import com.n1etzsch3.novi.aiconfig.pojo.dto.AiModelConfigDTO;
 import com.n1etzsch3.novi.common.pojo.dto.Result;
 import com.n1etzsch3.novi.aiconfig.service.AiModelConfigService;
@@ -26,7 +25,6 @@ import java.util.List;
 public class AiModelConfigController {
 
     private final AiModelConfigService aiModelConfigService;
-    private final DynamicChatModelFactory dynamicChatModelFactory;
 
     /**
      * 获取所有模型配置列表（安全版本）
@@ -76,9 +74,8 @@ public class AiModelConfigController {
         log.info("Switching to model: {}", modelName);
         boolean success = aiModelConfigService.switchModelByName(modelName);
         if (success) {
-            // 刷新模型缓存，使新模型立即生效
-            dynamicChatModelFactory.refresh();
-            log.info("Successfully switched to model: {} and refreshed cache", modelName);
+            // 切换时已原子替换内存中的模型快照，新模型立即生效；已创建的模型实例按配置继续复用
+            log.info("Successfully switched to model: {}", modelName);
             return Result.success("模型切换成功");
         } else {
             log.error("Failed to switch to model: {}", modelName);
@@ -2,6 +2,7 @@ package com.n1etzsch3.novi.controller;
 
 import com.baomidou.mybatisplus.core.conditions.query.LambdaQueryWrapper;
 import com.n1etzsch3.novi.chat.mapper.ChatMemoryMapper;
+import com.n1etzsch3.novi.chat.repository.ChatMessageWriteBehindBuffer;
 import com.n1etzsch3.novi.common.pojo.dto.Result;
 import com.n1etzsch3.novi.common.pojo.entity.ChatMessage;
 import com.n1etzsch3.novi.common.pojo.entity.ChatSession;
@@ -30,6 +31,7 @@ public class ChatSessionController {
 
     private final ChatSessionService chatSessionService;
     private final ChatMemoryMapper chatMemoryMapper;
+    private final ChatMessageWriteBehindBuffer writeBehindBuffer;
 
     /**
      * 获取当前用户的聊天会话列表。
@@ -44,6 +46,20 @@ public class ChatSessionController {
         return Result.success(sessions);
     }
 
+    /**
+     * 分页获取当前用户的聊天会话列表（按最后活跃时间倒序）。
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页不传。
+     * @param limit  每页条数，默认 20，最大 100。
+     * @return 包含一页会话的结果。
+     */
+    @GetMapping("/page")
+    public Result getSessionPage(@RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = LoginUserContext.getUserId();
+        return Result.success(chatSessionService.getUserSessionsPage(userId, cursor, limit));
+    }
+
     /**
      * 获取特定聊天会话的消息。
      *
@@ -57,16 +73,33 @@ public class ChatSessionController {
         // 安全检查: 确保会话属于当前用户
         chatSessionService.validateSessionOwner(sessionId, userId);
 
-        // 复用现有的 ChatMemoryMapper 方法
-        List<ChatMessage> messages = chatMemoryMapper.selectList(
-                new LambdaQueryWrapper<ChatMessage>()
-                        .eq(ChatMessage::getUserId, userId)
-                        .eq(ChatMessage::getSessionId, sessionId)
-                        .orderByAsc(ChatMessage::getId));
+        // 复用现有的 ChatMemoryMapper 方法，并合并写后缓冲中尚未落库的消息
+        List<ChatMessage> messages = writeBehindBuffer.readThrough(userId + ":" + sessionId,
+                () -> chatMemoryMapper.selectList(
+                        new LambdaQueryWrapper<ChatMessage>()
+                                .eq(ChatMessage::getUserId, userId)
+                                .eq(ChatMessage::getSessionId, sessionId)
+                                .orderByAsc(ChatMessage::getId)));
         log.info("Retrieved messages for session: {}", sessionId);
         return Result.success(messages);
     }
 
+    /**
+     * 分页获取特定聊天会话的消息：从最新消息开始向前翻页，每页内按时间正序排列。
+     *
+     * @param sessionId 会话 ID。
+     * @param cursor    上一页返回的 nextCursor，第一页（最新消息）不传。
+     * @param limit     每页条数，默认 20，最大 100。
+     * @return 包含一页消息的结果。
+     */
+    @GetMapping("/{sessionId}/messages/page")
+    public Result getSessionMessagePage(@PathVariable String sessionId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = LoginUserContext.getUserId();
+        return Result.success(chatSessionService.getSessionMessagesPage(userId, sessionId, cursor, limit));
+    }
+
     /**
      * 删除聊天会话及其消息。
      *
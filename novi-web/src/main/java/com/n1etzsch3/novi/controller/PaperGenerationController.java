@@ -1,5 +1,6 @@
 package com.n1etzsch3.novi.controller;
 
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
 import com.n1etzsch3.novi.common.pojo.dto.Result;
 import com.n1etzsch3.novi.common.utils.LoginUserContext;
 import com.n1etzsch3.novi.question.pojo.dto.PaperDetailResponse;
@@ -89,6 +90,21 @@ public class PaperGenerationController {
         return Result.success(paperGenerationService.getPaperHistory(userId));
     }
 
+    /**
+     * 分页获取套卷历史记录列表（按创建时间倒序）
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页不传
+     * @param limit  每页条数，默认 20，最大 100
+     * @return 一页历史记录
+     */
+    @GetMapping("/history/page")
+    public Result<CursorPage<PaperHistoryItem>> getPaperHistoryPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = LoginUserContext.getUserId();
+        return Result.success(paperGenerationService.getPaperHistoryPage(userId, cursor, limit));
+    }
+
     /**
      * 获取套卷详情
      *
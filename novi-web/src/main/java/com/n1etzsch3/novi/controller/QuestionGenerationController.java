@@ -3,13 +3,16 @@ package com.n1etzsch3.novi.controller;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationRequest;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionGenerationResponse;
 import com.n1etzsch3.novi.question.pojo.dto.QuestionHistoryItem;
+import com.n1etzsch3.novi.common.pojo.dto.CursorPage;
 import com.n1etzsch3.novi.common.pojo.dto.Result;
 import com.n1etzsch3.novi.question.service.QuestionGenerationService;
 import com.n1etzsch3.novi.common.utils.LoginUserContext;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.util.List;
 
@@ -45,6 +48,48 @@ public class QuestionGenerationController {
         return Result.success(response);
     }
 
+    /**
+     * 生成题目（SSE 流式推送）
+     * <p>
+     * 每道题校验通过后立即推送，全部结束后保存出题记录。
+     * 前端应监听以下事件：
+     * <ul>
+     * <li>question - 单道题目生成完成</li>
+     * <li>reasoning - 深度思考过程增量（仅深度思考模式）</li>
+     * <li>error - 某道题目生成失败，或整体失败（无 index）</li>
+     * <li>complete - 出题记录已保存</li>
+     * </ul>
+     * </p>
+     *
+     * @param request 出题请求参数
+     * @return SSE Emitter
+     */
+    @PostMapping(value = "/generate/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter generateQuestionsStream(@RequestBody @Validated QuestionGenerationRequest request) {
+        Long userId = LoginUserContext.getUserId();
+        log.info("Received streaming question generation request from user: {}, enableThinking: {}",
+                userId, request.getEnableThinking());
+
+        // 深度思考模式使用30分钟超时，普通模式使用5分钟
+        long timeoutMs = Boolean.TRUE.equals(request.getEnableThinking()) ? 30 * 60 * 1000L : 5 * 60 * 1000L;
+        SseEmitter emitter = new SseEmitter(timeoutMs);
+
+        emitter.onTimeout(() -> {
+            log.warn("SSE connection timeout for user: {}", userId);
+            emitter.complete();
+        });
+
+        emitter.onError((ex) -> {
+            log.error("SSE connection error for user: {}", userId, ex);
+            emitter.completeWithError(ex);
+        });
+
+        // 异步执行出题任务
+        questionGenerationService.generateQuestionsAsync(userId, request, emitter);
+
+        return emitter;
+    }
+
     /**
      * 获取出题历史记录列表
      *
@@ -56,6 +101,21 @@ public class QuestionGenerationController {
         return Result.success(questionGenerationService.getGenerationHistory(userId));
     }
 
+    /**
+     * 分页获取出题历史记录列表（按创建时间倒序）
+     *
+     * @param cursor 上一页返回的 nextCursor，第一页不传
+     * @param limit  每页条数，默认 20，最大 100
+     * @return 一页历史记录
+     */
+    @GetMapping("/history/page")
+    public Result<CursorPage<QuestionHistoryItem>> getGenerationHistoryPage(
+            @RequestParam(required = false) String cursor,
+            @RequestParam(required = false) Integer limit) {
+        Long userId = LoginUserContext.getUserId();
+        return Result.success(questionGenerationService.getGenerationHistoryPage(userId, cursor, limit));
+    }
+
     /**
      * 获取单条出题记录详情
      *
@@ -5,7 +5,7 @@ CREATE TABLE IF NOT EXISTS `ai_prompt_config` (
     `description` varchar(255) DEFAULT NULL COMMENT '描述',
     `create_time` datetime DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
     `update_time` datetime DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
-    `config_type` INT DEFAULT 0 COMMENT '0:System, 1:Personality, 2:ToneStyle',
+    `config_type` INT DEFAULT 0 COMMENT '0:System, 1:Personality, 2:ToneStyle, 3:QuestionPrompt, 4:QuestionSchema',
     PRIMARY KEY (`id`),
     UNIQUE KEY `uk_config_key` (`config_key`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='AI提示词配置表';
@@ -292,7 +292,7 @@ Json格式示例
   "title": "Part Ⅲ 阅读理解",
   "score_desc": "本篇共5小题，每题2分，共10分",
   "difficulty": "Medium",// Medium/hard/Easy
-  "content": "{{subtitle:Passage}} {{indent}}The Dong Grand Choir (侗族大歌) is a unique musical tradition of the Dong people in China. For centuries, the Dong people, who live in mountain villages of Guizhou, Guangxi, and Hunan, have used these songs to share stories, teach moral values, and celebrate nature. Unlike most choirs, there is no conductor (指挥) or written music — the harmony is created naturally by singers of all ages. {{br}} {{indent}}The songs are divided into two types: Galao (grand songs) and Gaxia (small songs). Galao are performed at festivals and tell long stories about history or love, while Gaxia are short tunes. People sing during daily work. The most amazing part is their singing style, combining different voice parts (high, middle, and low). Traditionally, children learn these songs by listening to elders while sitting around a big fire at night. {{br}} {{indent}}However, this tradition faces challenges. With many young people moving to cities for jobs, fewer villagers are there to keep the singing tradition alive. To protect the tradition, local schools have started choir classes. The Dong Grand Song Festival now attracts tourists worldwide every year. The Dong people believe that "a song is more valuable than rice", showing how deeply music is rooted in their culture. {{br}}{{br}} {{subtitle:The Dong Grand Choir}} {{br}} Type of Tradition: The Dong Grand Choir is a unique {{index}} {{short_blank}} tradition of the Dong people in China. {{br}} Unique Feature: Unlike most choirs, the Dong Grand Choir has no conductor or {{index}} {{short_blank}} music. {{br}} Passing-Down of Tradition: Children learn the songs by {{index}} {{short_blank}} to elders around a big fire at night. {{br}} Challenges: There are {{index}} {{short_blank}} villagers to keep the tradition alive. {{br}} Action Taken: Local school have started choir {{index}} {{short_blank}} to protect the tradition.",
+  "content": "{{subtitle:Passage}} {{indent}}The Dong Grand Choir (侗族大歌) is a unique musical tradition of the Dong people in China. For centuries, the Dong people, who live in mountain villages of Guizhou, Guangxi, and Hunan, have used these songs to share stories, teach moral values, and celebrate nature. Unlike most choirs, there is no conductor (指挥) or written music — the harmony is created naturally by singers of all ages. {{br}} {{indent}}The songs are divided into two types: Galao (grand songs) and Gaxia (small songs). Galao are performed at festivals and tell long stories about history or love, while Gaxia are short tunes. People sing during daily work. The most amazing part is their singing style, combining different voice parts (high, middle, and low). Traditionally, children learn these songs by listening to elders while sitting around a big fire at night. {{br}} {{indent}}However, this tradition faces challenges. With many young people moving to cities for jobs, fewer villagers are there to keep the singing tradition alive. To protect the tradition, local schools have started choir classes. The Dong Grand Song Festival now attracts tourists worldwide every year. The Dong people believe that \"a song is more valuable than rice\", showing how deeply music is rooted in their culture. {{br}}{{br}} {{subtitle:The Dong Grand Choir}} {{br}} Type of Tradition: The Dong Grand Choir is a unique {{index}} {{short_blank}} tradition of the Dong people in China. {{br}} Unique Feature: Unlike most choirs, the Dong Grand Choir has no conductor or {{index}} {{short_blank}} music. {{br}} Passing-Down of Tradition: Children learn the songs by {{index}} {{short_blank}} to elders around a big fire at night. {{br}} Challenges: There are {{index}} {{short_blank}} villagers to keep the tradition alive. {{br}} Action Taken: Local school have started choir {{index}} {{short_blank}} to protect the tradition.",
   "answers": [
     "musical",
     "written",
@@ -399,3 +399,12 @@ Json格式示例
         }
      # Few-Shot Example (参考样本)
      {examples}', '书面表达出题模板', '2025-12-02 22:03:52', '2025-12-04 01:35:21', 3);
+
+-- 题型输出约束：流式出题时逐段校验，无法满足时提前中断并重试
+INSERT INTO ai_prompt_config (config_key, config_value, description, config_type) VALUES
+    ('schema:english_hubei:grammar_fill_blank', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-语法填空输出约束', 4),
+    ('schema:english_hubei:sentence_ordering', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-连词成句输出约束', 4),
+    ('schema:english_hubei:translation', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-翻译输出约束', 4),
+    ('schema:english_hubei:reading_gap_filling', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-阅读理解填空输出约束', 4),
+    ('schema:english_hubei:reading_qa', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-阅读理解问答输出约束', 4),
+    ('schema:english_hubei:writing', '{"root": "any", "required": ["title", "content", "answers", "analyses"], "maxItems": 1, "maxLength": 20000}', '湖北专升本英语-书面表达输出约束', 4);
@@ -7,5 +7,6 @@ CREATE TABLE chat_message (
                               timestamp TIMESTAMP DEFAULT CURRENT_TIMESTAMP, -- 消息时间戳
 
                               FOREIGN KEY (user_id) REFERENCES user_account(id) ON DELETE CASCADE,
-                              INDEX idx_user_session (user_id, session_id, timestamp) -- 快速检索会话历史
+                              INDEX idx_user_session (user_id, session_id, timestamp), -- 快速检索会话历史
+                              INDEX idx_user_session_id (user_id, session_id, id) -- 按 ID 倒序扫描最新的历史窗口
 );
\ No newline at end of file